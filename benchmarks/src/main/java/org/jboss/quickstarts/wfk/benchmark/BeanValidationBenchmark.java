@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmark;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures the Bean Validation of each entity's constraints (the name, phone number, registration and id
+ * <code>@Pattern</code>s, <code>@Email</code>, <code>@Past</code> and <code>@Future</code>), for a valid entity and
+ * for one that breaks a regular expression constraint.</p>
+ *
+ * @author Joshua Wilson
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanValidationBenchmark {
+
+    @Param({"Contact", "Customer", "Taxi", "Booking"})
+    private String entity;
+
+    private ValidatorFactory validatorFactory;
+
+    private Validator validator;
+
+    private Object valid;
+
+    private Object invalid;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+
+        if (entity.equals("Contact")) {
+            valid = BenchmarkDatabase.contact(1);
+            Contact contact = BenchmarkDatabase.contact(1);
+            contact.setPhoneNumber("212-555-1212");
+            invalid = contact;
+        } else if (entity.equals("Customer")) {
+            valid = BenchmarkDatabase.customer(1);
+            Customer customer = BenchmarkDatabase.customer(1);
+            customer.setLastName("Last1");
+            invalid = customer;
+        } else if (entity.equals("Taxi")) {
+            valid = BenchmarkDatabase.taxi(1);
+            Taxi taxi = BenchmarkDatabase.taxi(1);
+            taxi.setRegistration("T-00001");
+            invalid = taxi;
+        } else {
+            valid = BenchmarkDatabase.booking(1);
+            Booking booking = BenchmarkDatabase.booking(1);
+            booking.setTaxiID("taxi 1");
+            invalid = booking;
+        }
+
+        if (!validator.validate(valid).isEmpty() || validator.validate(invalid).isEmpty()) {
+            throw new IllegalStateException("The " + entity + " samples do not validate as expected");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Object>> validateValid() {
+        return validator.validate(valid);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Object>> validateInvalid() {
+        return validator.validate(invalid);
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmark;
+
+import java.lang.reflect.Field;
+import java.util.Calendar;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.jboss.quickstarts.wfk.util.Log;
+
+/**
+ * <p>Sets up the application's repositories outside of a container, on the embedded H2 database of the
+ * <code>benchmark_pu</code> persistence unit.</p>
+ *
+ * <p>Nothing is injected outside of a container, so {@link #inject(Object, String, Object)} sets the
+ * <code>@Inject</code> fields by hand.</p>
+ *
+ * @author Joshua Wilson
+ */
+public final class BenchmarkDatabase {
+
+    public static final String PERSISTENCE_UNIT = "benchmark_pu";
+
+    /** The id of contact 0 in the tables loaded by {@link #seed(EntityManagerFactory, int)}. */
+    public static final long CONTACT_ID_BASE = 100000000L;
+
+    public static final long CUSTOMER_ID_BASE = 200000000L;
+
+    public static final long TAXI_ID_BASE = 300000000L;
+
+    public static final long BOOKING_ID_BASE = 400000000L;
+
+    private static final int BATCH_SIZE = 1000;
+
+    private BenchmarkDatabase() {
+    }
+
+    public static EntityManagerFactory open() {
+        return Persistence.createEntityManagerFactory(PERSISTENCE_UNIT);
+    }
+
+    /**
+     * <p>Creates an object the way CDI would, setting the logger and any other given fields.</p>
+     *
+     * @param type The class to instantiate, it needs a no argument constructor
+     * @param fieldsAndValues Pairs of field name and value to inject
+     * @return The new object
+     */
+    public static <T> T create(Class<T> type, Object... fieldsAndValues) {
+        try {
+            T instance = type.newInstance();
+            inject(instance, "log", Log.getLog(type));
+            for (int i = 0; i < fieldsAndValues.length; i += 2) {
+                inject(instance, (String) fieldsAndValues[i], fieldsAndValues[i + 1]);
+            }
+            return instance;
+        } catch (InstantiationException e) {
+            throw new IllegalArgumentException(e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * <p>Sets a (private) field, skipping it silently if the class has no such field.</p>
+     */
+    public static void inject(Object target, String fieldName, Object value) {
+        for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                Field field = type.getDeclaredField(fieldName);
+                field.setAccessible(true);
+                field.set(target, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                // Look in the superclass
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+
+    /**
+     * <p>Builds a valid Contact. The email is <code>contact{n}@example.com</code>, so it is unique per n.</p>
+     */
+    public static Contact contact(int n) {
+        Contact contact = new Contact();
+        contact.setFirstName("First");
+        contact.setLastName("Last" + letters(n));
+        contact.setEmail("contact" + n + "@example.com");
+        contact.setPhoneNumber("(212) 555-" + String.format("%04d", n % 10000));
+        contact.setState("NY");
+        Calendar birthDate = Calendar.getInstance();
+        birthDate.set(1970 + n % 40, n % 12, 1 + n % 28);
+        contact.setBirthDate(birthDate.getTime());
+        return contact;
+    }
+
+    /**
+     * <p>Builds a valid Customer. The email is <code>customer{n}@example.com</code>.</p>
+     */
+    public static Customer customer(int n) {
+        Customer customer = new Customer();
+        customer.setFirstName("First");
+        customer.setLastName("Last" + letters(n));
+        customer.setEmail("customer" + n + "@example.com");
+        customer.setPhoneNumber("(044)4555-" + String.format("%04d", n % 10000));
+        return customer;
+    }
+
+    /**
+     * <p>Builds a valid Taxi. The registration is <code>T</code> followed by n in six digits.</p>
+     */
+    public static Taxi taxi(int n) {
+        Taxi taxi = new Taxi();
+        taxi.setRegistration(String.format("T%06d", n % 1000000));
+        taxi.setSeat(String.valueOf(2 + n % 19));
+        return taxi;
+    }
+
+    /**
+     * <p>Builds a valid Booking of customer n on taxi n, travelling n days after 2030-01-01.</p>
+     */
+    public static Booking booking(int n) {
+        Booking booking = new Booking();
+        booking.setCustomerID(String.valueOf(CUSTOMER_ID_BASE + n));
+        booking.setTaxiID(String.valueOf(TAXI_ID_BASE + n));
+        Calendar travelDate = Calendar.getInstance();
+        travelDate.clear();
+        travelDate.set(2030, Calendar.JANUARY, 1);
+        travelDate.add(Calendar.DATE, n % 3650);
+        booking.setTravelDate(travelDate.getTime());
+        return booking;
+    }
+
+    /**
+     * <p>Loads the tables the way <code>import.sql</code> does, with plain SQL inserts, but scaled up: <code>rows</code>
+     * contacts, customers and bookings and <code>rows / 10</code> taxis (each booked once a day). The rows are generated
+     * inside the database, so a million of them load in seconds rather than the minutes <code>persist</code> takes.</p>
+     *
+     * <p>Row n of each table has the email, or registration, of {@link #contact(int)}, {@link #customer(int)} and
+     * {@link #taxi(int)}. The ids start at {@link #CONTACT_ID_BASE} and so on, well clear of the id sequences.</p>
+     *
+     * @param emf The benchmark database
+     * @param rows The number of contacts, customers and bookings
+     */
+    public static void seed(EntityManagerFactory emf, int rows) {
+        int taxis = Math.max(1, rows / 10);
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery("insert into Contact (id, version, first_name, last_name, email, phone_number, birth_date, state)"
+                + " select " + CONTACT_ID_BASE + " + x, 0, 'First', 'Last' || x, 'contact' || x || '@example.com',"
+                + " '(212) 555-' || lpad(mod(x, 10000), 4, '0'), dateadd('DAY', -mod(x, 15000), date '2000-01-01'), 'NY'"
+                + " from system_range(0, " + (rows - 1) + ")").executeUpdate();
+            em.createNativeQuery("insert into Customer (id, version, first_name, last_name, email, phone_number)"
+                + " select " + CUSTOMER_ID_BASE + " + x, 0, 'First', 'Last' || x, 'customer' || x || '@example.com',"
+                + " '(044)4555-' || lpad(mod(x, 10000), 4, '0')"
+                + " from system_range(0, " + (rows - 1) + ")").executeUpdate();
+            em.createNativeQuery("insert into Taxi (id, version, registration, seat)"
+                + " select " + TAXI_ID_BASE + " + x, 0, 'T' || lpad(x, 6, '0'), cast(2 + mod(x, 19) as varchar)"
+                + " from system_range(0, " + (taxis - 1) + ")").executeUpdate();
+            em.createNativeQuery("insert into Booking (id, version, customer_ID, taxi_ID, travel_date)"
+                + " select " + BOOKING_ID_BASE + " + x, 0, " + CUSTOMER_ID_BASE + " + x,"
+                + " " + TAXI_ID_BASE + " + mod(x, " + taxis + "),"
+                + " dateadd('DAY', x / " + taxis + ", date '2030-01-01')"
+                + " from system_range(0, " + (rows - 1) + ")").executeUpdate();
+            em.createNativeQuery("analyze").executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * <p>Inserts Contacts 0 to count - 1, committing and clearing every {@value #BATCH_SIZE} rows so the persistence
+     * context does not grow with the table.</p>
+     */
+    public static void seedContacts(EntityManagerFactory emf, int count) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (int i = 0; i < count; i++) {
+                em.persist(contact(i));
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    em.getTransaction().commit();
+                    em.clear();
+                    em.getTransaction().begin();
+                }
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    // Names may only contain letters, so turn the number into a letter sequence
+    private static String letters(int n) {
+        StringBuilder letters = new StringBuilder();
+        do {
+            letters.append((char) ('a' + n % 26));
+            n /= 26;
+        } while (n > 0);
+        return letters.toString();
+    }
+}
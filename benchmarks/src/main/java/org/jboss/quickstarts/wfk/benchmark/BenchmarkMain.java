@@ -0,0 +1,55 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>The entry point of <code>benchmarks.jar</code>. It runs JMH with the given command line, and unless a result format
+ * is given, writes the results as JSON to <code>results/jmh-&lt;version&gt;.json</code> so that runs of different
+ * releases can be kept side by side and compared.</p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar                        # everything, results/jmh-2.7.0-SNAPSHOT.json
+ * java -jar target/benchmarks.jar RepositoryBenchmark    # only the matching benchmarks
+ * java -jar target/benchmarks.jar -rf csv -rff out.csv   # any other JMH result format
+ * </pre>
+ *
+ * @author Joshua Wilson
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<String>(Arrays.asList(args));
+        if (!arguments.contains("-rf") && !arguments.contains("-h") && !arguments.contains("-l")) {
+            String version = BenchmarkMain.class.getPackage().getImplementationVersion();
+            File results = new File("results", "jmh-" + (version == null ? "dev" : version) + ".json");
+            results.getParentFile().mkdirs();
+            arguments.add(0, "-rf");
+            arguments.add(1, "json");
+            arguments.add(2, "-rff");
+            arguments.add(3, results.getPath());
+        }
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[arguments.size()]));
+    }
+}
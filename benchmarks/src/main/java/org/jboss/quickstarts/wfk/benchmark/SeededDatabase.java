@@ -0,0 +1,67 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmark;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * <p>A benchmark database loaded with {@link BenchmarkDatabase#seed(EntityManagerFactory, int)}, shared by the
+ * repository benchmarks. It is loaded once per trial, for each value of {@link #rows}.</p>
+ *
+ * <p>An EntityManager must not be shared between threads, so each benchmark thread takes one from
+ * {@link #createEntityManager()} in its own setup, and should clear it before each operation so that reads go to the
+ * database as they would for a new request.</p>
+ *
+ * @author Joshua Wilson
+ */
+@State(Scope.Benchmark)
+public class SeededDatabase {
+
+    /** The number of contacts, customers and bookings; there are a tenth as many taxis. */
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private EntityManagerFactory emf;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        emf = BenchmarkDatabase.open();
+        BenchmarkDatabase.seed(emf, rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        emf.close();
+    }
+
+    public EntityManager createEntityManager() {
+        return emf.createEntityManager();
+    }
+
+    /** The number of taxis loaded. */
+    public int getTaxis() {
+        return Math.max(1, rows / 10);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.benchmark;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * <p>Minimal servlet request and response stand-ins, enough to run the application's servlet filters outside of a
+ * container.</p>
+ *
+ * <p>Methods that are not stubbed return null, false or 0.</p>
+ *
+ * @author Joshua Wilson
+ */
+public final class ServletStubs {
+
+    private ServletStubs() {
+    }
+
+    /**
+     * @param parameters The query parameters of the request
+     * @param headers The request headers
+     */
+    public static HttpServletRequest request(final Map<String, String> parameters, final Map<String, String> headers) {
+        return (HttpServletRequest) Proxy.newProxyInstance(ServletStubs.class.getClassLoader(),
+            new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("getParameter")) {
+                        return parameters.get(args[0]);
+                    }
+                    if (method.getName().equals("getHeader")) {
+                        return headers.get(args[0]);
+                    }
+                    return defaultValue(method.getReturnType());
+                }
+            });
+    }
+
+    /**
+     * @param body Receives everything written to the response
+     */
+    public static HttpServletResponse response(final CountingOutputStream body) {
+        return (HttpServletResponse) Proxy.newProxyInstance(ServletStubs.class.getClassLoader(),
+            new Class<?>[] {HttpServletResponse.class}, new InvocationHandler() {
+                private Object contentType;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("getOutputStream")) {
+                        return body;
+                    }
+                    if (method.getName().equals("setContentType")) {
+                        contentType = args[0];
+                    }
+                    if (method.getName().equals("getContentType")) {
+                        return contentType;
+                    }
+                    return defaultValue(method.getReturnType());
+                }
+            });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    /**
+     * <p>A response body that counts, and then discards, what is written to it.</p>
+     */
+    public static class CountingOutputStream extends ServletOutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) throws IOException {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            count += len;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void reset() {
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.booking;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.jboss.quickstarts.wfk.benchmark.BenchmarkDatabase;
+import org.jboss.quickstarts.wfk.benchmark.SeededDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures the queries behind the BookingService end points on a {@link SeededDatabase}: a lookup by id, a middle
+ * page of the list, the reference check a batch of 500 bookings makes, the load of one day into
+ * {@link TaxiAvailability}, and the fetch join reads of the bookings of a customer and of a taxi over 30 days.</p>
+ *
+ * @author Joshua Wilson
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookingRepositoryBenchmark {
+
+    private static final int PAGE = 101;
+
+    private static final int BATCH = 500;
+
+    private EntityManager em;
+
+    private BookingRepository crud;
+
+    private Long id;
+
+    private List<Long> customerIds;
+
+    private Date travelDate;
+
+    private Long customerId;
+
+    private Long taxiId;
+
+    private Date monthLater;
+
+    @Setup
+    public void setUp(SeededDatabase database) {
+        em = database.createEntityManager();
+        crud = BenchmarkDatabase.create(BookingRepository.class, "em", em);
+
+        int middle = database.rows / 2;
+        id = BenchmarkDatabase.BOOKING_ID_BASE + middle;
+        Booking middleBooking = crud.findById(id);
+        travelDate = middleBooking.getTravelDate();
+        customerId = Long.valueOf(middleBooking.getCustomerID());
+        taxiId = Long.valueOf(middleBooking.getTaxiID());
+        monthLater = new Date(travelDate.getTime() + TimeUnit.DAYS.toMillis(30));
+
+        customerIds = new ArrayList<Long>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            customerIds.add(BenchmarkDatabase.CUSTOMER_ID_BASE + (long) i * database.rows / BATCH);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        em.close();
+    }
+
+    @Benchmark
+    public Booking findById() {
+        em.clear();
+        return crud.findById(id);
+    }
+
+    @Benchmark
+    public List<Booking> middlePage() {
+        em.clear();
+        return crud.findPageOrderedById(id, PAGE);
+    }
+
+    @Benchmark
+    public Set<Long> findExistingCustomerIds() {
+        em.clear();
+        return crud.findExistingCustomerIds(customerIds);
+    }
+
+    @Benchmark
+    public List<Long> findTaxiIdsByTravelDate() {
+        em.clear();
+        return em.createNamedQuery(Booking.FIND_TAXI_IDS_BY_TRAVEL_DATE, Long.class)
+            .setParameter("travelDate", travelDate)
+            .getResultList();
+    }
+
+    @Benchmark
+    public List<Booking> findByCustomerId() {
+        em.clear();
+        return crud.findByCustomerId(customerId);
+    }
+
+    @Benchmark
+    public List<Booking> findByTaxiIdBetween() {
+        em.clear();
+        return crud.findByTaxiIdBetween(taxiId, travelDate, monthLater);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.contact;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+
+import org.jboss.quickstarts.wfk.benchmark.BenchmarkDatabase;
+import org.jboss.quickstarts.wfk.benchmark.SeededDatabase;
+import org.jboss.quickstarts.wfk.util.Projection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures the queries behind the ContactService end points on a {@link SeededDatabase}: a lookup by id and by
+ * email, the email uniqueness check, and the first and a middle page of the list ordered by name, as whole Contacts
+ * and with only the <code>id,lastName,phoneNumber</code> fields of the mobile dispatch client.</p>
+ *
+ * @author Joshua Wilson
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContactRepositoryBenchmark {
+
+    private static final int PAGE = 101;
+
+    private static final Projection DISPATCH_FIELDS = Projection.parse("id,lastName,phoneNumber");
+
+    private EntityManager em;
+
+    private ContactRepository crud;
+
+    private Long id;
+
+    private String email;
+
+    private String lastName;
+
+    @Setup
+    public void setUp(SeededDatabase database) {
+        em = database.createEntityManager();
+        crud = BenchmarkDatabase.create(ContactRepository.class, "em", em);
+
+        int middle = database.rows / 2;
+        id = BenchmarkDatabase.CONTACT_ID_BASE + middle;
+        email = BenchmarkDatabase.contact(middle).getEmail();
+        lastName = crud.findById(id).getLastName();
+    }
+
+    @TearDown
+    public void tearDown() {
+        em.close();
+    }
+
+    @Benchmark
+    public Contact findById() {
+        em.clear();
+        return crud.findById(id);
+    }
+
+    @Benchmark
+    public Contact findByEmail() {
+        em.clear();
+        return crud.findByEmail(email);
+    }
+
+    @Benchmark
+    public boolean existsByEmail() {
+        em.clear();
+        return crud.existsByEmail(email, null);
+    }
+
+    @Benchmark
+    public List<Contact> firstPage() {
+        em.clear();
+        return crud.findPageOrderedByName(null, null, null, PAGE);
+    }
+
+    @Benchmark
+    public List<Contact> middlePage() {
+        em.clear();
+        return crud.findPageOrderedByName(lastName, "First", id, PAGE);
+    }
+
+    @Benchmark
+    public List<Tuple> middlePageFields() {
+        em.clear();
+        return crud.findPageOrderedByName(lastName, "First", id, PAGE, DISPATCH_FIELDS);
+    }
+}
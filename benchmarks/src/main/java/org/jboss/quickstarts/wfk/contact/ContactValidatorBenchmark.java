@@ -0,0 +1,115 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.contact;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
+import javax.validation.ValidationException;
+import javax.validation.ValidatorFactory;
+
+import org.jboss.quickstarts.wfk.benchmark.BenchmarkDatabase;
+import org.jboss.quickstarts.wfk.benchmark.SeededDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures {@link ContactValidator#validateContact(Contact)}, the Bean Validation and email uniqueness checks every
+ * create and update goes through, on a {@link SeededDatabase}.</p>
+ *
+ * @author Joshua Wilson
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContactValidatorBenchmark {
+
+    private ValidatorFactory validatorFactory;
+
+    private EntityManager em;
+
+    private ContactValidator validator;
+
+    private Contact newContact;
+
+    private Contact existingContact;
+
+    private Contact invalidContact;
+
+    @Setup
+    public void setUp(SeededDatabase database) {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        em = database.createEntityManager();
+        ContactRepository crud = BenchmarkDatabase.create(ContactRepository.class, "em", em);
+        validator = BenchmarkDatabase.create(ContactValidator.class, "crud", crud,
+            "validator", validatorFactory.getValidator());
+
+        newContact = BenchmarkDatabase.contact(database.rows);
+        existingContact = BenchmarkDatabase.contact(database.rows / 2);
+        existingContact.setId(BenchmarkDatabase.CONTACT_ID_BASE + database.rows / 2);
+        invalidContact = BenchmarkDatabase.contact(database.rows);
+        invalidContact.setPhoneNumber("not a phone number");
+    }
+
+    @TearDown
+    public void tearDown() {
+        em.close();
+        validatorFactory.close();
+    }
+
+    /** A create with a free email. */
+    @Benchmark
+    public Contact validateNew() {
+        em.clear();
+        validator.validateContact(newContact);
+        return newContact;
+    }
+
+    /** An update that keeps the Contact's own email. */
+    @Benchmark
+    public Contact validateUpdate() {
+        em.clear();
+        validator.validateContact(existingContact);
+        return existingContact;
+    }
+
+    /** A create rejected by Bean Validation, before the database is queried. */
+    @Benchmark
+    public ValidationException validateInvalid() {
+        em.clear();
+        try {
+            validator.validateContact(invalidContact);
+        } catch (ConstraintViolationException e) {
+            return e;
+        }
+        throw new IllegalStateException("The invalid contact was accepted");
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.contact;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.NoResultException;
+
+import org.jboss.quickstarts.wfk.benchmark.BenchmarkDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures the email uniqueness check {@link ContactValidator} runs on every create and update.</p>
+ *
+ * <p>The <code>legacy*</code> benchmarks replay the check as it was before the dedicated COUNT query: a
+ * <code>findByEmail</code> that throws {@link NoResultException} when the email is free, followed on update by a
+ * <code>findById</code>. The other benchmarks run the current {@link ContactValidator#emailAlreadyExists}.</p>
+ *
+ * <p>The persistence context is cleared before every check, as it would be for a new request.</p>
+ *
+ * @author Joshua Wilson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailUniquenessBenchmark {
+
+    @Param({"1000", "100000"})
+    private int rows;
+
+    private EntityManagerFactory emf;
+
+    private EntityManager em;
+
+    private ContactRepository crud;
+
+    private ContactValidator validator;
+
+    private String freeEmail;
+
+    private String ownEmail;
+
+    private Long ownId;
+
+    @Setup
+    public void setUp() {
+        emf = BenchmarkDatabase.open();
+        BenchmarkDatabase.seedContacts(emf, rows);
+
+        em = emf.createEntityManager();
+        crud = BenchmarkDatabase.create(ContactRepository.class, "em", em);
+        validator = BenchmarkDatabase.create(ContactValidator.class, "crud", crud);
+
+        freeEmail = "nobody@example.com";
+        ownEmail = BenchmarkDatabase.contact(rows / 2).getEmail();
+        ownId = crud.findByEmail(ownEmail).getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        em.close();
+        emf.close();
+    }
+
+    /** A create: the email is not used yet. */
+    @Benchmark
+    public boolean legacyCreate() {
+        em.clear();
+        return legacyEmailAlreadyExists(freeEmail, null);
+    }
+
+    /** An update that keeps the Contact's own email. */
+    @Benchmark
+    public boolean legacyUpdate() {
+        em.clear();
+        return legacyEmailAlreadyExists(ownEmail, ownId);
+    }
+
+    @Benchmark
+    public boolean create() {
+        em.clear();
+        return validator.emailAlreadyExists(freeEmail, null);
+    }
+
+    @Benchmark
+    public boolean update() {
+        em.clear();
+        return validator.emailAlreadyExists(ownEmail, ownId);
+    }
+
+    // ContactValidator.emailAlreadyExists before it used ContactRepository.existsByEmail
+    private boolean legacyEmailAlreadyExists(String email, Long id) {
+        Contact contact = null;
+        Contact contactWithID = null;
+        try {
+            contact = crud.findByEmail(email);
+        } catch (NoResultException e) {
+            // ignore
+        }
+
+        if (contact != null && id != null) {
+            try {
+                contactWithID = crud.findById(id);
+                if (contactWithID != null && contactWithID.getEmail().equals(email)) {
+                    contact = null;
+                }
+            } catch (NoResultException e) {
+                // ignore
+            }
+        }
+        return contact != null;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.taxi;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+
+import org.jboss.quickstarts.wfk.benchmark.BenchmarkDatabase;
+import org.jboss.quickstarts.wfk.benchmark.SeededDatabase;
+import org.jboss.quickstarts.wfk.util.Projection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures the queries behind the TaxiService end points on a {@link SeededDatabase}: a lookup by id and by
+ * registration, and the first and a middle page of the list ordered by registration, as whole Taxis and with only
+ * the <code>id,registration,seat</code> fields of the mobile dispatch client.</p>
+ *
+ * @author Joshua Wilson
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaxiRepositoryBenchmark {
+
+    private static final int PAGE = 101;
+
+    private static final Projection DISPATCH_FIELDS = Projection.parse("id,registration,seat");
+
+    private EntityManager em;
+
+    private TaxiRepository crud;
+
+    private Long id;
+
+    private String registration;
+
+    @Setup
+    public void setUp(SeededDatabase database) {
+        em = database.createEntityManager();
+        crud = BenchmarkDatabase.create(TaxiRepository.class, "em", em);
+
+        int middle = database.getTaxis() / 2;
+        id = BenchmarkDatabase.TAXI_ID_BASE + middle;
+        registration = BenchmarkDatabase.taxi(middle).getRegistration();
+    }
+
+    @TearDown
+    public void tearDown() {
+        em.close();
+    }
+
+    @Benchmark
+    public Taxi findById() {
+        em.clear();
+        return crud.findById(id);
+    }
+
+    @Benchmark
+    public Taxi findByRegistration() {
+        em.clear();
+        return crud.findByRegistration(registration);
+    }
+
+    @Benchmark
+    public List<Taxi> firstPage() {
+        em.clear();
+        return crud.findPageOrderedByRegistration(null, PAGE);
+    }
+
+    @Benchmark
+    public List<Taxi> middlePage() {
+        em.clear();
+        return crud.findPageOrderedByRegistration(registration, PAGE);
+    }
+
+    @Benchmark
+    public List<Tuple> middlePageFields() {
+        em.clear();
+        return crud.findPageOrderedByRegistration(registration, PAGE, DISPATCH_FIELDS);
+    }
+}
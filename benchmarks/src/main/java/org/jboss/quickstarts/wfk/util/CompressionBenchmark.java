@@ -0,0 +1,144 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jboss.quickstarts.wfk.benchmark.BenchmarkDatabase;
+import org.jboss.quickstarts.wfk.benchmark.ServletStubs;
+import org.jboss.quickstarts.wfk.benchmark.ServletStubs.CountingOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures gzip compression of a JSON response by the {@link CompressionFilter}, with a deflater from its pool,
+ * against a new {@link GZIPOutputStream} per response, which allocates (and ends) a native zlib stream every time.</p>
+ *
+ * <p>The resource is simulated by a chain that writes a JSON list in 8 KB chunks, as the JSON provider does. Both
+ * compress at the same level, so they send the same number of bytes. Run with <code>-prof gc</code> to compare the
+ * allocation per response as well:</p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar CompressionBenchmark -prof gc
+ * </pre>
+ *
+ * @author Joshua Wilson
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    private static final int CHUNK = 8192;
+
+    private static final String CONTACT = "{\"id\":10001,\"firstName\":\"John\",\"lastName\":\"Smith\","
+        + "\"email\":\"john.smith@mailinator.com\",\"phoneNumber\":\"(212) 555-1212\",\"birthDate\":\"1963-06-03\","
+        + "\"state\":\"NY\"},";
+
+    /** The size of the JSON response: a short page (4 KB) and a long one (1 MB). */
+    @Param({"4096", "1048576"})
+    private int size;
+
+    private byte[] chunk;
+
+    private HttpServletRequest request;
+
+    private CountingOutputStream body;
+
+    private HttpServletResponse response;
+
+    private Compression compression;
+
+    private CompressionFilter filter;
+
+    private FilterChain resource;
+
+    @Setup
+    public void setUp() {
+        chunk = new byte[CHUNK];
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte) CONTACT.charAt(i % CONTACT.length());
+        }
+        request = ServletStubs.request(Collections.<String, String>emptyMap(),
+            Collections.singletonMap("Accept-Encoding", "gzip, deflate, br"));
+        body = new CountingOutputStream();
+        response = ServletStubs.response(body);
+        compression = BenchmarkDatabase.create(Compression.class);
+        compression.init();
+        filter = BenchmarkDatabase.create(CompressionFilter.class, "compression", compression);
+
+        resource = new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+                response.setContentType("application/json");
+                write(response.getOutputStream());
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        compression.close();
+    }
+
+    @Benchmark
+    public long pooled() throws IOException, ServletException {
+        body.reset();
+        filter.doFilter(request, response, resource);
+        return body.getCount();
+    }
+
+    @Benchmark
+    public long newDeflaterPerResponse() throws IOException {
+        body.reset();
+        GZIPOutputStream out = new GZIPOutputStream(body, CHUNK);
+        write(out);
+        // Ends the deflater; the response stream itself ignores the close
+        out.close();
+        return body.getCount();
+    }
+
+    private void write(OutputStream out) throws IOException {
+        for (int written = 0; written < size; written += CHUNK) {
+            out.write(chunk, 0, Math.min(CHUNK, size - written));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.jboss.quickstarts.wfk.benchmark.BenchmarkDatabase;
+import org.jboss.quickstarts.wfk.benchmark.ServletStubs;
+import org.jboss.quickstarts.wfk.benchmark.ServletStubs.CountingOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures the JSONP padding of a large response, as the {@link JSONPRequestFilter} streams it, against the filter as
+ * it was before, which collected the whole response in a byte array one byte at a time and copied it out again.</p>
+ *
+ * <p>The request does not accept compression, so only the padding is measured (see {@link CompressionBenchmark}).
+ * The resource is simulated by a chain that writes the body in 8 KB chunks, as the JSON provider does. Run with
+ * <code>-prof gc</code> to compare the allocation per response as well:</p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar JSONPRequestFilterBenchmark -prof gc
+ * </pre>
+ *
+ * @author Joshua Wilson
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JSONPRequestFilterBenchmark {
+
+    private static final int CHUNK = 8192;
+
+    /** The size of the JSON response: a single entity (1 KB) and a large list (10 MB). */
+    @Param({"1024", "10485760"})
+    private int size;
+
+    private byte[] chunk;
+
+    private HttpServletRequest request;
+
+    private CountingOutputStream body;
+
+    private HttpServletResponse response;
+
+    private JSONPRequestFilter filter;
+
+    private FilterChain resource;
+
+    @Setup
+    public void setUp() {
+        chunk = new byte[CHUNK];
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte) ('a' + i % 26);
+        }
+        request = ServletStubs.request(Collections.singletonMap("jsonpcallback", "callback"),
+            Collections.<String, String>emptyMap());
+        body = new CountingOutputStream();
+        response = ServletStubs.response(body);
+        Compression compression = BenchmarkDatabase.create(Compression.class);
+        compression.init();
+        filter = BenchmarkDatabase.create(JSONPRequestFilter.class, "compression", compression);
+
+        resource = new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+                ServletOutputStream out = response.getOutputStream();
+                for (int written = 0; written < size; written += CHUNK) {
+                    out.write(chunk, 0, Math.min(CHUNK, size - written));
+                }
+            }
+        };
+    }
+
+    @Benchmark
+    public long streaming() throws IOException, ServletException {
+        body.reset();
+        filter.doFilter(request, response, resource);
+        return body.getCount();
+    }
+
+    @Benchmark
+    public long buffered() throws IOException, ServletException {
+        body.reset();
+        legacyDoFilter("callback", response, resource);
+        return body.getCount();
+    }
+
+    // The JSONP branch of JSONPRequestFilter.doFilter before it streamed the response
+    private void legacyDoFilter(String callback, HttpServletResponse httpResponse, FilterChain chain)
+        throws IOException, ServletException {
+        final ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+
+        HttpServletResponseWrapper responseWrapper = new HttpServletResponseWrapper(httpResponse) {
+
+            @Override
+            public ServletOutputStream getOutputStream() throws IOException {
+                return new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        byteStream.write(b);
+                    }
+                };
+            }
+
+            @Override
+            public PrintWriter getWriter() throws IOException {
+                return new PrintWriter(byteStream);
+            }
+        };
+
+        chain.doFilter(request, responseWrapper);
+
+        httpResponse.setContentType(JSONPRequestFilter.CONTENT_TYPE);
+        httpResponse.setCharacterEncoding("UTF-8");
+
+        httpResponse.getOutputStream().write((callback + "(").getBytes());
+        httpResponse.getOutputStream().write(byteStream.toByteArray());
+        httpResponse.getOutputStream().write(");".getBytes());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+import org.jboss.quickstarts.wfk.benchmark.BenchmarkDatabase;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures the throughput of reading and writing a <code>List&lt;Contact&gt;</code> with the ObjectMapper of
+ * {@link JacksonConfig}, against a mapper configured as it was before, with a shared <code>SimpleDateFormat</code>
+ * that Jackson clones for every date.</p>
+ *
+ * <p>As in the server, both mappers are shared by all benchmark threads. Run with <code>-t 4</code> to see them under
+ * concurrency and with <code>-prof gc</code> to compare the allocation per list:</p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar JacksonConfigBenchmark -t 4 -prof gc
+ * </pre>
+ *
+ * @author Joshua Wilson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonConfigBenchmark {
+
+    private static final TypeReference<List<Contact>> CONTACT_LIST = new TypeReference<List<Contact>>() {
+    };
+
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Param({"1000"})
+    private int contacts;
+
+    private ObjectMapper legacyMapper;
+
+    private ObjectMapper mapper;
+
+    private List<Contact> list;
+
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws Exception {
+        legacyMapper = new ObjectMapper();
+        legacyMapper.setDateFormat(new SimpleDateFormat("yyyy-MM-dd"));
+        mapper = new JacksonConfig().getContext(Contact.class);
+
+        list = new ArrayList<Contact>(contacts);
+        for (int i = 0; i < contacts; i++) {
+            Contact contact = BenchmarkDatabase.contact(i);
+            contact.setId(Long.valueOf(i));
+            list.add(contact);
+        }
+        json = mapper.writeValueAsBytes(list);
+
+        if (!legacyMapper.writeValueAsString(list).equals(mapper.writeValueAsString(list))) {
+            throw new IllegalStateException("The mappers do not write the same JSON");
+        }
+    }
+
+    @Benchmark
+    public void legacySerialize() throws IOException {
+        legacyMapper.writeValue(DISCARD, list);
+    }
+
+    @Benchmark
+    public void serialize() throws IOException {
+        mapper.writeValue(DISCARD, list);
+    }
+
+    @Benchmark
+    public List<Contact> legacyDeserialize() throws IOException {
+        return legacyMapper.readValue(json, CONTACT_LIST);
+    }
+
+    @Benchmark
+    public List<Contact> deserialize() throws IOException {
+        return mapper.readValue(json, CONTACT_LIST);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.JavaType;
+import org.jboss.quickstarts.wfk.benchmark.BenchmarkDatabase;
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures writing and reading a page of Contacts, Taxis or Bookings as JSON, with the ObjectMapper of
+ * {@link JacksonConfig} the REST services use.</p>
+ *
+ * @author Joshua Wilson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonListBenchmark {
+
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Param({"Contact", "Taxi", "Booking"})
+    private String entity;
+
+    /** The list size, a full page by default. */
+    @Param({"1000"})
+    private int size;
+
+    private ObjectMapper mapper;
+
+    private List<Object> list;
+
+    private JavaType listType;
+
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws Exception {
+        mapper = new JacksonConfig().getContext(Object.class);
+
+        Class<?> type;
+        list = new ArrayList<Object>(size);
+        if (entity.equals("Contact")) {
+            type = Contact.class;
+            for (int i = 0; i < size; i++) {
+                Contact contact = BenchmarkDatabase.contact(i);
+                contact.setId(BenchmarkDatabase.CONTACT_ID_BASE + i);
+                list.add(contact);
+            }
+        } else if (entity.equals("Taxi")) {
+            type = Taxi.class;
+            for (int i = 0; i < size; i++) {
+                Taxi taxi = BenchmarkDatabase.taxi(i);
+                taxi.setId(BenchmarkDatabase.TAXI_ID_BASE + i);
+                list.add(taxi);
+            }
+        } else {
+            type = Booking.class;
+            for (int i = 0; i < size; i++) {
+                Booking booking = BenchmarkDatabase.booking(i);
+                booking.setId(BenchmarkDatabase.BOOKING_ID_BASE + i);
+                list.add(booking);
+            }
+        }
+        listType = mapper.getTypeFactory().constructCollectionType(List.class, type);
+        json = mapper.writeValueAsBytes(list);
+    }
+
+    @Benchmark
+    public void serialize() throws IOException {
+        mapper.writerWithType(listType).writeValue(DISCARD, list);
+    }
+
+    @Benchmark
+    public List<?> deserialize() throws IOException {
+        return mapper.readValue(json, listType);
+    }
+}
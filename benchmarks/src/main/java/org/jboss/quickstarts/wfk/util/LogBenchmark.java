@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.jboss.quickstarts.wfk.benchmark.BenchmarkDatabase;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Measures the cost of the request logging of <code>ContactRESTService</code>: the string concatenation it used to do
+ * against the {@link Log} facade, in the plain and structured formats.</p>
+ *
+ * <p>With <code>level=WARNING</code>, as in production, the facade should allocate nothing. Run with
+ * <code>-prof gc</code> and check that <code>gc.alloc.rate.norm</code> is 0 B/op for the <code>log*</code> benchmarks,
+ * while the <code>legacy</code> one still builds its message. With <code>level=INFO</code> the records are rendered and
+ * handed to a handler that drops them, which shows the cost of the formats themselves:</p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar LogBenchmark -prof gc
+ * </pre>
+ *
+ * @author Joshua Wilson
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogBenchmark {
+
+    @Param({"WARNING", "INFO"})
+    private String level;
+
+    private Logger logger;
+
+    private Log plain;
+
+    private Log structured;
+
+    private Contact contact;
+
+    @Setup
+    public void setUp() {
+        logger = Logger.getLogger(LogBenchmark.class.getName());
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.parse(level));
+        for (Handler handler : logger.getHandlers()) {
+            logger.removeHandler(handler);
+        }
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        plain = new Log(logger, false);
+        structured = new Log(logger, true);
+
+        // An id above the Long cache, as most are, so boxing it would show up as garbage.
+        contact = BenchmarkDatabase.contact(1000);
+        contact.setId(Long.valueOf(100000));
+    }
+
+    @Benchmark
+    public void legacy() {
+        logger.info("createContact started. Contact = " + contact.getFirstName() + " " + contact.getLastName() + " "
+            + contact.getEmail() + " " + contact.getPhoneNumber() + " " + contact.getBirthDate() + " " + contact.getId());
+    }
+
+    @Benchmark
+    public void logPlain() {
+        plain.info("createContact started", "firstName", contact.getFirstName(), "lastName", contact.getLastName(),
+            "email", contact.getEmail(), "phoneNumber", contact.getPhoneNumber(), "birthDate", contact.getBirthDate(),
+            "id", contact.getId());
+    }
+
+    @Benchmark
+    public void logStructured() {
+        structured.info("createContact started", "firstName", contact.getFirstName(), "lastName", contact.getLastName(),
+            "email", contact.getEmail(), "phoneNumber", contact.getPhoneNumber(), "birthDate", contact.getBirthDate(),
+            "id", contact.getId());
+    }
+
+    @Benchmark
+    public void logCount() {
+        plain.info("createBookings started", "bookings", 100000);
+    }
+}
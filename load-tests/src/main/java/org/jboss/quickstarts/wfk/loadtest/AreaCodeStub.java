@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.loadtest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <p>A local stand-in for the allareacodes.com API the application looks up contact states with, so a load test does
+ * not depend on (or hammer) the real service and gives the same results every run.</p>
+ *
+ * <p>Every area code gets a state derived from its number, after a fixed delay that stands in for the latency of the
+ * real API. Start the server with <code>-Dareacode.api.url=http://localhost:&lt;port&gt;/api/1.0/api.json</code> to
+ * use it.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class AreaCodeStub {
+
+    private static final String[] STATES = {"NY", "CA", "TX", "FL", "IL", "PA", "OH", "GA", "NC", "MI"};
+
+    private static final Pattern NPA = Pattern.compile("npa=([0-9]{3})");
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    /**
+     * @param port The port to listen on
+     * @param delayMillis How long to wait before answering each lookup
+     */
+    public AreaCodeStub(int port, final long delayMillis) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                String query = exchange.getRequestURI().getRawQuery();
+                Matcher npa = NPA.matcher(query == null ? "" : query);
+                String body = npa.find()
+                    ? "{\"area_codes\":[{\"npa\":\"" + npa.group(1) + "\",\"state\":\""
+                        + STATES[Integer.parseInt(npa.group(1)) % STATES.length] + "\"}]}"
+                    : "{\"area_codes\":[]}";
+
+                byte[] bytes = body.getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, bytes.length);
+                OutputStream out = exchange.getResponseBody();
+                try {
+                    out.write(bytes);
+                } finally {
+                    out.close();
+                }
+            }
+        });
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+}
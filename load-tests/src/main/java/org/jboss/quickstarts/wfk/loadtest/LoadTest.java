@@ -0,0 +1,226 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Drives a mix of reads and writes against the <code>/rest</code> end points of a running application and reports
+ * the throughput and latency percentiles of each kind of request.</p>
+ *
+ * <p>By default the load is open loop: requests are started at a fixed rate whether or not earlier ones have
+ * completed, and a request's latency is measured from the time it was due to start. A server that stalls therefore shows
+ * up as the queueing delay real users would see, instead of quietly slowing the load down (coordinated omission). With
+ * <code>load.rate=0</code> the test runs closed loop instead: each of the <code>load.concurrency</code> clients sends
+ * its next request as soon as it has the previous response.</p>
+ *
+ * <p>The following system properties configure a run:</p>
+ * <ul>
+ *   <li><code>load.url</code> - the application, default http://localhost:8080/jboss-contacts-angularjs</li>
+ *   <li><code>load.rate</code> - requests started per second, default 200, 0 for a closed loop</li>
+ *   <li><code>load.concurrency</code> - the number of connections and client threads, default 16</li>
+ *   <li><code>load.warmup.seconds</code> - load that is sent but not measured, default 10</li>
+ *   <li><code>load.duration.seconds</code> - the measured period, default 60</li>
+ *   <li><code>load.mix</code> - the operations and their weights, default
+ *   {@value #DEFAULT_MIX}</li>
+ *   <li><code>load.seed.customers</code> and <code>load.seed.taxis</code> - the customers and taxis created before the
+ *   run for the reads and bookings to use, default 200 and 50</li>
+ *   <li><code>load.stub.port</code> - the port of the local {@link AreaCodeStub}, default 8089, 0 to not start it</li>
+ *   <li><code>load.stub.delay.ms</code> - the response time of the stub, default 50</li>
+ *   <li><code>load.timeout.ms</code> - the connect and read timeout of each request, default 10000</li>
+ *   <li><code>load.report.dir</code> - where the summary and histograms are written, default target/load-report</li>
+ * </ul>
+ *
+ * @author Joshua Wilson
+ */
+public class LoadTest {
+
+    static final String DEFAULT_MIX =
+        "createCustomer:10,createContact:10,listTaxis:30,createBooking:10,getCustomerById:25,getCustomerByEmail:15";
+
+    private final RestClient client;
+
+    private final Workload workload;
+
+    private final Results results = new Results();
+
+    private final Operation[] operations;
+
+    private final int[] cumulativeWeights;
+
+    LoadTest(RestClient client, Workload workload, String mix) {
+        this.client = client;
+        this.workload = workload;
+
+        List<Operation> parsedOperations = new ArrayList<Operation>();
+        List<Integer> weights = new ArrayList<Integer>();
+        int total = 0;
+        for (String entry : mix.split(",")) {
+            String[] keyAndWeight = entry.trim().split(":");
+            int weight = keyAndWeight.length > 1 ? Integer.parseInt(keyAndWeight[1].trim()) : 1;
+            if (weight > 0) {
+                total += weight;
+                parsedOperations.add(Operation.forKey(keyAndWeight[0].trim()));
+                weights.add(total);
+            }
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("load.mix has no operations: " + mix);
+        }
+        this.operations = parsedOperations.toArray(new Operation[parsedOperations.size()]);
+        this.cumulativeWeights = new int[weights.size()];
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            cumulativeWeights[i] = weights.get(i);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("load.url", "http://localhost:8080/jboss-contacts-angularjs");
+        int rate = Integer.getInteger("load.rate", 200);
+        int concurrency = Integer.getInteger("load.concurrency", 16);
+        long warmupNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("load.warmup.seconds", 10));
+        long durationNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("load.duration.seconds", 60));
+        int stubPort = Integer.getInteger("load.stub.port", 8089);
+
+        AreaCodeStub stub = null;
+        if (stubPort > 0) {
+            stub = new AreaCodeStub(stubPort, Long.getLong("load.stub.delay.ms", 50));
+            stub.start();
+            System.out.println("Area code stub listening, start the server with -Dareacode.api.url=http://localhost:"
+                + stub.getPort() + "/api/1.0/api.json");
+        }
+
+        RestClient client = new RestClient(url, concurrency, Integer.getInteger("load.timeout.ms", 10000));
+        try {
+            Workload workload = new Workload();
+            System.out.println("Seeding customers and taxis at " + url);
+            workload.seed(client, Integer.getInteger("load.seed.customers", 200), Integer.getInteger("load.seed.taxis", 50));
+
+            LoadTest test = new LoadTest(client, workload, System.getProperty("load.mix", DEFAULT_MIX));
+            System.out.println(rate > 0
+                ? "Starting " + rate + " requests per second on " + concurrency + " connections"
+                : "Running " + concurrency + " clients in a closed loop");
+            if (rate > 0) {
+                test.runOpenLoop(rate, concurrency, warmupNanos, durationNanos);
+            } else {
+                test.runClosedLoop(concurrency, warmupNanos, durationNanos);
+            }
+
+            double seconds = durationNanos / 1e9;
+            test.results.print(System.out, seconds);
+            File reportDirectory = new File(System.getProperty("load.report.dir", "target/load-report"));
+            test.results.write(reportDirectory, seconds);
+            System.out.println("Summary and histograms written to " + reportDirectory);
+        } finally {
+            client.close();
+            if (stub != null) {
+                stub.stop();
+            }
+        }
+    }
+
+    /**
+     * <p>Starts requests at a fixed rate on a pool of threads. When all the threads are busy, due requests queue up and
+     * the time they spend queued counts towards their latency.</p>
+     */
+    void runOpenLoop(int rate, int concurrency, long warmupNanos, long durationNanos) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        final long measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+
+        for (long i = 0;; i++) {
+            final long due = start + i * intervalNanos;
+            if (due >= end) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            final Operation operation = nextOperation();
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    execute(operation, due, measureFrom);
+                }
+            });
+        }
+
+        executor.shutdown();
+        if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            System.out.println("Requests were still queued a minute after the end of the run, the rate is too high");
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * <p>Runs the given number of clients, each sending its next request as soon as it has read the previous
+     * response.</p>
+     */
+    void runClosedLoop(int concurrency, long warmupNanos, long durationNanos) throws InterruptedException {
+        final long measureFrom = System.nanoTime() + warmupNanos;
+        final long end = measureFrom + durationNanos;
+        List<Thread> clients = new ArrayList<Thread>();
+        for (int i = 0; i < concurrency; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (long now = System.nanoTime(); now < end; now = System.nanoTime()) {
+                        execute(nextOperation(), now, measureFrom);
+                    }
+                }
+            }, "load-client-" + i);
+            thread.start();
+            clients.add(thread);
+        }
+        for (Thread thread : clients) {
+            thread.join();
+        }
+    }
+
+    private void execute(Operation operation, long due, long measureFrom) {
+        int status;
+        try {
+            status = operation.run(client, workload).getStatus();
+        } catch (IOException e) {
+            status = -1;
+        }
+        if (due >= measureFrom) {
+            results.record(operation, System.nanoTime() - due, status);
+        }
+    }
+
+    private Operation nextOperation() {
+        int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.loadtest;
+
+import java.io.IOException;
+
+/**
+ * <p>The requests a load test mixes. Each is named in the <code>load.mix</code> setting by its {@link #getKey() key}.</p>
+ *
+ * @author Joshua Wilson
+ */
+public enum Operation {
+
+    CREATE_CUSTOMER("createCustomer") {
+        @Override
+        RestClient.Reply run(RestClient client, Workload workload) throws IOException {
+            return client.post("/customers", workload.newCustomer());
+        }
+    },
+
+    /** Creating a contact looks up the state of its area code. */
+    CREATE_CONTACT("createContact") {
+        @Override
+        RestClient.Reply run(RestClient client, Workload workload) throws IOException {
+            return client.post("/contacts", workload.newContact());
+        }
+    },
+
+    LIST_TAXIS("listTaxis") {
+        @Override
+        RestClient.Reply run(RestClient client, Workload workload) throws IOException {
+            return client.get("/taxis");
+        }
+    },
+
+    CREATE_BOOKING("createBooking") {
+        @Override
+        RestClient.Reply run(RestClient client, Workload workload) throws IOException {
+            return client.post("/bookings", workload.newBooking());
+        }
+
+        // The taxi was already booked that day
+        @Override
+        boolean isConflict(int status) {
+            return status == 409;
+        }
+    },
+
+    GET_CUSTOMER_BY_ID("getCustomerById") {
+        @Override
+        RestClient.Reply run(RestClient client, Workload workload) throws IOException {
+            return client.get("/customers/" + workload.randomCustomerId());
+        }
+    },
+
+    GET_CUSTOMER_BY_EMAIL("getCustomerByEmail") {
+        @Override
+        RestClient.Reply run(RestClient client, Workload workload) throws IOException {
+            return client.get("/customers/" + workload.randomCustomerEmail());
+        }
+    };
+
+    private final String key;
+
+    private Operation(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * <p>Sends one request.</p>
+     *
+     * @return The response, its body has been read
+     * @throws IOException If the request could not be sent or timed out
+     */
+    abstract RestClient.Reply run(RestClient client, Workload workload) throws IOException;
+
+    /**
+     * <p>Tells whether a status other than 2xx is an expected outcome of the operation rather than an error.</p>
+     */
+    boolean isConflict(int status) {
+        return false;
+    }
+
+    public static Operation forKey(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equals(key)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + key);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.loadtest;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * <p>A small JSON client for the <code>/rest</code> end points of the application, with a pool of keep-alive
+ * connections sized to the load test's concurrency.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class RestClient implements Closeable {
+
+    private final String restUrl;
+
+    private final CloseableHttpClient httpClient;
+
+    /**
+     * @param applicationUrl The URL the application is deployed at, e.g. http://localhost:8080/jboss-contacts-angularjs
+     * @param connections The number of connections to keep open to the server
+     * @param timeoutMillis The connect and read timeout
+     */
+    public RestClient(String applicationUrl, int connections, int timeoutMillis) {
+        this.restUrl = applicationUrl.replaceAll("/+$", "") + "/rest";
+
+        PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager();
+        pool.setMaxTotal(connections);
+        pool.setDefaultMaxPerRoute(connections);
+        RequestConfig timeouts = RequestConfig.custom()
+            .setConnectTimeout(timeoutMillis)
+            .setSocketTimeout(timeoutMillis)
+            .setConnectionRequestTimeout(timeoutMillis)
+            .build();
+        this.httpClient = HttpClients.custom().setConnectionManager(pool).setDefaultRequestConfig(timeouts).build();
+    }
+
+    /**
+     * @param path The path below /rest, e.g. /taxis
+     */
+    public Reply get(String path) throws IOException {
+        HttpGet get = new HttpGet(restUrl + path);
+        get.setHeader("Accept", "application/json");
+        return execute(get);
+    }
+
+    /**
+     * @param path The path below /rest, e.g. /customers
+     * @param body The JSON to send
+     */
+    public Reply post(String path, JSONObject body) throws IOException {
+        HttpPost post = new HttpPost(restUrl + path);
+        post.setHeader("Accept", "application/json");
+        post.setEntity(new StringEntity(body.toString(), ContentType.APPLICATION_JSON));
+        return execute(post);
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    // The body is always read to the end, so the connection goes back to the pool
+    private Reply execute(HttpUriRequest request) throws IOException {
+        CloseableHttpResponse response = httpClient.execute(request);
+        try {
+            String body = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity(), "UTF-8");
+            return new Reply(response.getStatusLine().getStatusCode(), body);
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * <p>The status and body of a response.</p>
+     */
+    public static class Reply {
+        private final int status;
+        private final String body;
+
+        Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+
+        public JSONObject json() throws IOException {
+            try {
+                return new JSONObject(body);
+            } catch (JSONException e) {
+                throw new IOException("Expected a JSON object, got " + status + " " + body, e);
+            }
+        }
+
+        public JSONArray jsonArray() throws IOException {
+            try {
+                return new JSONArray(body);
+            } catch (JSONException e) {
+                throw new IOException("Expected a JSON array, got " + status + " " + body, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.loadtest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * <p>Collects the latency of every measured request in an HdrHistogram per operation, in microseconds, along with the
+ * number of successful, conflicting and failed requests.</p>
+ *
+ * <p>The histograms can be recorded into from any thread.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class Results {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final Map<Operation, Stats> stats = new EnumMap<Operation, Stats>(Operation.class);
+
+    public Results() {
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    /**
+     * @param operation The operation that was run
+     * @param latencyNanos The time from when the request should have been sent until its response was read
+     * @param status The HTTP status, or -1 if no response was received
+     */
+    public void record(Operation operation, long latencyNanos, int status) {
+        Stats operationStats = stats.get(operation);
+        operationStats.histogram.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        if (status >= 200 && status < 300) {
+            operationStats.ok.incrementAndGet();
+        } else if (operation.isConflict(status)) {
+            operationStats.conflicts.incrementAndGet();
+        } else {
+            operationStats.errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * <p>Prints a table of the throughput and latency percentiles of each operation that was run.</p>
+     *
+     * @param seconds The length of the measured period
+     */
+    public void print(PrintStream out, double seconds) {
+        out.printf("%-20s %9s %9s %9s %9s %9s %9s %9s %9s %9s%n", "operation", "count", "ok", "conflict", "error",
+            "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        Histogram all = new Histogram(3);
+        long ok = 0;
+        long conflicts = 0;
+        long errors = 0;
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Stats operationStats = entry.getValue();
+            if (operationStats.histogram.getTotalCount() == 0) {
+                continue;
+            }
+            printRow(out, entry.getKey().getKey(), operationStats.histogram, operationStats.ok.get(),
+                operationStats.conflicts.get(), operationStats.errors.get(), seconds);
+            all.add(operationStats.histogram);
+            ok += operationStats.ok.get();
+            conflicts += operationStats.conflicts.get();
+            errors += operationStats.errors.get();
+        }
+        printRow(out, "all", all, ok, conflicts, errors, seconds);
+    }
+
+    /**
+     * <p>Writes <code>summary.json</code>, with the figures {@link #print(PrintStream, double)} shows, and the full
+     * percentile distribution of each operation as <code>&lt;operation&gt;.hgrm</code>, which can be plotted with the
+     * HdrHistogram plotter.</p>
+     *
+     * @param directory The directory to write to, it is created if needed
+     * @param seconds The length of the measured period
+     */
+    public void write(File directory, double seconds) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        JSONObject summary = new JSONObject();
+        try {
+            summary.put("seconds", seconds);
+            for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+                Stats operationStats = entry.getValue();
+                Histogram histogram = operationStats.histogram;
+                if (histogram.getTotalCount() == 0) {
+                    continue;
+                }
+                JSONObject operation = new JSONObject();
+                operation.put("count", histogram.getTotalCount());
+                operation.put("ok", operationStats.ok.get());
+                operation.put("conflicts", operationStats.conflicts.get());
+                operation.put("errors", operationStats.errors.get());
+                operation.put("throughput", histogram.getTotalCount() / seconds);
+                operation.put("p50Millis", histogram.getValueAtPercentile(50) / MICROS_PER_MILLI);
+                operation.put("p99Millis", histogram.getValueAtPercentile(99) / MICROS_PER_MILLI);
+                operation.put("p999Millis", histogram.getValueAtPercentile(99.9) / MICROS_PER_MILLI);
+                operation.put("maxMillis", histogram.getMaxValue() / MICROS_PER_MILLI);
+                summary.put(entry.getKey().getKey(), operation);
+
+                PrintStream hgrm = new PrintStream(new File(directory, entry.getKey().getKey() + ".hgrm"), "UTF-8");
+                try {
+                    histogram.outputPercentileDistribution(hgrm, MICROS_PER_MILLI);
+                } finally {
+                    hgrm.close();
+                }
+            }
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory, "summary.json")), "UTF-8");
+        try {
+            writer.write(summary.toString(2));
+        } catch (JSONException e) {
+            throw new IOException(e);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void printRow(PrintStream out, String name, Histogram histogram, long ok, long conflicts,
+        long errors, double seconds) {
+        out.printf("%-20s %9d %9d %9d %9d %9.1f %9.2f %9.2f %9.2f %9.2f%n", name, histogram.getTotalCount(), ok,
+            conflicts, errors, histogram.getTotalCount() / seconds,
+            histogram.getValueAtPercentile(50) / MICROS_PER_MILLI,
+            histogram.getValueAtPercentile(99) / MICROS_PER_MILLI,
+            histogram.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+            histogram.getMaxValue() / MICROS_PER_MILLI);
+    }
+
+    private static final class Stats {
+        // Auto resizing, with three significant digits
+        private final ConcurrentHistogram histogram = new ConcurrentHistogram(3);
+        private final AtomicLong ok = new AtomicLong();
+        private final AtomicLong conflicts = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+    }
+}
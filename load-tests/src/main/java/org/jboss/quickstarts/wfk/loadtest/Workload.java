@@ -0,0 +1,160 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.loadtest;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * <p>Generates the request bodies of a load test and holds the customers and taxis created before it starts, which the
+ * read and booking operations pick from at random.</p>
+ *
+ * <p>Every email and registration contains a run id taken from the clock, so a run never collides with the data of an
+ * earlier one and the server does not need to be reset between runs.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class Workload {
+
+    private static final int BOOKING_DAYS = 3650;
+
+    private static final long REGISTRATIONS = 36L * 36 * 36 * 36 * 36 * 36 * 36;
+
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    private final long registrationBase = System.currentTimeMillis() / 1000 * 1000;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final List<Long> customerIds = new ArrayList<Long>();
+
+    private final List<String> customerEmails = new ArrayList<String>();
+
+    private final List<Long> taxiIds = new ArrayList<Long>();
+
+    /**
+     * <p>Creates the customers and taxis the operations work with. It is called before the load starts, from a single
+     * thread.</p>
+     *
+     * @throws IOException If one of them cannot be created
+     */
+    public void seed(RestClient client, int customers, int taxis) throws IOException {
+        for (int i = 0; i < customers; i++) {
+            JSONObject customer = newCustomer();
+            RestClient.Reply reply = client.post("/customers", customer);
+            if (!reply.isSuccess()) {
+                throw new IOException("Could not create a customer: " + reply.getStatus() + " " + reply.json());
+            }
+            customerIds.add(id(reply.json()));
+            customerEmails.add(customer.optString("email"));
+        }
+        for (int i = 0; i < taxis; i++) {
+            RestClient.Reply reply = client.post("/taxis", newTaxi());
+            if (!reply.isSuccess()) {
+                throw new IOException("Could not create a taxi: " + reply.getStatus() + " " + reply.json());
+            }
+            taxiIds.add(id(reply.json()));
+        }
+    }
+
+    JSONObject newCustomer() {
+        long n = sequence.incrementAndGet();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return json("firstName", "Load", "lastName", letters(n), "email", "customer-" + runId + "-" + n + "@example.com",
+            "phoneNumber", String.format("(0%02d)%04d-%04d", random.nextInt(100), random.nextInt(10000),
+                random.nextInt(10000)));
+    }
+
+    /**
+     * <p>A contact with a random area code, so that its state is looked up from the area code API.</p>
+     */
+    JSONObject newContact() {
+        long n = sequence.incrementAndGet();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String areaCode = String.valueOf(2 + random.nextInt(8)) + random.nextInt(9) + random.nextInt(10);
+        return json("firstName", "Load", "lastName", letters(n), "email", "contact-" + runId + "-" + n + "@example.com",
+            "phoneNumber", String.format("(%s) 555-%04d", areaCode, random.nextInt(10000)), "birthDate", "1980-01-01");
+    }
+
+    JSONObject newTaxi() {
+        String registration = Long.toString((registrationBase + sequence.incrementAndGet()) % REGISTRATIONS, 36);
+        while (registration.length() < 7) {
+            registration = "0" + registration;
+        }
+        return json("registration", registration.toUpperCase(), "seat",
+            String.valueOf(2 + ThreadLocalRandom.current().nextInt(19)));
+    }
+
+    /**
+     * <p>A booking of a random seeded customer and taxi, on one of the next ten years' days. Two bookings of the same
+     * taxi on the same day conflict, which the server answers with 409.</p>
+     */
+    JSONObject newBooking() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long day = System.currentTimeMillis() + (1 + random.nextInt(BOOKING_DAYS)) * 24L * 60 * 60 * 1000;
+        return json("customerID", String.valueOf(randomCustomerId()), "taxiID",
+            String.valueOf(taxiIds.get(random.nextInt(taxiIds.size()))), "travelDate",
+            new SimpleDateFormat("yyyy-MM-dd").format(new Date(day)));
+    }
+
+    Long randomCustomerId() {
+        return customerIds.get(ThreadLocalRandom.current().nextInt(customerIds.size()));
+    }
+
+    // The emails only contain characters that are allowed in a URL path as they are
+    String randomCustomerEmail() {
+        return customerEmails.get(ThreadLocalRandom.current().nextInt(customerEmails.size()));
+    }
+
+    private static Long id(JSONObject entity) throws IOException {
+        try {
+            return entity.getLong("id");
+        } catch (JSONException e) {
+            throw new IOException("The server did not return an id: " + entity, e);
+        }
+    }
+
+    private static JSONObject json(String... namesAndValues) {
+        JSONObject json = new JSONObject();
+        try {
+            for (int i = 0; i < namesAndValues.length; i += 2) {
+                json.put(namesAndValues[i], namesAndValues[i + 1]);
+            }
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return json;
+    }
+
+    // Names may only contain letters, so turn the number into a letter sequence
+    private static String letters(long n) {
+        StringBuilder letters = new StringBuilder("L");
+        do {
+            letters.append((char) ('a' + n % 26));
+            n /= 26;
+        } while (n > 0);
+        return letters.toString();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.areacode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>A bounded, in-process cache of area code (NPA) to state lookups.</p>
+ *
+ * <p>Entries expire after a time to live and, once the cache is full, the least recently used entry is evicted. Entries
+ * loaded from the bundled table with {@link #preload(InputStream)} never expire, but they can still be evicted.</p>
+ *
+ * <p>All methods are synchronized; the critical sections are a single map operation so contention is not a concern.</p>
+ *
+ * @author Joshua Wilson
+ * @see AreaCodeResolver
+ */
+public class AreaCodeCache {
+
+    private final long ttlMillis;
+
+    private final Map<String, Entry> entries;
+
+    private long hits;
+
+    private long misses;
+
+    /**
+     * @param maxEntries The maximum number of area codes held before the least recently used one is evicted
+     * @param ttlMillis How long a looked up state is trusted for, in milliseconds
+     */
+    public AreaCodeCache(final int maxEntries, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        // An access ordered LinkedHashMap gives us LRU eviction for free.
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * <p>Returns the cached state of an area code.</p>
+     *
+     * @param npa The three digit area code
+     * @return The state, or null if the area code is not cached or its entry has expired
+     */
+    public synchronized String get(String npa) {
+        Entry entry = entries.get(npa);
+        if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+            entries.remove(npa);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.state;
+    }
+
+    /**
+     * <p>Caches the state of an area code for the configured time to live.</p>
+     *
+     * @param npa The three digit area code
+     * @param state The state the area code belongs to
+     */
+    public synchronized void put(String npa, String state) {
+        entries.put(npa, new Entry(state, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * <p>Loads a table of <code>npa,state</code> lines. Blank lines and lines starting with # are skipped.</p>
+     *
+     * @param table The table to read, it is closed once loaded
+     * @return The number of area codes loaded
+     * @throws IOException If the table cannot be read
+     */
+    public int preload(InputStream table) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(table, "UTF-8"));
+        int loaded = 0;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                int comma = line.indexOf(',');
+                if (comma > 0) {
+                    synchronized (this) {
+                        entries.put(line.substring(0, comma).trim(), new Entry(line.substring(comma + 1).trim(), Long.MAX_VALUE));
+                    }
+                    loaded++;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return loaded;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static final class Entry {
+        private final String state;
+        private final long expiresAt;
+
+        private Entry(String state, long expiresAt) {
+            this.state = state;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
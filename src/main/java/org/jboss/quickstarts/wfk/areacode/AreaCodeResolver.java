@@ -0,0 +1,259 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.areacode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.HttpClientUtils;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.jboss.quickstarts.wfk.metrics.Phase;
+import org.jboss.quickstarts.wfk.metrics.RequestTimings;
+import org.jboss.quickstarts.wfk.util.Log;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * <p>Resolves the state a phone number belongs to from its area code (NPA), using the allareacodes.com API.</p>
+ *
+ * <p>Lookups are answered from an {@link AreaCodeCache} first, which is preloaded with the bundled
+ * <code>areacodes.csv</code> table. Concurrent lookups of the same uncached area code are coalesced into a single
+ * HTTP request.</p>
+ *
+ * <p>In asynchronous mode (the default) {@link #stateFor(String)} never calls the API: an uncached area code is
+ * reported as {@link #PENDING} so the entity can be written straight away, and the pending rows are enriched later in
+ * a background batch (see {@link org.jboss.quickstarts.wfk.contact.ContactStateEnricher}).</p>
+ *
+ * <p>The following system properties configure the resolver:</p>
+ * <ul>
+ *   <li><code>areacode.api.url</code> - the API endpoint, point it at a local stub server to run offline</li>
+ *   <li><code>areacode.async</code> - true (default) or false</li>
+ *   <li><code>areacode.cache.size</code> - the maximum number of cached area codes, default 1000</li>
+ *   <li><code>areacode.cache.ttl.minutes</code> - how long a looked up state is cached, default 1440 (a day)</li>
+ * </ul>
+ *
+ * @author Joshua Wilson
+ * @see AreaCodeCache
+ */
+@ApplicationScoped
+public class AreaCodeResolver {
+
+    /** State of an entity whose area code has not been resolved yet. */
+    public static final String PENDING = "pending";
+
+    /** State of an entity whose area code is not known to the API. */
+    public static final String UNKNOWN = "unknown";
+
+    static final String DEFAULT_API_URL = "http://www.allareacodes.com/api/1.0/api.json";
+
+    private static final String PRELOAD_TABLE = "/areacodes.csv";
+
+    // The phone numbers we resolve look like (212) 555-1212
+    private static final Pattern NPA = Pattern.compile("^\\(([0-9]{3})\\).*");
+
+    @Inject
+    private Log log;
+
+    @Inject
+    private @Named("httpClient") CloseableHttpClient httpClient;
+
+    private final ConcurrentMap<String, FutureTask<String>> inFlight = new ConcurrentHashMap<String, FutureTask<String>>();
+
+    private AreaCodeCache cache;
+
+    private String apiUrl;
+
+    private boolean async;
+
+    public AreaCodeResolver() {
+    }
+
+    AreaCodeResolver(Logger log, CloseableHttpClient httpClient, String apiUrl, AreaCodeCache cache, boolean async) {
+        this.log = new Log(log);
+        this.httpClient = httpClient;
+        this.apiUrl = apiUrl;
+        this.cache = cache;
+        this.async = async;
+    }
+
+    @PostConstruct
+    void init() {
+        apiUrl = System.getProperty("areacode.api.url", DEFAULT_API_URL);
+        async = Boolean.parseBoolean(System.getProperty("areacode.async", "true"));
+        cache = new AreaCodeCache(Integer.getInteger("areacode.cache.size", 1000),
+            TimeUnit.MINUTES.toMillis(Long.getLong("areacode.cache.ttl.minutes", 1440)));
+
+        InputStream table = AreaCodeResolver.class.getResourceAsStream(PRELOAD_TABLE);
+        if (table == null) {
+            log.warning("AreaCodeResolver - table not found, starting with an empty cache", "table", PRELOAD_TABLE);
+            return;
+        }
+        try {
+            log.info("AreaCodeResolver - preloaded", "areaCodes", cache.preload(table));
+        } catch (IOException e) {
+            log.warning("AreaCodeResolver - could not preload", "table", PRELOAD_TABLE, "exception", e);
+        }
+    }
+
+    /**
+     * <p>Extracts the area code from a phone number.</p>
+     *
+     * @param phoneNumber A phone number in the (NPA) NXX-XXXX format
+     * @return The three digit area code, or null if the number is not in that format
+     */
+    public static String npaOf(String phoneNumber) {
+        if (phoneNumber == null) {
+            return null;
+        }
+        Matcher matcher = NPA.matcher(phoneNumber);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    /**
+     * <p>Returns the state to store for a phone number while the caller is writing it.</p>
+     *
+     * <p>Cached area codes are answered from memory. Otherwise, in asynchronous mode, {@link #PENDING} is returned and
+     * nothing else happens; in synchronous mode the area code is resolved with {@link #resolve(String)}. The time taken
+     * is recorded as the {@link Phase#AREA_CODE} phase of the request.</p>
+     *
+     * @param phoneNumber The phone number being written
+     * @return The state, {@link #PENDING} or {@link #UNKNOWN}
+     * @throws IOException If the synchronous lookup fails
+     */
+    public String stateFor(String phoneNumber) throws IOException {
+        long started = System.nanoTime();
+        try {
+            String npa = npaOf(phoneNumber);
+            if (npa == null) {
+                return UNKNOWN;
+            }
+            String state = cache.get(npa);
+            if (state != null) {
+                return state;
+            }
+            return async ? PENDING : resolve(npa);
+        } finally {
+            RequestTimings.record(Phase.AREA_CODE, started);
+        }
+    }
+
+    /**
+     * <p>Resolves the state of an area code, calling the API if it is not cached.</p>
+     *
+     * <p>If another thread is already fetching the same area code this call waits for, and shares, its result rather
+     * than issuing a second request.</p>
+     *
+     * @param npa The three digit area code
+     * @return The state, or {@link #UNKNOWN} if the API does not know the area code
+     * @throws IOException If the API cannot be reached or returns an unreadable response
+     */
+    public String resolve(final String npa) throws IOException {
+        String state = cache.get(npa);
+        if (state != null) {
+            return state;
+        }
+
+        FutureTask<String> lookup = new FutureTask<String>(new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                String fetched = fetch(npa);
+                cache.put(npa, fetched);
+                return fetched;
+            }
+        });
+        FutureTask<String> running = inFlight.putIfAbsent(npa, lookup);
+        if (running == null) {
+            running = lookup;
+            try {
+                lookup.run();
+            } finally {
+                inFlight.remove(npa, lookup);
+            }
+        }
+
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while resolving area code " + npa);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not resolve area code " + npa, e.getCause());
+        }
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public AreaCodeCache getCache() {
+        return cache;
+    }
+
+    /**
+     * <p>Performs a rest call to get the state of an area code from the allareacodes.com API.</p>
+     */
+    private String fetch(String npa) throws IOException {
+        URI uri;
+        try {
+            uri = new URIBuilder(apiUrl)
+                .setParameter("npa", npa)
+                .setParameter("tracking_email", "h.firth@ncl.ac.uk")
+                .setParameter("tracking_url", "http://www.ncl.ac.uk/undergraduate/modules/module/CSC8104")
+                .build();
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid areacode.api.url " + apiUrl, e);
+        }
+
+        CloseableHttpResponse response = httpClient.execute(new HttpGet(uri));
+        try {
+            JSONArray areaCodes = new JSONObject(EntityUtils.toString(response.getEntity())).optJSONArray("area_codes");
+            if (areaCodes == null || areaCodes.length() == 0) {
+                return UNKNOWN;
+            }
+            return areaCodes.getJSONObject(0).getString("state");
+        } catch (JSONException e) {
+            throw new IOException("Unexpected response for area code " + npa, e);
+        } finally {
+            HttpClientUtils.closeQuietly(response);
+        }
+    }
+}
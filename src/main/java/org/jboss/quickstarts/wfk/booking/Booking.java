@@ -24,12 +24,21 @@ import java.util.Date;
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Past;
-import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
+
 import org.hibernate.validator.constraints.Email;
 import org.hibernate.validator.constraints.NotEmpty;
+import org.hibernate.annotations.ForeignKey;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.QueryHints;
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.jboss.quickstarts.wfk.util.Versioned;
 import javax.validation.constraints.Future;
 
 /**
@@ -48,15 +57,63 @@ import javax.validation.constraints.Future;
 @Entity
 @NamedQueries({
     @NamedQuery(name = Booking.FIND_ALL, query = "SELECT c FROM Booking c ORDER BY c.id ASC"),
+    @NamedQuery(name = Booking.FIND_PAGE_AFTER, query = "SELECT c FROM Booking c WHERE c.id > :id ORDER BY c.id ASC"),
+    @NamedQuery(name = Booking.FIND_EXISTING_CUSTOMER_IDS, query = "SELECT c.id FROM Customer c WHERE c.id IN :ids"),
+    @NamedQuery(name = Booking.FIND_EXISTING_TAXI_IDS, query = "SELECT t.id FROM Taxi t WHERE t.id IN :ids"),
+    @NamedQuery(name = Booking.FIND_TAXI_IDS_BY_TRAVEL_DATE, query = "SELECT c.taxiID FROM Booking c WHERE c.travleDate = :travelDate"),
+    @NamedQuery(name = Booking.FIND_BY_CUSTOMER, query = "SELECT c FROM Booking c"
+        + " WHERE c.customerID = :customerID ORDER BY c.travleDate ASC, c.id ASC"),
+    @NamedQuery(name = Booking.FIND_BY_TAXI_BETWEEN, query = "SELECT c FROM Booking c"
+        + " WHERE c.taxiID = :taxiID AND c.travleDate BETWEEN :from AND :to ORDER BY c.travleDate ASC"),
    // @NamedQuery(name = Booking.FIND_BY_EMAIL, query = "SELECT c FROM Customer c WHERE c.email = :email")
+    @NamedQuery(name = Booking.REVISION_BY_ID, query = "SELECT NEW org.jboss.quickstarts.wfk.util.Revision(c.id, c.version, c.lastModified) FROM Booking c WHERE c.id = :id",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Booking.REVISIONS, query = "SELECT NEW org.jboss.quickstarts.wfk.util.Revision(c.id, c.version, c.lastModified) FROM Booking c ORDER BY c.id ASC",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Booking.REVISIONS_AFTER, query = "SELECT NEW org.jboss.quickstarts.wfk.util.Revision(c.id, c.version, c.lastModified) FROM Booking c WHERE c.id > :id ORDER BY c.id ASC",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Booking.UPDATE_VERSION, query = Booking.UPDATE_SET + " WHERE c.id = :id AND c.version = :version"),
+    @NamedQuery(name = Booking.DELETE_BY_ID, query = "DELETE FROM Booking c WHERE c.id = :id"),
+    @NamedQuery(name = Booking.DELETE_BY_IDS, query = "DELETE FROM Booking c WHERE c.id IN :ids"),
+    @NamedQuery(name = Booking.DELETE_BY_CUSTOMER_IDS, query = "DELETE FROM Booking c WHERE c.customerID IN :customerIDs"),
+    @NamedQuery(name = Booking.DELETE_BY_TAXI_IDS, query = "DELETE FROM Booking c WHERE c.taxiID IN :taxiIDs"),
+    @NamedQuery(name = Booking.FIND_SLOTS_BY_IDS, query = "SELECT c.id, c.taxiID, c.travleDate FROM Booking c WHERE c.id IN :ids"),
+    @NamedQuery(name = Booking.FIND_SLOTS_BY_CUSTOMER_IDS, query = "SELECT c.id, c.taxiID, c.travleDate FROM Booking c WHERE c.customerID IN :customerIDs"),
+    @NamedQuery(name = Booking.FIND_IDS_BY_TAXI_IDS, query = "SELECT c.id FROM Booking c WHERE c.taxiID IN :taxiIDs")
 })
 @XmlRootElement
-@Table(name = "Booking")
-public class Booking implements Serializable {
+// A taxi can only be booked once per day. The date comes first in the unique index so it also serves the "which taxis are
+// booked on this day" lookup of TaxiAvailability.
+@Table(name = "Booking", uniqueConstraints = @UniqueConstraint(columnNames = {"travel_date", "taxi_ID"}))
+// The bookings of a taxi are read by date range, which needs an index with the taxi first.
+@org.hibernate.annotations.Table(appliesTo = "Booking",
+    indexes = @Index(name = "booking_taxi_date_idx", columnNames = {"taxi_ID", "travel_date"}))
+public class Booking implements Serializable, Versioned {
     /** Default value included to remove warning. Remove or modify at will. **/
     private static final long serialVersionUID = 1L;
     
     public static final String FIND_ALL = "Booking.findAll";
+    public static final String FIND_PAGE_AFTER = "Booking.findPageAfter";
+    public static final String FIND_EXISTING_CUSTOMER_IDS = "Booking.findExistingCustomerIds";
+    public static final String FIND_EXISTING_TAXI_IDS = "Booking.findExistingTaxiIds";
+    public static final String FIND_TAXI_IDS_BY_TRAVEL_DATE = "Booking.findTaxiIdsByTravelDate";
+    public static final String FIND_BY_CUSTOMER = "Booking.findByCustomer";
+    public static final String FIND_BY_TAXI_BETWEEN = "Booking.findByTaxiBetween";
+    public static final String REVISION_BY_ID = "Booking.revisionById";
+    public static final String REVISIONS = "Booking.revisions";
+    public static final String REVISIONS_AFTER = "Booking.revisionsAfter";
+    public static final String UPDATE_VERSION = "Booking.updateVersion";
+    public static final String DELETE_BY_ID = "Booking.deleteById";
+    public static final String DELETE_BY_IDS = "Booking.deleteByIds";
+    public static final String DELETE_BY_CUSTOMER_IDS = "Booking.deleteByCustomerIds";
+    public static final String DELETE_BY_TAXI_IDS = "Booking.deleteByTaxiIds";
+    public static final String FIND_SLOTS_BY_IDS = "Booking.findSlotsByIds";
+    public static final String FIND_SLOTS_BY_CUSTOMER_IDS = "Booking.findSlotsByCustomerIds";
+    public static final String FIND_IDS_BY_TAXI_IDS = "Booking.findIdsByTaxiIds";
+
+    // The SET clause of UPDATE_VERSION, see Contact
+    private static final String UPDATE_SET = "UPDATE Booking c SET c.customer = :customer, c.taxi = :taxi, c.travleDate = :travelDate,"
+        + " c.version = c.version + 1, c.lastModified = :lastModified";
    // public static final String FIND_BY_EMAIL = "Customer.findByEmail";
 
     /*
@@ -69,18 +126,52 @@ public class Booking implements Serializable {
      * variable occurs it can be sent to the correct input field on the form.  
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    @GeneratedValue(generator = "booking_id")
+    @GenericGenerator(name = "booking_id", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = {
+        @Parameter(name = "sequence_name", value = "booking_seq"),
+        @Parameter(name = "initial_value", value = "40100"),
+        @Parameter(name = "increment_size", value = "50"),
+        @Parameter(name = "optimizer", value = "pooled-lo")
+    })
     private Long id;
 
-    @NotNull
-    @Pattern(regexp = "[0-9]+", message = "Please use a customer ID")
-    @Column(name = "customer_ID")
-    private String customerID;
+    // Moved on by every update; with lastModified it makes the ETag and Last-Modified headers (see Revision)
+    @Version
+    @Column(name = "version")
+    @JsonIgnore
+    private long version;
+
+    @Column(name = "last_modified")
+    @Temporal(TemporalType.TIMESTAMP)
+    @JsonIgnore
+    private Date lastModified;
 
-    @NotNull
-    @Pattern(regexp = "[0-9]+", message = "Please use a taxi ID")
-    @Column(name = "taxi_ID")
-    private String taxiID;
+    /*
+     * The customer and the taxi are many-to-one associations, so customer_ID and taxi_ID are foreign key columns with an
+     * index each (the taxi one is booking_taxi_date_idx). They are LAZY and not part of the JSON: a booking is sent
+     * and received with the ids only, which are mapped a second time, read-only, as customerID and taxiID. Reading
+     * those never loads the Customer or the Taxi. BookingRepository sets the associations when the booking is written.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "customer_ID", nullable = false)
+    @ForeignKey(name = "booking_customer_fk")
+    @Index(name = "booking_customer_idx")
+    @JsonIgnore
+    private Customer customer;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "taxi_ID", nullable = false)
+    @ForeignKey(name = "booking_taxi_fk")
+    @JsonIgnore
+    private Taxi taxi;
+
+    @NotNull(message = "Please use a customer ID")
+    @Column(name = "customer_ID", insertable = false, updatable = false)
+    private Long customerID;
+
+    @NotNull(message = "Please use a taxi ID")
+    @Column(name = "taxi_ID", insertable = false, updatable = false)
+    private Long taxiID;
     /*
     @NotNull
     @NotEmpty
@@ -109,20 +200,54 @@ public class Booking implements Serializable {
         this.id = id;
     }
 
+    /**
+     * @return The id of the customer, as text like in the JSON
+     */
     public String getCustomerID() {
-        return customerID;
+        return customerID == null ? null : customerID.toString();
     }
 
+    /**
+     * @param customerID The id of the customer; anything but a number is rejected by validation
+     */
     public void setCustomerID(String customerID) {
-        this.customerID = customerID;
+        this.customerID = parseId(customerID);
     }
 
+    /**
+     * @return The id of the taxi, as text like in the JSON
+     */
     public String getTaxiID() {
-        return taxiID;
+        return taxiID == null ? null : taxiID.toString();
     }
 
+    /**
+     * @param taxiID The id of the taxi; anything but a number is rejected by validation
+     */
     public void setTaxiID(String taxiID) {
-        this.taxiID = taxiID;
+        this.taxiID = parseId(taxiID);
+    }
+
+    /**
+     * @return The customer, loaded on first use
+     */
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    void setCustomer(Customer customer) {
+        this.customer = customer;
+    }
+
+    /**
+     * @return The taxi, loaded on first use
+     */
+    public Taxi getTaxi() {
+        return taxi;
+    }
+
+    void setTaxi(Taxi taxi) {
+        this.taxi = taxi;
     }
 
     
@@ -135,4 +260,35 @@ public class Booking implements Serializable {
         this.travleDate = travleDate;
     }
 
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @Override
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new Date();
+    }
+
+    // Null, and so a validation error, if the id is not a number
+    private static Long parseId(String id) {
+        if (id == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(id);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 }
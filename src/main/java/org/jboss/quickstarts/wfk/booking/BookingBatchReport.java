@@ -0,0 +1,68 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.booking;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>The outcome of a batch of Bookings, returned by <code>POST /rest/bookings/batch</code>.</p>
+ *
+ * <p>To keep the report small for large batches, it holds the number of Bookings created and failed, and the errors of
+ * the first {@value #MAX_ERRORS} Bookings that failed, keyed by their position in the batch:</p>
+ *
+ * <pre>
+ * {"created": 2, "failed": 1, "errors": {"1": {"taxiID": "No taxi with this id"}}}
+ * </pre>
+ *
+ * @author Joshua Wilson
+ * @see BookingService#createAll(java.util.Iterator)
+ */
+public class BookingBatchReport {
+
+    /** The number of failed Bookings whose errors are listed. */
+    static final int MAX_ERRORS = 100;
+
+    private int created;
+
+    private int failed;
+
+    private final Map<Integer, Map<String, String>> errors = new LinkedHashMap<Integer, Map<String, String>>();
+
+    void created(int count) {
+        created += count;
+    }
+
+    void failed(int index, Map<String, String> reasons) {
+        if (errors.size() < MAX_ERRORS) {
+            errors.put(index, reasons);
+        }
+        failed++;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public Map<Integer, Map<String, String>> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.booking;
+
+import java.util.Date;
+
+/**
+ * <p>A CDI event fired by {@link BookingService} when a taxi is booked, or stops being booked, on a date.</p>
+ *
+ * <p>Observers that keep state derived from the Booking table should observe it with
+ * <code>during = TransactionPhase.AFTER_SUCCESS</code>, so a rolled back write is never seen.</p>
+ *
+ * @author Joshua Wilson
+ * @see TaxiAvailability
+ */
+public class BookingChange {
+
+    private final String taxiID;
+
+    private final Date travelDate;
+
+    private final boolean booked;
+
+    BookingChange(String taxiID, Date travelDate, boolean booked) {
+        this.taxiID = taxiID;
+        this.travelDate = travelDate;
+        this.booked = booked;
+    }
+
+    static BookingChange booked(Booking booking) {
+        return new BookingChange(booking.getTaxiID(), booking.getTravelDate(), true);
+    }
+
+    static BookingChange released(Booking booking) {
+        return new BookingChange(booking.getTaxiID(), booking.getTravelDate(), false);
+    }
+
+    public String getTaxiID() {
+        return taxiID;
+    }
+
+    public Date getTravelDate() {
+        return travelDate;
+    }
+
+    /**
+     * @return true if the taxi was booked on the date, false if a booking of it was deleted or moved away
+     */
+    public boolean isBooked() {
+        return booked;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.booking;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Resource;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+
+/**
+ * <p>Writes one chunk of a batch of Bookings in a transaction of its own, so a large batch commits as it goes instead
+ * of holding one transaction, and its locks, until the end. See {@link BookingService#createAll(java.util.Iterator)}.</p>
+ *
+ * @author Joshua Wilson
+ */
+@Stateless
+public class BookingChunkWriter {
+
+    @Inject
+    private BookingService service;
+
+    @Resource
+    private SessionContext context;
+
+    /**
+     * <p>Checks and writes a chunk of valid Bookings, committing before it returns.</p>
+     *
+     * @param chunk The Bookings
+     * @param positions The position of each Booking in the batch
+     * @param rejected Filled with the reasons of the Bookings that were not written, by position
+     * @return The number of Bookings written
+     * @throws Exception If the write fails, in which case none of the chunk is written
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int write(List<Booking> chunk, List<Integer> positions, Map<Integer, Map<String, String>> rejected)
+        throws Exception {
+        try {
+            return service.createChunk(chunk, positions, rejected);
+        } catch (Exception e) {
+            // A checked exception would otherwise commit what was flushed so far
+            context.setRollbackOnly();
+            throw e;
+        }
+    }
+}
@@ -16,38 +16,59 @@
  */
 package org.jboss.quickstarts.wfk.booking;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Date;
 import java.util.HashMap;
-
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Map;
 import java.util.Set;
-import java.util.logging.Logger;
 
-import javax.ejb.NoSuchEntityException;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
-import javax.inject.Named;
-import javax.persistence.NoResultException;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.OptimisticLockException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.Providers;
 import javax.ws.rs.WebApplicationException;
 
+import org.codehaus.jackson.map.ObjectMapper;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.jboss.quickstarts.wfk.util.IsoDateCodec;
+import org.jboss.quickstarts.wfk.util.BulkDelete;
+import org.jboss.quickstarts.wfk.util.KeysetPage;
+import org.jboss.quickstarts.wfk.util.Log;
+import org.jboss.quickstarts.wfk.util.Revision;
+
 /**
  * <p>This class exposes the functionality of {@link BookingService} over HTTP endpoints as a RESTful resource via
  * JAX-RS.</p>
  *
- * <p>Full path for accessing the Contact resource is rest/contacts .</p>
+ * <p>Full path for accessing the Booking resource is rest/bookings .</p>
  *
  * <p>The resource accepts and produces JSON.</p>
  * 
@@ -65,108 +86,208 @@ import javax.ws.rs.WebApplicationException;
  * transaction demarcation when accessing the database." - Antonio Goncalves
  * 
  */
-@Path("/customers")
+@Path("/bookings")
 @Consumes(MediaType.APPLICATION_JSON)
 @Produces(MediaType.APPLICATION_JSON)
 @Stateless
 public class BookingRESTService {
+
+    /** Newline delimited JSON, one Booking per line. */
+    public static final String NDJSON = "application/x-ndjson";
+
     @Inject
-    private @Named("logger") Logger log;
+    private Log log;
     
     @Inject
     private BookingService service;
+
+    @Inject
+    private TaxiAvailability availability;
     
     /**
-     * <p>Search for and return all the Contacts.  They are sorted alphabetically by name.</p>
+     * <p>Search for and return one page of Bookings.  They are sorted by id.</p>
+     *
+     * <p>If there are more Bookings the cursor of the next page is returned in the X-Next-Cursor and Link headers.</p>
+     *
+     * <p>The page is sent with an ETag, and 304 (Not Modified) is returned if it is still current, see {@link Revision}.</p>
+     * 
+     * @param limit The maximum number of Bookings to return, see {@link KeysetPage#limit(Integer)}
+     * @param after The cursor returned with the previous page, or null for the first page
+     * @param request The request, used to evaluate its If-None-Match header
+     * @param headers The request headers
+     * @param uriInfo The request URI, used to build the link to the next page
+     * @return A Response containing a list of Bookings
+     */
+    @GET
+    public Response retrieveAllBookings(@QueryParam("limit") Integer limit, @QueryParam("after") String after,
+            @Context Request request, @Context HttpHeaders headers, @Context UriInfo uriInfo) {
+        int pageSize = KeysetPage.limit(limit);
+        String[] key = KeysetPage.decodeCursor(after, 1);
+        Long afterId = key == null ? null : KeysetPage.parseId(key[0]);
+
+        // Only the ids and versions of the page are read to decide whether the client's copy is still current.
+        List<Revision> revisions = service.findRevisionPageOrderedById(afterId, pageSize + 1);
+        Revision page = Revision.ofPage(revisions);
+        Response.ResponseBuilder notModified = page.evaluatePreconditions(request, headers);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
+        List<Booking> bookings = service.findPageOrderedById(afterId, pageSize + 1);
+
+        // Tagged with what was actually read, in case the page changed since its revisions were.
+        page = Revision.ofPage(bookings);
+        String nextCursor = null;
+        if (KeysetPage.hasMore(bookings, pageSize)) {
+            bookings = bookings.subList(0, pageSize);
+            nextCursor = KeysetPage.encodeCursor(String.valueOf(bookings.get(pageSize - 1).getId()));
+        }
+        return page.tag(KeysetPage.ok(bookings, nextCursor, uriInfo)).build();
+    }
+
+    /**
+     * <p>Search for and return a Booking identified by id.</p>
      * 
-     * @return A Response containing a list of Contacts
+     * @param id The long parameter value provided as a Booking's id
+     * @param request The request, used to evaluate its If-None-Match and If-Modified-Since headers
+     * @param headers The request headers
+     * @return A Response containing a single Booking, or 304 (Not Modified) if the client's copy is current
      */
     @GET
-    public Response retrieveAllContacts() {
-        List<Booking> customers = service.findAllOrderedByName();
-        return Response.ok(customers).build();
+    @Path("/{id:[0-9]+}")
+    public Response retrieveBookingById(@PathParam("id") long id, @Context Request request,
+            @Context HttpHeaders headers) {
+        Revision revision = service.findRevisionById(id);
+        if (revision == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        Response.ResponseBuilder notModified = revision.evaluatePreconditions(request, headers);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
+        Booking booking = service.findById(id);
+        if (booking == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        log.info("findById found Booking", "customerID", booking.getCustomerID(), "taxiID", booking.getTaxiID(),
+            "travelDate", booking.getTravelDate(), "id", booking.getId());
+        
+        return Revision.of(booking).tag(Response.ok(booking)).build();
     }
 
     /**
-     * <p>Search for and return a Contact identified by email address.<p/>
+     * <p>Search for and return the Bookings of a customer, sorted by travel date.</p>
      *
-     * <p>Path annotation includes very simple regex to differentiate between email addresses and Ids.
-     * <strong>DO NOT</strong> attempt to use this regex to validate email addresses.</p>
+     * <p>They are read with one query, through the index on the customer_ID foreign key.</p>
      *
+     * @param customerId The id of the customer
+     * @return A Response containing the list of Bookings, empty if the customer has none
+     */
+    @GET
+    @Path("/customer/{customerId:[0-9]+}")
+    public Response retrieveBookingsByCustomer(@PathParam("customerId") long customerId) {
+        List<Booking> bookings = service.findByCustomerId(customerId);
+        return Response.ok(bookings).build();
+    }
+
+    /**
+     * <p>Search for and return the Bookings of a taxi between two dates, sorted by travel date.</p>
      *
-     * @param email The string parameter value provided as a Contact's email
-     * @return A Response containing a single Contact
+     * <p>They are read with one query, through the (taxi_ID, travel_date) index.</p>
+     *
+     * @param taxiId The id of the taxi
+     * @param from The first travel date, as yyyy-MM-dd, included
+     * @param to The last travel date, as yyyy-MM-dd, included
+     * @return A Response containing the list of Bookings
      */
     @GET
-    @Path("/{email:^.+@.+$}")
-    public Response retrieveContactsByEmail(@PathParam("email") String email) {
-        Booking customer;
+    @Path("/taxi/{taxiId:[0-9]+}")
+    public Response retrieveBookingsByTaxi(@PathParam("taxiId") long taxiId, @QueryParam("from") String from,
+            @QueryParam("to") String to) {
+        if (from == null || to == null) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        Date fromDate;
+        Date toDate;
         try {
-        	customer = service.findByEmail(email);
-        } catch (NoResultException e) {
-            throw new WebApplicationException(Response.Status.NOT_FOUND);
+            fromDate = IsoDateCodec.parse(from);
+            toDate = IsoDateCodec.parse(to);
+        } catch (IllegalArgumentException e) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
-        return Response.ok(customer).build();
+
+        List<Booking> bookings = service.findByTaxiIdBetween(taxiId, fromDate, toDate);
+        return Response.ok(bookings).build();
     }
-    
+
     /**
-     * <p>Search for and return a Contact identified by id.</p>
-     * 
-     * @param id The long parameter value provided as a Contact's id
-     * @return A Response containing a single Contact
+     * <p>Finds the taxis that are free on a date and have at least the given number of seats. This is answered from the
+     * in-memory {@link TaxiAvailability} index, without querying the Booking table.</p>
+     *
+     * @param date The date, as yyyy-MM-dd
+     * @param seats The minimum number of seats, 1 if not given
+     * @return A Response containing the list of free Taxis, largest first
      */
     @GET
-    @Path("/{id:[0-9]+}")
-    public Response retrieveContactById(@PathParam("id") long id) {
-        Booking customer = service.findById(id);
-        if (customer == null) {
-            throw new WebApplicationException(Response.Status.NOT_FOUND);
+    @Path("/availability")
+    public Response retrieveFreeTaxis(@QueryParam("date") String date, @QueryParam("seats") Integer seats) {
+        if (date == null) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
-        log.info("findById " + id + ": found Customer = " + customer.getFirstName() + " " + customer.getLastName() + " " + customer.getEmail() + " " + customer.getPhoneNumber() + " "
-                + customer.getBirthDate() + " " + customer.getId());
-        
-        return Response.ok(customer).build();
+        Date travelDate;
+        try {
+            travelDate = IsoDateCodec.parse(date);
+        } catch (IllegalArgumentException e) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+
+        List<Taxi> taxis = availability.findFreeTaxis(travelDate, seats == null ? 1 : seats);
+        return Response.ok(taxis).build();
     }
 
     /**
-     * <p>Creates a new contact from the values provided. Performs validation and will return a JAX-RS response with either 200 (ok)
+     * <p>Creates a new booking from the values provided. Performs validation and will return a JAX-RS response with either 200 (ok)
      * or with a map of fields, and related errors.</p>
      * 
-     * @param contact The Contact object, constructed automatically from JSON input, to be <i>created</i> via {@link BookingService#create(Booking)}
+     * @param booking The Booking object, constructed automatically from JSON input, to be <i>created</i> via {@link BookingService#create(Booking)}
      * @return A Response indicating the outcome of the create operation
      */
-    @SuppressWarnings("unused")
     @POST
-    public Response createContact(Booking customer) {
-        log.info("createCustomer started. Customer = " + customer.getFirstName() + " " + customer.getLastName() + " " + customer.getEmail() + " " + customer.getPhoneNumber() + " "
-            + customer.getBirthDate() + " " + customer.getId());
-        if (customer == null) {
+    public Response createBooking(Booking booking) {
+        if (booking == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
+        log.info("createBooking started", "customerID", booking.getCustomerID(), "taxiID", booking.getTaxiID(),
+            "travelDate", booking.getTravelDate(), "id", booking.getId());
         
         Response.ResponseBuilder builder = null;
 
         try {
-            // Go add the new Contact.
-            service.create(customer);
+            // Go add the new Booking.
+            service.create(booking);
 
-            // Create a "Resource Created" 201 Response and pass the contact back in case it is needed.
-            builder = Response.status(Response.Status.CREATED).entity(customer);
+            // Create a "Resource Created" 201 Response and pass the booking back in case it is needed.
+            builder = Response.status(Response.Status.CREATED).entity(booking);
             
-            log.info("createCustomer completed. Customer = " + customer.getFirstName() + " " + customer.getLastName() + " " + customer.getEmail() + " " + customer.getPhoneNumber() + " "
-                + customer.getBirthDate() + " " + customer.getId());
+            log.info("createBooking completed", "customerID", booking.getCustomerID(), "taxiID", booking.getTaxiID(),
+                "travelDate", booking.getTravelDate(), "id", booking.getId());
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.info("createBooking failed", "exception", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
+        } catch (UnknownReferenceException e) {
+            log.info("createBooking failed", "exception", e);
+            // Handle a customer or taxi that does not exist
+            builder = Response.status(Response.Status.BAD_REQUEST).entity(e.getReasons());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
-            // Handle the unique constrain violation
+            log.info("createBooking failed", "exception", e);
+            // Handle the taxi being booked already
             Map<String, String> responseObj = new HashMap<String, String>();
-            responseObj.put("email", "That email is already used, please use a unique email");
+            responseObj.put("travelDate", "That taxi is already booked on this date");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.info("createBooking failed", "exception", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -177,57 +298,131 @@ public class BookingRESTService {
     }
 
     /**
-     * <p>Updates a contact with the ID provided in the Contact. Performs validation, and will return a JAX-RS response with either 200 ok,
+     * <p>Creates many bookings in one request from a JSON array. See {@link BookingService#createAll(Iterator)}.</p>
+     *
+     * <p>Bookings that fail validation, or refer to a customer or taxi that does not exist, are skipped. The others are
+     * created, and committed chunk by chunk. The response is 200 (OK) with a {@link BookingBatchReport} of the counts
+     * and of the errors, or 413 (Request Entity Too Large) if the array has more than
+     * {@value BookingService#MAX_BATCH_SIZE} Bookings.</p>
+     *
+     * @param bookings The Bookings, constructed automatically from the JSON array
+     * @return A Response containing the {@link BookingBatchReport}
+     */
+    @POST
+    @Path("/batch")
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public Response createBookings(List<Booking> bookings) {
+        if (bookings == null) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        if (bookings.size() > BookingService.MAX_BATCH_SIZE) {
+            throw new WebApplicationException(Response.Status.REQUEST_ENTITY_TOO_LARGE);
+        }
+        log.info("createBookings started", "bookings", bookings.size());
+
+        return createAll(bookings.iterator());
+    }
+
+    /**
+     * <p>Creates many bookings in one request from newline delimited JSON, one Booking per line.</p>
+     *
+     * <p>The body is read as it is processed, so a batch of any size can be sent without it being held in memory. A line
+     * that is not a valid Booking is reported as an error at its position. Lines after the first
+     * {@value BookingService#MAX_BATCH_SIZE} are not read.</p>
+     *
+     * @param body The request body
+     * @param providers Used to find the application's configured Jackson ObjectMapper
+     * @return A Response containing the {@link BookingBatchReport}
+     */
+    @POST
+    @Path("/batch")
+    @Consumes(NDJSON)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public Response createBookingsFromLines(InputStream body, @Context Providers providers) {
+        log.info("createBookingsFromLines started");
+        ObjectMapper mapper = providers.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE)
+            .getContext(Booking.class);
+
+        return createAll(new BookingLineIterator(body, mapper));
+    }
+
+    // Runs without a transaction: each chunk is committed on its own, see BookingService.createAll()
+    private Response createAll(Iterator<Booking> bookings) {
+        BookingBatchReport report = service.createAll(bookings);
+
+        log.info("createAll completed", "created", report.getCreated(), "rejected", report.getFailed());
+        return Response.ok(report).build();
+    }
+
+    /**
+     * <p>Updates a booking with the ID provided in the Booking. Performs validation, and will return a JAX-RS response with either 200 ok,
      * or with a map of fields, and related errors.</p>
      * 
-     * @param contact The Contact object, constructed automatically from JSON input, to be <i>updated</i> via {@link BookingService#update(Booking)}
-     * @param id The long parameter value provided as the id of the Contact to be updated
+     * @param booking The Booking object, constructed automatically from JSON input, to be <i>updated</i> via {@link BookingService#update(Booking, Long)}
+     * @param id The long parameter value provided as the id of the Booking to be updated
+     * @param ifMatch The ETag of the Booking the client read, optional; the update fails with 412 (Precondition Failed) if it has changed since.
+     *        Without it, the update fails with 409 (Conflict) if the Booking changes while it is being updated
      * @return A Response indicating the outcome of the create operation
      */
     @PUT
     @Path("/{id:[0-9][0-9]*}")
-    public Response updateCustomer(@PathParam("id") long id, Booking customer) {
-        if (customer == null) {
+    public Response updateBooking(@PathParam("id") long id, @HeaderParam("If-Match") String ifMatch, Booking booking) {
+        if (booking == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
-        log.info("updateCustomer started. Customer = " + customer.getFirstName() + " " + customer.getLastName() + " " + customer.getEmail() + " " + customer.getPhoneNumber() + " "
-                + customer.getBirthDate() + " " + customer.getId());
+        log.info("updateBooking started", "customerID", booking.getCustomerID(), "taxiID", booking.getTaxiID(),
+            "travelDate", booking.getTravelDate(), "id", booking.getId());
 
-        if (customer.getId() != id) {
+        if (booking.getId() != id) {
             // The client attempted to update the read-only Id. This is not permitted.
-            Response response = Response.status(Response.Status.CONFLICT).entity("The customer ID cannot be modified").build();
+            Response response = Response.status(Response.Status.CONFLICT).entity("The booking ID cannot be modified").build();
             throw new WebApplicationException(response);
         }
-        if (service.findById(customer.getId()) == null) {
-            // Verify if the contact exists. Return 404, if not present.
-            throw new WebApplicationException(Response.Status.NOT_FOUND);
-        }
+        // The version is not part of the JSON: the client sends the ETag it read in If-Match instead.
+        Long version = Revision.expectedVersion(ifMatch, id);
         
         Response.ResponseBuilder builder = null;
         
         try {
-            // Apply the changes the Contact.
-            service.update(customer);
+            // Apply the changes the Booking.
+            service.update(booking, version);
 
-            // Create an OK Response and pass the contact back in case it is needed.
-            builder = Response.ok(customer);
+            // Create an OK Response and pass the booking back, with its new ETag.
+            builder = Revision.of(booking).tag(Response.ok(booking));
 
-            log.info("updateCustomer completed. Customer = " + customer.getFirstName() + " " + customer.getLastName() + " " + customer.getEmail() + " " + customer.getPhoneNumber() + " "
-                + customer.getBirthDate() + " " + customer.getId());
+            log.info("updateBooking completed", "customerID", booking.getCustomerID(), "taxiID", booking.getTaxiID(),
+                "travelDate", booking.getTravelDate(), "id", booking.getId());
+        } catch (EntityNotFoundException e) {
+            // Verify if the booking exists. Return 404, if not present.
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        } catch (OptimisticLockException e) {
+            log.info("updateBooking failed", "exception", e);
+            Map<String, String> responseObj = new HashMap<String, String>();
+            if (version != null) {
+                // The booking has been changed since the client read it (If-Match), so it has to be read again.
+                responseObj.put("error", "The booking has been changed by someone else, please reload it and try again");
+                builder = Response.status(Response.Status.PRECONDITION_FAILED).entity(responseObj);
+            } else {
+                // No precondition was sent: the booking changed while it was being updated, and can be sent again.
+                responseObj.put("error", "The booking was changed by someone else at the same time, please try again");
+                builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
+            }
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.info("updateBooking failed", "exception", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
+        } catch (UnknownReferenceException e) {
+            log.info("updateBooking failed", "exception", e);
+            // Handle a customer or taxi that does not exist
+            builder = Response.status(Response.Status.BAD_REQUEST).entity(e.getReasons());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
-            // Handle the unique constrain violation
+            log.info("updateBooking failed", "exception", e);
+            // Handle the taxi being booked already
             Map<String, String> responseObj = new HashMap<String, String>();
-            responseObj.put("email", "That email is already used, please use a unique email");
-            responseObj.put("error", "This is where errors are displayed that are not related to a specific field");
-            responseObj.put("anotherError", "You can find this error message in /src/main/java/org/jboss/quickstarts/wfk/rest/ContactRESTService.java line 242.");
+            responseObj.put("travelDate", "That taxi is already booked on this date");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.info("updateBooking failed", "exception", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -238,33 +433,60 @@ public class BookingRESTService {
     }
 
     /**
-     * <p>Deletes a contact using the ID provided. If the ID is not present then nothing can be deleted.</p>
+     * <p>Deletes a booking using the ID provided. If the ID is not present then nothing can be deleted.</p>
      *
-     * <p>Will return a JAX-RS response with either 200 OK or with a map of fields, and related errors.</p>
+     * <p>The booking is deleted with a single DELETE statement, without being read first. Will return a JAX-RS
+     * response with either 204 No Content, 404 Not Found or a map of errors.</p>
      * 
-     * @param id The Long parameter value provided as the id of the Contact to be deleted
+     * @param id The Long parameter value provided as the id of the Booking to be deleted
      * @return A Response indicating the outcome of the delete operation
      */
     @DELETE
     @Path("/{id:[0-9][0-9]*}")
-    public Response deleteContact(@PathParam("id") Long id) {
-        log.info("deleteCustomer started. Customer ID = " + id);
+    public Response deleteBooking(@PathParam("id") Long id) {
+        log.info("deleteBooking started", "id", id);
         Response.ResponseBuilder builder = null;
 
         try {
-            Booking customer = service.findById(id);
-            if (customer != null) {
-                service.delete(customer);
+            if (service.deleteById(id) > 0) {
+                builder = Response.noContent();
+                log.info("deleteBooking completed", "id", id);
             } else {
-                log.info("CustomerRESTService - deleteCustomer - No customer with matching ID was found so can't Delete.");
-                throw new WebApplicationException(Response.Status.NOT_FOUND);
+                log.info("deleteBooking found no booking", "id", id);
+                builder = Response.status(Response.Status.NOT_FOUND);
             }
+        } catch (Exception e) {
+            log.info("deleteBooking failed", "exception", e);
+            // Handle generic exceptions
+            Map<String, String> responseObj = new HashMap<String, String>();
+            responseObj.put("error", e.getMessage());
+            builder = Response.status(Response.Status.BAD_REQUEST).entity(responseObj);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * <p>Deletes many bookings with a single DELETE statement, e.g. <code>DELETE /rest/bookings?id=1&amp;id=2</code>.</p>
+     *
+     * <p>Will return a JAX-RS response with either 200 OK and the number of bookings deleted, e.g.
+     * <code>{"requested": 2, "deleted": 1}</code>, or with a map of errors.</p>
+     *
+     * @param ids The ids of the bookings to delete, at most {@value BulkDelete#MAX_IDS}
+     * @return A Response indicating the outcome of the delete operation
+     */
+    @DELETE
+    public Response deleteBookings(@QueryParam("id") List<Long> ids) {
+        Set<Long> distinct = BulkDelete.ids(ids);
+        log.info("deleteBookings started", "ids", distinct.size());
+        Response.ResponseBuilder builder = null;
 
-            builder = Response.noContent();
-            log.info("deleteCustomer completed. Customer = " + customer.getFirstName() + " " + customer.getLastName() + " " + customer.getEmail() + " " + customer.getPhoneNumber() + " "
-                + customer.getBirthDate() + " " + customer.getId());
+        try {
+            int deleted = service.deleteByIds(distinct);
+            builder = BulkDelete.ok(distinct, deleted);
+            log.info("deleteBookings completed", "ids", distinct.size(), "deleted", deleted);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.info("deleteBookings failed", "exception", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -282,7 +504,7 @@ public class BookingRESTService {
      * @return A Bad Request (400) Response containing all violation messages
      */
     private Response.ResponseBuilder createViolationResponse(Set<ConstraintViolation<?>> violations) {
-        log.fine("Validation completed. violations found: " + violations.size());
+        log.fine("Validation completed", "violations", violations.size());
 
         Map<String, String> responseObj = new HashMap<String, String>();
 
@@ -293,5 +515,59 @@ public class BookingRESTService {
         return Response.status(Response.Status.BAD_REQUEST).entity(responseObj);
     }
 
+    /**
+     * <p>Reads one Booking per line of a request body, skipping blank lines. A line that cannot be read as a Booking is
+     * returned as null, so it is reported without failing the rest of the batch.</p>
+     */
+    private static class BookingLineIterator implements Iterator<Booking> {
+        private final BufferedReader reader;
+        private final ObjectMapper mapper;
+        private String line;
+
+        BookingLineIterator(InputStream body, ObjectMapper mapper) {
+            try {
+                this.reader = new BufferedReader(new InputStreamReader(body, "UTF-8"));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (line == null) {
+                    line = reader.readLine();
+                    if (line == null) {
+                        return false;
+                    }
+                    if (line.trim().length() == 0) {
+                        line = null;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
+            }
+        }
 
+        @Override
+        public Booking next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String current = line;
+            line = null;
+            try {
+                return mapper.readValue(current, Booking.class);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
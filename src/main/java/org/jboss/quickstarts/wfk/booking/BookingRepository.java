@@ -17,17 +17,29 @@
 package org.jboss.quickstarts.wfk.booking;
 
 import javax.inject.Inject;
-import javax.inject.Named;
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TemporalType;
 import javax.persistence.TypedQuery;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Root;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.logging.Logger;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.metrics.RequestTimings;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.jboss.quickstarts.wfk.util.Log;
+import org.jboss.quickstarts.wfk.util.ReadRouting;
+import org.jboss.quickstarts.wfk.util.Replica;
+import org.jboss.quickstarts.wfk.util.ReplicaRead;
+import org.jboss.quickstarts.wfk.util.Revision;
 
 /**
  * <p>This is a Repository class and connects the Service/Control layer (see {@link BookingService} with the
@@ -43,154 +55,327 @@ import java.util.logging.Logger;
 public class BookingRepository {
 
     @Inject
-    private @Named("logger") Logger log;
+    private Log log;
 
     @Inject
     private EntityManager em;
+
+    @Inject
+    @Replica
+    private EntityManager replica;
     
     /**
-     * <p>Returns a List of all persisted {@link Booking} objects, sorted alphabetically by last name.</p>
+     * <p>Returns a List of all persisted {@link Booking} objects, sorted by id.</p>
      * 
-     * @return List of Contact objects
+     * @return List of Booking objects
      */
-    List<Booking> findAllOrderedByName() {
-        TypedQuery<Booking> query = em.createNamedQuery(Booking.FIND_ALL, Booking.class); 
+    @ReplicaRead
+    List<Booking> findAllOrderedById() {
+        TypedQuery<Booking> query = reader().createNamedQuery(Booking.FIND_ALL, Booking.class); 
         return query.getResultList();
     }
 
     /**
-     * <p>Returns a single Contact object, specified by a Long id.<p/>
+     * <p>Returns one page of persisted {@link Booking} objects, sorted by id.</p>
      *
-     * @param id The id field of the Contact to be returned
-     * @return The Contact with the specified id
+     * <p>The page starts right after the given id, so the database can seek to it on the primary key instead of skipping
+     * rows with an OFFSET.</p>
+     *
+     * @param id The id of the last Booking on the previous page, or null for the first page
+     * @param maxResults The maximum number of Bookings to return
+     * @return List of Booking objects
      */
-    Booking findById(Long id) {
-        return em.find(Booking.class, id);
+    @ReplicaRead
+    List<Booking> findPageOrderedById(Long id, int maxResults) {
+        TypedQuery<Booking> query;
+        if (id == null) {
+            query = reader().createNamedQuery(Booking.FIND_ALL, Booking.class);
+        } else {
+            query = reader().createNamedQuery(Booking.FIND_PAGE_AFTER, Booking.class).setParameter("id", id);
+        }
+        return query.setMaxResults(maxResults).getResultList();
     }
 
     /**
-     * <p>Returns a single Contact object, specified by a String email.</p>
+     * <p>Returns the id, version and last modified time of each Booking on a page, in the same order and with the same
+     * seek as {@link #findPageOrderedById(Long, int)}, without loading the Bookings.</p>
      *
-     * <p>If there is more than one Contact with the specified email, only the first encountered will be returned.<p/>
+     * @param id The id of the last Booking on the previous page, or null for the first page
+     * @param maxResults The maximum number of Revisions to return
+     * @return List of Revisions
+     */
+    @ReplicaRead
+    List<Revision> findRevisionPageOrderedById(Long id, int maxResults) {
+        TypedQuery<Revision> query;
+        if (id == null) {
+            query = reader().createNamedQuery(Booking.REVISIONS, Revision.class);
+        } else {
+            query = reader().createNamedQuery(Booking.REVISIONS_AFTER, Revision.class)
+                .setParameter("id", id);
+        }
+        return query.setMaxResults(maxResults).getResultList();
+    }
+
+    /**
+     * <p>Returns a single Booking object, specified by a Long id.<p/>
      *
-     * @param email The email field of the Contact to be returned
-     * @return The first Contact with the specified email
+     * @param id The id field of the Booking to be returned
+     * @return The Booking with the specified id
      */
-    Booking findByEmail(String email) {
-        TypedQuery<Booking> query = em.createNamedQuery(Booking.FIND_BY_EMAIL, Booking.class).setParameter("email", email); 
-        return query.getSingleResult();
+    @ReplicaRead
+    Booking findById(Long id) {
+        return reader().find(Booking.class, id);
     }
 
     /**
-     * <p>Returns a single Contact object, specified by a String firstName.<p/>
+     * <p>Returns the Bookings of a customer, sorted by travel date.</p>
      *
-     * <p>If there is more then one, only the first will be returned.<p/>
+     * <p>The Bookings are found through the index on customer_ID.</p>
      *
-     * @param firstName The firstName field of the Contact to be returned
-     * @return The first Contact with the specified firstName
+     * @param customerId The id of the customer
+     * @return List of Booking objects
      */
-    Booking findByFirstName(String firstName) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Booking> criteria = cb.createQuery(Booking.class);
-        Root<Booking> customer = criteria.from(Booking.class);
-        // Swap criteria statements if you would like to try out type-safe criteria queries, a new feature in JPA 2.0.
-        // criteria.select(contact).where(cb.equal(contact.get(Contact_.firstName), firstName));
-        criteria.select(customer).where(cb.equal(customer.get("firstName"), firstName));
-        return em.createQuery(criteria).getSingleResult();
+    @ReplicaRead
+    List<Booking> findByCustomerId(Long customerId) {
+        return reader().createNamedQuery(Booking.FIND_BY_CUSTOMER, Booking.class)
+            .setParameter("customerID", customerId).getResultList();
     }
 
     /**
-     * <p>Returns a single Contact object, specified by a String lastName.<p/>
+     * <p>Returns the Bookings of a taxi between two dates, sorted by travel date.</p>
      *
-     * <p>If there is more then one, only the first will be returned.<p/>
+     * <p>The Bookings are found through the (taxi_ID, travel_date) index.</p>
      *
-     * @param lastName The lastName field of the Contact to be returned
-     * @return The first Contact with the specified lastName
+     * @param taxiId The id of the taxi
+     * @param from The first travel date, included
+     * @param to The last travel date, included
+     * @return List of Booking objects
      */
-    Booking findByLastName(String lastName) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Booking> criteria = cb.createQuery(Booking.class);
-        Root<Booking> customer = criteria.from(Booking.class);
-        // Swap criteria statements if you would like to try out type-safe criteria queries, a new feature in JPA 2.0.
-        // criteria.select(contact).where(cb.equal(contact.get(Contact_.lastName), lastName));
-        criteria.select(customer).where(cb.equal(customer.get("lastName"), lastName));
-        return em.createQuery(criteria).getSingleResult();
+    @ReplicaRead
+    List<Booking> findByTaxiIdBetween(Long taxiId, Date from, Date to) {
+        return reader().createNamedQuery(Booking.FIND_BY_TAXI_BETWEEN, Booking.class)
+            .setParameter("taxiID", taxiId)
+            .setParameter("from", from, TemporalType.DATE)
+            .setParameter("to", to, TemporalType.DATE)
+            .getResultList();
     }
 
     /**
-     * <p>Persists the provided Contact object to the application database using the EntityManager.</p>
+     * <p>Returns the id, version and last modified time of the Booking with the given id, without loading it.</p>
+     *
+     * @param id The id of the Booking
+     * @return The Revision, or null if there is no such Booking
+     */
+    @ReplicaRead
+    Revision findRevisionById(Long id) {
+        List<Revision> revisions = reader().createNamedQuery(Booking.REVISION_BY_ID, Revision.class)
+            .setParameter("id", id).getResultList();
+        return revisions.isEmpty() ? null : revisions.get(0);
+    }
+
+    /**
+     * <p>Persists the provided Booking object to the application database using the EntityManager.</p>
      *
      * <p>{@link javax.persistence.EntityManager#persist(Object) persist(Object)} takes an entity instance, adds it to the
      * context and makes that instance managed (ie future updates to the entity will be tracked)</p>
      *
      * <p>persist(Object) will set the @GeneratedValue @Id for an object.</p>
      *
-     * @param contact The Contact object to be persisted
-     * @return The Contact object that has been persisted
+     * @param booking The Booking object to be persisted
+     * @return The Booking object that has been persisted
      * @throws ConstraintViolationException, ValidationException, Exception
      */
-    Booking create(Booking customer) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("CustomerRepository.create() - Creating " + customer.getFirstName() + " " + customer.getLastName());
+    Booking create(Booking booking) throws ConstraintViolationException, ValidationException, Exception {
+        log.info("BookingRepository.create() - creating", "customerID", booking.getCustomerID(), "taxiID", booking.getTaxiID());
         
-        // Write the contact to the database.
-        em.persist(customer);
+        // Write the booking to the database. Flush now, so a clash with the unique (travel_date, taxi_ID) constraint is
+        // reported here rather than at commit.
+        attachReferences(booking);
+        em.persist(booking);
+        RequestTimings.flush(em);
         
-        return customer;
+        return booking;
     }
 
     /**
-     * <p>Updates an existing Contact object in the application database with the provided Contact object.</p>
-     * 
-     * <p>{@link javax.persistence.EntityManager#merge(Object) merge(Object)} creates a new instance of your entity,
-     * copies the state from the supplied entity, and makes the new copy managed. The instance you pass in will not be
-     * managed (any changes you make will not be part of the transaction - unless you call merge again).</p>
-     * 
-     * <p>merge(Object) however must have an object with the @Id already generated.</p>
-     * 
-     * @param contact The Contact object to be merged with an existing Contact
-     * @return The Contact that has been merged
+     * <p>Persists a chunk of Bookings, then flushes and clears the persistence context.</p>
+     *
+     * <p>With <code>hibernate.jdbc.batch_size</code> and <code>hibernate.order_inserts</code> set (see
+     * persistence.xml) the flush sends the inserts to the database as JDBC batches. Clearing afterwards detaches the
+     * Bookings, so they are not checked again for changes when the transaction commits.</p>
+     *
+     * @param bookings The Bookings to persist
      * @throws ConstraintViolationException, ValidationException, Exception
      */
-    Booking update(Booking customer) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("CustomerRepository.update() - Updating " + customer.getFirstName() + " " + customer.getLastName());
-        
-        // Either update the contact or add it if it can't be found.
-        em.merge(customer);
-        
-        return customer;
+    void createAll(List<Booking> bookings) throws ConstraintViolationException, ValidationException, Exception {
+        log.fine("BookingRepository.createAll() - creating", "bookings", bookings.size());
+
+        for (Booking booking : bookings) {
+            attachReferences(booking);
+            em.persist(booking);
+        }
+        RequestTimings.flush(em);
+        em.clear();
     }
 
     /**
-     * <p>Deletes the provided Contact object from the application database if found there</p>
+     * <p>Returns which of the given Customer ids exist, with one query.</p>
      *
-     * @param contact The Contact object to be removed from the application database
-     * @return The Contact object that has been successfully removed from the application database; or null
-     * @throws Exception
+     * @param ids The Customer ids to look for
+     * @return The ids that belong to a Customer
      */
-    Booking delete(Booking customer) throws Exception {
-        log.info("CustomerRepository.delete() - Deleting " + customer.getFirstName() + " " + customer.getLastName());
-        
-        if (customer.getId() != null) {
-            /*
-             * The Hibernate session (aka EntityManager's persistent context) is closed and invalidated after the commit(), 
-             * because it is bound to a transaction. The object goes into a detached status. If you open a new persistent 
-             * context, the object isn't known as in a persistent state in this new context, so you have to merge it. 
-             * 
-             * Merge sees that the object has a primary key (id), so it knows it is not new and must hit the database 
-             * to reattach it. 
-             * 
-             * Note, there is NO remove method which would just take a primary key (id) and a entity class as argument. 
-             * You first need an object in a persistent state to be able to delete it.
-             * 
-             * Therefore we merge first and then we can remove it.
-             */
-            em.remove(em.merge(customer));
-            
-        } else {
-            log.info("CustomerRepository.delete() - No ID was found so can't Delete.");
+    Set<Long> findExistingCustomerIds(Collection<Long> ids) {
+        return findExistingIds(Booking.FIND_EXISTING_CUSTOMER_IDS, ids);
+    }
+
+    /**
+     * <p>Returns which of the given Taxi ids exist, with one query.</p>
+     *
+     * @param ids The Taxi ids to look for
+     * @return The ids that belong to a Taxi
+     */
+    Set<Long> findExistingTaxiIds(Collection<Long> ids) {
+        return findExistingIds(Booking.FIND_EXISTING_TAXI_IDS, ids);
+    }
+
+    private Set<Long> findExistingIds(String queryName, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            // "IN ()" is not valid SQL
+            return new HashSet<Long>();
         }
-        
-        return customer;
+        return new HashSet<Long>(em.createNamedQuery(queryName, Long.class).setParameter("ids", ids).getResultList());
+    }
+
+    // Only the foreign keys are written, so the Customer and Taxi are attached as references without being read. The
+    // ids have been validated as numbers.
+    private void attachReferences(Booking booking) {
+        booking.setCustomer(em.getReference(Customer.class, Long.valueOf(booking.getCustomerID())));
+        booking.setTaxi(em.getReference(Taxi.class, Long.valueOf(booking.getTaxiID())));
+    }
+
+    /**
+     * <p>Updates an existing Booking in the application database with the provided Booking object, in one UPDATE statement.</p>
+     *
+     * <p>Only a row that still has the given version is updated. See ContactRepository.update() for how the versions
+     * and the second-level cache are handled.</p>
+     *
+     * @param booking The Booking object, with the @Id of the Booking to update
+     * @param version The version the stored Booking must have
+     * @return true if the Booking was updated; false if there is no Booking with this id, or it has another version
+     * @throws ConstraintViolationException, ValidationException, Exception
+     */
+    boolean update(Booking booking, long version) throws ConstraintViolationException, ValidationException, Exception {
+        log.info("BookingRepository.update() - updating", "id", booking.getId(), "version", version);
+
+        Query query = em.createNamedQuery(Booking.UPDATE_VERSION).setParameter("version", version);
+        booking.touch();
+        attachReferences(booking);
+        query.setParameter("id", booking.getId())
+            .setParameter("customer", booking.getCustomer())
+            .setParameter("taxi", booking.getTaxi())
+            .setParameter("travelDate", booking.getTravelDate(), TemporalType.DATE)
+            .setParameter("lastModified", booking.getLastModified(), TemporalType.TIMESTAMP);
+
+        if (RequestTimings.executeUpdate(query) == 0) {
+            return false;
+        }
+        booking.setVersion(version + 1);
+        return true;
+    }
+
+    /**
+     * <p>Deletes the Booking with the given id with a single DELETE statement, without loading it first.</p>
+     *
+     * <p>Like any bulk statement this bypasses the persistence context, and Hibernate evicts the Booking second-level
+     * cache region.</p>
+     *
+     * @param id The id of the Booking to delete
+     * @return The number of Bookings deleted, 0 if there is no Booking with this id
+     */
+    int deleteById(Long id) {
+        log.info("BookingRepository.deleteById() - deleting", "id", id);
+        return RequestTimings.executeUpdate(em.createNamedQuery(Booking.DELETE_BY_ID).setParameter("id", id));
     }
 
+    /**
+     * <p>Deletes the Bookings with the given ids with a single DELETE statement, without loading them first.</p>
+     *
+     * @param ids The ids of the Bookings to delete, not empty
+     * @return The number of Bookings deleted, ids that match no Booking are not counted
+     */
+    int deleteByIds(Collection<Long> ids) {
+        log.info("BookingRepository.deleteByIds() - deleting", "ids", ids.size());
+        return RequestTimings.executeUpdate(em.createNamedQuery(Booking.DELETE_BY_IDS).setParameter("ids", ids));
+    }
+
+    /**
+     * <p>Deletes every Booking of the given customers with a single DELETE statement.</p>
+     *
+     * @param customerIds The ids of the customers, not empty
+     * @return The number of Bookings deleted
+     */
+    int deleteByCustomerIds(Collection<Long> customerIds) {
+        log.info("BookingRepository.deleteByCustomerIds() - deleting", "customers", customerIds.size());
+        return RequestTimings.executeUpdate(em.createNamedQuery(Booking.DELETE_BY_CUSTOMER_IDS)
+            .setParameter("customerIDs", customerIds));
+    }
+
+    /**
+     * <p>Deletes every Booking of the given taxis with a single DELETE statement.</p>
+     *
+     * @param taxiIds The ids of the taxis, not empty
+     * @return The number of Bookings deleted
+     */
+    int deleteByTaxiIds(Collection<Long> taxiIds) {
+        log.info("BookingRepository.deleteByTaxiIds() - deleting", "taxis", taxiIds.size());
+        return RequestTimings.executeUpdate(em.createNamedQuery(Booking.DELETE_BY_TAXI_IDS)
+            .setParameter("taxiIDs", taxiIds));
+    }
+
+    /**
+     * <p>Returns the taxi and date booked by each of the given Bookings, reading only those columns and the id.</p>
+     *
+     * @param ids The ids of the Bookings, not empty
+     * @return A released {@link BookingChange} for each Booking found, by its id
+     */
+    Map<Long, BookingChange> findSlotsByIds(Collection<Long> ids) {
+        return toReleased(em.createNamedQuery(Booking.FIND_SLOTS_BY_IDS, Object[].class)
+            .setParameter("ids", ids).getResultList());
+    }
+
+    /**
+     * <p>Returns the taxi and date booked by each Booking of the given customers, reading only those columns and the
+     * id.</p>
+     *
+     * @param customerIds The ids of the customers, not empty
+     * @return A released {@link BookingChange} for each of their Bookings, by its id
+     */
+    Map<Long, BookingChange> findSlotsByCustomerIds(Collection<Long> customerIds) {
+        return toReleased(em.createNamedQuery(Booking.FIND_SLOTS_BY_CUSTOMER_IDS, Object[].class)
+            .setParameter("customerIDs", customerIds).getResultList());
+    }
+
+    /**
+     * <p>Returns the ids of the Bookings of the given taxis, before they are deleted.</p>
+     *
+     * @param taxiIds The ids of the taxis, not empty
+     * @return The ids of their Bookings
+     */
+    List<Long> findIdsByTaxiIds(Collection<Long> taxiIds) {
+        return em.createNamedQuery(Booking.FIND_IDS_BY_TAXI_IDS, Long.class)
+            .setParameter("taxiIDs", taxiIds).getResultList();
+    }
+
+    private static Map<Long, BookingChange> toReleased(List<Object[]> slots) {
+        Map<Long, BookingChange> released = new LinkedHashMap<Long, BookingChange>();
+        for (Object[] slot : slots) {
+            released.put((Long) slot[0], new BookingChange(String.valueOf(slot[1]), (Date) slot[2], false));
+        }
+        return released;
+    }
+
+    // The EntityManager of a @ReplicaRead, the replica's if the read has been routed to it
+    private EntityManager reader() {
+        return ReadRouting.select(em, replica);
+    }
 }
@@ -17,26 +17,32 @@
 package org.jboss.quickstarts.wfk.booking;
 
 
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.utils.HttpClientUtils;
-import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.jboss.quickstarts.wfk.util.EntitiesDeleted;
+import org.jboss.quickstarts.wfk.util.Log;
+import org.jboss.quickstarts.wfk.util.Revision;
 
 import javax.enterprise.context.Dependent;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
-import javax.inject.Named;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
+import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
-import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import java.util.logging.Logger;
 
 /**
  * <p>This Service assumes the Control responsibility in the ECB pattern.</p>
@@ -50,14 +56,21 @@ import java.util.logging.Logger;
  * @author Joshua Wilson
  * @see BookingValidator
  * @see BookingRepository
+ * @see TaxiAvailability
  */
 
 //@Dependent annotation designates the default scope, listed here so that you know what scope is being used.
 @Dependent
 public class BookingService {
 
+    /** The number of Bookings of a batch that are checked and written together, see {@link #createAll(Iterator)}. */
+    static final int BATCH_CHUNK_SIZE = 500;
+
+    /** The largest number of Bookings read from one batch. */
+    static final int MAX_BATCH_SIZE = 100000;
+
     @Inject
-    private @Named("logger") Logger log;
+    private Log log;
 
     @Inject
     private BookingValidator validator;
@@ -66,157 +79,460 @@ public class BookingService {
     private BookingRepository crud;
 
     @Inject
-    private @Named("httpClient") CloseableHttpClient httpClient;
+    private TaxiAvailability availability;
+
+    @Inject
+    private BookingChunkWriter chunkWriter;
+
+    @Inject
+    private Event<BookingChange> bookingChanges;
+
+    @Inject
+    private Event<Booking> bookingWrites;
+
+    @Inject
+    private Event<EntitiesDeleted> deletions;
     
     /**
-     * <p>Returns a List of all persisted {@link Booking} objects, sorted alphabetically by last name.<p/>
+     * <p>Returns a List of all persisted {@link Booking} objects, sorted by id.<p/>
      * 
-     * @return List of Contact objects
+     * @return List of Booking objects
+     */
+    List<Booking> findAllOrderedById() {
+        return crud.findAllOrderedById();
+    }
+
+    /**
+     * <p>Returns one page of persisted {@link Booking} objects, sorted by id, starting after the given id.<p/>
+     *
+     * @param id The id of the last Booking on the previous page, or null for the first page
+     * @param maxResults The maximum number of Bookings to return
+     * @return List of Booking objects
      */
-    List<Booking> findAllOrderedByName() {
-        return crud.findAllOrderedByName();
+    List<Booking> findPageOrderedById(Long id, int maxResults) {
+        return crud.findPageOrderedById(id, maxResults);
     }
 
     /**
-     * <p>Returns a single Contact object, specified by a Long id.<p/>
+     * <p>Returns the id, version and last modified time of each Booking on a page, see
+     * {@link BookingRepository#findRevisionPageOrderedById}.<p/>
+     *
+     * @param id The id of the last Booking on the previous page, or null for the first page
+     * @param maxResults The maximum number of Revisions to return
+     * @return List of Revisions
+     */
+    List<Revision> findRevisionPageOrderedById(Long id, int maxResults) {
+        return crud.findRevisionPageOrderedById(id, maxResults);
+    }
+
+    /**
+     * <p>Returns a single Booking object, specified by a Long id.<p/>
      * 
-     * @param id The id field of the Contact to be returned
-     * @return The Contact with the specified id
+     * @param id The id field of the Booking to be returned
+     * @return The Booking with the specified id
      */
     Booking findById(Long id) {
         return crud.findById(id);
     }
 
     /**
-     * <p>Returns a single Contact object, specified by a String email.</p>
+     * <p>Returns the Bookings of a customer, sorted by travel date.<p/>
      *
-     * <p>If there is more than one Contact with the specified email, only the first encountered will be returned.<p/>
-     * 
-     * @param email The email field of the Contact to be returned
-     * @return The first Contact with the specified email
+     * @param customerId The id of the customer
+     * @return List of Booking objects
      */
-    Booking findByEmail(String email) {
-        return crud.findByEmail(email);
+    List<Booking> findByCustomerId(Long customerId) {
+        return crud.findByCustomerId(customerId);
     }
 
     /**
-     * <p>Returns a single Contact object, specified by a String firstName.<p/>
+     * <p>Returns the Bookings of a taxi between two dates, both included, sorted by travel date.<p/>
      *
-     * <p>If there is more then one, only the first will be returned.<p/>
-     * 
-     * @param firstName The firstName field of the Contact to be returned
-     * @return The first Contact with the specified firstName
+     * @param taxiId The id of the taxi
+     * @param from The first travel date
+     * @param to The last travel date
+     * @return List of Booking objects
      */
-    Booking findByFirstName(String firstName) {
-        return crud.findByFirstName(firstName);
+    List<Booking> findByTaxiIdBetween(Long taxiId, Date from, Date to) {
+        return crud.findByTaxiIdBetween(taxiId, from, to);
     }
 
     /**
-     * <p>Returns a single Contact object, specified by a String lastName.<p/>
+     * <p>Returns the id, version and last modified time of the Booking with the given id, without loading it.<p/>
      *
-     * <p>If there is more then one, only the first will be returned.<p/>
-     * 
-     * @param lastName The lastName field of the Contact to be returned
-     * @return The first Contact with the specified lastName
+     * @param id The id of the Booking
+     * @return The Revision, or null if there is no such Booking
      */
-    Booking findByLastName(String lastName) {
-        return crud.findByFirstName(lastName);
+    Revision findRevisionById(Long id) {
+        return crud.findRevisionById(id);
     }
 
     /**
-     * <p>Writes the provided Contact object to the application database.<p/>
+     * <p>Writes the provided Booking object to the application database.<p/>
      *
-     * <p>Validates the data in the provided Contact object using a {@link BookingValidator} object.<p/>
+     * <p>Validates the data in the provided Booking object using a {@link BookingValidator} object.<p/>
      * 
-     * @param contact The Contact object to be written to the database using a {@link BookingRepository} object
-     * @return The Contact object that has been successfully written to the application database
+     * @param booking The Booking object to be written to the database using a {@link BookingRepository} object
+     * @return The Booking object that has been successfully written to the application database
+     * @throws UnknownReferenceException If there is no customer or no taxi with the given id
      * @throws ConstraintViolationException, ValidationException, Exception
      */
-    Booking create(Booking customer) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("CustomerService.create() - Creating " + customer.getFirstName() + " " + customer.getLastName());
+    Booking create(Booking booking) throws ConstraintViolationException, ValidationException, Exception {
+        log.info("BookingService.create() - creating", "customerID", booking.getCustomerID(), "taxiID", booking.getTaxiID());
         
-        // Check to make sure the data fits with the parameters in the Contact model and passes validation.
-        validator.validateCustomer(customer);
-
-    /*    //Perform a rest call to get the state of the contact from the allareacodes.com API
-        URI uri = new URIBuilder()
-                .setScheme("http")
-                .setHost("www.allareacodes.com")
-                .setPath("/api/1.0/api.json")
-                .setParameter("npa", contact.getPhoneNumber().substring(1,4))
-                .setParameter("tracking_email", "h.firth@ncl.ac.uk")
-                .setParameter("tracking_url", "http://www.ncl.ac.uk/undergraduate/modules/module/CSC8104")
-                .build();
-        HttpGet req = new HttpGet(uri);
-        CloseableHttpResponse response = httpClient.execute(req);
-        String responseBody = EntityUtils.toString(response.getEntity());
-        JSONObject responseJson = new JSONObject(responseBody);
-        JSONArray areaCodes = responseJson.getJSONArray("area_codes");
-        contact.setState(areaCodes.getJSONObject(0).getString("state"));
-        HttpClientUtils.closeQuietly(response);
-
-*/
-        customer.setState("unknown");
-        // Write the contact to the database.
-        return crud.create(customer);
+        // Check to make sure the data fits with the parameters in the Booking model and passes validation.
+        validator.validateBooking(booking);
+        checkReferences(booking, null);
+
+        // Check the taxi is free that day, in memory before going to the database.
+        if (availability.isBooked(booking.getTaxiID(), booking.getTravelDate())) {
+            throw new ValidationException("Taxi already booked");
+        }
+
+        // Write the booking to the database.
+        try {
+            crud.create(booking);
+        } catch (PersistenceException e) {
+            throw uniqueViolationOr(e);
+        }
+
+        bookingChanges.fire(BookingChange.booked(booking));
+        bookingWrites.fire(booking);
+        return booking;
+    }
+
+    /**
+     * <p>Writes a batch of Bookings to the application database, reporting how many were created and why the others
+     * were not.<p/>
+     *
+     * <p>The Bookings are read from the iterator in chunks of {@value #BATCH_CHUNK_SIZE}, so the batch never has to be
+     * held in memory at once. Each Booking is validated with the {@link BookingValidator}. Then the customer and taxi
+     * references of the whole chunk are checked with one query each, and the valid Bookings are inserted as JDBC
+     * batches (see {@link BookingRepository#createAll(List)}). Each chunk is committed on its own by the
+     * {@link BookingChunkWriter}, so this must be called without a transaction.<p/>
+     *
+     * <p>Invalid Bookings, and Bookings of a taxi that is already booked that day, are skipped and reported; they do not
+     * stop the rest of the batch. Neither does a chunk that fails to write: its Bookings are reported as failed, and
+     * the chunks before it stay written. At most {@value #MAX_BATCH_SIZE} Bookings are read; if there are more, the
+     * first one left unread is reported as failed and the batch stops there.<p/>
+     *
+     * @param bookings The Bookings to create; a null element stands for one that could not be read
+     * @return The number of Bookings created and failed, and the errors by position in the batch
+     */
+    BookingBatchReport createAll(Iterator<Booking> bookings) {
+        BookingBatchReport report = new BookingBatchReport();
+        List<Booking> chunk = new ArrayList<Booking>(BATCH_CHUNK_SIZE);
+        List<Integer> positions = new ArrayList<Integer>(BATCH_CHUNK_SIZE);
+
+        for (int index = 0; bookings.hasNext(); index++) {
+            if (index == MAX_BATCH_SIZE) {
+                Map<String, String> reasons = new HashMap<String, String>();
+                reasons.put("error", "A batch is limited to " + MAX_BATCH_SIZE + " bookings, the rest was not read");
+                report.failed(index, reasons);
+                break;
+            }
+            Booking booking = bookings.next();
+            if (booking == null) {
+                Map<String, String> reasons = new HashMap<String, String>();
+                reasons.put("error", "The booking could not be read");
+                report.failed(index, reasons);
+                continue;
+            }
+            try {
+                validator.validateBooking(booking);
+            } catch (ConstraintViolationException ce) {
+                report.failed(index, violationsOf(ce));
+                continue;
+            }
+
+            chunk.add(booking);
+            positions.add(index);
+            if (chunk.size() == BATCH_CHUNK_SIZE) {
+                writeChunk(chunk, positions, report);
+                chunk.clear();
+                positions.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, positions, report);
+        }
+
+        log.info("BookingService.createAll() - created", "created", report.getCreated(), "rejected", report.getFailed());
+        return report;
+    }
+
+    private void writeChunk(List<Booking> chunk, List<Integer> positions, BookingBatchReport report) {
+        Map<Integer, Map<String, String>> rejected = new LinkedHashMap<Integer, Map<String, String>>();
+        int created;
+        try {
+            created = chunkWriter.write(chunk, positions, rejected);
+        } catch (Exception e) {
+            log.warning("BookingService.createAll() - chunk not written", "bookings", chunk.size(), "exception", e);
+            created = 0;
+            for (Integer position : positions) {
+                if (!rejected.containsKey(position)) {
+                    Map<String, String> reasons = new HashMap<String, String>();
+                    reasons.put("error", "The booking could not be written: " + e.getMessage());
+                    rejected.put(position, reasons);
+                }
+            }
+        }
+
+        report.created(created);
+        for (Map.Entry<Integer, Map<String, String>> entry : rejected.entrySet()) {
+            report.failed(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * <p>Checks the customer and taxi references of a chunk of valid Bookings and writes those that pass, in the
+     * transaction of the {@link BookingChunkWriter}.</p>
+     *
+     * @return The number of Bookings written
+     */
+    int createChunk(List<Booking> chunk, List<Integer> positions, Map<Integer, Map<String, String>> rejected)
+        throws Exception {
+        Set<Long> customerIds = new HashSet<Long>();
+        Set<Long> taxiIds = new HashSet<Long>();
+        for (Booking booking : chunk) {
+            addId(customerIds, booking.getCustomerID());
+            addId(taxiIds, booking.getTaxiID());
+        }
+        Set<Long> existingCustomers = crud.findExistingCustomerIds(customerIds);
+        Set<Long> existingTaxis = crud.findExistingTaxiIds(taxiIds);
+
+        List<Booking> valid = new ArrayList<Booking>(chunk.size());
+        // The taxi days booked so far by this chunk, which the availability index does not know about yet
+        Set<String> bookedInChunk = new HashSet<String>();
+        for (int i = 0; i < chunk.size(); i++) {
+            Booking booking = chunk.get(i);
+            Map<String, String> reasons = new HashMap<String, String>();
+            if (!existingCustomers.contains(parseId(booking.getCustomerID()))) {
+                reasons.put("customerID", "No customer with this ID");
+            }
+            if (!existingTaxis.contains(parseId(booking.getTaxiID()))) {
+                reasons.put("taxiID", "No taxi with this ID");
+            } else if (!bookedInChunk.add(booking.getTaxiID() + "@" + TaxiAvailability.day(booking.getTravelDate()))
+                    || availability.isBooked(booking.getTaxiID(), booking.getTravelDate())) {
+                reasons.put("travelDate", "That taxi is already booked on this date");
+            }
+
+            if (reasons.isEmpty()) {
+                valid.add(booking);
+            } else {
+                rejected.put(positions.get(i), reasons);
+            }
+        }
+
+        crud.createAll(valid);
+        for (Booking booking : valid) {
+            bookingChanges.fire(BookingChange.booked(booking));
+            bookingWrites.fire(booking);
+        }
+        return valid.size();
+    }
+
+    /*
+     * The customer and taxi are foreign keys, so the database would reject an unknown one; they are checked first so
+     * that the client is told which. On update only a customer or taxi that changed is checked.
+     */
+    private void checkReferences(Booking booking, Booking stored) {
+        Map<String, String> reasons = new HashMap<String, String>();
+        if (stored == null || !stored.getCustomerID().equals(booking.getCustomerID())) {
+            if (crud.findExistingCustomerIds(Collections.singleton(parseId(booking.getCustomerID()))).isEmpty()) {
+                reasons.put("customerID", "No customer with this ID");
+            }
+        }
+        if (stored == null || !stored.getTaxiID().equals(booking.getTaxiID())) {
+            if (crud.findExistingTaxiIds(Collections.singleton(parseId(booking.getTaxiID()))).isEmpty()) {
+                reasons.put("taxiID", "No taxi with this ID");
+            }
+        }
+        if (!reasons.isEmpty()) {
+            throw new UnknownReferenceException(reasons);
+        }
+    }
+
+    // Turns a clash with the unique (travel_date, taxi_ID) constraint, from a concurrent booking, into a conflict. A
+    // foreign key violation, from a customer or taxi deleted meanwhile, is passed on as it is.
+    private static Exception uniqueViolationOr(PersistenceException e) {
+        if (e.getCause() instanceof org.hibernate.exception.ConstraintViolationException && !isForeignKey(e)) {
+            return new ValidationException("Taxi already booked", e);
+        }
+        return e;
+    }
+
+    // The foreign keys of Booking are named booking_customer_fk and booking_taxi_fk
+    private static boolean isForeignKey(PersistenceException e) {
+        String constraint = ((org.hibernate.exception.ConstraintViolationException) e.getCause()).getConstraintName();
+        return constraint != null && constraint.toLowerCase().contains("_fk");
+    }
+
+    private static void addId(Set<Long> ids, String id) {
+        Long parsed = parseId(id);
+        if (parsed != null) {
+            ids.add(parsed);
+        }
+    }
+
+    // The ids have been validated as numbers
+    private static Long parseId(String id) {
+        try {
+            return Long.valueOf(id);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, String> violationsOf(ConstraintViolationException ce) {
+        Map<String, String> reasons = new HashMap<String, String>();
+        for (ConstraintViolation<?> violation : ce.getConstraintViolations()) {
+            reasons.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        return reasons;
     }
 
     /**
-     * <p>Updates an existing Contact object in the application database with the provided Contact object.<p/>
+     * <p>Updates an existing Booking object in the application database with the provided Booking object.<p/>
      *
-     * <p>Validates the data in the provided Contact object using a ContactValidator object.<p/>
+     * <p>Validates the data in the provided Booking object using a BookingValidator object.<p/>
+     *
+     * <p>An EntityNotFoundException is thrown when there is no Booking with this id, and an OptimisticLockException
+     * when it has been changed since the client read it, or, without a version, since it was read here.</p>
      * 
-     * @param contact The Contact object to be passed as an update to the application database
-     * @return The Contact object that has been successfully updated in the application database
+     * @param booking The Booking object to be passed as an update to the application database
+     * @param version The version the Booking must still have, or null for the version it has when it is read
+     * @return The Booking object that has been successfully updated in the application database
      * @throws ConstraintViolationException, ValidationException, Exception
      */
-    Booking update(Booking customer) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("CustomerService.update() - Updating " + customer.getFirstName() + " " + customer.getLastName());
+    Booking update(Booking booking, Long version) throws ConstraintViolationException, ValidationException, Exception {
+        log.info("BookingService.update() - updating", "id", booking.getId());
         
-        // Check to make sure the data fits with the parameters in the Contact model and passes validation.
-        validator.validateCustomer(customer);
-
-     /*   //Perform a rest call to get the state of the contact from the allareacodes.com API
-        URI uri = new URIBuilder()
-                .setScheme("http")
-                .setHost("www.allareacodes.com")
-                .setPath("/api/1.0/api.json")
-                .setParameter("npa", contact.getPhoneNumber().substring(1,4))
-                .setParameter("tracking_email", "h.firth@ncl.ac.uk")
-                .setParameter("tracking_url", "http://www.ncl.ac.uk/undergraduate/modules/module/CSC8104")
-                .build();
-        HttpGet req = new HttpGet(uri);
-        CloseableHttpResponse response = httpClient.execute(req);
-        String responseBody = EntityUtils.toString(response.getEntity());
-        JSONObject responseJson = new JSONObject(responseBody);
-        JSONArray areaCodes = responseJson.getJSONArray("area_codes");
-        contact.setState(areaCodes.getJSONObject(0).getString("state"));
-        HttpClientUtils.closeQuietly(response);
-*/
-        customer.setState("unknown");
-        // Either update the contact or add it if it can't be found.
-        return crud.update(customer);
+        // Check to make sure the data fits with the parameters in the Booking model and passes validation.
+        validator.validateBooking(booking);
+
+        // Remember what was booked, before the update overwrites it. Unlike the other entities a booking is still read
+        // first, as the availability index needs the taxi and date it is moved from.
+        Booking stored = crud.findById(booking.getId());
+        if (stored == null) {
+            throw new EntityNotFoundException("No booking with id " + booking.getId());
+        }
+        if (version != null && stored.getVersion() != version) {
+            throw new OptimisticLockException("The booking has been changed since it was read", null, booking);
+        }
+        checkReferences(booking, stored);
+        BookingChange released = BookingChange.released(stored);
+
+        // If the taxi or the date change, check the new taxi is free that day.
+        boolean moved = !stored.getTaxiID().equals(booking.getTaxiID())
+            || !TaxiAvailability.day(stored.getTravelDate()).equals(TaxiAvailability.day(booking.getTravelDate()));
+        if (moved && availability.isBooked(booking.getTaxiID(), booking.getTravelDate())) {
+            throw new ValidationException("Taxi already booked");
+        }
+
+        // Update the booking in one statement. It is still conditional on the version read above, so a concurrent
+        // change made since then is not overwritten either.
+        boolean updated;
+        try {
+            updated = crud.update(booking, version != null ? version.longValue() : stored.getVersion());
+        } catch (PersistenceException e) {
+            throw uniqueViolationOr(e);
+        }
+        if (!updated) {
+            throw new OptimisticLockException("The booking has been changed since it was read", null, booking);
+        }
+
+        if (moved) {
+            bookingChanges.fire(released);
+            bookingChanges.fire(BookingChange.booked(booking));
+        }
+        bookingWrites.fire(booking);
+        return booking;
     }
 
     /**
-     * <p>Deletes the provided Contact object from the application database if found there.<p/>
+     * <p>Deletes the Booking with the given id.<p/>
+     *
+     * <p>The taxi and date it booked are read first, as {@link TaxiAvailability} needs them, and then the Booking is
+     * deleted with a single DELETE statement.</p>
      * 
-     * @param contact The Contact object to be removed from the application database
-     * @return The Contact object that has been successfully removed from the application database; or null
-     * @throws Exception
+     * @param id The id of the Booking to be removed from the application database
+     * @return The number of Bookings deleted, 0 if there is no Booking with this id
      */
-    Booking delete(Booking customer) throws Exception {
-        log.info("CustomerService.delete() - Deleting " + customer.getFirstName() + " " + customer.getLastName());
-        
-        Booking deletedCustomer = null;
-        
-        if (customer.getId() != null) {
-            deletedCustomer = crud.delete(customer);
-        } else {
-            log.info("CustomerService.delete() - No ID was found so can't Delete.");
+    int deleteById(Long id) {
+        log.info("BookingService.deleteById() - deleting", "id", id);
+        Map<Long, BookingChange> released = crud.findSlotsByIds(Collections.singleton(id));
+        if (released.isEmpty()) {
+            return 0;
         }
-        
-        return deletedCustomer;
+        int deleted = crud.deleteById(id);
+        fireDeleted(released);
+        return deleted;
+    }
+
+    /**
+     * <p>Deletes the Bookings with the given ids, see {@link #deleteById(Long)}. Only the ids of the Bookings found are
+     * passed on in the {@link EntitiesDeleted} event.<p/>
+     * 
+     * @param ids The ids of the Bookings to be removed from the application database, not empty
+     * @return The number of Bookings deleted
+     */
+    int deleteByIds(Collection<Long> ids) {
+        log.info("BookingService.deleteByIds() - deleting", "ids", ids.size());
+        Map<Long, BookingChange> released = crud.findSlotsByIds(ids);
+        if (released.isEmpty()) {
+            return 0;
+        }
+        int deleted = crud.deleteByIds(released.keySet());
+        fireDeleted(released);
+        return deleted;
+    }
+
+    /**
+     * <p>Deletes every Booking of the given customers, before the customers themselves are deleted.</p>
+     *
+     * <p>This is public for the {@link org.jboss.quickstarts.wfk.customer.CustomerService}, and must be called within
+     * its transaction. The id, taxi and date of the Bookings are read with one query, and the Bookings deleted with
+     * one statement.</p>
+     *
+     * @param customerIds The ids of the customers, not empty
+     * @return The number of Bookings deleted
+     */
+    public int deleteByCustomerIds(Collection<Long> customerIds) {
+        Map<Long, BookingChange> released = crud.findSlotsByCustomerIds(customerIds);
+        if (released.isEmpty()) {
+            return 0;
+        }
+        int deleted = crud.deleteByCustomerIds(customerIds);
+        fireDeleted(released);
+        return deleted;
+    }
+
+    /**
+     * <p>Deletes every Booking of the given taxis, before the taxis themselves are deleted.</p>
+     *
+     * <p>This is public for the {@link org.jboss.quickstarts.wfk.taxi.TaxiService}, and must be called within its
+     * transaction. No {@link BookingChange} is fired: deleting the taxis rebuilds {@link TaxiAvailability} anyway. The
+     * ids of the Bookings are read first, so the {@link EntitiesDeleted} event fired for the change feed can name them.</p>
+     *
+     * @param taxiIds The ids of the taxis, not empty
+     * @return The number of Bookings deleted
+     */
+    public int deleteByTaxiIds(Collection<Long> taxiIds) {
+        List<Long> ids = crud.findIdsByTaxiIds(taxiIds);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int deleted = crud.deleteByTaxiIds(taxiIds);
+        deletions.fire(new EntitiesDeleted(Booking.class, ids));
+        return deleted;
+    }
+
+    private void fireDeleted(Map<Long, BookingChange> released) {
+        for (BookingChange change : released.values()) {
+            bookingChanges.fire(change);
+        }
+        deletions.fire(new EntitiesDeleted(Booking.class, new ArrayList<Long>(released.keySet())));
     }
 
 }
@@ -20,14 +20,16 @@ import java.util.HashSet;
 import java.util.Set;
 
 import javax.inject.Inject;
-import javax.persistence.NoResultException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 import javax.validation.Validator;
 
+import org.jboss.quickstarts.wfk.metrics.Phase;
+import org.jboss.quickstarts.wfk.metrics.RequestTimings;
+
 /**
- * <p>This class provides methods to check Contact objects against arbitrary requirements.</p>
+ * <p>This class provides methods to check Booking objects against arbitrary requirements.</p>
  * 
  * @author Joshua Wilson
  * @see Booking
@@ -38,66 +40,25 @@ public class BookingValidator {
     @Inject
     private Validator validator;
 
-    @Inject
-    private BookingRepository crud;
-
     /**
-     * <p>Validates the given Contact object and throws validation exceptions based on the type of error. If the error is standard
+     * <p>Validates the given Booking object and throws validation exceptions based on the type of error. If the error is standard
      * bean validation errors then it will throw a ConstraintValidationException with the set of the constraints violated.<p/>
      *
-     *
-     * <p>If the error is caused because an existing contact with the same email is registered it throws a regular validation
-     * exception so that it can be interpreted separately.</p>
-     *
      * 
-     * @param contact The Contact object to be validated
+     * @param booking The Booking object to be validated
      * @throws ConstraintViolationException If Bean Validation errors exist
-     * @throws ValidationException If contact with the same email already exists
-     */
-    void validateCustomer(Booking customer) throws ConstraintViolationException, ValidationException {
-        // Create a bean validator and check for issues.
-        Set<ConstraintViolation<Booking>> violations = validator.validate(customer);
-
-        if (!violations.isEmpty()) {
-            throw new ConstraintViolationException(new HashSet<ConstraintViolation<?>>(violations));
-        }
-
-        // Check the uniqueness of the email address
-        if (emailAlreadyExists(customer.getEmail(), customer.getId())) {
-            throw new ValidationException("Unique Email Violation");
-        }
-    }
-
-    /**
-     * <p>Checks if a contact with the same email address is already registered. This is the only way to easily capture the
-     * "@UniqueConstraint(columnNames = "email")" constraint from the Contact class.</p>
-     * 
-     * <p>Since Update will being using an email that is already in the database we need to make sure that it is the email
-     * from the record being updated.</p>
-     * 
-     * @param email The email to check is unique
-     * @param id The user id to check the email against if it was found
-     * @return boolean which represents whether the email was found, and if so if it belongs to the user with id
      */
-    boolean emailAlreadyExists(String email, Long id) {
-        Booking customer = null;
-        Booking customerWithID = null;
+    void validateBooking(Booking booking) throws ConstraintViolationException, ValidationException {
+        long started = System.nanoTime();
         try {
-        	customer = crud.findByEmail(email);
-        } catch (NoResultException e) {
-            // ignore
-        }
+            // Create a bean validator and check for issues.
+            Set<ConstraintViolation<Booking>> violations = validator.validate(booking);
 
-        if (customer != null && id != null) {
-            try {
-            	customerWithID = crud.findById(id);
-                if (customerWithID != null && customerWithID.getEmail().equals(email)) {
-                    customer= null;
-                }
-            } catch (NoResultException e) {
-                // ignore
+            if (!violations.isEmpty()) {
+                throw new ConstraintViolationException(new HashSet<ConstraintViolation<?>>(violations));
             }
+        } finally {
+            RequestTimings.record(Phase.VALIDATION, started);
         }
-        return customer != null;
     }
 }
@@ -0,0 +1,294 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.booking;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.jboss.quickstarts.wfk.taxi.TaxisChanged;
+import org.jboss.quickstarts.wfk.util.Log;
+
+/**
+ * <p>An in-memory index of which taxis are booked on which day, used to detect booking conflicts and to find free taxis
+ * without scanning the Booking table.</p>
+ *
+ * <p>The taxis are numbered 0..n-1, ordered by seats (largest first), and each day has a {@link BitSet} with the bit of
+ * every booked taxi set. "Which taxis with at least N seats are free on day X" is then a walk over the first taxis of the
+ * order, checking one bit each.</p>
+ *
+ * <p>A day is loaded from the database the first time it is asked for and then kept up to date from the
+ * {@link BookingChange} events fired after each successful commit. The load runs under the lock of the day, and so does
+ * every change to it: a change committed while the day is being read waits for the load and is applied on top of it,
+ * rather than being lost. Days in the past are dropped.</p>
+ *
+ * <p>The taxi list, and with it every day, is rebuilt after {@link TaxisChanged}. Each change bumps a generation, and
+ * each day keeps the taxi list it was numbered with: a taxi list or day built from a read that started before the
+ * change is never kept, however late it finishes.</p>
+ *
+ * <p>This index only answers quickly; the unique (taxi_ID, travel_date) constraint on Booking still has the last word,
+ * e.g. for two concurrent bookings of the same taxi.</p>
+ *
+ * @author Joshua Wilson
+ * @see BookingService
+ */
+@ApplicationScoped
+public class TaxiAvailability {
+
+    @Inject
+    private Log log;
+
+    @Inject
+    private EntityManager em;
+
+    private final ConcurrentMap<Integer, Day> bookedByDay = new ConcurrentHashMap<Integer, Day>();
+
+    private volatile Taxis taxis;
+
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * <p>Checks whether a taxi is booked on a date.</p>
+     *
+     * @param taxiID The id of the taxi
+     * @param travelDate The date
+     * @return true if the taxi is booked; false if it is free or does not exist
+     */
+    public boolean isBooked(String taxiID, Date travelDate) {
+        Day booked = bookedOn(day(travelDate));
+        Integer index = booked.index.indexOf(taxiID);
+        if (index == null) {
+            return false;
+        }
+        synchronized (booked) {
+            return booked.taxis.get(index);
+        }
+    }
+
+    /**
+     * <p>Finds the taxis that are not booked on a date and have at least the given number of seats.</p>
+     *
+     * @param travelDate The date
+     * @param seats The minimum number of seats
+     * @return The free taxis, largest first. They are not managed entities.
+     */
+    public List<Taxi> findFreeTaxis(Date travelDate, int seats) {
+        Day booked = bookedOn(day(travelDate));
+        Taxis current = booked.index;
+
+        List<Taxi> free = new ArrayList<Taxi>();
+        synchronized (booked) {
+            // The taxis are sorted by seats, so stop at the first one that is too small
+            for (int i = 0; i < current.size() && current.seats[i] >= seats; i++) {
+                if (!booked.taxis.get(i)) {
+                    free.add(current.taxis[i]);
+                }
+            }
+        }
+        return free;
+    }
+
+    void onBookingChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) BookingChange change) {
+        Day booked = bookedByDay.get(day(change.getTravelDate()));
+        if (booked == null) {
+            // The day is loaded from the database when it is first asked for
+            return;
+        }
+        Integer index = booked.index.indexOf(change.getTaxiID());
+        if (index == null) {
+            // The taxi is numbered when the taxis are reloaded
+            return;
+        }
+        synchronized (booked) {
+            // A day not loaded yet reads the database after this commit, so it has the change already
+            if (booked.loaded) {
+                booked.taxis.set(index, change.isBooked());
+            }
+        }
+    }
+
+    void onTaxisChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) TaxisChanged change) {
+        // The taxi numbering changes with the taxis, so the days are rebuilt too
+        generation.incrementAndGet();
+        taxis = null;
+        bookedByDay.clear();
+    }
+
+    private Taxis taxis() {
+        Taxis current = taxis;
+        if (current == null) {
+            synchronized (this) {
+                current = taxis;
+                if (current == null) {
+                    int loading = generation.get();
+                    current = new Taxis(loading, em.createNamedQuery(Taxi.FIND_ALL, Taxi.class).getResultList());
+                    // Taxis changed during the read are missing from it, so it only answers this call
+                    if (generation.get() == loading) {
+                        taxis = current;
+                    }
+                    log.info("TaxiAvailability - indexed", "taxis", current.size());
+                }
+            }
+        }
+        return current;
+    }
+
+    private Day bookedOn(Integer day) {
+        Day booked = bookedByDay.get(day);
+        while (booked == null || booked.index.generation != generation.get()) {
+            // Missing, or numbered before the taxis last changed
+            Day added = new Day(taxis());
+            if (booked == null ? bookedByDay.putIfAbsent(day, added) == null
+                : bookedByDay.replace(day, booked, added)) {
+                booked = added;
+                dropPastDays();
+                break;
+            }
+            booked = bookedByDay.get(day);
+        }
+
+        synchronized (booked) {
+            if (!booked.loaded) {
+                Taxis current = booked.index;
+                List<Long> taxiIDs = em.createNamedQuery(Booking.FIND_TAXI_IDS_BY_TRAVEL_DATE, Long.class)
+                    .setParameter("travelDate", dayStart(day))
+                    .getResultList();
+                for (Long taxiID : taxiIDs) {
+                    Integer index = current.indexOf(taxiID);
+                    if (index != null) {
+                        booked.taxis.set(index);
+                    }
+                }
+                booked.loaded = true;
+            }
+        }
+        return booked;
+    }
+
+    private void dropPastDays() {
+        Integer today = day(new Date());
+        for (Iterator<Integer> days = bookedByDay.keySet().iterator(); days.hasNext();) {
+            if (days.next() < today) {
+                days.remove();
+            }
+        }
+    }
+
+    // A day as yyyymmdd, in the server's time zone like the dates read from JSON
+    static Integer day(Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        return calendar.get(Calendar.YEAR) * 10000 + (calendar.get(Calendar.MONTH) + 1) * 100
+            + calendar.get(Calendar.DAY_OF_MONTH);
+    }
+
+    private static Date dayStart(Integer day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(day / 10000, day / 100 % 100 - 1, day % 100);
+        return calendar.getTime();
+    }
+
+    /**
+     * <p>The taxis booked on one day, numbered by the given taxi list. Only read or changed while holding its lock.</p>
+     */
+    private static final class Day {
+        private final Taxis index;
+        private final BitSet taxis = new BitSet();
+        private boolean loaded;
+
+        Day(Taxis index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * <p>An immutable snapshot of the taxis, numbered by descending seats.</p>
+     */
+    private static final class Taxis {
+        private final int generation;
+        private final Taxi[] taxis;
+        private final int[] seats;
+        private final Map<Long, Integer> indexById;
+
+        Taxis(int generation, List<Taxi> all) {
+            this.generation = generation;
+            List<Taxi> sorted = new ArrayList<Taxi>(all);
+            Collections.sort(sorted, new Comparator<Taxi>() {
+                @Override
+                public int compare(Taxi a, Taxi b) {
+                    return seatsOf(b) - seatsOf(a);
+                }
+            });
+
+            taxis = new Taxi[sorted.size()];
+            seats = new int[sorted.size()];
+            indexById = new HashMap<Long, Integer>();
+            for (int i = 0; i < taxis.length; i++) {
+                Taxi taxi = sorted.get(i);
+                Taxi copy = new Taxi();
+                copy.setId(taxi.getId());
+                copy.setRegistration(taxi.getRegistration());
+                copy.setSeat(taxi.getSeat());
+                taxis[i] = copy;
+                seats[i] = seatsOf(taxi);
+                indexById.put(taxi.getId(), i);
+            }
+        }
+
+        Integer indexOf(String taxiID) {
+            try {
+                return indexById.get(Long.valueOf(taxiID));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        Integer indexOf(Long taxiID) {
+            return indexById.get(taxiID);
+        }
+
+        int size() {
+            return taxis.length;
+        }
+
+        private static int seatsOf(Taxi taxi) {
+            try {
+                return Integer.parseInt(taxi.getSeat());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.booking;
+
+import java.util.Map;
+
+import javax.validation.ValidationException;
+
+/**
+ * <p>Thrown by {@link BookingService} when a Booking refers to a customer or a taxi that does not exist.</p>
+ *
+ * <p>The reasons are keyed by field, like the errors of a {@link BookingBatchReport}, e.g.
+ * <code>{"taxiID": "No taxi with this ID"}</code>.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class UnknownReferenceException extends ValidationException {
+    /** Default value included to remove warning. Remove or modify at will. **/
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, String> reasons;
+
+    UnknownReferenceException(Map<String, String> reasons) {
+        super("Unknown customer or taxi " + reasons.keySet());
+        this.reasons = reasons;
+    }
+
+    public Map<String, String> getReasons() {
+        return reasons;
+    }
+}
@@ -26,8 +26,15 @@ import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
+
 import org.hibernate.validator.constraints.Email;
 import org.hibernate.validator.constraints.NotEmpty;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.QueryHints;
+import org.jboss.quickstarts.wfk.util.Versioned;
 
 /**
  * <p>This is a the Domain object. The Contact class represents how contact resources are represented in the application
@@ -44,17 +51,81 @@ import org.hibernate.validator.constraints.NotEmpty;
  */
 @Entity
 @NamedQueries({
-    @NamedQuery(name = Contact.FIND_ALL, query = "SELECT c FROM Contact c ORDER BY c.lastName ASC, c.firstName ASC"),
-    @NamedQuery(name = Contact.FIND_BY_EMAIL, query = "SELECT c FROM Contact c WHERE c.email = :email")
+    @NamedQuery(name = Contact.FIND_ALL, query = "SELECT c FROM Contact c ORDER BY c.lastName ASC, c.firstName ASC, c.id ASC",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Contact.FIND_PAGE_AFTER, query = "SELECT c FROM Contact c WHERE c.lastName > :lastName"
+        + " OR (c.lastName = :lastName AND (c.firstName > :firstName OR (c.firstName = :firstName AND c.id > :id)))"
+        + " ORDER BY c.lastName ASC, c.firstName ASC, c.id ASC"),
+    @NamedQuery(name = Contact.FIND_BY_FIRST_NAME, query = "SELECT c FROM Contact c WHERE c.firstName = :firstName"
+        + " ORDER BY c.lastName ASC, c.id ASC"),
+    @NamedQuery(name = Contact.FIND_BY_LAST_NAME, query = "SELECT c FROM Contact c WHERE c.lastName = :lastName"
+        + " ORDER BY c.firstName ASC, c.id ASC"),
+    @NamedQuery(name = Contact.FIND_BY_EMAIL, query = "SELECT c FROM Contact c WHERE c.email = :email",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Contact.COUNT_BY_EMAIL, query = "SELECT COUNT(c) FROM Contact c WHERE c.email = :email"),
+    @NamedQuery(name = Contact.COUNT_BY_EMAIL_EXCLUDING_ID, query = "SELECT COUNT(c) FROM Contact c WHERE c.email = :email AND c.id <> :id"),
+    @NamedQuery(name = Contact.FIND_AREA_CODES_BY_STATE, query = "SELECT DISTINCT SUBSTRING(c.phoneNumber, 2, 3) FROM Contact c WHERE c.state = :state"),
+    @NamedQuery(name = Contact.UPDATE_STATE_BY_AREA_CODE, query = "UPDATE Contact c SET c.state = :state,"
+        + " c.version = c.version + 1, c.lastModified = CURRENT_TIMESTAMP"
+        + " WHERE c.state = :oldState AND c.phoneNumber LIKE :areaCodePrefix"),
+    @NamedQuery(name = Contact.REVISION_BY_ID, query = "SELECT NEW org.jboss.quickstarts.wfk.util.Revision(c.id, c.version, c.lastModified) FROM Contact c WHERE c.id = :id",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Contact.REVISION_BY_EMAIL, query = "SELECT NEW org.jboss.quickstarts.wfk.util.Revision(c.id, c.version, c.lastModified) FROM Contact c WHERE c.email = :email",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Contact.REVISIONS, query = "SELECT NEW org.jboss.quickstarts.wfk.util.Revision(c.id, c.version, c.lastModified) FROM Contact c ORDER BY c.lastName ASC, c.firstName ASC, c.id ASC",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Contact.REVISIONS_AFTER, query = "SELECT NEW org.jboss.quickstarts.wfk.util.Revision(c.id, c.version, c.lastModified) FROM Contact c WHERE c.lastName > :lastName"
+        + " OR (c.lastName = :lastName AND (c.firstName > :firstName OR (c.firstName = :firstName AND c.id > :id)))"
+        + " ORDER BY c.lastName ASC, c.firstName ASC, c.id ASC",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Contact.UPDATE, query = Contact.UPDATE_SET + " WHERE c.id = :id"),
+    @NamedQuery(name = Contact.UPDATE_VERSION, query = Contact.UPDATE_SET + " WHERE c.id = :id AND c.version = :version"),
+    @NamedQuery(name = Contact.DELETE_BY_ID, query = "DELETE FROM Contact c WHERE c.id = :id"),
+    @NamedQuery(name = Contact.FIND_IDS_BY_IDS, query = "SELECT c.id FROM Contact c WHERE c.id IN :ids"),
+    @NamedQuery(name = Contact.DELETE_BY_IDS, query = "DELETE FROM Contact c WHERE c.id IN :ids"),
+    @NamedQuery(name = Contact.FIND_BY_IDS, query = "SELECT c FROM Contact c WHERE c.id IN :ids"),
+    @NamedQuery(name = Contact.FIND_SEARCH_WORDS, query = "SELECT c.id, c.firstName, c.lastName, c.email FROM Contact c")
 })
 @XmlRootElement
+// Contacts are read far more often than written, so they are kept in the second-level cache, see Taxi.
+@Cacheable
 @Table(name = "Contact", uniqueConstraints = @UniqueConstraint(columnNames = "email"))
-public class Contact implements Serializable {
+// The list is read in name order, by page and by first or last name, so each of those has an index that returns the
+// rows already sorted. The state index serves the area code enrichment of ContactStateEnricher.
+@org.hibernate.annotations.Table(appliesTo = "Contact", indexes = {
+    @Index(name = "contact_name_idx", columnNames = {"last_name", "first_name", "id"}),
+    @Index(name = "contact_first_name_idx", columnNames = {"first_name", "last_name", "id"}),
+    @Index(name = "contact_state_idx", columnNames = "state")
+})
+public class Contact implements Serializable, Versioned {
     /** Default value included to remove warning. Remove or modify at will. **/
     private static final long serialVersionUID = 1L;
     
     public static final String FIND_ALL = "Contact.findAll";
+    public static final String FIND_PAGE_AFTER = "Contact.findPageAfter";
+    public static final String FIND_BY_FIRST_NAME = "Contact.findByFirstName";
+    public static final String FIND_BY_LAST_NAME = "Contact.findByLastName";
     public static final String FIND_BY_EMAIL = "Contact.findByEmail";
+    public static final String COUNT_BY_EMAIL = "Contact.countByEmail";
+    public static final String COUNT_BY_EMAIL_EXCLUDING_ID = "Contact.countByEmailExcludingId";
+    public static final String FIND_AREA_CODES_BY_STATE = "Contact.findAreaCodesByState";
+    public static final String UPDATE_STATE_BY_AREA_CODE = "Contact.updateStateByAreaCode";
+    public static final String REVISION_BY_ID = "Contact.revisionById";
+    public static final String REVISION_BY_EMAIL = "Contact.revisionByEmail";
+    public static final String REVISIONS = "Contact.revisions";
+    public static final String REVISIONS_AFTER = "Contact.revisionsAfter";
+    public static final String UPDATE = "Contact.update";
+    public static final String UPDATE_VERSION = "Contact.updateVersion";
+    public static final String DELETE_BY_ID = "Contact.deleteById";
+    public static final String FIND_IDS_BY_IDS = "Contact.findIdsByIds";
+    public static final String DELETE_BY_IDS = "Contact.deleteByIds";
+    public static final String FIND_BY_IDS = "Contact.findByIds";
+    public static final String FIND_SEARCH_WORDS = "Contact.findSearchWords";
+
+    // The SET clause of UPDATE and UPDATE_VERSION, which move the version on as a merge of a @Version entity would.
+    private static final String UPDATE_SET = "UPDATE Contact c SET c.firstName = :firstName, c.lastName = :lastName, c.email = :email,"
+        + " c.phoneNumber = :phoneNumber, c.birthDate = :birthDate, c.state = :state,"
+        + " c.version = c.version + 1, c.lastModified = :lastModified";
 
     /*
      * The  error messages match the ones in the UI so that the user isn't confused by two similar error messages for
@@ -66,9 +137,26 @@ public class Contact implements Serializable {
      * variable occurs it can be sent to the correct input field on the form.  
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    @GeneratedValue(generator = "contact_id")
+    @GenericGenerator(name = "contact_id", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = {
+        @Parameter(name = "sequence_name", value = "contact_seq"),
+        @Parameter(name = "initial_value", value = "10100"),
+        @Parameter(name = "increment_size", value = "50"),
+        @Parameter(name = "optimizer", value = "pooled-lo")
+    })
     private Long id;
 
+    // Moved on by every update; with lastModified it makes the ETag and Last-Modified headers (see Revision)
+    @Version
+    @Column(name = "version")
+    @JsonIgnore
+    private long version;
+
+    @Column(name = "last_modified")
+    @Temporal(TemporalType.TIMESTAMP)
+    @JsonIgnore
+    private Date lastModified;
+
     @NotNull
     @Size(min = 1, max = 25)
     @Pattern(regexp = "[A-Za-z-']+", message = "Please use a name without numbers or specials")
@@ -158,4 +246,24 @@ public class Contact implements Serializable {
     public String getState() {
         return this.state;
     }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @Override
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new Date();
+    }
 }
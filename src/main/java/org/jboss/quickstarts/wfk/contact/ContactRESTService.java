@@ -20,28 +20,42 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.logging.Logger;
 
 import javax.ejb.NoSuchEntityException;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
-import javax.inject.Named;
+import javax.persistence.EntityNotFoundException;
 import javax.persistence.NoResultException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.Tuple;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.WebApplicationException;
 
+import org.jboss.quickstarts.wfk.util.BulkDelete;
+import org.jboss.quickstarts.wfk.util.KeysetPage;
+import org.jboss.quickstarts.wfk.util.Log;
+import org.jboss.quickstarts.wfk.util.PrefixIndex;
+import org.jboss.quickstarts.wfk.util.Projection;
+import org.jboss.quickstarts.wfk.util.Revision;
+
 /**
  * <p>This class exposes the functionality of {@link ContactService} over HTTP endpoints as a RESTful resource via
  * JAX-RS.</p>
@@ -70,19 +84,105 @@ import javax.ws.rs.WebApplicationException;
 @Stateless
 public class ContactRESTService {
     @Inject
-    private @Named("logger") Logger log;
+    private Log log;
     
     @Inject
     private ContactService service;
     
     /**
-     * <p>Search for and return all the Contacts.  They are sorted alphabetically by name.</p>
+     * <p>Search for and return one page of Contacts.  They are sorted alphabetically by name.</p>
+     *
+     * <p>If there are more Contacts the cursor of the next page is returned in the X-Next-Cursor and Link headers.</p>
+     *
+     * <p>With <code>fields</code>, e.g. <code>?fields=id,lastName,phoneNumber</code>, only those columns are read and each
+     * Contact is returned as an object holding just those fields, see {@link Projection}.</p>
+     *
+     * <p>The page is sent with an ETag, and 304 (Not Modified) is returned if it is still current, see {@link Revision}.</p>
      * 
+     * @param limit The maximum number of Contacts to return, see {@link KeysetPage#limit(Integer)}
+     * @param after The cursor returned with the previous page, or null for the first page
+     * @param fields A comma separated list of the fields to return, or null for whole Contacts
+     * @param request The request, used to evaluate its If-None-Match header
+     * @param headers The request headers
+     * @param uriInfo The request URI, used to build the link to the next page
      * @return A Response containing a list of Contacts
      */
     @GET
-    public Response retrieveAllContacts() {
-        List<Contact> contacts = service.findAllOrderedByName();
+    public Response retrieveAllContacts(@QueryParam("limit") Integer limit, @QueryParam("after") String after,
+            @QueryParam("fields") String fields, @Context Request request, @Context HttpHeaders headers,
+            @Context UriInfo uriInfo) {
+        int pageSize = KeysetPage.limit(limit);
+        String[] key = KeysetPage.decodeCursor(after, 3);
+        Projection projection = Projection.parse(fields);
+
+        // Only the ids and versions of the page are read to decide whether the client's copy is still current.
+        List<Revision> revisions = key == null
+            ? service.findRevisionPageOrderedByName(null, null, null, pageSize + 1)
+            : service.findRevisionPageOrderedByName(key[0], key[1], KeysetPage.parseId(key[2]), pageSize + 1);
+        Revision page = Revision.ofPage(revisions);
+        Response.ResponseBuilder notModified = page.evaluatePreconditions(request, headers);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
+        if (projection != null) {
+            return page.tag(retrieveContactFields(key, pageSize, projection, uriInfo)).build();
+        }
+
+        List<Contact> contacts = key == null
+            ? service.findPageOrderedByName(null, null, null, pageSize + 1)
+            : service.findPageOrderedByName(key[0], key[1], KeysetPage.parseId(key[2]), pageSize + 1);
+
+        // Tagged with what was actually read, in case the page changed since its revisions were.
+        page = Revision.ofPage(contacts);
+        String nextCursor = null;
+        if (KeysetPage.hasMore(contacts, pageSize)) {
+            contacts = contacts.subList(0, pageSize);
+            Contact last = contacts.get(pageSize - 1);
+            nextCursor = KeysetPage.encodeCursor(last.getLastName(), last.getFirstName(), String.valueOf(last.getId()));
+        }
+        return page.tag(KeysetPage.ok(contacts, nextCursor, uriInfo)).build();
+    }
+
+    private Response.ResponseBuilder retrieveContactFields(String[] key, int pageSize, Projection projection, UriInfo uriInfo) {
+        List<Tuple> rows;
+        try {
+            rows = key == null
+                ? service.findPageOrderedByName(null, null, null, pageSize + 1, projection)
+                : service.findPageOrderedByName(key[0], key[1], KeysetPage.parseId(key[2]), pageSize + 1, projection);
+        } catch (IllegalArgumentException e) {
+            // A field that Contact does not have
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+
+        String nextCursor = null;
+        if (KeysetPage.hasMore(rows, pageSize)) {
+            rows = rows.subList(0, pageSize);
+            Tuple last = rows.get(pageSize - 1);
+            nextCursor = KeysetPage.encodeCursor(last.get("lastName", String.class), last.get("firstName", String.class),
+                String.valueOf(last.get("id")));
+        }
+        return KeysetPage.ok(projection.toMaps(rows), nextCursor, uriInfo);
+    }
+
+    /**
+     * <p>Search for and return the Contacts whose first name, last name, full name or email starts with the query, as
+     * the user types it.</p>
+     *
+     * <p>The matches are found in an in-memory index, see {@link ContactSearchIndex}, so the Contact table is not
+     * scanned.</p>
+     *
+     * @param query The start of the name or email, case and accents are ignored
+     * @param limit The maximum number of Contacts to return, see {@link PrefixIndex#limit(Integer)}
+     * @return A Response containing the list of Contacts found
+     */
+    @GET
+    @Path("/search")
+    public Response searchContacts(@QueryParam("q") String query, @QueryParam("limit") Integer limit) {
+        if (query == null) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        List<Contact> contacts = service.search(query, PrefixIndex.limit(limit));
         return Response.ok(contacts).build();
     }
 
@@ -94,37 +194,61 @@ public class ContactRESTService {
      *
      *
      * @param email The string parameter value provided as a Contact's email
-     * @return A Response containing a single Contact
+     * @param request The request, used to evaluate its If-None-Match and If-Modified-Since headers
+     * @param headers The request headers
+     * @return A Response containing a single Contact, or 304 (Not Modified) if the client's copy is current
      */
     @GET
     @Path("/{email:^.+@.+$}")
-    public Response retrieveContactsByEmail(@PathParam("email") String email) {
+    public Response retrieveContactsByEmail(@PathParam("email") String email, @Context Request request,
+            @Context HttpHeaders headers) {
+        Revision revision = service.findRevisionByEmail(email);
+        if (revision == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        Response.ResponseBuilder notModified = revision.evaluatePreconditions(request, headers);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
         Contact contact;
         try {
             contact = service.findByEmail(email);
         } catch (NoResultException e) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
-        return Response.ok(contact).build();
+        return Revision.of(contact).tag(Response.ok(contact)).build();
     }
     
     /**
      * <p>Search for and return a Contact identified by id.</p>
      * 
      * @param id The long parameter value provided as a Contact's id
-     * @return A Response containing a single Contact
+     * @param request The request, used to evaluate its If-None-Match and If-Modified-Since headers
+     * @param headers The request headers
+     * @return A Response containing a single Contact, or 304 (Not Modified) if the client's copy is current
      */
     @GET
     @Path("/{id:[0-9]+}")
-    public Response retrieveContactById(@PathParam("id") long id) {
+    public Response retrieveContactById(@PathParam("id") long id, @Context Request request,
+            @Context HttpHeaders headers) {
+        Revision revision = service.findRevisionById(id);
+        if (revision == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        Response.ResponseBuilder notModified = revision.evaluatePreconditions(request, headers);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
         Contact contact = service.findById(id);
         if (contact == null) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
-        log.info("findById " + id + ": found Contact = " + contact.getFirstName() + " " + contact.getLastName() + " " + contact.getEmail() + " " + contact.getPhoneNumber() + " "
-                + contact.getBirthDate() + " " + contact.getId());
+        log.info("findById found Contact", "firstName", contact.getFirstName(), "lastName", contact.getLastName(), "email", contact.getEmail(),
+            "phoneNumber", contact.getPhoneNumber(), "birthDate", contact.getBirthDate(), "id", contact.getId());
         
-        return Response.ok(contact).build();
+        return Revision.of(contact).tag(Response.ok(contact)).build();
     }
 
     /**
@@ -137,8 +261,8 @@ public class ContactRESTService {
     @SuppressWarnings("unused")
     @POST
     public Response createContact(Contact contact) {
-        log.info("createContact started. Contact = " + contact.getFirstName() + " " + contact.getLastName() + " " + contact.getEmail() + " " + contact.getPhoneNumber() + " "
-            + contact.getBirthDate() + " " + contact.getId());
+        log.info("createContact started", "firstName", contact.getFirstName(), "lastName", contact.getLastName(), "email", contact.getEmail(),
+            "phoneNumber", contact.getPhoneNumber(), "birthDate", contact.getBirthDate(), "id", contact.getId());
         if (contact == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
@@ -152,20 +276,20 @@ public class ContactRESTService {
             // Create a "Resource Created" 201 Response and pass the contact back in case it is needed.
             builder = Response.status(Response.Status.CREATED).entity(contact);
             
-            log.info("createContact completed. Contact = " + contact.getFirstName() + " " + contact.getLastName() + " " + contact.getEmail() + " " + contact.getPhoneNumber() + " "
-                + contact.getBirthDate() + " " + contact.getId());
+            log.info("createContact completed", "firstName", contact.getFirstName(), "lastName", contact.getLastName(), "email", contact.getEmail(),
+                "phoneNumber", contact.getPhoneNumber(), "birthDate", contact.getBirthDate(), "id", contact.getId());
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.info("createContact failed", "exception", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.info("createContact failed", "exception", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("email", "That email is already used, please use a unique email");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.info("createContact failed", "exception", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -179,46 +303,54 @@ public class ContactRESTService {
      * <p>Updates a contact with the ID provided in the Contact. Performs validation, and will return a JAX-RS response with either 200 ok,
      * or with a map of fields, and related errors.</p>
      * 
-     * @param contact The Contact object, constructed automatically from JSON input, to be <i>updated</i> via {@link ContactService#update(Contact)}
+     * @param contact The Contact object, constructed automatically from JSON input, to be <i>updated</i> via {@link ContactService#update(Contact, Long)}
      * @param id The long parameter value provided as the id of the Contact to be updated
+     * @param ifMatch The ETag of the Contact the client read, optional; the update fails with 412 (Precondition Failed) if it has changed since
      * @return A Response indicating the outcome of the create operation
      */
     @PUT
     @Path("/{id:[0-9][0-9]*}")
-    public Response updateContact(@PathParam("id") long id, Contact contact) {
+    public Response updateContact(@PathParam("id") long id, @HeaderParam("If-Match") String ifMatch, Contact contact) {
         if (contact == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
-        log.info("updateContact started. Contact = " + contact.getFirstName() + " " + contact.getLastName() + " " + contact.getEmail() + " " + contact.getPhoneNumber() + " "
-                + contact.getBirthDate() + " " + contact.getId());
+        log.info("updateContact started", "firstName", contact.getFirstName(), "lastName", contact.getLastName(), "email", contact.getEmail(),
+            "phoneNumber", contact.getPhoneNumber(), "birthDate", contact.getBirthDate(), "id", contact.getId());
 
         if (contact.getId() != id) {
             // The client attempted to update the read-only Id. This is not permitted.
             Response response = Response.status(Response.Status.CONFLICT).entity("The contact ID cannot be modified").build();
             throw new WebApplicationException(response);
         }
-        if (service.findById(contact.getId()) == null) {
-            // Verify if the contact exists. Return 404, if not present.
-            throw new WebApplicationException(Response.Status.NOT_FOUND);
-        }
+        // The version is not part of the JSON: the client sends the ETag it read in If-Match instead.
+        Long version = Revision.expectedVersion(ifMatch, id);
         
         Response.ResponseBuilder builder = null;
         
         try {
             // Apply the changes the Contact.
-            service.update(contact);
+            service.update(contact, version);
 
-            // Create an OK Response and pass the contact back in case it is needed.
-            builder = Response.ok(contact);
+            // Create an OK Response and pass the contact back, with its new ETag when the version is known.
+            builder = version == null ? Response.ok(contact) : Revision.of(contact).tag(Response.ok(contact));
 
-            log.info("updateContact completed. Contact = " + contact.getFirstName() + " " + contact.getLastName() + " " + contact.getEmail() + " " + contact.getPhoneNumber() + " "
-                + contact.getBirthDate() + " " + contact.getId());
+            log.info("updateContact completed", "firstName", contact.getFirstName(), "lastName", contact.getLastName(), "email", contact.getEmail(),
+                "phoneNumber", contact.getPhoneNumber(), "birthDate", contact.getBirthDate(), "id", contact.getId());
+        } catch (EntityNotFoundException e) {
+            // Verify if the contact exists. Return 404, if not present.
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        } catch (OptimisticLockException e) {
+            log.info("updateContact failed", "exception", e);
+            // The contact has been changed since the client read it (If-Match), so it has to be read again.
+            Map<String, String> responseObj = new HashMap<String, String>();
+            responseObj.put("error", "The contact has been changed by someone else, please reload it and try again");
+            builder = Response.status(Response.Status.PRECONDITION_FAILED).entity(responseObj);
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.info("updateContact failed", "exception", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.info("updateContact failed", "exception", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("email", "That email is already used, please use a unique email");
@@ -226,7 +358,7 @@ public class ContactRESTService {
             responseObj.put("anotherError", "You can find this error message in /src/main/java/org/jboss/quickstarts/wfk/rest/ContactRESTService.java line 242.");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.info("updateContact failed", "exception", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -239,7 +371,8 @@ public class ContactRESTService {
     /**
      * <p>Deletes a contact using the ID provided. If the ID is not present then nothing can be deleted.</p>
      *
-     * <p>Will return a JAX-RS response with either 200 OK or with a map of fields, and related errors.</p>
+     * <p>The contact is deleted with a single DELETE statement, without being read first. Will return a JAX-RS
+     * response with either 204 No Content, 404 Not Found or a map of errors.</p>
      * 
      * @param id The Long parameter value provided as the id of the Contact to be deleted
      * @return A Response indicating the outcome of the delete operation
@@ -247,23 +380,49 @@ public class ContactRESTService {
     @DELETE
     @Path("/{id:[0-9][0-9]*}")
     public Response deleteContact(@PathParam("id") Long id) {
-        log.info("deleteContact started. Contact ID = " + id);
+        log.info("deleteContact started", "id", id);
         Response.ResponseBuilder builder = null;
 
         try {
-            Contact contact = service.findById(id);
-            if (contact != null) {
-                service.delete(contact);
+            if (service.deleteById(id) > 0) {
+                builder = Response.noContent();
+                log.info("deleteContact completed", "id", id);
             } else {
-                log.info("ContactRESTService - deleteContact - No contact with matching ID was found so can't Delete.");
-                throw new WebApplicationException(Response.Status.NOT_FOUND);
+                log.info("deleteContact found no contact", "id", id);
+                builder = Response.status(Response.Status.NOT_FOUND);
             }
+        } catch (Exception e) {
+            log.info("deleteContact failed", "exception", e);
+            // Handle generic exceptions
+            Map<String, String> responseObj = new HashMap<String, String>();
+            responseObj.put("error", e.getMessage());
+            builder = Response.status(Response.Status.BAD_REQUEST).entity(responseObj);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * <p>Deletes many contacts with a single DELETE statement, e.g. <code>DELETE /rest/contacts?id=1&amp;id=2</code>.</p>
+     *
+     * <p>Will return a JAX-RS response with either 200 OK and the number of contacts deleted, e.g.
+     * <code>{"requested": 2, "deleted": 1}</code>, or with a map of errors.</p>
+     *
+     * @param ids The ids of the contacts to delete, at most {@value BulkDelete#MAX_IDS}
+     * @return A Response indicating the outcome of the delete operation
+     */
+    @DELETE
+    public Response deleteContacts(@QueryParam("id") List<Long> ids) {
+        Set<Long> distinct = BulkDelete.ids(ids);
+        log.info("deleteContacts started", "ids", distinct.size());
+        Response.ResponseBuilder builder = null;
 
-            builder = Response.noContent();
-            log.info("deleteContact completed. Contact = " + contact.getFirstName() + " " + contact.getLastName() + " " + contact.getEmail() + " " + contact.getPhoneNumber() + " "
-                + contact.getBirthDate() + " " + contact.getId());
+        try {
+            int deleted = service.deleteByIds(distinct);
+            builder = BulkDelete.ok(distinct, deleted);
+            log.info("deleteContacts completed", "ids", distinct.size(), "deleted", deleted);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.info("deleteContacts failed", "exception", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -281,7 +440,7 @@ public class ContactRESTService {
      * @return A Bad Request (400) Response containing all violation messages
      */
     private Response.ResponseBuilder createViolationResponse(Set<ConstraintViolation<?>> violations) {
-        log.fine("Validation completed. violations found: " + violations.size());
+        log.fine("Validation completed", "violations", violations.size());
 
         Map<String, String> responseObj = new HashMap<String, String>();
 
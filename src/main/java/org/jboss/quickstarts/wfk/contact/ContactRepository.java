@@ -17,17 +17,28 @@
 package org.jboss.quickstarts.wfk.contact;
 
 import javax.inject.Inject;
-import javax.inject.Named;
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TemporalType;
+import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.logging.Logger;
+
+import org.jboss.quickstarts.wfk.metrics.RequestTimings;
+import org.jboss.quickstarts.wfk.util.Log;
+import org.jboss.quickstarts.wfk.util.Projection;
+import org.jboss.quickstarts.wfk.util.ReadRouting;
+import org.jboss.quickstarts.wfk.util.Replica;
+import org.jboss.quickstarts.wfk.util.ReplicaRead;
+import org.jboss.quickstarts.wfk.util.Revision;
 
 /**
  * <p>This is a Repository class and connects the Service/Control layer (see {@link ContactService} with the
@@ -43,29 +54,138 @@ import java.util.logging.Logger;
 public class ContactRepository {
 
     @Inject
-    private @Named("logger") Logger log;
+    private Log log;
 
     @Inject
     private EntityManager em;
+
+    @Inject
+    @Replica
+    private EntityManager replica;
     
     /**
      * <p>Returns a List of all persisted {@link Contact} objects, sorted alphabetically by last name.</p>
      * 
      * @return List of Contact objects
      */
+    @ReplicaRead
     List<Contact> findAllOrderedByName() {
-        TypedQuery<Contact> query = em.createNamedQuery(Contact.FIND_ALL, Contact.class); 
+        TypedQuery<Contact> query = reader().createNamedQuery(Contact.FIND_ALL, Contact.class); 
         return query.getResultList();
     }
 
+    /**
+     * <p>Returns one page of persisted {@link Contact} objects, sorted alphabetically by last name, first name and id.</p>
+     *
+     * <p>The page starts right after the given (lastName, firstName, id) key, so the database can seek straight to it
+     * instead of skipping rows with an OFFSET. Pass a null lastName to read the first page.</p>
+     *
+     * @param lastName The lastName of the last Contact on the previous page, or null for the first page
+     * @param firstName The firstName of the last Contact on the previous page
+     * @param id The id of the last Contact on the previous page
+     * @param maxResults The maximum number of Contacts to return
+     * @return List of Contact objects
+     */
+    @ReplicaRead
+    List<Contact> findPageOrderedByName(String lastName, String firstName, Long id, int maxResults) {
+        TypedQuery<Contact> query;
+        if (lastName == null) {
+            query = reader().createNamedQuery(Contact.FIND_ALL, Contact.class);
+        } else {
+            query = reader().createNamedQuery(Contact.FIND_PAGE_AFTER, Contact.class)
+                .setParameter("lastName", lastName)
+                .setParameter("firstName", firstName)
+                .setParameter("id", id);
+        }
+        return query.setMaxResults(maxResults).getResultList();
+    }
+
+    /**
+     * <p>Returns the id, version and last modified time of each Contact on a page, in the same order and with the same
+     * seek as {@link #findPageOrderedByName(String, String, Long, int)}, without loading the Contacts.</p>
+     *
+     * @param lastName The lastName of the last Contact on the previous page, or null for the first page
+     * @param firstName The firstName of the last Contact on the previous page
+     * @param id The id of the last Contact on the previous page
+     * @param maxResults The maximum number of Revisions to return
+     * @return List of Revisions
+     */
+    @ReplicaRead
+    List<Revision> findRevisionPageOrderedByName(String lastName, String firstName, Long id, int maxResults) {
+        TypedQuery<Revision> query;
+        if (lastName == null) {
+            query = reader().createNamedQuery(Contact.REVISIONS, Revision.class);
+        } else {
+            query = reader().createNamedQuery(Contact.REVISIONS_AFTER, Revision.class)
+                .setParameter("lastName", lastName)
+                .setParameter("firstName", firstName)
+                .setParameter("id", id);
+        }
+        return query.setMaxResults(maxResults).getResultList();
+    }
+
+    /**
+     * <p>Returns one page of Contacts like {@link #findPageOrderedByName(String, String, Long, int)}, but only the
+     * requested fields of each, read with a tuple query.</p>
+     *
+     * @param lastName The lastName of the last Contact on the previous page, or null for the first page
+     * @param firstName The firstName of the last Contact on the previous page
+     * @param id The id of the last Contact on the previous page
+     * @param maxResults The maximum number of Contacts to return
+     * @param projection The fields to read, the lastName, firstName and id are always read as well for the next page cursor
+     * @return List of tuples, with each field aliased by its name
+     * @throws IllegalArgumentException If a requested field is not a column of Contact
+     */
+    @ReplicaRead
+    List<Tuple> findPageOrderedByName(String lastName, String firstName, Long id, int maxResults, Projection projection) {
+        CriteriaBuilder cb = reader().getCriteriaBuilder();
+        CriteriaQuery<Tuple> criteria = cb.createTupleQuery();
+        Root<Contact> contact = criteria.from(Contact.class);
+        criteria.multiselect(projection.select(contact, "lastName", "firstName", "id"));
+
+        Path<String> lastNamePath = contact.get("lastName");
+        Path<String> firstNamePath = contact.get("firstName");
+        Path<Long> idPath = contact.get("id");
+        if (lastName != null) {
+            // The same seek predicate as Contact.FIND_PAGE_AFTER
+            criteria.where(cb.or(cb.greaterThan(lastNamePath, lastName),
+                cb.and(cb.equal(lastNamePath, lastName), cb.or(cb.greaterThan(firstNamePath, firstName),
+                    cb.and(cb.equal(firstNamePath, firstName), cb.greaterThan(idPath, id))))));
+        }
+        criteria.orderBy(cb.asc(lastNamePath), cb.asc(firstNamePath), cb.asc(idPath));
+        return reader().createQuery(criteria).setMaxResults(maxResults).getResultList();
+    }
+
     /**
      * <p>Returns a single Contact object, specified by a Long id.<p/>
      *
      * @param id The id field of the Contact to be returned
      * @return The Contact with the specified id
      */
+    @ReplicaRead
     Contact findById(Long id) {
-        return em.find(Contact.class, id);
+        return reader().find(Contact.class, id);
+    }
+
+    /**
+     * <p>Returns the Contacts with the given ids, with one query.</p>
+     *
+     * @param ids The ids of the Contacts, not empty
+     * @return The Contacts found, in no particular order
+     */
+    @ReplicaRead
+    List<Contact> findByIds(Collection<Long> ids) {
+        return reader().createNamedQuery(Contact.FIND_BY_IDS, Contact.class).setParameter("ids", ids).getResultList();
+    }
+
+    /**
+     * <p>Returns the id, first name, last name and email of every Contact, reading only those columns, to build the
+     * {@link ContactSearchIndex}.</p>
+     *
+     * @return One array of [id, firstName, lastName, email] per Contact
+     */
+    List<Object[]> findSearchWords() {
+        return em.createNamedQuery(Contact.FIND_SEARCH_WORDS, Object[].class).getResultList();
     }
 
     /**
@@ -76,45 +196,85 @@ public class ContactRepository {
      * @param email The email field of the Contact to be returned
      * @return The first Contact with the specified email
      */
+    @ReplicaRead
     Contact findByEmail(String email) {
-        TypedQuery<Contact> query = em.createNamedQuery(Contact.FIND_BY_EMAIL, Contact.class).setParameter("email", email); 
+        TypedQuery<Contact> query = reader().createNamedQuery(Contact.FIND_BY_EMAIL, Contact.class).setParameter("email", email); 
         return query.getSingleResult();
     }
 
     /**
-     * <p>Returns a single Contact object, specified by a String firstName.<p/>
+     * <p>Returns the id, version and last modified time of the Contact with the given id, without loading it.</p>
      *
-     * <p>If there is more then one, only the first will be returned.<p/>
+     * @param id The id of the Contact
+     * @return The Revision, or null if there is no such Contact
+     */
+    @ReplicaRead
+    Revision findRevisionById(Long id) {
+        List<Revision> revisions = reader().createNamedQuery(Contact.REVISION_BY_ID, Revision.class)
+            .setParameter("id", id).getResultList();
+        return revisions.isEmpty() ? null : revisions.get(0);
+    }
+
+    /**
+     * <p>Returns the id, version and last modified time of the Contact with the given email, without loading it.</p>
      *
-     * @param firstName The firstName field of the Contact to be returned
-     * @return The first Contact with the specified firstName
+     * @param email The email of the Contact
+     * @return The Revision, or null if there is no such Contact
      */
-    Contact findByFirstName(String firstName) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Contact> criteria = cb.createQuery(Contact.class);
-        Root<Contact> contact = criteria.from(Contact.class);
-        // Swap criteria statements if you would like to try out type-safe criteria queries, a new feature in JPA 2.0.
-        // criteria.select(contact).where(cb.equal(contact.get(Contact_.firstName), firstName));
-        criteria.select(contact).where(cb.equal(contact.get("firstName"), firstName));
-        return em.createQuery(criteria).getSingleResult();
+    @ReplicaRead
+    Revision findRevisionByEmail(String email) {
+        List<Revision> revisions = reader().createNamedQuery(Contact.REVISION_BY_EMAIL, Revision.class)
+            .setParameter("email", email).getResultList();
+        return revisions.isEmpty() ? null : revisions.get(0);
     }
 
     /**
-     * <p>Returns a single Contact object, specified by a String lastName.<p/>
+     * <p>Checks whether another Contact already uses an email address, with a single COUNT query.</p>
      *
-     * <p>If there is more then one, only the first will be returned.<p/>
+     * <p>Unlike {@link #findByEmail(String)} this never throws when there is no match, which is the common case.</p>
      *
-     * @param lastName The lastName field of the Contact to be returned
-     * @return The first Contact with the specified lastName
+     * @param email The email address to look for
+     * @param id The id of the Contact being updated, which is allowed to own the email; or null for a new Contact
+     * @return true if a Contact other than the one with the given id has the email address
      */
-    Contact findByLastName(String lastName) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Contact> criteria = cb.createQuery(Contact.class);
-        Root<Contact> contact = criteria.from(Contact.class);
-        // Swap criteria statements if you would like to try out type-safe criteria queries, a new feature in JPA 2.0.
-        // criteria.select(contact).where(cb.equal(contact.get(Contact_.lastName), lastName));
-        criteria.select(contact).where(cb.equal(contact.get("lastName"), lastName));
-        return em.createQuery(criteria).getSingleResult();
+    boolean existsByEmail(String email, Long id) {
+        TypedQuery<Long> query;
+        if (id == null) {
+            query = em.createNamedQuery(Contact.COUNT_BY_EMAIL, Long.class);
+        } else {
+            query = em.createNamedQuery(Contact.COUNT_BY_EMAIL_EXCLUDING_ID, Long.class).setParameter("id", id);
+        }
+        return query.setParameter("email", email).getSingleResult() > 0;
+    }
+
+    /**
+     * <p>Returns the Contacts with a first name, ordered by last name.<p/>
+     *
+     * <p>First names are not unique, so at most <code>limit</code> of them are read.<p/>
+     *
+     * @param firstName The firstName field of the Contacts to be returned
+     * @param limit The maximum number of Contacts to return
+     * @return The Contacts with the specified firstName, may be empty
+     */
+    @ReplicaRead
+    List<Contact> findByFirstName(String firstName, int limit) {
+        return reader().createNamedQuery(Contact.FIND_BY_FIRST_NAME, Contact.class).setParameter("firstName", firstName)
+            .setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * <p>Returns the Contacts with a last name, ordered by first name.<p/>
+     *
+     * <p>Last names are not unique, so at most <code>limit</code> of them are read.<p/>
+     *
+     * @param lastName The lastName field of the Contacts to be returned
+     * @param limit The maximum number of Contacts to return
+     * @return The Contacts with the specified lastName, may be empty
+     */
+    @ReplicaRead
+    List<Contact> findByLastName(String lastName, int limit) {
+        return reader().createNamedQuery(Contact.FIND_BY_LAST_NAME, Contact.class).setParameter("lastName", lastName)
+            .setMaxResults(limit).getResultList();
     }
 
     /**
@@ -130,67 +290,125 @@ public class ContactRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Contact create(Contact contact) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("ContactRepository.create() - Creating " + contact.getFirstName() + " " + contact.getLastName());
+        log.info("ContactRepository.create() - creating", "firstName", contact.getFirstName(), "lastName", contact.getLastName());
         
         // Write the contact to the database.
         em.persist(contact);
+        // Flush now rather than at commit, so the statement is timed as part of the request (see RequestTimings).
+        RequestTimings.flush(em);
         
         return contact;
     }
 
     /**
-     * <p>Updates an existing Contact object in the application database with the provided Contact object.</p>
-     * 
-     * <p>{@link javax.persistence.EntityManager#merge(Object) merge(Object)} creates a new instance of your entity,
-     * copies the state from the supplied entity, and makes the new copy managed. The instance you pass in will not be
-     * managed (any changes you make will not be part of the transaction - unless you call merge again).</p>
-     * 
-     * <p>merge(Object) however must have an object with the @Id already generated.</p>
-     * 
-     * @param contact The Contact object to be merged with an existing Contact
-     * @return The Contact that has been merged
+     * <p>Updates an existing Contact in the application database with the provided Contact object, in one UPDATE statement.</p>
+     *
+     * <p>The stored Contact is not read first. When the version the client last read is given, the row is only updated if
+     * it still has that version, so a concurrent change is never silently overwritten (optimistic locking). The version
+     * is moved on and the new one is set on the Contact. A bulk UPDATE bypasses the persistence context, so Hibernate
+     * evicts the Contact second-level cache region rather than a single entry.</p>
+     *
+     * @param contact The Contact object, with the @Id of the Contact to update
+     * @param version The version the stored Contact must have, or null to update it whatever its version
+     * @return true if the Contact was updated; false if there is no Contact with this id, or it has another version
      * @throws ConstraintViolationException, ValidationException, Exception
      */
-    Contact update(Contact contact) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("ContactRepository.update() - Updating " + contact.getFirstName() + " " + contact.getLastName());
-        
-        // Either update the contact or add it if it can't be found.
-        em.merge(contact);
-        
-        return contact;
+    boolean update(Contact contact, Long version) throws ConstraintViolationException, ValidationException, Exception {
+        log.info("ContactRepository.update() - updating", "firstName", contact.getFirstName(), "lastName", contact.getLastName(), "version", version);
+
+        Query query;
+        if (version == null) {
+            query = em.createNamedQuery(Contact.UPDATE);
+        } else {
+            query = em.createNamedQuery(Contact.UPDATE_VERSION).setParameter("version", version);
+        }
+        contact.touch();
+        query.setParameter("id", contact.getId())
+            .setParameter("firstName", contact.getFirstName())
+            .setParameter("lastName", contact.getLastName())
+            .setParameter("email", contact.getEmail())
+            .setParameter("phoneNumber", contact.getPhoneNumber())
+            .setParameter("birthDate", contact.getBirthDate(), TemporalType.DATE)
+            .setParameter("state", contact.getState())
+            .setParameter("lastModified", contact.getLastModified(), TemporalType.TIMESTAMP);
+
+        if (RequestTimings.executeUpdate(query) == 0) {
+            return false;
+        }
+        if (version != null) {
+            contact.setVersion(version + 1);
+        }
+        return true;
     }
 
     /**
-     * <p>Deletes the provided Contact object from the application database if found there</p>
+     * <p>Returns which of the given ids belong to a Contact, reading only the ids, so a bulk delete can name the Contacts it
+     * removes.</p>
      *
-     * @param contact The Contact object to be removed from the application database
-     * @return The Contact object that has been successfully removed from the application database; or null
-     * @throws Exception
+     * @param ids The ids to look for, not empty
+     * @return The ids of the Contacts found
      */
-    Contact delete(Contact contact) throws Exception {
-        log.info("ContactRepository.delete() - Deleting " + contact.getFirstName() + " " + contact.getLastName());
-        
-        if (contact.getId() != null) {
-            /*
-             * The Hibernate session (aka EntityManager's persistent context) is closed and invalidated after the commit(), 
-             * because it is bound to a transaction. The object goes into a detached status. If you open a new persistent 
-             * context, the object isn't known as in a persistent state in this new context, so you have to merge it. 
-             * 
-             * Merge sees that the object has a primary key (id), so it knows it is not new and must hit the database 
-             * to reattach it. 
-             * 
-             * Note, there is NO remove method which would just take a primary key (id) and a entity class as argument. 
-             * You first need an object in a persistent state to be able to delete it.
-             * 
-             * Therefore we merge first and then we can remove it.
-             */
-            em.remove(em.merge(contact));
-            
-        } else {
-            log.info("ContactRepository.delete() - No ID was found so can't Delete.");
-        }
-        
-        return contact;
+    List<Long> findIdsByIds(Collection<Long> ids) {
+        return em.createNamedQuery(Contact.FIND_IDS_BY_IDS, Long.class).setParameter("ids", ids).getResultList();
+    }
+
+    /**
+     * <p>Deletes the Contact with the given id with a single DELETE statement, without loading it first.</p>
+     *
+     * <p>Like any bulk statement this bypasses the persistence context, and Hibernate evicts the Contact second-level
+     * cache region.</p>
+     *
+     * @param id The id of the Contact to delete
+     * @return The number of Contacts deleted, 0 if there is no Contact with this id
+     */
+    int deleteById(Long id) {
+        log.info("ContactRepository.deleteById() - deleting", "id", id);
+        return RequestTimings.executeUpdate(em.createNamedQuery(Contact.DELETE_BY_ID).setParameter("id", id));
+    }
+
+    /**
+     * <p>Deletes the Contacts with the given ids with a single DELETE statement, without loading them first.</p>
+     *
+     * @param ids The ids of the Contacts to delete, not empty
+     * @return The number of Contacts deleted, ids that match no Contact are not counted
+     */
+    int deleteByIds(Collection<Long> ids) {
+        log.info("ContactRepository.deleteByIds() - deleting", "ids", ids.size());
+        return RequestTimings.executeUpdate(em.createNamedQuery(Contact.DELETE_BY_IDS).setParameter("ids", ids));
+    }
+
+    /**
+     * <p>Returns the distinct area codes of the Contacts that currently have the given state.</p>
+     *
+     * @param state The state to look for, e.g. {@link org.jboss.quickstarts.wfk.areacode.AreaCodeResolver#PENDING}
+     * @param maxResults The maximum number of area codes to return
+     * @return List of three digit area codes
+     */
+    List<String> findAreaCodesByState(String state, int maxResults) {
+        return em.createNamedQuery(Contact.FIND_AREA_CODES_BY_STATE, String.class)
+            .setParameter("state", state)
+            .setMaxResults(maxResults)
+            .getResultList();
     }
 
+    /**
+     * <p>Sets the state of every Contact in an area code that still has the old state, in one UPDATE statement.</p>
+     *
+     * @param areaCode The three digit area code
+     * @param oldState The state to replace
+     * @param state The new state
+     * @return The number of Contacts updated
+     */
+    int updateStateByAreaCode(String areaCode, String oldState, String state) {
+        return em.createNamedQuery(Contact.UPDATE_STATE_BY_AREA_CODE)
+            .setParameter("state", state)
+            .setParameter("oldState", oldState)
+            .setParameter("areaCodePrefix", "(" + areaCode + ")%")
+            .executeUpdate();
+    }
+
+    // The EntityManager of a @ReplicaRead, the replica's if the read has been routed to it
+    private EntityManager reader() {
+        return ReadRouting.select(em, replica);
+    }
 }
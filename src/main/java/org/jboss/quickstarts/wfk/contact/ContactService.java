@@ -17,26 +17,29 @@
 package org.jboss.quickstarts.wfk.contact;
 
 
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.utils.HttpClientUtils;
-import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.jboss.quickstarts.wfk.areacode.AreaCodeResolver;
+import org.jboss.quickstarts.wfk.util.EntitiesDeleted;
+import org.jboss.quickstarts.wfk.util.Log;
+import org.jboss.quickstarts.wfk.util.Projection;
+import org.jboss.quickstarts.wfk.util.Revision;
 
 import javax.enterprise.context.Dependent;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
-import javax.inject.Named;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
+import javax.persistence.Tuple;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
-import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import java.util.logging.Logger;
 
 /**
  * <p>This Service assumes the Control responsibility in the ECB pattern.</p>
@@ -50,6 +53,8 @@ import java.util.logging.Logger;
  * @author Joshua Wilson
  * @see ContactValidator
  * @see ContactRepository
+ * @see AreaCodeResolver
+ * @see ContactSearchIndex
  */
 
 //@Dependent annotation designates the default scope, listed here so that you know what scope is being used.
@@ -57,7 +62,7 @@ import java.util.logging.Logger;
 public class ContactService {
 
     @Inject
-    private @Named("logger") Logger log;
+    private Log log;
 
     @Inject
     private ContactValidator validator;
@@ -66,7 +71,16 @@ public class ContactService {
     private ContactRepository crud;
 
     @Inject
-    private @Named("httpClient") CloseableHttpClient httpClient;
+    private AreaCodeResolver areaCodes;
+
+    @Inject
+    private ContactSearchIndex searchIndex;
+
+    @Inject
+    private Event<Contact> contactChanges;
+
+    @Inject
+    private Event<EntitiesDeleted> deletions;
     
     /**
      * <p>Returns a List of all persisted {@link Contact} objects, sorted alphabetically by last name.<p/>
@@ -77,6 +91,49 @@ public class ContactService {
         return crud.findAllOrderedByName();
     }
 
+    /**
+     * <p>Returns one page of persisted {@link Contact} objects, sorted alphabetically by last name, starting after the
+     * given key.<p/>
+     *
+     * @param lastName The lastName of the last Contact on the previous page, or null for the first page
+     * @param firstName The firstName of the last Contact on the previous page
+     * @param id The id of the last Contact on the previous page
+     * @param maxResults The maximum number of Contacts to return
+     * @return List of Contact objects
+     */
+    List<Contact> findPageOrderedByName(String lastName, String firstName, Long id, int maxResults) {
+        return crud.findPageOrderedByName(lastName, firstName, id, maxResults);
+    }
+
+    /**
+     * <p>Returns the id, version and last modified time of each Contact on a page, see
+     * {@link ContactRepository#findRevisionPageOrderedByName}.<p/>
+     *
+     * @param lastName The lastName of the last Contact on the previous page, or null for the first page
+     * @param firstName The firstName of the last Contact on the previous page
+     * @param id The id of the last Contact on the previous page
+     * @param maxResults The maximum number of Revisions to return
+     * @return List of Revisions
+     */
+    List<Revision> findRevisionPageOrderedByName(String lastName, String firstName, Long id, int maxResults) {
+        return crud.findRevisionPageOrderedByName(lastName, firstName, id, maxResults);
+    }
+
+    /**
+     * <p>Returns only the requested fields of one page of Contacts, see
+     * {@link ContactRepository#findPageOrderedByName(String, String, Long, int, Projection)}.<p/>
+     *
+     * @param lastName The lastName of the last Contact on the previous page, or null for the first page
+     * @param firstName The firstName of the last Contact on the previous page
+     * @param id The id of the last Contact on the previous page
+     * @param maxResults The maximum number of Contacts to return
+     * @param projection The fields to read
+     * @return List of tuples
+     */
+    List<Tuple> findPageOrderedByName(String lastName, String firstName, Long id, int maxResults, Projection projection) {
+        return crud.findPageOrderedByName(lastName, firstName, id, maxResults, projection);
+    }
+
     /**
      * <p>Returns a single Contact object, specified by a Long id.<p/>
      * 
@@ -100,27 +157,75 @@ public class ContactService {
     }
 
     /**
-     * <p>Returns a single Contact object, specified by a String firstName.<p/>
+     * <p>Returns the id, version and last modified time of the Contact with the given id, without loading it.<p/>
      *
-     * <p>If there is more then one, only the first will be returned.<p/>
-     * 
-     * @param firstName The firstName field of the Contact to be returned
-     * @return The first Contact with the specified firstName
+     * @param id The id of the Contact
+     * @return The Revision, or null if there is no such Contact
      */
-    Contact findByFirstName(String firstName) {
-        return crud.findByFirstName(firstName);
+    Revision findRevisionById(Long id) {
+        return crud.findRevisionById(id);
     }
 
     /**
-     * <p>Returns a single Contact object, specified by a String lastName.<p/>
+     * <p>Returns the id, version and last modified time of the Contact with the given email, without loading it.<p/>
      *
-     * <p>If there is more then one, only the first will be returned.<p/>
-     * 
-     * @param lastName The lastName field of the Contact to be returned
-     * @return The first Contact with the specified lastName
+     * @param email The email of the Contact
+     * @return The Revision, or null if there is no such Contact
+     */
+    Revision findRevisionByEmail(String email) {
+        return crud.findRevisionByEmail(email);
+    }
+
+    /**
+     * <p>Returns the Contacts with a first name, ordered by last name.<p/>
+     *
+     * @param firstName The firstName field of the Contacts to be returned
+     * @param limit The maximum number of Contacts to return
+     * @return The Contacts with the specified firstName, may be empty
+     */
+    List<Contact> findByFirstName(String firstName, int limit) {
+        return crud.findByFirstName(firstName, limit);
+    }
+
+    /**
+     * <p>Returns the Contacts with a last name, ordered by first name.<p/>
+     *
+     * @param lastName The lastName field of the Contacts to be returned
+     * @param limit The maximum number of Contacts to return
+     * @return The Contacts with the specified lastName, may be empty
      */
-    Contact findByLastName(String lastName) {
-        return crud.findByFirstName(lastName);
+    List<Contact> findByLastName(String lastName, int limit) {
+        return crud.findByLastName(lastName, limit);
+    }
+
+    /**
+     * <p>Returns the Contacts with a first name, last name, full name or email starting with the query.<p/>
+     *
+     * <p>The matches are found in the {@link ContactSearchIndex}, and only they are read from the database, with one
+     * query.</p>
+     *
+     * @param query The start of the name or email, case and accents are ignored
+     * @param limit The maximum number of Contacts to return
+     * @return List of Contact objects, in the order of the index
+     */
+    List<Contact> search(String query, int limit) {
+        List<Long> ids = searchIndex.search(query, limit);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Contact> found = new HashMap<Long, Contact>();
+        for (Contact contact : crud.findByIds(ids)) {
+            found.put(contact.getId(), contact);
+        }
+        List<Contact> contacts = new ArrayList<Contact>(found.size());
+        for (Long id : ids) {
+            Contact contact = found.get(id);
+            if (contact != null) {
+                contacts.add(contact);
+            }
+        }
+        return contacts;
     }
 
     /**
@@ -133,90 +238,95 @@ public class ContactService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Contact create(Contact contact) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("ContactService.create() - Creating " + contact.getFirstName() + " " + contact.getLastName());
+        log.info("ContactService.create() - creating", "firstName", contact.getFirstName(), "lastName", contact.getLastName());
         
         // Check to make sure the data fits with the parameters in the Contact model and passes validation.
         validator.validateContact(contact);
 
-    /*    //Perform a rest call to get the state of the contact from the allareacodes.com API
-        URI uri = new URIBuilder()
-                .setScheme("http")
-                .setHost("www.allareacodes.com")
-                .setPath("/api/1.0/api.json")
-                .setParameter("npa", contact.getPhoneNumber().substring(1,4))
-                .setParameter("tracking_email", "h.firth@ncl.ac.uk")
-                .setParameter("tracking_url", "http://www.ncl.ac.uk/undergraduate/modules/module/CSC8104")
-                .build();
-        HttpGet req = new HttpGet(uri);
-        CloseableHttpResponse response = httpClient.execute(req);
-        String responseBody = EntityUtils.toString(response.getEntity());
-        JSONObject responseJson = new JSONObject(responseBody);
-        JSONArray areaCodes = responseJson.getJSONArray("area_codes");
-        contact.setState(areaCodes.getJSONObject(0).getString("state"));
-        HttpClientUtils.closeQuietly(response);
-
-*/
-        contact.setState("unknown");
+        // Look up the state from the area code. Known area codes are answered from memory; in asynchronous mode an unknown
+        // one is stored as "pending" and resolved later by the ContactStateEnricher, so no HTTP call is made in here.
+        contact.setState(areaCodes.stateFor(contact.getPhoneNumber()));
+
         // Write the contact to the database.
-        return crud.create(contact);
+        crud.create(contact);
+
+        contactChanges.fire(contact);
+        return contact;
     }
 
     /**
      * <p>Updates an existing Contact object in the application database with the provided Contact object.<p/>
      *
      * <p>Validates the data in the provided Contact object using a ContactValidator object.<p/>
+     *
+     * <p>The Contact is updated with a single UPDATE statement, without reading it first. If no row is updated, an
+     * EntityNotFoundException is thrown when there is no Contact with this id, and an OptimisticLockException when it
+     * has been changed since the client read it.</p>
      * 
      * @param contact The Contact object to be passed as an update to the application database
+     * @param version The version the Contact must still have, or null to update it whatever its version
      * @return The Contact object that has been successfully updated in the application database
      * @throws ConstraintViolationException, ValidationException, Exception
      */
-    Contact update(Contact contact) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("ContactService.update() - Updating " + contact.getFirstName() + " " + contact.getLastName());
+    Contact update(Contact contact, Long version) throws ConstraintViolationException, ValidationException, Exception {
+        log.info("ContactService.update() - updating", "firstName", contact.getFirstName(), "lastName", contact.getLastName());
         
         // Check to make sure the data fits with the parameters in the Contact model and passes validation.
         validator.validateContact(contact);
 
-     /*   //Perform a rest call to get the state of the contact from the allareacodes.com API
-        URI uri = new URIBuilder()
-                .setScheme("http")
-                .setHost("www.allareacodes.com")
-                .setPath("/api/1.0/api.json")
-                .setParameter("npa", contact.getPhoneNumber().substring(1,4))
-                .setParameter("tracking_email", "h.firth@ncl.ac.uk")
-                .setParameter("tracking_url", "http://www.ncl.ac.uk/undergraduate/modules/module/CSC8104")
-                .build();
-        HttpGet req = new HttpGet(uri);
-        CloseableHttpResponse response = httpClient.execute(req);
-        String responseBody = EntityUtils.toString(response.getEntity());
-        JSONObject responseJson = new JSONObject(responseBody);
-        JSONArray areaCodes = responseJson.getJSONArray("area_codes");
-        contact.setState(areaCodes.getJSONObject(0).getString("state"));
-        HttpClientUtils.closeQuietly(response);
-*/
-        contact.setState("unknown");
-        // Either update the contact or add it if it can't be found.
-        return crud.update(contact);
-    }
-
-    /**
-     * <p>Deletes the provided Contact object from the application database if found there.<p/>
+        // Look up the state from the area code, see create(Contact).
+        contact.setState(areaCodes.stateFor(contact.getPhoneNumber()));
+
+        // Update the contact in one statement, only if it still has the version the client read.
+        if (!crud.update(contact, version)) {
+            throw notUpdated(contact);
+        }
+
+        contactChanges.fire(contact);
+        return contact;
+    }
+
+    /**
+     * <p>Explains why an update changed no rows: the Contact was deleted, or has been changed since it was read.</p>
+     */
+    private PersistenceException notUpdated(Contact contact) {
+        if (crud.findRevisionById(contact.getId()) == null) {
+            return new EntityNotFoundException("No contact with id " + contact.getId());
+        }
+        return new OptimisticLockException("The contact has been changed since it was read", null, contact);
+    }
+
+    /**
+     * <p>Deletes the Contact with the given id, with a single DELETE statement.<p/>
      * 
-     * @param contact The Contact object to be removed from the application database
-     * @return The Contact object that has been successfully removed from the application database; or null
-     * @throws Exception
+     * @param id The id of the Contact to be removed from the application database
+     * @return The number of Contacts deleted, 0 if there is no Contact with this id
      */
-    Contact delete(Contact contact) throws Exception {
-        log.info("ContactService.delete() - Deleting " + contact.getFirstName() + " " + contact.getLastName());
-        
-        Contact deletedContact = null;
-        
-        if (contact.getId() != null) {
-            deletedContact = crud.delete(contact);
-        } else {
-            log.info("ContactService.delete() - No ID was found so can't Delete.");
+    int deleteById(Long id) {
+        log.info("ContactService.deleteById() - deleting", "id", id);
+        int deleted = crud.deleteById(id);
+        if (deleted > 0) {
+            deletions.fire(new EntitiesDeleted(Contact.class, Collections.singleton(id)));
         }
-        
-        return deletedContact;
+        return deleted;
+    }
+
+    /**
+     * <p>Deletes the Contacts with the given ids, with a single DELETE statement. The ids that belong to a Contact are
+     * read first, and only those are deleted and passed on in the {@link EntitiesDeleted} event.<p/>
+     * 
+     * @param ids The ids of the Contacts to be removed from the application database, not empty
+     * @return The number of Contacts deleted
+     */
+    int deleteByIds(Collection<Long> ids) {
+        log.info("ContactService.deleteByIds() - deleting", "ids", ids.size());
+        List<Long> found = crud.findIdsByIds(ids);
+        if (found.isEmpty()) {
+            return 0;
+        }
+        int deleted = crud.deleteByIds(found);
+        deletions.fire(new EntitiesDeleted(Contact.class, found));
+        return deleted;
     }
 
 }
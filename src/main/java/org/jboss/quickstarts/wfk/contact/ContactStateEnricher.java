@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.contact;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.annotation.Resource;
+import javax.ejb.Schedule;
+import javax.ejb.SessionContext;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+
+import org.jboss.quickstarts.wfk.areacode.AreaCodeResolver;
+import org.jboss.quickstarts.wfk.util.Log;
+
+/**
+ * <p>Fills in the state of Contacts that were written while their area code was still unknown.</p>
+ *
+ * <p>When the {@link AreaCodeResolver} runs asynchronously, new Contacts with an uncached area code are stored with the
+ * state {@link AreaCodeResolver#PENDING}. Every ten seconds this timer collects the pending area codes, resolves each
+ * one once (a single API call serves every Contact sharing it) and updates all of its Contacts with one bulk UPDATE.</p>
+ *
+ * <p>The API calls are made outside any transaction, so a slow answer holds no database connection or row locks; each
+ * UPDATE then runs in a short transaction of its own.</p>
+ *
+ * <p>If the API cannot be reached the Contacts simply stay pending and are retried on the next run.</p>
+ *
+ * @author Joshua Wilson
+ * @see AreaCodeResolver
+ */
+@Singleton
+public class ContactStateEnricher {
+
+    /** The maximum number of area codes resolved per run. */
+    static final int BATCH_SIZE = 50;
+
+    @Inject
+    private Log log;
+
+    @Inject
+    private ContactRepository crud;
+
+    @Inject
+    private AreaCodeResolver areaCodes;
+
+    @Resource
+    private SessionContext context;
+
+    @Schedule(hour = "*", minute = "*", second = "*/10", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void enrichPendingContacts() {
+        if (!areaCodes.isAsync()) {
+            return;
+        }
+
+        List<String> pending = crud.findAreaCodesByState(AreaCodeResolver.PENDING, BATCH_SIZE);
+        ContactStateEnricher self = context.getBusinessObject(ContactStateEnricher.class);
+        for (String npa : pending) {
+            String state;
+            try {
+                state = areaCodes.resolve(npa);
+            } catch (IOException e) {
+                log.warning("ContactStateEnricher - could not resolve area code, will retry", "npa", npa, "exception", e);
+                continue;
+            }
+            self.setState(npa, state);
+        }
+    }
+
+    /**
+     * <p>Sets the state of the Contacts of an area code that are still pending, in a transaction of its own.</p>
+     *
+     * @param npa The three digit area code
+     * @param state The state it was resolved to
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void setState(String npa, String state) {
+        int updated = crud.updateStateByAreaCode(npa, AreaCodeResolver.PENDING, state);
+        log.fine("ContactStateEnricher - set state", "npa", npa, "state", state, "contacts", updated);
+    }
+}
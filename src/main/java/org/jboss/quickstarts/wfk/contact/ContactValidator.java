@@ -20,12 +20,14 @@ import java.util.HashSet;
 import java.util.Set;
 
 import javax.inject.Inject;
-import javax.persistence.NoResultException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 import javax.validation.Validator;
 
+import org.jboss.quickstarts.wfk.metrics.Phase;
+import org.jboss.quickstarts.wfk.metrics.RequestTimings;
+
 /**
  * <p>This class provides methods to check Contact objects against arbitrary requirements.</p>
  * 
@@ -55,16 +57,21 @@ public class ContactValidator {
      * @throws ValidationException If contact with the same email already exists
      */
     void validateContact(Contact contact) throws ConstraintViolationException, ValidationException {
-        // Create a bean validator and check for issues.
-        Set<ConstraintViolation<Contact>> violations = validator.validate(contact);
+        long started = System.nanoTime();
+        try {
+            // Create a bean validator and check for issues.
+            Set<ConstraintViolation<Contact>> violations = validator.validate(contact);
 
-        if (!violations.isEmpty()) {
-            throw new ConstraintViolationException(new HashSet<ConstraintViolation<?>>(violations));
-        }
+            if (!violations.isEmpty()) {
+                throw new ConstraintViolationException(new HashSet<ConstraintViolation<?>>(violations));
+            }
 
-        // Check the uniqueness of the email address
-        if (emailAlreadyExists(contact.getEmail(), contact.getId())) {
-            throw new ValidationException("Unique Email Violation");
+            // Check the uniqueness of the email address
+            if (emailAlreadyExists(contact.getEmail(), contact.getId())) {
+                throw new ValidationException("Unique Email Violation");
+            }
+        } finally {
+            RequestTimings.record(Phase.VALIDATION, started);
         }
     }
 
@@ -73,31 +80,14 @@ public class ContactValidator {
      * "@UniqueConstraint(columnNames = "email")" constraint from the Contact class.</p>
      * 
      * <p>Since Update will being using an email that is already in the database we need to make sure that it is the email
-     * from the record being updated.</p>
+     * from the record being updated, so the record with the given id is left out of the check. This is one query and no
+     * exception is thrown when the email is free.</p>
      * 
      * @param email The email to check is unique
      * @param id The user id to check the email against if it was found
      * @return boolean which represents whether the email was found, and if so if it belongs to the user with id
      */
     boolean emailAlreadyExists(String email, Long id) {
-        Contact contact = null;
-        Contact contactWithID = null;
-        try {
-            contact = crud.findByEmail(email);
-        } catch (NoResultException e) {
-            // ignore
-        }
-
-        if (contact != null && id != null) {
-            try {
-                contactWithID = crud.findById(id);
-                if (contactWithID != null && contactWithID.getEmail().equals(email)) {
-                    contact = null;
-                }
-            } catch (NoResultException e) {
-                // ignore
-            }
-        }
-        return contact != null;
+        return crud.existsByEmail(email, id);
     }
 }
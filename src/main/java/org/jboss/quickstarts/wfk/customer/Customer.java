@@ -28,8 +28,15 @@ import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
+
 import org.hibernate.validator.constraints.Email;
 import org.hibernate.validator.constraints.NotEmpty;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.QueryHints;
+import org.jboss.quickstarts.wfk.util.Versioned;
 import javax.validation.constraints.Future;
 
 /**
@@ -47,17 +54,70 @@ import javax.validation.constraints.Future;
  */
 @Entity
 @NamedQueries({
-    @NamedQuery(name = Customer.FIND_ALL, query = "SELECT c FROM Customer c ORDER BY c.lastName ASC, c.firstName ASC"),
-    @NamedQuery(name = Customer.FIND_BY_EMAIL, query = "SELECT c FROM Customer c WHERE c.email = :email")
+    @NamedQuery(name = Customer.FIND_ALL, query = "SELECT c FROM Customer c ORDER BY c.lastName ASC, c.firstName ASC, c.id ASC"),
+    @NamedQuery(name = Customer.FIND_PAGE_AFTER, query = "SELECT c FROM Customer c WHERE c.lastName > :lastName"
+        + " OR (c.lastName = :lastName AND (c.firstName > :firstName OR (c.firstName = :firstName AND c.id > :id)))"
+        + " ORDER BY c.lastName ASC, c.firstName ASC, c.id ASC"),
+    @NamedQuery(name = Customer.FIND_BY_FIRST_NAME, query = "SELECT c FROM Customer c WHERE c.firstName = :firstName"
+        + " ORDER BY c.lastName ASC, c.id ASC"),
+    @NamedQuery(name = Customer.FIND_BY_LAST_NAME, query = "SELECT c FROM Customer c WHERE c.lastName = :lastName"
+        + " ORDER BY c.firstName ASC, c.id ASC"),
+    @NamedQuery(name = Customer.FIND_BY_EMAIL, query = "SELECT c FROM Customer c WHERE c.email = :email"),
+    @NamedQuery(name = Customer.COUNT_BY_EMAIL, query = "SELECT COUNT(c) FROM Customer c WHERE c.email = :email"),
+    @NamedQuery(name = Customer.COUNT_BY_EMAIL_EXCLUDING_ID, query = "SELECT COUNT(c) FROM Customer c WHERE c.email = :email AND c.id <> :id"),
+    @NamedQuery(name = Customer.REVISION_BY_ID, query = "SELECT NEW org.jboss.quickstarts.wfk.util.Revision(c.id, c.version, c.lastModified) FROM Customer c WHERE c.id = :id",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Customer.REVISION_BY_EMAIL, query = "SELECT NEW org.jboss.quickstarts.wfk.util.Revision(c.id, c.version, c.lastModified) FROM Customer c WHERE c.email = :email",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Customer.REVISIONS, query = "SELECT NEW org.jboss.quickstarts.wfk.util.Revision(c.id, c.version, c.lastModified) FROM Customer c ORDER BY c.lastName ASC, c.firstName ASC, c.id ASC",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Customer.REVISIONS_AFTER, query = "SELECT NEW org.jboss.quickstarts.wfk.util.Revision(c.id, c.version, c.lastModified) FROM Customer c WHERE c.lastName > :lastName"
+        + " OR (c.lastName = :lastName AND (c.firstName > :firstName OR (c.firstName = :firstName AND c.id > :id)))"
+        + " ORDER BY c.lastName ASC, c.firstName ASC, c.id ASC",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Customer.UPDATE, query = Customer.UPDATE_SET + " WHERE c.id = :id"),
+    @NamedQuery(name = Customer.UPDATE_VERSION, query = Customer.UPDATE_SET + " WHERE c.id = :id AND c.version = :version"),
+    @NamedQuery(name = Customer.DELETE_BY_ID, query = "DELETE FROM Customer c WHERE c.id = :id"),
+    @NamedQuery(name = Customer.FIND_IDS_BY_IDS, query = "SELECT c.id FROM Customer c WHERE c.id IN :ids"),
+    @NamedQuery(name = Customer.DELETE_BY_IDS, query = "DELETE FROM Customer c WHERE c.id IN :ids"),
+    @NamedQuery(name = Customer.FIND_BY_IDS, query = "SELECT c FROM Customer c WHERE c.id IN :ids"),
+    @NamedQuery(name = Customer.FIND_SEARCH_WORDS, query = "SELECT c.id, c.firstName, c.lastName, c.email FROM Customer c")
 })
 @XmlRootElement
 @Table(name = "Customer", uniqueConstraints = @UniqueConstraint(columnNames = "email"))
-public class Customer implements Serializable {
+// The list is read in name order, by page and by first or last name, so each of those has an index that returns the
+// rows already sorted.
+@org.hibernate.annotations.Table(appliesTo = "Customer", indexes = {
+    @Index(name = "customer_name_idx", columnNames = {"last_name", "first_name", "id"}),
+    @Index(name = "customer_first_name_idx", columnNames = {"first_name", "last_name", "id"})
+})
+public class Customer implements Serializable, Versioned {
     /** Default value included to remove warning. Remove or modify at will. **/
     private static final long serialVersionUID = 1L;
     
     public static final String FIND_ALL = "Customer.findAll";
+    public static final String FIND_PAGE_AFTER = "Customer.findPageAfter";
+    public static final String FIND_BY_FIRST_NAME = "Customer.findByFirstName";
+    public static final String FIND_BY_LAST_NAME = "Customer.findByLastName";
     public static final String FIND_BY_EMAIL = "Customer.findByEmail";
+    public static final String COUNT_BY_EMAIL = "Customer.countByEmail";
+    public static final String COUNT_BY_EMAIL_EXCLUDING_ID = "Customer.countByEmailExcludingId";
+    public static final String REVISION_BY_ID = "Customer.revisionById";
+    public static final String REVISION_BY_EMAIL = "Customer.revisionByEmail";
+    public static final String REVISIONS = "Customer.revisions";
+    public static final String REVISIONS_AFTER = "Customer.revisionsAfter";
+    public static final String UPDATE = "Customer.update";
+    public static final String UPDATE_VERSION = "Customer.updateVersion";
+    public static final String DELETE_BY_ID = "Customer.deleteById";
+    public static final String FIND_IDS_BY_IDS = "Customer.findIdsByIds";
+    public static final String DELETE_BY_IDS = "Customer.deleteByIds";
+    public static final String FIND_BY_IDS = "Customer.findByIds";
+    public static final String FIND_SEARCH_WORDS = "Customer.findSearchWords";
+
+    // The SET clause of UPDATE and UPDATE_VERSION, see Contact
+    private static final String UPDATE_SET = "UPDATE Customer c SET c.firstName = :firstName, c.lastName = :lastName, c.email = :email,"
+        + " c.phoneNumber = :phoneNumber,"
+        + " c.version = c.version + 1, c.lastModified = :lastModified";
 
     /*
      * The  error messages match the ones in the UI so that the user isn't confused by two similar error messages for
@@ -69,9 +129,26 @@ public class Customer implements Serializable {
      * variable occurs it can be sent to the correct input field on the form.  
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    @GeneratedValue(generator = "customer_id")
+    @GenericGenerator(name = "customer_id", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = {
+        @Parameter(name = "sequence_name", value = "customer_seq"),
+        @Parameter(name = "initial_value", value = "20100"),
+        @Parameter(name = "increment_size", value = "50"),
+        @Parameter(name = "optimizer", value = "pooled-lo")
+    })
     private Long id;
 
+    // Moved on by every update; with lastModified it makes the ETag and Last-Modified headers (see Revision)
+    @Version
+    @Column(name = "version")
+    @JsonIgnore
+    private long version;
+
+    @Column(name = "last_modified")
+    @Temporal(TemporalType.TIMESTAMP)
+    @JsonIgnore
+    private Date lastModified;
+
     @NotNull
     @Size(min = 1, max = 25)
     @Pattern(regexp = "[A-Za-z-']+", message = "Please use a name without numbers or specials")
@@ -136,5 +213,23 @@ public class Customer implements Serializable {
         this.phoneNumber = phoneNumber;
     }
 
-   
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @Override
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new Date();
+    }
 }
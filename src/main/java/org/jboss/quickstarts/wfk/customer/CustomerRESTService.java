@@ -21,28 +21,40 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.logging.Logger;
 
 import javax.ejb.NoSuchEntityException;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
-import javax.inject.Named;
+import javax.persistence.EntityNotFoundException;
 import javax.persistence.NoResultException;
+import javax.persistence.OptimisticLockException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.WebApplicationException;
 
+import org.jboss.quickstarts.wfk.util.BulkDelete;
+import org.jboss.quickstarts.wfk.util.KeysetPage;
+import org.jboss.quickstarts.wfk.util.Log;
+import org.jboss.quickstarts.wfk.util.PrefixIndex;
+import org.jboss.quickstarts.wfk.util.Revision;
+
 /**
  * <p>This class exposes the functionality of {@link CustomerService} over HTTP endpoints as a RESTful resource via
  * JAX-RS.</p>
@@ -71,19 +83,74 @@ import javax.ws.rs.WebApplicationException;
 @Stateless
 public class CustomerRESTService {
     @Inject
-    private @Named("logger") Logger log;
+    private Log log;
     
     @Inject
     private CustomerService service;
     
     /**
-     * <p>Search for and return all the Contacts.  They are sorted alphabetically by name.</p>
+     * <p>Search for and return one page of Customers.  They are sorted alphabetically by name.</p>
+     *
+     * <p>If there are more Customers the cursor of the next page is returned in the X-Next-Cursor and Link headers.</p>
+     *
+     * <p>The page is sent with an ETag, and 304 (Not Modified) is returned if it is still current, see {@link Revision}.</p>
      * 
-     * @return A Response containing a list of Contacts
+     * @param limit The maximum number of Customers to return, see {@link KeysetPage#limit(Integer)}
+     * @param after The cursor returned with the previous page, or null for the first page
+     * @param request The request, used to evaluate its If-None-Match header
+     * @param headers The request headers
+     * @param uriInfo The request URI, used to build the link to the next page
+     * @return A Response containing a list of Customers
+     */
+    @GET
+    public Response retrieveAllContacts(@QueryParam("limit") Integer limit, @QueryParam("after") String after,
+            @Context Request request, @Context HttpHeaders headers, @Context UriInfo uriInfo) {
+        int pageSize = KeysetPage.limit(limit);
+        String[] key = KeysetPage.decodeCursor(after, 3);
+
+        // Only the ids and versions of the page are read to decide whether the client's copy is still current.
+        List<Revision> revisions = key == null
+            ? service.findRevisionPageOrderedByName(null, null, null, pageSize + 1)
+            : service.findRevisionPageOrderedByName(key[0], key[1], KeysetPage.parseId(key[2]), pageSize + 1);
+        Revision page = Revision.ofPage(revisions);
+        Response.ResponseBuilder notModified = page.evaluatePreconditions(request, headers);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
+        List<Customer> customers = key == null
+            ? service.findPageOrderedByName(null, null, null, pageSize + 1)
+            : service.findPageOrderedByName(key[0], key[1], KeysetPage.parseId(key[2]), pageSize + 1);
+
+        // Tagged with what was actually read, in case the page changed since its revisions were.
+        page = Revision.ofPage(customers);
+        String nextCursor = null;
+        if (KeysetPage.hasMore(customers, pageSize)) {
+            customers = customers.subList(0, pageSize);
+            Customer last = customers.get(pageSize - 1);
+            nextCursor = KeysetPage.encodeCursor(last.getLastName(), last.getFirstName(), String.valueOf(last.getId()));
+        }
+        return page.tag(KeysetPage.ok(customers, nextCursor, uriInfo)).build();
+    }
+
+    /**
+     * <p>Search for and return the Customers whose first name, last name, full name or email starts with the query, as
+     * the user types it.</p>
+     *
+     * <p>The matches are found in an in-memory index, see {@link CustomerSearchIndex}, so the Customer table is not
+     * scanned.</p>
+     *
+     * @param query The start of the name or email, case and accents are ignored
+     * @param limit The maximum number of Customers to return, see {@link PrefixIndex#limit(Integer)}
+     * @return A Response containing the list of Customers found
      */
     @GET
-    public Response retrieveAllContacts() {
-        List<Customer> customers = service.findAllOrderedByName();
+    @Path("/search")
+    public Response searchCustomers(@QueryParam("q") String query, @QueryParam("limit") Integer limit) {
+        if (query == null) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        List<Customer> customers = service.search(query, PrefixIndex.limit(limit));
         return Response.ok(customers).build();
     }
 
@@ -95,37 +162,61 @@ public class CustomerRESTService {
      *
      *
      * @param email The string parameter value provided as a Contact's email
-     * @return A Response containing a single Contact
+     * @param request The request, used to evaluate its If-None-Match and If-Modified-Since headers
+     * @param headers The request headers
+     * @return A Response containing a single Contact, or 304 (Not Modified) if the client's copy is current
      */
     @GET
     @Path("/{email:^.+@.+$}")
-    public Response retrieveContactsByEmail(@PathParam("email") String email) {
+    public Response retrieveContactsByEmail(@PathParam("email") String email, @Context Request request,
+            @Context HttpHeaders headers) {
+        Revision revision = service.findRevisionByEmail(email);
+        if (revision == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        Response.ResponseBuilder notModified = revision.evaluatePreconditions(request, headers);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
         Customer customer;
         try {
         	customer = service.findByEmail(email);
         } catch (NoResultException e) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
-        return Response.ok(customer).build();
+        return Revision.of(customer).tag(Response.ok(customer)).build();
     }
     
     /**
      * <p>Search for and return a Contact identified by id.</p>
      * 
      * @param id The long parameter value provided as a Contact's id
-     * @return A Response containing a single Contact
+     * @param request The request, used to evaluate its If-None-Match and If-Modified-Since headers
+     * @param headers The request headers
+     * @return A Response containing a single Contact, or 304 (Not Modified) if the client's copy is current
      */
     @GET
     @Path("/{id:[0-9]+}")
-    public Response retrieveContactById(@PathParam("id") long id) {
+    public Response retrieveContactById(@PathParam("id") long id, @Context Request request,
+            @Context HttpHeaders headers) {
+        Revision revision = service.findRevisionById(id);
+        if (revision == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        Response.ResponseBuilder notModified = revision.evaluatePreconditions(request, headers);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
         Customer customer = service.findById(id);
         if (customer == null) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
-        log.info("findById " + id + ": found Customer = " + customer.getFirstName() + " " + customer.getLastName() + " " + customer.getEmail() + " " + customer.getPhoneNumber() 
-        		+ " " + customer.getId());
+        log.info("findById found Customer", "firstName", customer.getFirstName(), "lastName", customer.getLastName(), "email", customer.getEmail(),
+            "phoneNumber", customer.getPhoneNumber(), "id", customer.getId());
         
-        return Response.ok(customer).build();
+        return Revision.of(customer).tag(Response.ok(customer)).build();
     }
 
     /**
@@ -138,8 +229,8 @@ public class CustomerRESTService {
     @SuppressWarnings("unused")
     @POST
     public Response createContact(Customer customer) {
-        log.info("createCustomer started. Customer = " + customer.getFirstName() + " " + customer.getLastName() + " " + customer.getEmail() + " " + customer.getPhoneNumber()
-        		+ " " + customer.getId());
+        log.info("createCustomer started", "firstName", customer.getFirstName(), "lastName", customer.getLastName(), "email", customer.getEmail(),
+            "phoneNumber", customer.getPhoneNumber(), "id", customer.getId());
         if (customer == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
@@ -153,20 +244,20 @@ public class CustomerRESTService {
             // Create a "Resource Created" 201 Response and pass the contact back in case it is needed.
             builder = Response.status(Response.Status.CREATED).entity(customer);
             
-            log.info("createCustomer completed. Customer = " + customer.getFirstName() + " " + customer.getLastName() + " " + customer.getEmail() + " " + customer.getPhoneNumber() 
-            		+ " " + customer.getId());
+            log.info("createCustomer completed", "firstName", customer.getFirstName(), "lastName", customer.getLastName(), "email", customer.getEmail(),
+                "phoneNumber", customer.getPhoneNumber(), "id", customer.getId());
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.info("createCustomer failed", "exception", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.info("createCustomer failed", "exception", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("email", "That email is already used, please use a unique email");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.info("createCustomer failed", "exception", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -180,46 +271,54 @@ public class CustomerRESTService {
      * <p>Updates a contact with the ID provided in the Contact. Performs validation, and will return a JAX-RS response with either 200 ok,
      * or with a map of fields, and related errors.</p>
      * 
-     * @param contact The Contact object, constructed automatically from JSON input, to be <i>updated</i> via {@link CustomerService#update(Customer)}
+     * @param contact The Contact object, constructed automatically from JSON input, to be <i>updated</i> via {@link CustomerService#update(Customer, Long)}
      * @param id The long parameter value provided as the id of the Contact to be updated
+     * @param ifMatch The ETag of the Customer the client read, optional; the update fails with 412 (Precondition Failed) if it has changed since
      * @return A Response indicating the outcome of the create operation
      */
     @PUT
     @Path("/{id:[0-9][0-9]*}")
-    public Response updateCustomer(@PathParam("id") long id, Customer customer) {
+    public Response updateCustomer(@PathParam("id") long id, @HeaderParam("If-Match") String ifMatch, Customer customer) {
         if (customer == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
-        log.info("updateCustomer started. Customer = "+ customer.getFirstName() + " " + customer.getLastName() + " " + customer.getEmail() + " " + customer.getPhoneNumber() 
-        		+ " " + customer.getId());
+        log.info("updateCustomer started", "firstName", customer.getFirstName(), "lastName", customer.getLastName(), "email", customer.getEmail(),
+            "phoneNumber", customer.getPhoneNumber(), "id", customer.getId());
 
         if (customer.getId() != id) {
             // The client attempted to update the read-only Id. This is not permitted.
             Response response = Response.status(Response.Status.CONFLICT).entity("The customer ID cannot be modified").build();
             throw new WebApplicationException(response);
         }
-        if (service.findById(customer.getId()) == null) {
-            // Verify if the contact exists. Return 404, if not present.
-            throw new WebApplicationException(Response.Status.NOT_FOUND);
-        }
+        // The version is not part of the JSON: the client sends the ETag it read in If-Match instead.
+        Long version = Revision.expectedVersion(ifMatch, id);
         
         Response.ResponseBuilder builder = null;
         
         try {
             // Apply the changes the Contact.
-            service.update(customer);
+            service.update(customer, version);
 
-            // Create an OK Response and pass the contact back in case it is needed.
-            builder = Response.ok(customer);
+            // Create an OK Response and pass the customer back, with its new ETag when the version is known.
+            builder = version == null ? Response.ok(customer) : Revision.of(customer).tag(Response.ok(customer));
 
-            log.info("updateCustomer completed. Customer = " + customer.getFirstName() + " " + customer.getLastName() + " " + customer.getEmail() + " " + customer.getPhoneNumber() 
-            		+ " " + customer.getId());
+            log.info("updateCustomer completed", "firstName", customer.getFirstName(), "lastName", customer.getLastName(), "email", customer.getEmail(),
+                "phoneNumber", customer.getPhoneNumber(), "id", customer.getId());
+        } catch (EntityNotFoundException e) {
+            // Verify if the customer exists. Return 404, if not present.
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        } catch (OptimisticLockException e) {
+            log.info("updateCustomer failed", "exception", e);
+            // The customer has been changed since the client read it (If-Match), so it has to be read again.
+            Map<String, String> responseObj = new HashMap<String, String>();
+            responseObj.put("error", "The customer has been changed by someone else, please reload it and try again");
+            builder = Response.status(Response.Status.PRECONDITION_FAILED).entity(responseObj);
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.info("updateCustomer failed", "exception", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.info("updateCustomer failed", "exception", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("email", "That email is already used, please use a unique email");
@@ -227,7 +326,7 @@ public class CustomerRESTService {
             responseObj.put("anotherError", "You can find this error message in /src/main/java/org/jboss/quickstarts/wfk/rest/ContactRESTService.java line 242.");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.info("updateCustomer failed", "exception", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -239,6 +338,71 @@ public class CustomerRESTService {
 
    
     
+    /**
+     * <p>Deletes a customer using the ID provided. If the ID is not present then nothing can be deleted.</p>
+     *
+     * <p>The customer is deleted with a single DELETE statement, without being read first, and its bookings with another.
+     * Will return a JAX-RS response with either 204 No Content, 404 Not Found or a map of errors.</p>
+     * 
+     * @param id The Long parameter value provided as the id of the Customer to be deleted
+     * @return A Response indicating the outcome of the delete operation
+     */
+    @DELETE
+    @Path("/{id:[0-9][0-9]*}")
+    public Response deleteCustomer(@PathParam("id") Long id) {
+        log.info("deleteCustomer started", "id", id);
+        Response.ResponseBuilder builder = null;
+
+        try {
+            if (service.deleteById(id) > 0) {
+                builder = Response.noContent();
+                log.info("deleteCustomer completed", "id", id);
+            } else {
+                log.info("deleteCustomer found no customer", "id", id);
+                builder = Response.status(Response.Status.NOT_FOUND);
+            }
+        } catch (Exception e) {
+            log.info("deleteCustomer failed", "exception", e);
+            // Handle generic exceptions
+            Map<String, String> responseObj = new HashMap<String, String>();
+            responseObj.put("error", e.getMessage());
+            builder = Response.status(Response.Status.BAD_REQUEST).entity(responseObj);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * <p>Deletes many customers with a single DELETE statement, e.g. <code>DELETE /rest/customers?id=1&amp;id=2</code>. Their
+     * bookings are deleted with them.</p>
+     *
+     * <p>Will return a JAX-RS response with either 200 OK and the number of customers deleted, e.g.
+     * <code>{"requested": 2, "deleted": 1}</code>, or with a map of errors.</p>
+     *
+     * @param ids The ids of the customers to delete, at most {@value BulkDelete#MAX_IDS}
+     * @return A Response indicating the outcome of the delete operation
+     */
+    @DELETE
+    public Response deleteCustomers(@QueryParam("id") List<Long> ids) {
+        Set<Long> distinct = BulkDelete.ids(ids);
+        log.info("deleteCustomers started", "ids", distinct.size());
+        Response.ResponseBuilder builder = null;
+
+        try {
+            int deleted = service.deleteByIds(distinct);
+            builder = BulkDelete.ok(distinct, deleted);
+            log.info("deleteCustomers completed", "ids", distinct.size(), "deleted", deleted);
+        } catch (Exception e) {
+            log.info("deleteCustomers failed", "exception", e);
+            // Handle generic exceptions
+            Map<String, String> responseObj = new HashMap<String, String>();
+            responseObj.put("error", e.getMessage());
+            builder = Response.status(Response.Status.BAD_REQUEST).entity(responseObj);
+        }
+
+        return builder.build();
+    }
+
     /**
      * <p>Creates a JAX-RS "Bad Request" response including a map of all violation fields, and their message. This can be used
      * by calling client applications to display violations to users.<p/>
@@ -247,7 +411,7 @@ public class CustomerRESTService {
      * @return A Bad Request (400) Response containing all violation messages
      */
     private Response.ResponseBuilder createViolationResponse(Set<ConstraintViolation<?>> violations) {
-        log.fine("Validation completed. violations found: " + violations.size());
+        log.fine("Validation completed", "violations", violations.size());
 
         Map<String, String> responseObj = new HashMap<String, String>();
 
@@ -17,17 +17,22 @@
 package org.jboss.quickstarts.wfk.customer;
 
 import javax.inject.Inject;
-import javax.inject.Named;
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TemporalType;
 import javax.persistence.TypedQuery;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Root;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.logging.Logger;
+
+import org.jboss.quickstarts.wfk.metrics.RequestTimings;
+import org.jboss.quickstarts.wfk.util.Log;
+import org.jboss.quickstarts.wfk.util.ReadRouting;
+import org.jboss.quickstarts.wfk.util.Replica;
+import org.jboss.quickstarts.wfk.util.ReplicaRead;
+import org.jboss.quickstarts.wfk.util.Revision;
 
 /**
  * <p>This is a Repository class and connects the Service/Control layer (see {@link CustomerService} with the
@@ -43,29 +48,106 @@ import java.util.logging.Logger;
 public class CustomerRepository {
 
     @Inject
-    private @Named("logger") Logger log;
+    private Log log;
 
     @Inject
     private EntityManager em;
+
+    @Inject
+    @Replica
+    private EntityManager replica;
     
     /**
      * <p>Returns a List of all persisted {@link Customer} objects, sorted alphabetically by last name.</p>
      * 
      * @return List of Contact objects
      */
+    @ReplicaRead
     List<Customer> findAllOrderedByName() {
-        TypedQuery<Customer> query = em.createNamedQuery(Customer.FIND_ALL, Customer.class); 
+        TypedQuery<Customer> query = reader().createNamedQuery(Customer.FIND_ALL, Customer.class); 
         return query.getResultList();
     }
 
+    /**
+     * <p>Returns one page of persisted {@link Customer} objects, sorted alphabetically by last name, first name and id.</p>
+     *
+     * <p>The page starts right after the given (lastName, firstName, id) key, so the database can seek straight to it
+     * instead of skipping rows with an OFFSET. Pass a null lastName to read the first page.</p>
+     *
+     * @param lastName The lastName of the last Customer on the previous page, or null for the first page
+     * @param firstName The firstName of the last Customer on the previous page
+     * @param id The id of the last Customer on the previous page
+     * @param maxResults The maximum number of Customers to return
+     * @return List of Customer objects
+     */
+    @ReplicaRead
+    List<Customer> findPageOrderedByName(String lastName, String firstName, Long id, int maxResults) {
+        TypedQuery<Customer> query;
+        if (lastName == null) {
+            query = reader().createNamedQuery(Customer.FIND_ALL, Customer.class);
+        } else {
+            query = reader().createNamedQuery(Customer.FIND_PAGE_AFTER, Customer.class)
+                .setParameter("lastName", lastName)
+                .setParameter("firstName", firstName)
+                .setParameter("id", id);
+        }
+        return query.setMaxResults(maxResults).getResultList();
+    }
+
+    /**
+     * <p>Returns the id, version and last modified time of each Customer on a page, in the same order and with the same
+     * seek as {@link #findPageOrderedByName(String, String, Long, int)}, without loading the Customers.</p>
+     *
+     * @param lastName The lastName of the last Customer on the previous page, or null for the first page
+     * @param firstName The firstName of the last Customer on the previous page
+     * @param id The id of the last Customer on the previous page
+     * @param maxResults The maximum number of Revisions to return
+     * @return List of Revisions
+     */
+    @ReplicaRead
+    List<Revision> findRevisionPageOrderedByName(String lastName, String firstName, Long id, int maxResults) {
+        TypedQuery<Revision> query;
+        if (lastName == null) {
+            query = reader().createNamedQuery(Customer.REVISIONS, Revision.class);
+        } else {
+            query = reader().createNamedQuery(Customer.REVISIONS_AFTER, Revision.class)
+                .setParameter("lastName", lastName)
+                .setParameter("firstName", firstName)
+                .setParameter("id", id);
+        }
+        return query.setMaxResults(maxResults).getResultList();
+    }
+
     /**
      * <p>Returns a single Contact object, specified by a Long id.<p/>
      *
      * @param id The id field of the Contact to be returned
      * @return The Contact with the specified id
      */
+    @ReplicaRead
     Customer findById(Long id) {
-        return em.find(Customer.class, id);
+        return reader().find(Customer.class, id);
+    }
+
+    /**
+     * <p>Returns the Customers with the given ids, with one query.</p>
+     *
+     * @param ids The ids of the Customers, not empty
+     * @return The Customers found, in no particular order
+     */
+    @ReplicaRead
+    List<Customer> findByIds(Collection<Long> ids) {
+        return reader().createNamedQuery(Customer.FIND_BY_IDS, Customer.class).setParameter("ids", ids).getResultList();
+    }
+
+    /**
+     * <p>Returns the id, first name, last name and email of every Customer, reading only those columns, to build the
+     * {@link CustomerSearchIndex}.</p>
+     *
+     * @return One array of [id, firstName, lastName, email] per Customer
+     */
+    List<Object[]> findSearchWords() {
+        return em.createNamedQuery(Customer.FIND_SEARCH_WORDS, Object[].class).getResultList();
     }
 
     /**
@@ -76,45 +158,85 @@ public class CustomerRepository {
      * @param email The email field of the Contact to be returned
      * @return The first Contact with the specified email
      */
+    @ReplicaRead
     Customer findByEmail(String email) {
-        TypedQuery<Customer> query = em.createNamedQuery(Customer.FIND_BY_EMAIL, Customer.class).setParameter("email", email); 
+        TypedQuery<Customer> query = reader().createNamedQuery(Customer.FIND_BY_EMAIL, Customer.class).setParameter("email", email); 
         return query.getSingleResult();
     }
 
     /**
-     * <p>Returns a single Contact object, specified by a String firstName.<p/>
+     * <p>Returns the id, version and last modified time of the Customer with the given id, without loading it.</p>
+     *
+     * @param id The id of the Customer
+     * @return The Revision, or null if there is no such Customer
+     */
+    @ReplicaRead
+    Revision findRevisionById(Long id) {
+        List<Revision> revisions = reader().createNamedQuery(Customer.REVISION_BY_ID, Revision.class)
+            .setParameter("id", id).getResultList();
+        return revisions.isEmpty() ? null : revisions.get(0);
+    }
+
+    /**
+     * <p>Returns the id, version and last modified time of the Customer with the given email, without loading it.</p>
+     *
+     * @param email The email of the Customer
+     * @return The Revision, or null if there is no such Customer
+     */
+    @ReplicaRead
+    Revision findRevisionByEmail(String email) {
+        List<Revision> revisions = reader().createNamedQuery(Customer.REVISION_BY_EMAIL, Revision.class)
+            .setParameter("email", email).getResultList();
+        return revisions.isEmpty() ? null : revisions.get(0);
+    }
+
+    /**
+     * <p>Checks whether another Customer already uses an email address, with a single COUNT query.</p>
      *
-     * <p>If there is more then one, only the first will be returned.<p/>
+     * <p>Unlike {@link #findByEmail(String)} this never throws when there is no match, which is the common case.</p>
      *
-     * @param firstName The firstName field of the Contact to be returned
-     * @return The first Contact with the specified firstName
+     * @param email The email address to look for
+     * @param id The id of the Customer being updated, which is allowed to own the email; or null for a new Customer
+     * @return true if a Customer other than the one with the given id has the email address
      */
-    Customer findByFirstName(String firstName) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Customer> criteria = cb.createQuery(Customer.class);
-        Root<Customer> customer = criteria.from(Customer.class);
-        // Swap criteria statements if you would like to try out type-safe criteria queries, a new feature in JPA 2.0.
-        // criteria.select(contact).where(cb.equal(contact.get(Contact_.firstName), firstName));
-        criteria.select(customer).where(cb.equal(customer.get("firstName"), firstName));
-        return em.createQuery(criteria).getSingleResult();
+    boolean existsByEmail(String email, Long id) {
+        TypedQuery<Long> query;
+        if (id == null) {
+            query = em.createNamedQuery(Customer.COUNT_BY_EMAIL, Long.class);
+        } else {
+            query = em.createNamedQuery(Customer.COUNT_BY_EMAIL_EXCLUDING_ID, Long.class).setParameter("id", id);
+        }
+        return query.setParameter("email", email).getSingleResult() > 0;
     }
 
     /**
-     * <p>Returns a single Contact object, specified by a String lastName.<p/>
+     * <p>Returns the Customers with a first name, ordered by last name.<p/>
      *
-     * <p>If there is more then one, only the first will be returned.<p/>
+     * <p>First names are not unique, so at most <code>limit</code> of them are read.<p/>
      *
-     * @param lastName The lastName field of the Contact to be returned
-     * @return The first Contact with the specified lastName
+     * @param firstName The firstName field of the Customers to be returned
+     * @param limit The maximum number of Customers to return
+     * @return The Customers with the specified firstName, may be empty
      */
-    Customer findByLastName(String lastName) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Customer> criteria = cb.createQuery(Customer.class);
-        Root<Customer> customer = criteria.from(Customer.class);
-        // Swap criteria statements if you would like to try out type-safe criteria queries, a new feature in JPA 2.0.
-        // criteria.select(contact).where(cb.equal(contact.get(Contact_.lastName), lastName));
-        criteria.select(customer).where(cb.equal(customer.get("lastName"), lastName));
-        return em.createQuery(criteria).getSingleResult();
+    @ReplicaRead
+    List<Customer> findByFirstName(String firstName, int limit) {
+        return reader().createNamedQuery(Customer.FIND_BY_FIRST_NAME, Customer.class).setParameter("firstName", firstName)
+            .setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * <p>Returns the Customers with a last name, ordered by first name.<p/>
+     *
+     * <p>Last names are not unique, so at most <code>limit</code> of them are read.<p/>
+     *
+     * @param lastName The lastName field of the Customers to be returned
+     * @param limit The maximum number of Customers to return
+     * @return The Customers with the specified lastName, may be empty
+     */
+    @ReplicaRead
+    List<Customer> findByLastName(String lastName, int limit) {
+        return reader().createNamedQuery(Customer.FIND_BY_LAST_NAME, Customer.class).setParameter("lastName", lastName)
+            .setMaxResults(limit).getResultList();
     }
 
     /**
@@ -130,36 +252,91 @@ public class CustomerRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Customer create(Customer customer) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("CustomerRepository.create() - Creating " + customer.getFirstName() + " " + customer.getLastName());
+        log.info("CustomerRepository.create() - creating", "firstName", customer.getFirstName(), "lastName", customer.getLastName());
         
         // Write the contact to the database.
         em.persist(customer);
+        // Flush now rather than at commit, so the statement is timed as part of the request (see RequestTimings).
+        RequestTimings.flush(em);
         
         return customer;
     }
 
     /**
-     * <p>Updates an existing Contact object in the application database with the provided Contact object.</p>
-     * 
-     * <p>{@link javax.persistence.EntityManager#merge(Object) merge(Object)} creates a new instance of your entity,
-     * copies the state from the supplied entity, and makes the new copy managed. The instance you pass in will not be
-     * managed (any changes you make will not be part of the transaction - unless you call merge again).</p>
-     * 
-     * <p>merge(Object) however must have an object with the @Id already generated.</p>
-     * 
-     * @param contact The Contact object to be merged with an existing Contact
-     * @return The Contact that has been merged
+     * <p>Updates an existing Customer in the application database with the provided Customer object, in one UPDATE statement.</p>
+     *
+     * <p>The stored Customer is not read first; with a version, only a row that still has it is updated. See
+     * ContactRepository.update() for how the versions and the second-level cache are handled.</p>
+     *
+     * @param customer The Customer object, with the @Id of the Customer to update
+     * @param version The version the stored Customer must have, or null to update it whatever its version
+     * @return true if the Customer was updated; false if there is no Customer with this id, or it has another version
      * @throws ConstraintViolationException, ValidationException, Exception
      */
-    Customer update(Customer customer) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("CustomerRepository.update() - Updating " + customer.getFirstName() + " " + customer.getLastName());
-        
-        // Either update the contact or add it if it can't be found.
-        em.merge(customer);
-        
-        return customer;
+    boolean update(Customer customer, Long version) throws ConstraintViolationException, ValidationException, Exception {
+        log.info("CustomerRepository.update() - updating", "firstName", customer.getFirstName(), "lastName", customer.getLastName(), "version", version);
+
+        Query query;
+        if (version == null) {
+            query = em.createNamedQuery(Customer.UPDATE);
+        } else {
+            query = em.createNamedQuery(Customer.UPDATE_VERSION).setParameter("version", version);
+        }
+        customer.touch();
+        query.setParameter("id", customer.getId())
+            .setParameter("firstName", customer.getFirstName())
+            .setParameter("lastName", customer.getLastName())
+            .setParameter("email", customer.getEmail())
+            .setParameter("phoneNumber", customer.getPhoneNumber())
+            .setParameter("lastModified", customer.getLastModified(), TemporalType.TIMESTAMP);
+
+        if (RequestTimings.executeUpdate(query) == 0) {
+            return false;
+        }
+        if (version != null) {
+            customer.setVersion(version + 1);
+        }
+        return true;
     }
 
-   
+    /**
+     * <p>Returns which of the given ids belong to a Customer, reading only the ids, so a bulk delete can name the Customers it
+     * removes.</p>
+     *
+     * @param ids The ids to look for, not empty
+     * @return The ids of the Customers found
+     */
+    List<Long> findIdsByIds(Collection<Long> ids) {
+        return em.createNamedQuery(Customer.FIND_IDS_BY_IDS, Long.class).setParameter("ids", ids).getResultList();
+    }
+
+    /**
+     * <p>Deletes the Customer with the given id with a single DELETE statement, without loading it first.</p>
+     *
+     * <p>Like any bulk statement this bypasses the persistence context, and Hibernate evicts the Customer second-level
+     * cache region.</p>
+     *
+     * @param id The id of the Customer to delete
+     * @return The number of Customers deleted, 0 if there is no Customer with this id
+     */
+    int deleteById(Long id) {
+        log.info("CustomerRepository.deleteById() - deleting", "id", id);
+        return RequestTimings.executeUpdate(em.createNamedQuery(Customer.DELETE_BY_ID).setParameter("id", id));
+    }
+
+    /**
+     * <p>Deletes the Customers with the given ids with a single DELETE statement, without loading them first.</p>
+     *
+     * @param ids The ids of the Customers to delete, not empty
+     * @return The number of Customers deleted, ids that match no Customer are not counted
+     */
+    int deleteByIds(Collection<Long> ids) {
+        log.info("CustomerRepository.deleteByIds() - deleting", "ids", ids.size());
+        return RequestTimings.executeUpdate(em.createNamedQuery(Customer.DELETE_BY_IDS).setParameter("ids", ids));
+    }
 
+    // The EntityManager of a @ReplicaRead, the replica's if the read has been routed to it
+    private EntityManager reader() {
+        return ReadRouting.select(em, replica);
+    }
 }
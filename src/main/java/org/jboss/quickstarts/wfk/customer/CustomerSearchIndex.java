@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.customer;
+
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+
+import org.jboss.quickstarts.wfk.util.EntitiesDeleted;
+import org.jboss.quickstarts.wfk.util.Log;
+import org.jboss.quickstarts.wfk.util.PrefixIndex;
+
+/**
+ * <p>An in-memory {@link PrefixIndex} of the first names, last names and emails of the Customers, which answers
+ * <code>GET /rest/customers/search?q=</code> without scanning the Customer table.</p>
+ *
+ * <p>The index is built when the application starts, from a query that reads only those columns, and then kept up to
+ * date from the Customers fired by {@link CustomerService} after each successful commit, and from {@link EntitiesDeleted}
+ * events. A Customer changed directly in the database is not seen until the next start.</p>
+ *
+ * @author Joshua Wilson
+ * @see CustomerService#search(String, int)
+ */
+@Singleton
+@Startup
+// The PrefixIndex is thread safe, so searches do not need to take turns on the singleton.
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class CustomerSearchIndex {
+
+    @Inject
+    private Log log;
+
+    @Inject
+    private CustomerRepository crud;
+
+    private final PrefixIndex index = new PrefixIndex();
+
+    @PostConstruct
+    void rebuild() {
+        index.clear();
+        List<Object[]> rows = crud.findSearchWords();
+        for (Object[] row : rows) {
+            index.put((Long) row[0], wordsOf((String) row[1], (String) row[2], (String) row[3]));
+        }
+        log.info("CustomerSearchIndex - indexed", "customers", index.size());
+    }
+
+    /**
+     * <p>Finds the Customers with a first name, last name, full name or email starting with the query.</p>
+     *
+     * @param query The start of the name or email, case and accents are ignored
+     * @param limit The maximum number of ids to return
+     * @return The ids of the Customers found
+     */
+    public List<Long> search(String query, int limit) {
+        return index.search(query, limit);
+    }
+
+    public void onCustomerChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) Customer customer) {
+        index.put(customer.getId(), wordsOf(customer.getFirstName(), customer.getLastName(), customer.getEmail()));
+    }
+
+    public void onCustomersDeleted(@Observes(during = TransactionPhase.AFTER_SUCCESS) EntitiesDeleted deleted) {
+        if (deleted.getType() != Customer.class) {
+            return;
+        }
+        for (Long id : deleted.getIds()) {
+            index.remove(id);
+        }
+    }
+
+    // The full name is indexed too, so "jane d" finds Jane Doe
+    private static String[] wordsOf(String firstName, String lastName, String email) {
+        return new String[] {firstName, lastName, firstName + " " + lastName, email};
+    }
+}
@@ -24,19 +24,31 @@ import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
+import org.jboss.quickstarts.wfk.booking.BookingService;
+import org.jboss.quickstarts.wfk.util.EntitiesDeleted;
+import org.jboss.quickstarts.wfk.util.Log;
+import org.jboss.quickstarts.wfk.util.Revision;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import javax.enterprise.context.Dependent;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import java.util.logging.Logger;
 
 /**
  * <p>This Service assumes the Control responsibility in the ECB pattern.</p>
@@ -50,6 +62,7 @@ import java.util.logging.Logger;
  * @author Joshua Wilson
  * @see CustomerValidator
  * @see CustomerRepository
+ * @see CustomerSearchIndex
  */
 
 //@Dependent annotation designates the default scope, listed here so that you know what scope is being used.
@@ -57,7 +70,7 @@ import java.util.logging.Logger;
 public class CustomerService {
 
     @Inject
-    private @Named("logger") Logger log;
+    private Log log;
 
     @Inject
     private CustomerValidator validator;
@@ -65,6 +78,18 @@ public class CustomerService {
     @Inject
     private CustomerRepository crud;
 
+    @Inject
+    private BookingService bookings;
+
+    @Inject
+    private CustomerSearchIndex searchIndex;
+
+    @Inject
+    private Event<Customer> customerChanges;
+
+    @Inject
+    private Event<EntitiesDeleted> deletions;
+
     @Inject
     private @Named("httpClient") CloseableHttpClient httpClient;
     
@@ -77,6 +102,34 @@ public class CustomerService {
         return crud.findAllOrderedByName();
     }
 
+    /**
+     * <p>Returns one page of persisted {@link Customer} objects, sorted alphabetically by last name, starting after the
+     * given key.<p/>
+     *
+     * @param lastName The lastName of the last Customer on the previous page, or null for the first page
+     * @param firstName The firstName of the last Customer on the previous page
+     * @param id The id of the last Customer on the previous page
+     * @param maxResults The maximum number of Customers to return
+     * @return List of Customer objects
+     */
+    List<Customer> findPageOrderedByName(String lastName, String firstName, Long id, int maxResults) {
+        return crud.findPageOrderedByName(lastName, firstName, id, maxResults);
+    }
+
+    /**
+     * <p>Returns the id, version and last modified time of each Customer on a page, see
+     * {@link CustomerRepository#findRevisionPageOrderedByName}.<p/>
+     *
+     * @param lastName The lastName of the last Customer on the previous page, or null for the first page
+     * @param firstName The firstName of the last Customer on the previous page
+     * @param id The id of the last Customer on the previous page
+     * @param maxResults The maximum number of Revisions to return
+     * @return List of Revisions
+     */
+    List<Revision> findRevisionPageOrderedByName(String lastName, String firstName, Long id, int maxResults) {
+        return crud.findRevisionPageOrderedByName(lastName, firstName, id, maxResults);
+    }
+
     /**
      * <p>Returns a single Contact object, specified by a Long id.<p/>
      * 
@@ -100,27 +153,75 @@ public class CustomerService {
     }
 
     /**
-     * <p>Returns a single Contact object, specified by a String firstName.<p/>
+     * <p>Returns the id, version and last modified time of the Customer with the given id, without loading it.<p/>
      *
-     * <p>If there is more then one, only the first will be returned.<p/>
-     * 
-     * @param firstName The firstName field of the Contact to be returned
-     * @return The first Contact with the specified firstName
+     * @param id The id of the Customer
+     * @return The Revision, or null if there is no such Customer
      */
-    Customer findByFirstName(String firstName) {
-        return crud.findByFirstName(firstName);
+    Revision findRevisionById(Long id) {
+        return crud.findRevisionById(id);
     }
 
     /**
-     * <p>Returns a single Contact object, specified by a String lastName.<p/>
+     * <p>Returns the id, version and last modified time of the Customer with the given email, without loading it.<p/>
      *
-     * <p>If there is more then one, only the first will be returned.<p/>
-     * 
-     * @param lastName The lastName field of the Contact to be returned
-     * @return The first Contact with the specified lastName
+     * @param email The email of the Customer
+     * @return The Revision, or null if there is no such Customer
+     */
+    Revision findRevisionByEmail(String email) {
+        return crud.findRevisionByEmail(email);
+    }
+
+    /**
+     * <p>Returns the Customers with a first name, ordered by last name.<p/>
+     *
+     * @param firstName The firstName field of the Customers to be returned
+     * @param limit The maximum number of Customers to return
+     * @return The Customers with the specified firstName, may be empty
      */
-    Customer findByLastName(String lastName) {
-        return crud.findByFirstName(lastName);
+    List<Customer> findByFirstName(String firstName, int limit) {
+        return crud.findByFirstName(firstName, limit);
+    }
+
+    /**
+     * <p>Returns the Customers with a last name, ordered by first name.<p/>
+     *
+     * @param lastName The lastName field of the Customers to be returned
+     * @param limit The maximum number of Customers to return
+     * @return The Customers with the specified lastName, may be empty
+     */
+    List<Customer> findByLastName(String lastName, int limit) {
+        return crud.findByLastName(lastName, limit);
+    }
+
+    /**
+     * <p>Returns the Customers with a first name, last name, full name or email starting with the query.<p/>
+     *
+     * <p>The matches are found in the {@link CustomerSearchIndex}, and only they are read from the database, with one
+     * query.</p>
+     *
+     * @param query The start of the name or email, case and accents are ignored
+     * @param limit The maximum number of Customers to return
+     * @return List of Customer objects, in the order of the index
+     */
+    List<Customer> search(String query, int limit) {
+        List<Long> ids = searchIndex.search(query, limit);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Customer> found = new HashMap<Long, Customer>();
+        for (Customer customer : crud.findByIds(ids)) {
+            found.put(customer.getId(), customer);
+        }
+        List<Customer> customers = new ArrayList<Customer>(found.size());
+        for (Long id : ids) {
+            Customer customer = found.get(id);
+            if (customer != null) {
+                customers.add(customer);
+            }
+        }
+        return customers;
     }
 
     /**
@@ -133,7 +234,7 @@ public class CustomerService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Customer create(Customer customer) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("CustomerService.create() - Creating " + customer.getFirstName() + " " + customer.getLastName());
+        log.info("CustomerService.create() - creating", "firstName", customer.getFirstName(), "lastName", customer.getLastName());
         
         // Check to make sure the data fits with the parameters in the Contact model and passes validation.
         validator.validateCustomer(customer);
@@ -158,20 +259,28 @@ public class CustomerService {
 */
        // customer.setState("unknown");
         // Write the contact to the database.
-        return crud.create(customer);
+        crud.create(customer);
+
+        customerChanges.fire(customer);
+        return customer;
     }
 
     /**
      * <p>Updates an existing Contact object in the application database with the provided Contact object.<p/>
      *
      * <p>Validates the data in the provided Contact object using a ContactValidator object.<p/>
+     *
+     * <p>The Customer is updated with a single UPDATE statement, without reading it first. If no row is updated, an
+     * EntityNotFoundException is thrown when there is no Customer with this id, and an OptimisticLockException when it
+     * has been changed since the client read it.</p>
      * 
      * @param contact The Contact object to be passed as an update to the application database
+     * @param version The version the Customer must still have, or null to update it whatever its version
      * @return The Contact object that has been successfully updated in the application database
      * @throws ConstraintViolationException, ValidationException, Exception
      */
-    Customer update(Customer customer) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("CustomerService.update() - Updating " + customer.getFirstName() + " " + customer.getLastName());
+    Customer update(Customer customer, Long version) throws ConstraintViolationException, ValidationException, Exception {
+        log.info("CustomerService.update() - updating", "firstName", customer.getFirstName(), "lastName", customer.getLastName());
         
         // Check to make sure the data fits with the parameters in the Contact model and passes validation.
         validator.validateCustomer(customer);
@@ -194,8 +303,62 @@ public class CustomerService {
         HttpClientUtils.closeQuietly(response);
 */
        // customer.setState("unknown");
-        // Either update the contact or add it if it can't be found.
-        return crud.update(customer);
+        // Update the customer in one statement, only if it still has the version the client read.
+        if (!crud.update(customer, version)) {
+            throw notUpdated(customer);
+        }
+
+        customerChanges.fire(customer);
+        return customer;
+    }
+
+    /**
+     * <p>Explains why an update changed no rows: the Customer was deleted, or has been changed since it was read.</p>
+     */
+    private PersistenceException notUpdated(Customer customer) {
+        if (crud.findRevisionById(customer.getId()) == null) {
+            return new EntityNotFoundException("No customer with id " + customer.getId());
+        }
+        return new OptimisticLockException("The customer has been changed since it was read", null, customer);
+    }
+
+    /**
+     * <p>Deletes the Customer with the given id, and its Bookings.<p/>
+     *
+     * <p>Bookings refer to their customer by id, so they are deleted explicitly, with one statement, before the Customer
+     * is deleted with another.</p>
+     * 
+     * @param id The id of the Customer to be removed from the application database
+     * @return The number of Customers deleted, 0 if there is no Customer with this id
+     */
+    int deleteById(Long id) {
+        log.info("CustomerService.deleteById() - deleting", "id", id);
+        bookings.deleteByCustomerIds(Collections.singleton(id));
+        int deleted = crud.deleteById(id);
+        if (deleted > 0) {
+            deletions.fire(new EntitiesDeleted(Customer.class, Collections.singleton(id)));
+        }
+        return deleted;
+    }
+
+    /**
+     * <p>Deletes the Customers with the given ids, and their Bookings, see {@link #deleteById(Long)}. The ids that
+     * belong to a Customer are read first, and only those are deleted and passed on in the {@link EntitiesDeleted}
+     * event.<p/>
+     * 
+     * @param ids The ids of the Customers to be removed from the application database, not empty
+     * @return The number of Customers deleted
+     */
+    int deleteByIds(Collection<Long> ids) {
+        log.info("CustomerService.deleteByIds() - deleting", "ids", ids.size());
+        List<Long> found = crud.findIdsByIds(ids);
+        if (found.isEmpty()) {
+            return 0;
+        }
+        bookings.deleteByCustomerIds(found);
+        int deleted = crud.deleteByIds(found);
+        deletions.fire(new EntitiesDeleted(Customer.class, found));
+        return deleted;
     }
 
    
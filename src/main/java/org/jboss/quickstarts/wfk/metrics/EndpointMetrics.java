@@ -0,0 +1,99 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>The request count, error counts by status and latency histograms of one REST end point, i.e. one HTTP method and
+ * path template such as <code>GET /contacts/{id}</code>.</p>
+ *
+ * @author Joshua Wilson
+ * @see RequestMetrics
+ */
+public class EndpointMetrics {
+
+    private final String method;
+
+    private final String path;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final ConcurrentMap<Integer, AtomicLong> errorsByStatus = new ConcurrentHashMap<Integer, AtomicLong>();
+
+    private final LatencyHistogram duration = new LatencyHistogram();
+
+    private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+
+    EndpointMetrics(String method, String path) {
+        this.method = method;
+        this.path = path;
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * <p>Records a completed request. Statuses of 400 and above are also counted as errors.</p>
+     */
+    public void recordRequest(int status, long nanos) {
+        requests.incrementAndGet();
+        duration.record(nanos);
+        if (status >= 400) {
+            AtomicLong errors = errorsByStatus.get(status);
+            if (errors == null) {
+                AtomicLong created = new AtomicLong();
+                errors = errorsByStatus.putIfAbsent(status, created);
+                if (errors == null) {
+                    errors = created;
+                }
+            }
+            errors.incrementAndGet();
+        }
+    }
+
+    public void recordPhase(Phase phase, long nanos) {
+        phases[phase.ordinal()].record(nanos);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    Map<Integer, AtomicLong> getErrorsByStatus() {
+        return errorsByStatus;
+    }
+
+    LatencyHistogram getDuration() {
+        return duration;
+    }
+
+    LatencyHistogram getPhase(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+}
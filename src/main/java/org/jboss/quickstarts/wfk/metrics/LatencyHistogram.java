@@ -0,0 +1,91 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A lock free latency histogram with fixed buckets, in the shape of a Prometheus histogram: a count per bucket
+ * upper bound, plus the total count and sum.</p>
+ *
+ * <p>The buckets run from 1 ms to 10 s, which covers everything from a cached read to an area code lookup that hits its
+ * timeout.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class LatencyHistogram {
+
+    /** The upper bounds of the buckets, in seconds. The last bucket (+Inf) is implicit. */
+    static final double[] BOUNDS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private static final long[] BOUNDS_NANOS = new long[BOUNDS.length];
+
+    static {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            BOUNDS_NANOS[i] = (long) (BOUNDS[i] * 1e9);
+        }
+    }
+
+    // Counts per bucket, not cumulative; the last one counts everything above the largest bound
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+
+    private final AtomicLong sumNanos = new AtomicLong();
+
+    /**
+     * @param nanos The duration to record
+     */
+    public void record(long nanos) {
+        int bucket = 0;
+        while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        buckets.incrementAndGet(bucket);
+        sumNanos.addAndGet(nanos);
+    }
+
+    /**
+     * <p>Writes the histogram in the Prometheus text format, as the <code>_bucket</code>, <code>_sum</code> and
+     * <code>_count</code> series of a metric.</p>
+     *
+     * @param out Receives the lines
+     * @param name The metric name
+     * @param labels The labels of the series, already formatted as <code>name="value",...</code>, may be empty
+     */
+    public void writeTo(StringBuilder out, String name, String labels) {
+        String separator = labels.length() == 0 ? "" : ",";
+        long cumulative = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            cumulative += buckets.get(i);
+            out.append(name).append("_bucket{").append(labels).append(separator).append("le=\"").append(BOUNDS[i])
+                .append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += buckets.get(BOUNDS.length);
+        out.append(name).append("_bucket{").append(labels).append(separator).append("le=\"+Inf\"} ").append(cumulative)
+            .append('\n');
+        out.append(name).append("_sum{").append(labels).append("} ").append(sumNanos.get() / 1e9).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+}
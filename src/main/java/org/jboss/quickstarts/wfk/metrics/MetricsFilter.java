@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * <p>Records the count, status and duration of every request to the REST services in {@link RequestMetrics}, and
+ * makes the end point available to {@link RequestTimings} while the request runs.</p>
+ *
+ * <p>JAX-RS 1.1 has no request filters of its own, so this is a servlet filter on the same <i>/rest/*</i> path as the
+ * {@link org.jboss.quickstarts.wfk.util.JSONPRequestFilter}. The EJB container runs the REST services on the request
+ * thread, so their phases are recorded against this request. An event stream (see
+ * {@link org.jboss.quickstarts.wfk.stream.ChangeStreamServlet}) is recorded when it has been opened, not when it ends.</p>
+ *
+ * @author Joshua Wilson
+ * @see javax.servlet.Filter
+ */
+@WebFilter(urlPatterns = "/rest/*", asyncSupported = true)
+public class MetricsFilter implements Filter {
+
+    private static final String REST_PATH = "/rest";
+
+    @Inject
+    private RequestMetrics metrics;
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        // Nothing needed
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException,
+        ServletException {
+
+        if (!(request instanceof HttpServletRequest)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        String path = httpRequest.getRequestURI().substring(httpRequest.getContextPath().length());
+        if (path.startsWith(REST_PATH)) {
+            path = path.substring(REST_PATH.length());
+        }
+        EndpointMetrics endpoint = metrics.endpoint(httpRequest.getMethod(), path);
+
+        long started = System.nanoTime();
+        boolean failed = true;
+        RequestTimings.begin(endpoint);
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            RequestTimings.end();
+            int status = failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : ((HttpServletResponse) response).getStatus();
+            endpoint.recordRequest(status, System.nanoTime() - started);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // Nothing to do
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.http.pool.PoolStats;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.jboss.quickstarts.wfk.util.HttpClientPool;
+
+/**
+ * <p>Exposes runtime statistics of the application over HTTP, for monitoring.</p>
+ *
+ * <p>Full path for accessing the metrics is rest/metrics .</p>
+ *
+ * @author Joshua Wilson
+ * @see HttpClientPool
+ * @see RequestMetrics
+ * @see org.hibernate.stat.Statistics
+ */
+@Path("/metrics")
+@Produces(MediaType.APPLICATION_JSON)
+@Stateless
+public class MetricsRESTService {
+
+    /** The media type of the Prometheus text exposition format. */
+    public static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Inject
+    private HttpClientPool httpClientPool;
+
+    @Inject
+    private EntityManager em;
+
+    @Inject
+    private RequestMetrics requestMetrics;
+
+    /**
+     * <p>Returns the request counts, error counts and latency histograms of every REST end point, in the Prometheus
+     * text format, for a Prometheus server to scrape.</p>
+     *
+     * @return A Response containing the metrics, see {@link RequestMetrics#toPrometheus()}
+     */
+    @GET
+    @Produces(PROMETHEUS_TEXT)
+    public Response retrieveRequestMetrics() {
+        return Response.ok(requestMetrics.toPrometheus()).build();
+    }
+
+    /**
+     * <p>Returns the connection counts of the shared HTTP client pool.</p>
+     *
+     * <p>A steadily non-zero <code>pending</code> count means requests are queueing for a connection and the pool
+     * should be enlarged.</p>
+     *
+     * @return A Response containing the leased, pending, available and maximum connection counts
+     */
+    @GET
+    @Path("/http-client")
+    public Response retrieveHttpClientStats() {
+        PoolStats stats = httpClientPool.getTotalStats();
+
+        Map<String, Integer> body = new LinkedHashMap<String, Integer>();
+        body.put("leased", stats.getLeased());
+        body.put("pending", stats.getPending());
+        body.put("available", stats.getAvailable());
+        body.put("max", stats.getMax());
+        body.put("maxPerRoute", httpClientPool.getMaxPerRoute());
+
+        return Response.ok(body).build();
+    }
+
+    /**
+     * <p>Returns the hit, miss and put counts of the Hibernate second-level cache, per region, and of the query
+     * cache.</p>
+     *
+     * @return A Response containing the counts of each cache region and of the query cache
+     */
+    @GET
+    @Path("/cache")
+    public Response retrieveCacheStats() {
+        Statistics statistics = sessionFactory().getStatistics();
+
+        Map<String, Object> regions = new LinkedHashMap<String, Object>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            SecondLevelCacheStatistics regionStatistics = statistics.getSecondLevelCacheStatistics(region);
+            Map<String, Long> counts = new LinkedHashMap<String, Long>();
+            counts.put("hits", regionStatistics.getHitCount());
+            counts.put("misses", regionStatistics.getMissCount());
+            counts.put("puts", regionStatistics.getPutCount());
+            counts.put("elementsInMemory", regionStatistics.getElementCountInMemory());
+            regions.put(region, counts);
+        }
+
+        Map<String, Long> queries = new LinkedHashMap<String, Long>();
+        queries.put("hits", statistics.getQueryCacheHitCount());
+        queries.put("misses", statistics.getQueryCacheMissCount());
+        queries.put("puts", statistics.getQueryCachePutCount());
+
+        Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put("enabled", statistics.isStatisticsEnabled());
+        body.put("regions", regions);
+        body.put("queryCache", queries);
+
+        return Response.ok(body).build();
+    }
+
+    /**
+     * <p>Empties the second-level and query caches, e.g. after the database was changed outside of the application.</p>
+     *
+     * @return A 204 (No Content) Response
+     */
+    @DELETE
+    @Path("/cache")
+    public Response evictCaches() {
+        SessionFactory sessionFactory = sessionFactory();
+        sessionFactory.getCache().evictEntityRegions();
+        sessionFactory.getCache().evictQueryRegions();
+
+        return Response.noContent().build();
+    }
+
+    private SessionFactory sessionFactory() {
+        return em.unwrap(Session.class).getSessionFactory();
+    }
+}
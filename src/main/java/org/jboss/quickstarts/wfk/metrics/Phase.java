@@ -0,0 +1,45 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+/**
+ * <p>The parts of a request that are timed separately, see {@link RequestTimings#record(Phase, long)}.</p>
+ *
+ * @author Joshua Wilson
+ */
+public enum Phase {
+
+    /** Bean Validation and the uniqueness checks of the validators. */
+    VALIDATION("validation"),
+
+    /** Looking up the state of a contact's area code. */
+    AREA_CODE("areacode"),
+
+    /** Flushing the persistence context, or running a bulk UPDATE or DELETE query. */
+    JPA_FLUSH("jpa_flush");
+
+    private final String label;
+
+    private Phase(String label) {
+        this.label = label;
+    }
+
+    /** The value of the <code>phase</code> label. */
+    public String getLabel() {
+        return label;
+    }
+}
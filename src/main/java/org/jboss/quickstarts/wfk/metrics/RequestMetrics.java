@@ -0,0 +1,174 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * <p>Holds the {@link EndpointMetrics} of every REST end point that has been called, and writes them in the
+ * Prometheus text exposition format.</p>
+ *
+ * <p>End points are identified by HTTP method and path template: ids, emails and taxi registrations in the path are
+ * replaced with <code>{id}</code>, <code>{email}</code> and <code>{registration}</code>, so that every contact is counted
+ * under the same <code>GET /contacts/{id}</code>. To bound the memory used by requests to made up paths, no more than
+ * {@value #MAX_ENDPOINTS} end points are tracked; later ones are counted under the path <code>other</code>.</p>
+ *
+ * @author Joshua Wilson
+ * @see MetricsFilter
+ */
+@ApplicationScoped
+public class RequestMetrics {
+
+    static final int MAX_ENDPOINTS = 200;
+
+    private static final Pattern ID = Pattern.compile("[0-9]+");
+
+    private static final Pattern REGISTRATION = Pattern.compile("[a-zA-Z0-9]{7}");
+
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<String, EndpointMetrics>();
+
+    /**
+     * <p>Returns the metrics of an end point, creating them on its first request.</p>
+     *
+     * @param method The HTTP method
+     * @param path The request path below /rest, e.g. /contacts/10001
+     * @return The metrics of the end point the path belongs to
+     */
+    public EndpointMetrics endpoint(String method, String path) {
+        String template = templateOf(path);
+        String key = method + " " + template;
+        EndpointMetrics metrics = endpoints.get(key);
+        if (metrics == null) {
+            if (endpoints.size() >= MAX_ENDPOINTS) {
+                key = method + " other";
+                template = "other";
+                metrics = endpoints.get(key);
+                if (metrics != null) {
+                    return metrics;
+                }
+            }
+            EndpointMetrics created = new EndpointMetrics(method, template);
+            metrics = endpoints.putIfAbsent(key, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * <p>Replaces the variable segments of a request path with the names of the path parameters they fill.</p>
+     */
+    static String templateOf(String path) {
+        String[] segments = path.split("/", -1);
+        StringBuilder template = new StringBuilder();
+        for (int i = 1; i < segments.length; i++) {
+            String segment = segments[i];
+            template.append('/');
+            if (ID.matcher(segment).matches()) {
+                template.append("{id}");
+            } else if (segment.indexOf('@') >= 0) {
+                template.append("{email}");
+            } else if (i == 2 && segments[1].equals("taxis") && REGISTRATION.matcher(segment).matches()) {
+                template.append("{registration}");
+            } else {
+                template.append(segment);
+            }
+        }
+        return template.length() == 0 ? "/" : template.toString();
+    }
+
+    /**
+     * <p>Writes every end point's metrics in the Prometheus text format (version 0.0.4):</p>
+     * <ul>
+     *   <li><code>rest_requests_total</code> - the requests, by method and path</li>
+     *   <li><code>rest_request_errors_total</code> - the requests answered with a status of 400 or above, by method, path
+     *   and status</li>
+     *   <li><code>rest_request_duration_seconds</code> - a histogram of the time spent in the request, by method and
+     *   path</li>
+     *   <li><code>rest_request_phase_duration_seconds</code> - a histogram of the time spent in validation, area code
+     *   lookups and JPA flushes, by method, path and phase</li>
+     * </ul>
+     *
+     * @return The metrics, one sample per line
+     */
+    public String toPrometheus() {
+        List<EndpointMetrics> sorted = new ArrayList<EndpointMetrics>(endpoints.values());
+        Collections.sort(sorted, new Comparator<EndpointMetrics>() {
+            @Override
+            public int compare(EndpointMetrics a, EndpointMetrics b) {
+                int byPath = a.getPath().compareTo(b.getPath());
+                return byPath != 0 ? byPath : a.getMethod().compareTo(b.getMethod());
+            }
+        });
+
+        StringBuilder out = new StringBuilder();
+        out.append("# HELP rest_requests_total Requests to the REST end points.\n");
+        out.append("# TYPE rest_requests_total counter\n");
+        for (EndpointMetrics endpoint : sorted) {
+            out.append("rest_requests_total{").append(labels(endpoint)).append("} ").append(endpoint.getRequests())
+                .append('\n');
+        }
+
+        out.append("# HELP rest_request_errors_total Requests answered with a client or server error status.\n");
+        out.append("# TYPE rest_request_errors_total counter\n");
+        for (EndpointMetrics endpoint : sorted) {
+            for (Map.Entry<Integer, AtomicLong> errors : endpoint.getErrorsByStatus().entrySet()) {
+                out.append("rest_request_errors_total{").append(labels(endpoint)).append(",status=\"")
+                    .append(errors.getKey()).append("\"} ").append(errors.getValue().get()).append('\n');
+            }
+        }
+
+        out.append("# HELP rest_request_duration_seconds Time spent handling a request.\n");
+        out.append("# TYPE rest_request_duration_seconds histogram\n");
+        for (EndpointMetrics endpoint : sorted) {
+            endpoint.getDuration().writeTo(out, "rest_request_duration_seconds", labels(endpoint));
+        }
+
+        out.append("# HELP rest_request_phase_duration_seconds Time spent in each phase of a request.\n");
+        out.append("# TYPE rest_request_phase_duration_seconds histogram\n");
+        for (EndpointMetrics endpoint : sorted) {
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram histogram = endpoint.getPhase(phase);
+                if (histogram.getCount() > 0) {
+                    histogram.writeTo(out, "rest_request_phase_duration_seconds",
+                        labels(endpoint) + ",phase=\"" + phase.getLabel() + "\"");
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static String labels(EndpointMetrics endpoint) {
+        return "method=\"" + escape(endpoint.getMethod()) + "\",path=\"" + escape(endpoint.getPath()) + "\"";
+    }
+
+    // Label values escape backslashes, double quotes and line feeds
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
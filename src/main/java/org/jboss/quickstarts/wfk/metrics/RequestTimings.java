@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+/**
+ * <p>Attributes the time spent in the phases of a request (see {@link Phase}) to the REST end point the request was
+ * made to.</p>
+ *
+ * <p>The {@link MetricsFilter} marks the start and end of each request on its thread; in between, the services,
+ * validators and repositories report their phases with {@link #record(Phase, long)}. Work done outside of a REST
+ * request, such as the background area code enrichment, is not recorded.</p>
+ *
+ * @author Joshua Wilson
+ */
+public final class RequestTimings {
+
+    private static final ThreadLocal<EndpointMetrics> CURRENT = new ThreadLocal<EndpointMetrics>();
+
+    private RequestTimings() {
+    }
+
+    static void begin(EndpointMetrics endpoint) {
+        CURRENT.set(endpoint);
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * <p>Records a phase of the current request.</p>
+     *
+     * @param phase The phase that has just completed
+     * @param startedNanos The value of System.nanoTime() when the phase started
+     */
+    public static void record(Phase phase, long startedNanos) {
+        EndpointMetrics endpoint = CURRENT.get();
+        if (endpoint != null) {
+            endpoint.recordPhase(phase, System.nanoTime() - startedNanos);
+        }
+    }
+
+    /**
+     * <p>Flushes the persistence context, recording the time taken as the {@link Phase#JPA_FLUSH} phase.</p>
+     *
+     * @param em The EntityManager to flush
+     */
+    public static void flush(EntityManager em) {
+        long started = System.nanoTime();
+        try {
+            em.flush();
+        } finally {
+            record(Phase.JPA_FLUSH, started);
+        }
+    }
+
+    /**
+     * <p>Runs an UPDATE or DELETE query, recording the time taken as the {@link Phase#JPA_FLUSH} phase like the statements
+     * of a {@link #flush(EntityManager) flush}.</p>
+     *
+     * @param query The UPDATE or DELETE query to run
+     * @return The number of rows updated or deleted
+     */
+    public static int executeUpdate(Query query) {
+        long started = System.nanoTime();
+        try {
+            return query.executeUpdate();
+        } finally {
+            record(Phase.JPA_FLUSH, started);
+        }
+    }
+}
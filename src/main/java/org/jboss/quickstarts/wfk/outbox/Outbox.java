@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.outbox;
+
+import java.io.IOException;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.jboss.quickstarts.wfk.util.EntitiesDeleted;
+import org.jboss.quickstarts.wfk.util.JacksonConfig;
+
+/**
+ * <p>Writes an {@link OutboxEntry} for every Booking, Customer and Taxi that is created, updated or deleted, in the
+ * transaction that changes it, for {@link OutboxRelay} to pass on to the downstream systems.</p>
+ *
+ * <p>The entries are written from the entities and {@link EntitiesDeleted} events the services already fire. Unlike the
+ * change feed and the search indexes, which wait for the commit, the events are observed as soon as they are fired, so
+ * the entry is inserted in the same transaction as the change: both are committed, or neither is. The services make no
+ * call to the downstream systems, they only insert one more row per change.</p>
+ *
+ * @author Joshua Wilson
+ * @see OutboxRelay
+ */
+@ApplicationScoped
+public class Outbox {
+
+    @Inject
+    private OutboxRepository crud;
+
+    private ObjectMapper mapper;
+
+    @PostConstruct
+    void init() {
+        // The entities are written as the REST services would write them, with the same date format
+        try {
+            mapper = new JacksonConfig().getContext(Object.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not configure Jackson", e);
+        }
+    }
+
+    public void onBookingChange(@Observes Booking booking) throws IOException {
+        put(Booking.class, booking.getId(), booking);
+    }
+
+    public void onCustomerChange(@Observes Customer customer) throws IOException {
+        put(Customer.class, customer.getId(), customer);
+    }
+
+    public void onTaxiChange(@Observes Taxi taxi) throws IOException {
+        put(Taxi.class, taxi.getId(), taxi);
+    }
+
+    // The services read the ids before a bulk delete, so only entities that existed get a delete entry
+    public void onEntitiesDeleted(@Observes EntitiesDeleted deleted) {
+        Class<?> type = deleted.getType();
+        if (type != Booking.class && type != Customer.class && type != Taxi.class) {
+            return;
+        }
+        for (Long id : deleted.getIds()) {
+            crud.add(new OutboxEntry(type.getSimpleName(), id, OutboxEntry.DELETE, "{\"id\":" + id + "}"));
+        }
+    }
+
+    /*
+     * An entity that cannot be written as JSON fails its transaction, rather than being committed without an entry.
+     */
+    private void put(Class<?> type, Long id, Object entity) throws IOException {
+        crud.add(new OutboxEntry(type.getSimpleName(), id, OutboxEntry.PUT, mapper.writeValueAsString(entity)));
+    }
+}
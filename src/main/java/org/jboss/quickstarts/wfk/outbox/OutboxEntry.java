@@ -0,0 +1,165 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.outbox;
+
+import java.io.Serializable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+import org.codehaus.jackson.annotate.JsonRawValue;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+/**
+ * <p>A change to a Booking, Customer or Taxi waiting in the outbox table to be relayed to the {@link SegmentedLog}.</p>
+ *
+ * <p>Entries are written by {@link Outbox} in the transaction that makes the change, so there is an entry for every
+ * committed change and none for a rolled back one. The entity is turned into JSON when the entry is written, so the
+ * log gets it as it was committed, whatever happens to it before the relay runs.</p>
+ *
+ * <p>The JSON of an entry is the record the relay appends to the log, e.g.</p>
+ * <pre>
+ * {"id":151,"entityType":"Booking","entityId":40123,"operation":"put","data":{...},"created":1401616800000}
+ * </pre>
+ *
+ * @author Joshua Wilson
+ */
+@Entity
+@NamedQueries({
+    @NamedQuery(name = OutboxEntry.FIND_BATCH, query = "SELECT o FROM OutboxEntry o ORDER BY o.id ASC"),
+    @NamedQuery(name = OutboxEntry.DELETE_BY_IDS, query = "DELETE FROM OutboxEntry o WHERE o.id IN :ids")
+})
+@Table(name = "Outbox")
+public class OutboxEntry implements Serializable {
+    /** Default value included to remove warning. Remove or modify at will. **/
+    private static final long serialVersionUID = 1L;
+
+    public static final String FIND_BATCH = "OutboxEntry.findBatch";
+    public static final String DELETE_BY_IDS = "OutboxEntry.deleteByIds";
+
+    /** The operation of a created or updated entity, whose data is its JSON. */
+    public static final String PUT = "put";
+
+    /** The operation of a deleted entity, whose data is only its id. */
+    public static final String DELETE = "delete";
+
+    /*
+     * Ids come from an outbox_seq sequence with the pooled-lo optimizer, as for the other entities. They only order the
+     * entries roughly: two transactions can commit in the opposite order to their ids.
+     */
+    @Id
+    @GeneratedValue(generator = "outbox_id")
+    @GenericGenerator(name = "outbox_id", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = {
+        @Parameter(name = "sequence_name", value = "outbox_seq"),
+        @Parameter(name = "initial_value", value = "1"),
+        @Parameter(name = "increment_size", value = "50"),
+        @Parameter(name = "optimizer", value = "pooled-lo")
+    })
+    private Long id;
+
+    @Column(name = "entity_type", nullable = false, length = 20)
+    private String entityType;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    @Column(name = "operation", nullable = false, length = 10)
+    private String operation;
+
+    @Lob
+    @Column(name = "data", nullable = false)
+    private String data;
+
+    // In milliseconds since the epoch; the JSON dates of the application are days only
+    @Column(name = "created", nullable = false)
+    private long created;
+
+    public OutboxEntry() {
+    }
+
+    public OutboxEntry(String entityType, Long entityId, String operation, String data) {
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.operation = operation;
+        this.data = data;
+        this.created = System.currentTimeMillis();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    /**
+     * @return The simple name of the entity class, e.g. Booking
+     */
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public void setEntityType(String entityType) {
+        this.entityType = entityType;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(Long entityId) {
+        this.entityId = entityId;
+    }
+
+    /**
+     * @return {@link #PUT} or {@link #DELETE}
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * @return The JSON of the entity, written into the JSON of the entry as it is
+     */
+    @JsonRawValue
+    public String getData() {
+        return data;
+    }
+
+    public void setData(String data) {
+        this.data = data;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public void setCreated(long created) {
+        this.created = created;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.outbox;
+
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.jboss.quickstarts.wfk.util.KeysetPage;
+
+/**
+ * <p>Serves the outbox log to the downstream systems, so they can follow the changes to the Bookings, Customers and
+ * Taxis from an offset.</p>
+ *
+ * <p>Full path for accessing the log is rest/outbox .</p>
+ *
+ * @author Joshua Wilson
+ * @see OutboxRelay
+ */
+@Path("/outbox")
+@Produces(MediaType.APPLICATION_JSON)
+@Stateless
+public class OutboxRESTService {
+
+    public static final String NEXT_OFFSET_HEADER = "X-Next-Offset";
+
+    @Inject
+    private OutboxRelay relay;
+
+    /**
+     * <p>Returns the records of the outbox log from an offset, without going to the database.</p>
+     *
+     * <p>The records are returned as they were relayed, with their offsets, followed by the offset to ask for next,
+     * which is also sent in the X-Next-Offset header. When the consumer has caught up no records are returned and the
+     * next offset is the one it asked for.</p>
+     *
+     * @param offset The offset of the first record, or null to start from the oldest record kept
+     * @param limit The maximum number of records to return, see {@link KeysetPage#limit(Integer)}
+     * @return A Response containing the records
+     * @throws WebApplicationException with 410 (Gone) if the records at the offset have been deleted, or 400 (Bad
+     *     Request) if the offset is not the offset of a record
+     */
+    @GET
+    public Response retrieveRecords(@QueryParam("offset") Long offset, @QueryParam("limit") Integer limit) {
+        int maxRecords = KeysetPage.limit(limit);
+        long start = offset == null ? relay.getStartOffset() : offset;
+        if (start < relay.getStartOffset()) {
+            throw new WebApplicationException(Response.Status.GONE);
+        }
+
+        List<SegmentedLog.Record> records;
+        try {
+            records = relay.read(start, maxRecords);
+        } catch (IllegalArgumentException e) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+
+        // The records are JSON already, so the body is put together rather than read and written again by Jackson
+        long nextOffset = records.isEmpty() ? start : records.get(records.size() - 1).getNextOffset();
+        StringBuilder body = new StringBuilder("{\"records\":[");
+        try {
+            for (int i = 0; i < records.size(); i++) {
+                SegmentedLog.Record record = records.get(i);
+                if (i > 0) {
+                    body.append(',');
+                }
+                body.append("{\"offset\":").append(record.getOffset())
+                    .append(",\"entry\":").append(new String(record.getData(), "UTF-8")).append('}');
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        body.append("],\"nextOffset\":").append(nextOffset).append('}');
+
+        return Response.ok(body.toString()).header(NEXT_OFFSET_HEADER, nextOffset).build();
+    }
+}
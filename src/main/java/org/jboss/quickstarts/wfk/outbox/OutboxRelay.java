@@ -0,0 +1,194 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.outbox;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.SessionContext;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.jboss.quickstarts.wfk.util.JacksonConfig;
+import org.jboss.quickstarts.wfk.util.Log;
+
+/**
+ * <p>Moves the {@link OutboxEntry} rows written by {@link Outbox} to a {@link SegmentedLog} on local disk, where the
+ * downstream systems (billing, for one) tail the changes by offset without querying the application tables.</p>
+ *
+ * <p>Every second the relay drains the outbox in batches, oldest first. Each batch is read, appended to the log, forced
+ * to disk and deleted from the table in a transaction of its own, and the next batch follows straight away while the
+ * previous one was full. Entries are relayed at least once: if the delete does not commit, the batch is appended again
+ * by the next run, so a consumer should skip the entry ids it has already seen. Two transactions can commit in the
+ * opposite order to their entry ids, so the log is only roughly in id order, but every change of one entity is in the
+ * order it was committed.</p>
+ *
+ * <p>The log is read with {@link #read(long, int)}, which the {@link OutboxRESTService} serves at
+ * <code>rest/outbox</code>; a consumer on the same machine can also read the segment files directly.</p>
+ *
+ * <p>The following system properties configure the relay:</p>
+ * <ul>
+ *   <li><code>outbox.log.dir</code> - the directory of the log, default <code>outbox</code> in the server's data
+ *       directory</li>
+ *   <li><code>outbox.log.segment.mb</code> - the size of each segment file, default 64</li>
+ *   <li><code>outbox.log.segments</code> - the number of segments kept, default 16</li>
+ *   <li><code>outbox.relay.batch</code> - the number of entries relayed per transaction, default 500</li>
+ * </ul>
+ *
+ * @author Joshua Wilson
+ * @see Outbox
+ * @see SegmentedLog
+ */
+@Singleton
+@Startup
+// The log takes care of its own locking, so reads do not wait for the relay.
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class OutboxRelay {
+
+    @Inject
+    private Log log;
+
+    @Inject
+    private OutboxRepository crud;
+
+    @Resource
+    private SessionContext context;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private SegmentedLog outboxLog;
+
+    private ObjectMapper mapper;
+
+    private int batchSize;
+
+    @PostConstruct
+    void start() {
+        File directory = new File(System.getProperty("outbox.log.dir",
+            new File(System.getProperty("jboss.server.data.dir", System.getProperty("java.io.tmpdir")), "outbox").getPath()));
+        int segmentMegabytes = Integer.getInteger("outbox.log.segment.mb", 64);
+        int segments = Integer.getInteger("outbox.log.segments", 16);
+        batchSize = Integer.getInteger("outbox.relay.batch", 500);
+
+        try {
+            mapper = new JacksonConfig().getContext(Object.class);
+            outboxLog = new SegmentedLog(directory, segmentMegabytes * 1024 * 1024, segments);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not open the outbox log in " + directory, e);
+        }
+
+        log.info("OutboxRelay - started", "directory", directory, "startOffset", outboxLog.getStartOffset(),
+            "endOffset", outboxLog.getEndOffset(), "batchSize", batchSize);
+    }
+
+    @PreDestroy
+    void stop() {
+        try {
+            outboxLog.close();
+        } catch (IOException e) {
+            log.warning("OutboxRelay - could not close the log", "exception", e);
+        }
+    }
+
+    /**
+     * <p>Relays batches until the outbox is empty. Each batch is relayed through the business object, so it gets its
+     * own transaction.</p>
+     */
+    @Schedule(hour = "*", minute = "*", second = "*", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void drain() {
+        // A run that takes more than a second must not be overlapped by the next one, or both would relay its batch
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            OutboxRelay self = context.getBusinessObject(OutboxRelay.class);
+            int relayed;
+            do {
+                relayed = self.relayBatch();
+            } while (relayed == batchSize);
+        } catch (Exception e) {
+            // The batch stays in the table and is retried on the next run
+            log.warning("OutboxRelay - could not relay a batch, will retry", "exception", e);
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    /**
+     * <p>Appends the oldest entries of the outbox to the log, forces them to disk and deletes them from the table.</p>
+     *
+     * @return The number of entries relayed
+     * @throws IOException If an entry cannot be written as JSON or the log cannot start a new segment
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int relayBatch() throws IOException {
+        List<OutboxEntry> entries = crud.findBatch(batchSize);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> ids = new ArrayList<Long>(entries.size());
+        for (OutboxEntry entry : entries) {
+            outboxLog.append(mapper.writeValueAsBytes(entry));
+            ids.add(entry.getId());
+        }
+        outboxLog.flush();
+        crud.deleteByIds(ids);
+
+        log.fine("OutboxRelay - relayed", "entries", entries.size(), "endOffset", outboxLog.getEndOffset());
+        return entries.size();
+    }
+
+    /**
+     * <p>Reads the log, see {@link SegmentedLog#read(long, int)}.</p>
+     *
+     * @param offset The offset of the first record
+     * @param maxRecords The maximum number of records to read
+     * @return The records, in offset order
+     */
+    public List<SegmentedLog.Record> read(long offset, int maxRecords) {
+        return outboxLog.read(offset, maxRecords);
+    }
+
+    /**
+     * @return The offset of the oldest record kept
+     */
+    public long getStartOffset() {
+        return outboxLog.getStartOffset();
+    }
+
+    /**
+     * @return The offset after the newest record
+     */
+    public long getEndOffset() {
+        return outboxLog.getEndOffset();
+    }
+}
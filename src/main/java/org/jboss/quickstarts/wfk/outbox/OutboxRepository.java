@@ -0,0 +1,68 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.outbox;
+
+import java.util.Collection;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+/**
+ * <p>This is a Repository class and connects {@link Outbox} and {@link OutboxRelay} with the {@link OutboxEntry}
+ * table.<p/>
+ *
+ * <p>There are no access modifiers on the methods making them 'package' scope.<p/>
+ *
+ * @author Joshua Wilson
+ * @see OutboxEntry
+ */
+public class OutboxRepository {
+
+    @Inject
+    private EntityManager em;
+
+    /**
+     * <p>Adds an entry, in the current transaction. It is inserted with the changes of the transaction, in the same
+     * JDBC batches.</p>
+     *
+     * @param entry The entry to add
+     */
+    void add(OutboxEntry entry) {
+        em.persist(entry);
+    }
+
+    /**
+     * <p>Returns the oldest entries, by id.</p>
+     *
+     * @param maxResults The maximum number of entries to return
+     * @return List of OutboxEntry objects
+     */
+    List<OutboxEntry> findBatch(int maxResults) {
+        return em.createNamedQuery(OutboxEntry.FIND_BATCH, OutboxEntry.class).setMaxResults(maxResults).getResultList();
+    }
+
+    /**
+     * <p>Deletes the entries with the given ids with a single DELETE statement.</p>
+     *
+     * @param ids The ids of the entries, not empty
+     * @return The number of entries deleted
+     */
+    int deleteByIds(Collection<Long> ids) {
+        return em.createNamedQuery(OutboxEntry.DELETE_BY_IDS).setParameter("ids", ids).executeUpdate();
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.outbox;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+
+/**
+ * <p>An append-only log of records on local disk, split into fixed size segment files that are memory-mapped.</p>
+ *
+ * <p>A record is found by its offset: the number of bytes written to the log before it, counting from the start of the
+ * first segment ever written. Segments are named after the offset of their first record, so a reader goes straight
+ * from an offset to its segment and position, and a consumer only has to remember the next offset it wants. Each
+ * record is stored as:</p>
+ * <ul>
+ *   <li>the length of the data, a 4 byte int greater than 0</li>
+ *   <li>the CRC-32 of the data, a 4 byte int</li>
+ *   <li>the data</li>
+ * </ul>
+ *
+ * <p>A new segment is started when a record does not fit in the current one; the rest of the full segment is left as
+ * zeros, and a zero length marks the end of the records of a segment. Only the newest segments are kept.</p>
+ *
+ * <p>Appends take turns, and reads do not wait for them: a record is only visible to readers once it is completely
+ * written. Nothing is on disk for sure until {@link #flush()} has returned. When a log is opened again the last
+ * segment is checked record by record, and a record torn by a crash is zeroed along with everything after it.</p>
+ *
+ * @author Joshua Wilson
+ * @see OutboxRelay
+ */
+public class SegmentedLog implements Closeable {
+
+    /** The bytes stored in front of the data of each record. */
+    public static final int HEADER_SIZE = 8;
+
+    private static final String SUFFIX = ".log";
+
+    private final File directory;
+
+    private final int segmentSize;
+
+    private final int retainedSegments;
+
+    // By base offset; the last one is the one being written
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<Long, Segment>();
+
+    private Segment active;
+
+    // The offset after the last complete record. Written after the record, so a reader that sees it sees the record.
+    private volatile long endOffset;
+
+    /**
+     * <p>Opens the log in a directory, creating the directory and the first segment if needed.</p>
+     *
+     * @param directory The directory of the segment files
+     * @param segmentSize The size of each segment file, in bytes
+     * @param retainedSegments The number of segments kept; older ones are deleted as new ones are started
+     * @throws IOException If the directory or a segment cannot be opened
+     */
+    public SegmentedLog(File directory, int segmentSize, int retainedSegments) throws IOException {
+        if (segmentSize <= HEADER_SIZE || retainedSegments < 1) {
+            throw new IllegalArgumentException("Segments must hold a record and at least one must be kept");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.retainedSegments = retainedSegments;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create the log directory " + directory);
+        }
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SUFFIX);
+            }
+        });
+        Arrays.sort(files);
+        for (int i = 0; i < files.length; i++) {
+            Segment segment = Segment.open(files[i], baseOffsetOf(files[i]), segmentSize);
+            if (i < files.length - 1) {
+                // A full segment ends where the next one starts
+                segment.limit = (int) (baseOffsetOf(files[i + 1]) - segment.baseOffset);
+            } else {
+                segment.recover();
+            }
+            segments.put(segment.baseOffset, segment);
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, Segment.open(fileOf(0L), 0L, segmentSize));
+        }
+        active = segments.lastEntry().getValue();
+        endOffset = active.baseOffset + active.limit;
+    }
+
+    /**
+     * <p>Appends a record to the log, starting a new segment if it does not fit in the current one.</p>
+     *
+     * @param data The data of the record, not empty
+     * @return The offset of the record
+     * @throws IOException If a new segment cannot be created
+     */
+    public synchronized long append(byte[] data) throws IOException {
+        if (data.length == 0 || data.length > segmentSize - HEADER_SIZE) {
+            throw new IllegalArgumentException("A record must hold 1 to " + (segmentSize - HEADER_SIZE) + " bytes");
+        }
+        if (active.limit + HEADER_SIZE + data.length > segmentSize) {
+            roll();
+        }
+
+        long offset = active.baseOffset + active.limit;
+        active.write(data);
+        endOffset = offset + HEADER_SIZE + data.length;
+        return offset;
+    }
+
+    /**
+     * <p>Forces the records appended so far to disk.</p>
+     */
+    public synchronized void flush() {
+        active.buffer.force();
+    }
+
+    /**
+     * <p>Reads the records starting at an offset.</p>
+     *
+     * @param offset The offset of the first record, as returned by {@link #append(byte[])} or {@link Record#getNextOffset()}
+     * @param maxRecords The maximum number of records to read
+     * @return The records, in offset order; empty if there is none at the offset yet
+     * @throws IllegalArgumentException If the offset has been deleted, is beyond the end of the log or is not the
+     *     offset of a record
+     */
+    public List<Record> read(long offset, int maxRecords) {
+        // Read the end first: the records before it are complete
+        long end = endOffset;
+        if (offset < getStartOffset() || offset > end) {
+            throw new IllegalArgumentException("No record at offset " + offset + ", the log holds " + getStartOffset()
+                + " to " + end);
+        }
+
+        List<Record> records = new ArrayList<Record>();
+        while (records.size() < maxRecords && offset < end) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+            if (entry == null) {
+                // Deleted while we were reading it
+                break;
+            }
+            Segment segment = entry.getValue();
+            ByteBuffer buffer = segment.buffer.duplicate();
+            int position = (int) (offset - segment.baseOffset);
+            int length = position + HEADER_SIZE <= segmentSize ? buffer.getInt(position) : 0;
+            if (length <= 0 || position + HEADER_SIZE + length > segmentSize) {
+                throw new IllegalArgumentException("No record at offset " + offset);
+            }
+            byte[] data = new byte[length];
+            buffer.position(position + HEADER_SIZE);
+            buffer.get(data);
+            if (crcOf(data) != buffer.getInt(position + 4)) {
+                throw new IllegalArgumentException("No record at offset " + offset);
+            }
+            long nextOffset = offset + HEADER_SIZE + length;
+            records.add(new Record(offset, nextOffset, data));
+            offset = nextOffset;
+        }
+        return records;
+    }
+
+    /**
+     * @return The offset of the oldest record kept
+     */
+    public long getStartOffset() {
+        return segments.firstKey();
+    }
+
+    /**
+     * @return The offset the next record will be appended at, unless it starts a new segment
+     */
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * @return The number of segment files
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * <p>Forces the log to disk. The segments stay mapped until they are garbage collected, there is no way to unmap
+     * them before that.</p>
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+    }
+
+    private void roll() throws IOException {
+        active.buffer.force();
+        long baseOffset = active.baseOffset + active.limit;
+        active = Segment.open(fileOf(baseOffset), baseOffset, segmentSize);
+        segments.put(baseOffset, active);
+
+        while (segments.size() > retainedSegments) {
+            Segment oldest = segments.pollFirstEntry().getValue();
+            // A reader still holding its mapping can finish with it, the pages go when it is garbage collected
+            if (!oldest.file.delete()) {
+                throw new IOException("Could not delete the segment " + oldest.file);
+            }
+        }
+    }
+
+    private File fileOf(long baseOffset) {
+        return new File(directory, String.format("%020d", baseOffset) + SUFFIX);
+    }
+
+    private static long baseOffsetOf(File file) throws IOException {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Not a segment of the log: " + file, e);
+        }
+    }
+
+    private static int crcOf(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * <p>A record read from the log.</p>
+     */
+    public static final class Record {
+
+        private final long offset;
+
+        private final long nextOffset;
+
+        private final byte[] data;
+
+        Record(long offset, long nextOffset, byte[] data) {
+            this.offset = offset;
+            this.nextOffset = nextOffset;
+            this.data = data;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return The offset to read the following record from
+         */
+        public long getNextOffset() {
+            return nextOffset;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+
+    /**
+     * <p>One segment file, mapped in full.</p>
+     */
+    private static final class Segment {
+
+        private final File file;
+
+        private final long baseOffset;
+
+        private final MappedByteBuffer buffer;
+
+        // The bytes used by records. Only changed by the appending thread.
+        private int limit;
+
+        private Segment(File file, long baseOffset, MappedByteBuffer buffer) {
+            this.file = file;
+            this.baseOffset = baseOffset;
+            this.buffer = buffer;
+        }
+
+        static Segment open(File file, long baseOffset, int size) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                // A new file is filled with zeros, i.e. holds no records
+                raf.setLength(size);
+                // The mapping outlives the channel
+                return new Segment(file, baseOffset, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } finally {
+                raf.close();
+            }
+        }
+
+        /*
+         * Finds the end of the records of the last segment, checking each one, as the last records may have been torn by
+         * a crash. Whatever follows the last good record is zeroed, so the next appends start from clean space.
+         */
+        void recover() {
+            int size = buffer.capacity();
+            int position = 0;
+            while (position + HEADER_SIZE <= size) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || position + HEADER_SIZE + length > size) {
+                    break;
+                }
+                byte[] data = new byte[length];
+                ByteBuffer view = buffer.duplicate();
+                view.position(position + HEADER_SIZE);
+                view.get(data);
+                if (crcOf(data) != view.getInt(position + 4)) {
+                    break;
+                }
+                position += HEADER_SIZE + length;
+            }
+            limit = position;
+
+            boolean zeroed = false;
+            for (int i = position; i < size; i++) {
+                // Only write the pages that need it
+                if (buffer.get(i) != 0) {
+                    buffer.put(i, (byte) 0);
+                    zeroed = true;
+                }
+            }
+            if (zeroed) {
+                buffer.force();
+            }
+        }
+
+        /*
+         * Writes the data and its checksum before the length, which is what makes the record exist.
+         */
+        void write(byte[] data) {
+            ByteBuffer view = buffer.duplicate();
+            view.position(limit + HEADER_SIZE);
+            view.put(data);
+            buffer.putInt(limit + 4, crcOf(data));
+            buffer.putInt(limit, data.length);
+            limit += HEADER_SIZE + data.length;
+        }
+    }
+}
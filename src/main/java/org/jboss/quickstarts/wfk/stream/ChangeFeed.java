@@ -0,0 +1,249 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.stream;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.servlet.AsyncContext;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.jboss.quickstarts.wfk.util.EntitiesDeleted;
+import org.jboss.quickstarts.wfk.util.JacksonConfig;
+import org.jboss.quickstarts.wfk.util.Log;
+
+/**
+ * <p>The change feeds of the Bookings and the Taxis, which {@link ChangeStreamServlet} streams to the browsers as
+ * Server-Sent Events, so they can keep their lists up to date without reading them again.</p>
+ *
+ * <p>The feeds are written from the Bookings and Taxis fired by their services after each successful commit, and from
+ * {@link EntitiesDeleted} events, the same way the search indexes are kept up to date. JPA entity listeners are not
+ * used: updates and deletes are single JPQL statements, which never call them, and a listener would run before the
+ * commit. Each change is turned into JSON once, here, and appended to the {@link ChangeLog} of its feed.</p>
+ *
+ * <p>A background thread flushes every subscriber a few times a second. The changes an entity goes through between two
+ * flushes are coalesced into its last one, so a burst of updates costs one event per entity. The events are written
+ * to the responses by a fixed pool of writer threads with a bounded queue, so slow clients cannot tie up the
+ * container's request threads.</p>
+ *
+ * <p>The following system properties configure the feeds:</p>
+ * <ul>
+ *   <li><code>stream.log.size</code> - the number of changes kept for each feed, default 1000</li>
+ *   <li><code>stream.flush.ms</code> - how often the subscribers are sent the new changes, default 250</li>
+ *   <li><code>stream.heartbeat.seconds</code> - how long a stream may stay silent, default 15</li>
+ *   <li><code>stream.writer.threads</code> - the number of threads writing to the streams, default 4</li>
+ *   <li><code>stream.writer.queue</code> - the number of writes that may wait for a writer, default 1000</li>
+ *   <li><code>stream.stall.seconds</code> - how long a write may take before its stream is closed, default 30</li>
+ * </ul>
+ *
+ * @author Joshua Wilson
+ * @see ChangeLog
+ * @see ChangeSubscriber
+ */
+@Singleton
+@Startup
+// The logs and subscriber sets are thread safe, so the commits do not need to take turns on the singleton.
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ChangeFeed {
+
+    public static final String BOOKINGS = "bookings";
+
+    public static final String TAXIS = "taxis";
+
+    @Inject
+    private Log log;
+
+    private final Map<String, ChangeLog> logs = new HashMap<String, ChangeLog>();
+
+    private final Map<String, Set<ChangeSubscriber>> subscribers = new HashMap<String, Set<ChangeSubscriber>>();
+
+    private ObjectMapper mapper;
+
+    private ScheduledExecutorService flusher;
+
+    private ExecutorService writer;
+
+    private long heartbeatMillis;
+
+    private long stallMillis;
+
+    @PostConstruct
+    void start() {
+        int size = Integer.getInteger("stream.log.size", 1000);
+        long flushMillis = Long.getLong("stream.flush.ms", 250);
+        heartbeatMillis = TimeUnit.SECONDS.toMillis(Long.getLong("stream.heartbeat.seconds", 15));
+        stallMillis = TimeUnit.SECONDS.toMillis(Long.getLong("stream.stall.seconds", 30));
+        int writerThreads = Integer.getInteger("stream.writer.threads", 4);
+        int writerQueue = Integer.getInteger("stream.writer.queue", 1000);
+
+        for (String feed : new String[] {BOOKINGS, TAXIS}) {
+            logs.put(feed, new ChangeLog(size));
+            subscribers.put(feed, new CopyOnWriteArraySet<ChangeSubscriber>());
+        }
+
+        // The events are written as the REST services would write the entities, with the same date format
+        try {
+            mapper = new JacksonConfig().getContext(Object.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not configure Jackson", e);
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "change-feed-flusher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final AtomicInteger writers = new AtomicInteger();
+        writer = new ThreadPoolExecutor(writerThreads, writerThreads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(writerQueue), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "change-feed-writer-" + writers.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flushAll();
+            }
+        }, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+
+        log.info("ChangeFeed - started", "logSize", size, "flushMillis", flushMillis, "writerThreads", writerThreads);
+    }
+
+    @PreDestroy
+    void stop() {
+        flusher.shutdownNow();
+        writer.shutdownNow();
+        for (Set<ChangeSubscriber> feedSubscribers : subscribers.values()) {
+            for (ChangeSubscriber subscriber : feedSubscribers) {
+                subscriber.close();
+            }
+            feedSubscribers.clear();
+        }
+    }
+
+    /**
+     * @param feed The last segment of the stream's path
+     * @return Whether there is a feed with this name
+     */
+    public boolean isFeed(String feed) {
+        return logs.containsKey(feed);
+    }
+
+    /**
+     * <p>Starts sending the changes of a feed to an open response.</p>
+     *
+     * @param feed {@link #BOOKINGS} or {@link #TAXIS}
+     * @param lastEventId The <code>Last-Event-ID</code> the browser reconnected with, or null for a new stream
+     * @param context The started asynchronous response
+     * @return The subscriber, to pass to {@link #unsubscribe(String, ChangeSubscriber)} when the response ends
+     */
+    public ChangeSubscriber subscribe(String feed, String lastEventId, AsyncContext context) {
+        ChangeLog changes = logs.get(feed);
+        // A new stream starts with the changes made from now on; a reconnecting one where it left off, if it still can
+        long cursor = lastEventId == null ? changes.head() : changes.parseEventId(lastEventId);
+        ChangeSubscriber subscriber = new ChangeSubscriber(changes, context, writer, cursor);
+        subscribers.get(feed).add(subscriber);
+        log.info("ChangeFeed - subscribed", "feed", feed, "resumed", lastEventId != null,
+            "subscribers", subscribers.get(feed).size());
+        return subscriber;
+    }
+
+    public void unsubscribe(String feed, ChangeSubscriber subscriber) {
+        subscriber.close();
+        subscribers.get(feed).remove(subscriber);
+    }
+
+    public void onTaxiChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) Taxi taxi) {
+        put(TAXIS, taxi.getId(), taxi);
+    }
+
+    public void onBookingChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) Booking booking) {
+        put(BOOKINGS, booking.getId(), booking);
+    }
+
+    public void onEntitiesDeleted(@Observes(during = TransactionPhase.AFTER_SUCCESS) EntitiesDeleted deleted) {
+        String feed;
+        if (deleted.getType() == Taxi.class) {
+            feed = TAXIS;
+        } else if (deleted.getType() == Booking.class) {
+            feed = BOOKINGS;
+        } else {
+            return;
+        }
+        ChangeLog changes = logs.get(feed);
+        for (Long id : deleted.getIds()) {
+            changes.append(ChangeLog.DELETE, id, "{\"id\":" + id + "}");
+        }
+    }
+
+    private void put(String feed, Long id, Object entity) {
+        String json;
+        try {
+            json = mapper.writeValueAsString(entity);
+        } catch (IOException e) {
+            log.warning("ChangeFeed - could not write a change", "change", feed + "/" + id, "exception", e);
+            return;
+        }
+        logs.get(feed).append(ChangeLog.PUT, id, json);
+    }
+
+    private void flushAll() {
+        try {
+            for (Map.Entry<String, Set<ChangeSubscriber>> feed : subscribers.entrySet()) {
+                for (ChangeSubscriber subscriber : feed.getValue()) {
+                    if (subscriber.isClosed()) {
+                        feed.getValue().remove(subscriber);
+                    } else {
+                        subscriber.flush(heartbeatMillis, stallMillis);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // A scheduled task that throws is never run again
+            log.warning("ChangeFeed - flush failed", "exception", e);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.stream;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>A bounded, in-memory log of the changes made to one kind of entity, from which a {@link ChangeFeed} stream is
+ * written.</p>
+ *
+ * <p>Each change is given the next sequence number and stored in a ring of fixed size, so the log never grows: once it
+ * is full the oldest change is overwritten. A subscriber only remembers the sequence number of the last change it was
+ * sent, so the ring is shared by every subscriber instead of each one holding its own copy of the pending changes. A
+ * subscriber that falls so far behind that the changes it missed have been overwritten is told to reload instead
+ * (see {@link #since(long)}).</p>
+ *
+ * <p>The same sequence numbers are the SSE event ids, prefixed with a generation that changes on every start, so a
+ * browser that reconnects with the <code>Last-Event-ID</code> of a previous deployment is told to reload rather than
+ * resumed at the wrong place.</p>
+ *
+ * <p>All methods are synchronized; the critical sections are short array operations.</p>
+ *
+ * @author Joshua Wilson
+ * @see ChangeFeed
+ */
+public class ChangeLog {
+
+    /** An entity was created or updated, the data is the entity. */
+    public static final String PUT = "put";
+
+    /** An entity was deleted, the data is <code>{"id":...}</code>. */
+    public static final String DELETE = "delete";
+
+    /** The changes cannot be replayed, the subscriber must read the whole list again. */
+    public static final String RESET = "reset";
+
+    private final String generation;
+
+    private final Entry[] ring;
+
+    // The sequence number of the newest change, 0 while the log is empty
+    private long head;
+
+    /**
+     * @param capacity The number of changes kept for subscribers that are behind, or reconnecting
+     */
+    public ChangeLog(int capacity) {
+        this(capacity, Long.toString(System.currentTimeMillis(), 36));
+    }
+
+    ChangeLog(int capacity, String generation) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+        this.ring = new Entry[capacity];
+        this.generation = generation;
+    }
+
+    /**
+     * <p>Appends a change to the log.</p>
+     *
+     * @param type {@link #PUT} or {@link #DELETE}
+     * @param id The id of the entity changed
+     * @param data The JSON sent with the event
+     * @return The sequence number of the change
+     */
+    public synchronized long append(String type, Long id, String data) {
+        head++;
+        ring[(int) (head % ring.length)] = new Entry(head, type, id, data);
+        return head;
+    }
+
+    /**
+     * @return The sequence number of the newest change, 0 if there is none
+     */
+    public synchronized long head() {
+        return head;
+    }
+
+    /**
+     * <p>Returns the changes made after a sequence number, coalesced: when an entity changed more than once only its
+     * last change is returned, in the place of that last change.</p>
+     *
+     * @param seq The sequence number of the last change the subscriber has
+     * @return The changes, oldest first, possibly empty; or null if some of them are no longer in the log, or the
+     *         sequence number is not one of this log's
+     */
+    public synchronized List<Entry> since(long seq) {
+        if (seq < 0 || seq > head || head - seq > ring.length) {
+            return null;
+        }
+        Map<Long, Entry> latest = new LinkedHashMap<Long, Entry>();
+        for (long next = seq + 1; next <= head; next++) {
+            Entry entry = ring[(int) (next % ring.length)];
+            // Removed first, so an entity changed again moves to the place of its last change
+            latest.remove(entry.getId());
+            latest.put(entry.getId(), entry);
+        }
+        return new ArrayList<Entry>(latest.values());
+    }
+
+    /**
+     * @param seq A sequence number of this log
+     * @return The SSE event id of the change
+     */
+    public String eventId(long seq) {
+        return generation + "-" + seq;
+    }
+
+    /**
+     * <p>Reads the sequence number back from an SSE event id, as sent by the browser in <code>Last-Event-ID</code>.</p>
+     *
+     * @param eventId The event id, may be null
+     * @return The sequence number, or -1 if the event id is missing, malformed or from another generation
+     */
+    public long parseEventId(String eventId) {
+        String prefix = generation + "-";
+        if (eventId == null || !eventId.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * <p>One change of the log.</p>
+     */
+    public static final class Entry {
+        private final long seq;
+        private final String type;
+        private final Long id;
+        private final String data;
+
+        private Entry(long seq, String type, Long id, String data) {
+            this.seq = seq;
+            this.type = type;
+            this.id = id;
+            this.data = data;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getData() {
+            return data;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.stream;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * <p>Streams the {@link ChangeFeed} of the Bookings or the Taxis as Server-Sent Events, from
+ * <code>GET /rest/stream/bookings</code> and <code>GET /rest/stream/taxis</code>.</p>
+ *
+ * <p>JAX-RS 1.1 cannot hold a response open, so the streams are served by this asynchronous servlet, mapped ahead of
+ * the JAX-RS application. The request thread returns as soon as the stream is set up; the events are written later by
+ * the {@link ChangeSubscriber}.</p>
+ *
+ * <p>Three kinds of event are sent, each with an id the browser sends back in <code>Last-Event-ID</code> when it
+ * reconnects, so the stream resumes where it stopped:</p>
+ * <ul>
+ *   <li><code>put</code> - an entity was created or updated, the data is the entity as the REST service returns it</li>
+ *   <li><code>delete</code> - an entity was deleted, the data is <code>{"id":...}</code></li>
+ *   <li><code>reset</code> - the changes missed cannot be replayed, the list must be read again</li>
+ * </ul>
+ *
+ * @author Joshua Wilson
+ * @see ChangeFeed
+ */
+@WebServlet(urlPatterns = {"/rest/stream/bookings", "/rest/stream/taxis"}, asyncSupported = true)
+public class ChangeStreamServlet extends HttpServlet {
+    /** Default value included to remove warning. Remove or modify at will. **/
+    private static final long serialVersionUID = 1L;
+
+    public static final String CONTENT_TYPE = "text/event-stream";
+
+    private static final String PATH = "/rest/stream/";
+
+    @Inject
+    private ChangeFeed feed;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        final String name = request.getServletPath().substring(PATH.length());
+        if (!feed.isFeed(name)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        // A browser sends the header when it reconnects; the parameter lets a client resume a stream it opened itself
+        String lastEventId = request.getHeader("Last-Event-ID");
+        if (lastEventId == null) {
+            lastEventId = request.getParameter("lastEventId");
+        }
+
+        response.setContentType(CONTENT_TYPE);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+
+        AsyncContext context = request.startAsync();
+        // Never time out, the heartbeat finds the clients that went away
+        context.setTimeout(0);
+        final ChangeSubscriber subscriber = feed.subscribe(name, lastEventId, context);
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                feed.unsubscribe(name, subscriber);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                feed.unsubscribe(name, subscriber);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                feed.unsubscribe(name, subscriber);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+                // Nothing needed
+            }
+        });
+
+        // Sends the headers now, so the browser's EventSource opens before the first change
+        subscriber.open();
+    }
+
+    /**
+     * @param httpRequest A request to the <i>/rest/*</i> path
+     * @return Whether the request is for an event stream, which the other filters of <i>/rest/*</i> must leave alone
+     */
+    public static boolean isStreamRequest(HttpServletRequest httpRequest) {
+        return httpRequest.getRequestURI().startsWith(httpRequest.getContextPath() + PATH);
+    }
+}
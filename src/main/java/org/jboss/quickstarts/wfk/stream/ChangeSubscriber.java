@@ -0,0 +1,182 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+
+/**
+ * <p>One open <code>text/event-stream</code> response, following a {@link ChangeLog}.</p>
+ *
+ * <p>The subscriber keeps nothing but the sequence number of the last change it was sent. On each
+ * {@link #flush(long, long)} the changes made since are read from the log, coalesced, and written by the small, bounded
+ * pool of writer threads of the {@link ChangeFeed}, never by a container thread, so a client that reads slowly only
+ * holds up its own stream and one writer. A subscriber has at most one write queued or running: while it has, the next
+ * flushes are skipped; the changes are not lost, they are sent, coalesced, by the flush after it. A flush the pool has
+ * no room for is skipped the same way, and a write that is still running after the stall timeout closes the stream,
+ * freeing its writer for the others.</p>
+ *
+ * @author Joshua Wilson
+ * @see ChangeFeed
+ */
+public class ChangeSubscriber {
+
+    private static final String UTF_8 = "UTF-8";
+
+    // How long the browser waits before reconnecting a dropped stream
+    private static final String RETRY = "retry: 3000\n\n";
+
+    private final ChangeLog log;
+
+    private final AsyncContext context;
+
+    private final Executor writer;
+
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    // The sequence number of the last change sent, -1 if the client must be told to reload first
+    private volatile long cursor;
+
+    private volatile long lastWrite = System.currentTimeMillis();
+
+    // When the write queued or running was handed to the writer
+    private volatile long writeQueued;
+
+    private volatile boolean closed;
+
+    ChangeSubscriber(ChangeLog log, AsyncContext context, Executor writer, long cursor) {
+        this.log = log;
+        this.context = context;
+        this.writer = writer;
+        this.cursor = cursor;
+        // Nothing is flushed until the stream is opened
+        writeQueued = System.currentTimeMillis();
+        writing.set(true);
+    }
+
+    /**
+     * <p>Writes the headers and the reconnection delay, then lets the changes through.</p>
+     *
+     * @throws IOException If the client has already gone
+     */
+    void open() throws IOException {
+        try {
+            OutputStream out = context.getResponse().getOutputStream();
+            out.write(RETRY.getBytes(UTF_8));
+            out.flush();
+        } finally {
+            writing.set(false);
+        }
+    }
+
+    /**
+     * <p>Sends the changes made since the last flush, or a comment line if there were none for the heartbeat interval.
+     * The comment keeps proxies from closing an idle stream, and finds out about clients that went away.</p>
+     *
+     * @param heartbeatMillis How long a stream may stay silent
+     * @param stallMillis How long a write may take before the stream is closed
+     */
+    void flush(long heartbeatMillis, long stallMillis) {
+        long now = System.currentTimeMillis();
+        if (closed || cursor == log.head() && now - lastWrite < heartbeatMillis) {
+            return;
+        }
+        if (!writing.compareAndSet(false, true)) {
+            if (now - writeQueued > stallMillis) {
+                // The client stopped reading; closing the response also ends the blocked write
+                close();
+            }
+            return;
+        }
+        writeQueued = now;
+        try {
+            writer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        write();
+                    } catch (IOException e) {
+                        close();
+                    } catch (IllegalStateException e) {
+                        // The response was completed by the container
+                        close();
+                    } finally {
+                        writing.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Every writer is busy and the queue is full; the next flush tries again
+            writing.set(false);
+        }
+    }
+
+    private void write() throws IOException {
+        StringBuilder events = new StringBuilder();
+        List<ChangeLog.Entry> entries = log.since(cursor);
+        if (entries == null) {
+            // Too far behind, or resuming from an id we do not know: the client reloads the list, then follows on
+            long head = log.head();
+            appendEvent(events, log.eventId(head), ChangeLog.RESET, "{}");
+            cursor = head;
+        } else if (entries.isEmpty()) {
+            events.append(": keep-alive\n\n");
+        } else {
+            for (ChangeLog.Entry entry : entries) {
+                appendEvent(events, log.eventId(entry.getSeq()), entry.getType(), entry.getData());
+            }
+            // The newest change is always last, as nothing after it can replace it
+            cursor = entries.get(entries.size() - 1).getSeq();
+        }
+
+        OutputStream out = context.getResponse().getOutputStream();
+        out.write(events.toString().getBytes(UTF_8));
+        out.flush();
+        lastWrite = System.currentTimeMillis();
+    }
+
+    private static void appendEvent(StringBuilder events, String id, String type, String data) {
+        events.append("id: ").append(id).append('\n')
+            .append("event: ").append(type).append('\n')
+            .append("data: ").append(data).append("\n\n");
+    }
+
+    /**
+     * <p>Ends the stream. It is safe to call more than once.</p>
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            context.complete();
+        } catch (IllegalStateException e) {
+            // Already completed
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+}
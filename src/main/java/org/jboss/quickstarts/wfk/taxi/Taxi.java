@@ -24,8 +24,15 @@ import javax.validation.constraints.Past;
 import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 import javax.xml.bind.annotation.XmlRootElement;
+
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.hibernate.validator.constraints.Email;
 import org.hibernate.validator.constraints.NotEmpty;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.QueryHints;
+import org.jboss.quickstarts.wfk.util.Versioned;
 
 /**
  * <p>This is a the Domain object. The Taxi class represents how taxi resources are represented in the application
@@ -42,17 +49,59 @@ import org.hibernate.validator.constraints.NotEmpty;
  */
 @Entity
 @NamedQueries({
-    @NamedQuery(name = Taxi.FIND_ALL, query = "SELECT c FROM Taxi c ORDER BY c.registration ASC"),
-    @NamedQuery(name = Taxi.FIND_BY_SEAT, query = "SELECT c FROM Taxi c WHERE c.seat = :seat")
+    @NamedQuery(name = Taxi.FIND_ALL, query = "SELECT c FROM Taxi c ORDER BY c.registration ASC",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Taxi.FIND_PAGE_AFTER, query = "SELECT c FROM Taxi c WHERE c.registration > :registration ORDER BY c.registration ASC",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Taxi.FIND_BY_REGISTRATION, query = "SELECT c FROM Taxi c WHERE c.registration = :registration",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Taxi.FIND_BY_SEAT, query = "SELECT c FROM Taxi c WHERE c.seat = :seat ORDER BY c.registration ASC"),
+    @NamedQuery(name = Taxi.REVISION_BY_ID, query = "SELECT NEW org.jboss.quickstarts.wfk.util.Revision(c.id, c.version, c.lastModified) FROM Taxi c WHERE c.id = :id",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Taxi.REVISION_BY_REGISTRATION, query = "SELECT NEW org.jboss.quickstarts.wfk.util.Revision(c.id, c.version, c.lastModified) FROM Taxi c WHERE c.registration = :registration",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Taxi.REVISIONS, query = "SELECT NEW org.jboss.quickstarts.wfk.util.Revision(c.id, c.version, c.lastModified) FROM Taxi c ORDER BY c.registration ASC",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Taxi.REVISIONS_AFTER, query = "SELECT NEW org.jboss.quickstarts.wfk.util.Revision(c.id, c.version, c.lastModified) FROM Taxi c WHERE c.registration > :registration ORDER BY c.registration ASC",
+        hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = Taxi.UPDATE, query = Taxi.UPDATE_SET + " WHERE c.id = :id"),
+    @NamedQuery(name = Taxi.UPDATE_VERSION, query = Taxi.UPDATE_SET + " WHERE c.id = :id AND c.version = :version"),
+    @NamedQuery(name = Taxi.DELETE_BY_ID, query = "DELETE FROM Taxi c WHERE c.id = :id"),
+    @NamedQuery(name = Taxi.FIND_IDS_BY_IDS, query = "SELECT c.id FROM Taxi c WHERE c.id IN :ids"),
+    @NamedQuery(name = Taxi.DELETE_BY_IDS, query = "DELETE FROM Taxi c WHERE c.id IN :ids")
 })
 @XmlRootElement
+/*
+ * Taxis change rarely and are read on every booking, so they are kept in the second-level cache (see persistence.xml for
+ * the region sizes). Updates and deletes through the EntityManager invalidate the cached copy; the queries marked
+ * cacheable above are invalidated whenever the Taxi table changes.
+ */
+@Cacheable
 @Table(name = "Taxi", uniqueConstraints = @UniqueConstraint(columnNames = "registration"))
-public class Taxi implements Serializable {
+// Taxis are looked up by seat count, in registration order.
+@org.hibernate.annotations.Table(appliesTo = "Taxi",
+    indexes = @Index(name = "taxi_seat_idx", columnNames = {"seat", "registration"}))
+public class Taxi implements Serializable, Versioned {
     /** Default value included to remove warning. Remove or modify at will. **/
     private static final long serialVersionUID = 1L;
     
     public static final String FIND_ALL = "Taxi.findAll";
+    public static final String FIND_PAGE_AFTER = "Taxi.findPageAfter";
+    public static final String FIND_BY_REGISTRATION = "Taxi.findByRegistration";
     public static final String FIND_BY_SEAT = "Taxi.findBySeat";
+    public static final String REVISION_BY_ID = "Taxi.revisionById";
+    public static final String REVISION_BY_REGISTRATION = "Taxi.revisionByRegistration";
+    public static final String REVISIONS = "Taxi.revisions";
+    public static final String REVISIONS_AFTER = "Taxi.revisionsAfter";
+    public static final String UPDATE = "Taxi.update";
+    public static final String UPDATE_VERSION = "Taxi.updateVersion";
+    public static final String DELETE_BY_ID = "Taxi.deleteById";
+    public static final String FIND_IDS_BY_IDS = "Taxi.findIdsByIds";
+    public static final String DELETE_BY_IDS = "Taxi.deleteByIds";
+
+    // The SET clause of UPDATE and UPDATE_VERSION, see Contact
+    private static final String UPDATE_SET = "UPDATE Taxi c SET c.registration = :registration, c.seat = :seat,"
+        + " c.version = c.version + 1, c.lastModified = :lastModified";
 
     /*
      * The  error messages match the ones in the UI so that the user isn't confused by two similar error messages for
@@ -64,9 +113,26 @@ public class Taxi implements Serializable {
      * variable occurs it can be sent to the correct input field on the form.  
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    @GeneratedValue(generator = "taxi_id")
+    @GenericGenerator(name = "taxi_id", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = {
+        @Parameter(name = "sequence_name", value = "taxi_seq"),
+        @Parameter(name = "initial_value", value = "30100"),
+        @Parameter(name = "increment_size", value = "50"),
+        @Parameter(name = "optimizer", value = "pooled-lo")
+    })
     private Long id;
 
+    // Moved on by every update; with lastModified it makes the ETag and Last-Modified headers (see Revision)
+    @Version
+    @Column(name = "version")
+    @JsonIgnore
+    private long version;
+
+    @Column(name = "last_modified")
+    @Temporal(TemporalType.TIMESTAMP)
+    @JsonIgnore
+    private Date lastModified;
+
     @NotNull
     /*@Size(min = 7, max = 7)
     @Pattern(regexp = "[A-Za-z0-9-']+", message = "Please use a registration name which is a 7 characters' alpha-numerical string")
@@ -173,4 +239,24 @@ public class Taxi implements Serializable {
     }
     
     */
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @Override
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new Date();
+    }
 }
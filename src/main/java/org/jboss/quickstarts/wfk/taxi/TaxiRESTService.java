@@ -20,28 +20,41 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.logging.Logger;
 
 import javax.ejb.NoSuchEntityException;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
-import javax.inject.Named;
+import javax.persistence.EntityNotFoundException;
 import javax.persistence.NoResultException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.Tuple;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.WebApplicationException;
 
+import org.jboss.quickstarts.wfk.util.BulkDelete;
+import org.jboss.quickstarts.wfk.util.KeysetPage;
+import org.jboss.quickstarts.wfk.util.Log;
+import org.jboss.quickstarts.wfk.util.Projection;
+import org.jboss.quickstarts.wfk.util.Revision;
+
 
 
 /**
@@ -72,20 +85,76 @@ import javax.ws.rs.WebApplicationException;
 @Stateless
 public class TaxiRESTService {
     @Inject
-    private @Named("logger") Logger log;
+    private Log log;
     
     @Inject
     private TaxiService service;
     
     /**
-     * <p>Search for and return all the Taxis.  They are sorted alphabetically by registration.</p>
+     * <p>Search for and return one page of Taxis.  They are sorted alphabetically by registration.</p>
+     *
+     * <p>If there are more Taxis the cursor of the next page is returned in the X-Next-Cursor and Link headers.</p>
+     *
+     * <p>The page is sent with an ETag, and 304 (Not Modified) is returned if it is still current, see {@link Revision}.</p>
+     *
+     * <p>With <code>fields</code>, e.g. <code>?fields=id,registration,seat</code>, only those columns are read and each
+     * Taxi is returned as an object holding just those fields, see {@link Projection}.</p>
      * 
+     * @param limit The maximum number of Taxis to return, see {@link KeysetPage#limit(Integer)}
+     * @param after The cursor returned with the previous page, or null for the first page
+     * @param fields A comma separated list of the fields to return, or null for whole Taxis
+     * @param request The request, used to evaluate its If-None-Match header
+     * @param headers The request headers
+     * @param uriInfo The request URI, used to build the link to the next page
      * @return A Response containing a list of Taxis
      */
     @GET
-    public Response retrieveAllTaxis() {
-        List<Taxi> taxis = service.findAllOrderedByRegistration();
-        return Response.ok(taxis).build();
+    public Response retrieveAllTaxis(@QueryParam("limit") Integer limit, @QueryParam("after") String after,
+            @QueryParam("fields") String fields, @Context Request request, @Context HttpHeaders headers,
+            @Context UriInfo uriInfo) {
+        int pageSize = KeysetPage.limit(limit);
+        String[] key = KeysetPage.decodeCursor(after, 1);
+        Projection projection = Projection.parse(fields);
+
+        // Only the ids and versions of the page are read to decide whether the client's copy is still current.
+        List<Revision> revisions = service.findRevisionPageOrderedByRegistration(key == null ? null : key[0], pageSize + 1);
+        Revision page = Revision.ofPage(revisions);
+        Response.ResponseBuilder notModified = page.evaluatePreconditions(request, headers);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
+        if (projection != null) {
+            return page.tag(retrieveTaxiFields(key == null ? null : key[0], pageSize, projection, uriInfo)).build();
+        }
+
+        List<Taxi> taxis = service.findPageOrderedByRegistration(key == null ? null : key[0], pageSize + 1);
+
+        // Tagged with what was actually read, in case the page changed since its revisions were.
+        page = Revision.ofPage(taxis);
+        String nextCursor = null;
+        if (KeysetPage.hasMore(taxis, pageSize)) {
+            taxis = taxis.subList(0, pageSize);
+            nextCursor = KeysetPage.encodeCursor(taxis.get(pageSize - 1).getRegistration());
+        }
+        return page.tag(KeysetPage.ok(taxis, nextCursor, uriInfo)).build();
+    }
+
+    private Response.ResponseBuilder retrieveTaxiFields(String registration, int pageSize, Projection projection, UriInfo uriInfo) {
+        List<Tuple> rows;
+        try {
+            rows = service.findPageOrderedByRegistration(registration, pageSize + 1, projection);
+        } catch (IllegalArgumentException e) {
+            // A field that Taxi does not have
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+
+        String nextCursor = null;
+        if (KeysetPage.hasMore(rows, pageSize)) {
+            rows = rows.subList(0, pageSize);
+            nextCursor = KeysetPage.encodeCursor(rows.get(pageSize - 1).get("registration", String.class));
+        }
+        return KeysetPage.ok(projection.toMaps(rows), nextCursor, uriInfo);
     }
 
 
@@ -97,36 +166,60 @@ public class TaxiRESTService {
      *
      *
      * @param registration The string parameter value provided as a Taxi's registration
-     * @return A Response containing a single Taxi
+     * @param request The request, used to evaluate its If-None-Match and If-Modified-Since headers
+     * @param headers The request headers
+     * @return A Response containing a single Taxi, or 304 (Not Modified) if the client's copy is current
      */
     @GET
     @Path("/{registration:^[a-zA-Z0-9]{7}$}")
-    public Response retrieveTaxisByRegistration(@PathParam("registratioregistrationn") String registration) {
+    public Response retrieveTaxisByRegistration(@PathParam("registratioregistrationn") String registration,
+            @Context Request request, @Context HttpHeaders headers) {
+        Revision revision = service.findRevisionByRegistration(registration);
+        if (revision == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        Response.ResponseBuilder notModified = revision.evaluatePreconditions(request, headers);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
         Taxi taxi;
         try {
             taxi = service.findByRegistration(registration);
         } catch (NoResultException e) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
-        return Response.ok(taxi).build();
+        return Revision.of(taxi).tag(Response.ok(taxi)).build();
     }
     
     /**
      * <p>Search for and return a Taxi identified by id.</p>
      * <p>Path annotation includes very simple regex to differentiate between seat number and Ids.</p>
      * @param id The long parameter value provided as a taxi's id
-     * @return A Response containing a single Contact
+     * @param request The request, used to evaluate its If-None-Match and If-Modified-Since headers
+     * @param headers The request headers
+     * @return A Response containing a single Contact, or 304 (Not Modified) if the client's copy is current
      */
     @GET
     @Path("/{id:[0-9]+}")
-    public Response retrieveTaxiById(@PathParam("id") long id) {
+    public Response retrieveTaxiById(@PathParam("id") long id, @Context Request request,
+            @Context HttpHeaders headers) {
+        Revision revision = service.findRevisionById(id);
+        if (revision == null) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        Response.ResponseBuilder notModified = revision.evaluatePreconditions(request, headers);
+        if (notModified != null) {
+            return notModified.build();
+        }
+
         Taxi taxi = service.findById(id);
         if (taxi == null) {
             throw new WebApplicationException(Response.Status.NOT_FOUND);
         }
-        log.info("findById " + id + ": found Taxi = " + taxi.getRegistration() + " " + taxi.getSeat() + " " + taxi.getId());
+        log.info("findById found Taxi", "registration", taxi.getRegistration(), "seat", taxi.getSeat(), "id", taxi.getId());
         
-        return Response.ok(taxi).build();
+        return Revision.of(taxi).tag(Response.ok(taxi)).build();
     }
 
     /**
@@ -139,7 +232,7 @@ public class TaxiRESTService {
     @SuppressWarnings("unused")
     @POST
     public Response createTaxi(Taxi taxi) {
-        log.info("createTaxi started. Taxi = "  + taxi.getRegistration() + " " + taxi.getSeat() + " " + taxi.getId());
+        log.info("createTaxi started", "registration", taxi.getRegistration(), "seat", taxi.getSeat(), "id", taxi.getId());
         if (taxi == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
@@ -153,19 +246,19 @@ public class TaxiRESTService {
             // Create a "Resource Created" 201 Response and pass the taxi back in case it is needed.
             builder = Response.status(Response.Status.CREATED).entity(taxi);
             
-            log.info("createTaxi completed. Taxi = "  + taxi.getRegistration() + " " + taxi.getSeat() + " " + taxi.getId());
+            log.info("createTaxi completed", "registration", taxi.getRegistration(), "seat", taxi.getSeat(), "id", taxi.getId());
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.info("createTaxi failed", "exception", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.info("createTaxi failed", "exception", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("registration", "That registration is already used, please use a unique registration");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.info("createTaxi failed", "exception", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -179,44 +272,52 @@ public class TaxiRESTService {
      * <p>Updates a taxi with the ID provided in the Taxi. Performs validation, and will return a JAX-RS response with either 200 ok,
      * or with a map of fields, and related errors.</p>
      * 
-     * @param taxi The Taxi object, constructed automatically from JSON input, to be <i>updated</i> via {@link TaxiService#update(Taxi)}
+     * @param taxi The Taxi object, constructed automatically from JSON input, to be <i>updated</i> via {@link TaxiService#update(Taxi, Long)}
      * @param id The long parameter value provided as the id of the Taxi to be updated
+     * @param ifMatch The ETag of the Taxi the client read, optional; the update fails with 412 (Precondition Failed) if it has changed since
      * @return A Response indicating the outcome of the create operation
      */
     @PUT
     @Path("/{id:[0-9][0-9]*}")
-    public Response updateTaxi(@PathParam("id") long id, Taxi taxi) {
+    public Response updateTaxi(@PathParam("id") long id, @HeaderParam("If-Match") String ifMatch, Taxi taxi) {
         if (taxi == null) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
-        log.info("updateTaxi started. Taxi = "+ taxi.getRegistration() + " " + taxi.getSeat() + " " + taxi.getId());
+        log.info("updateTaxi started", "registration", taxi.getRegistration(), "seat", taxi.getSeat(), "id", taxi.getId());
 
         if (taxi.getId() != id) {
             // The client attempted to update the read-only Id. This is not permitted.
             Response response = Response.status(Response.Status.CONFLICT).entity("The taxi ID cannot be modified").build();
             throw new WebApplicationException(response);
         }
-        if (service.findById(taxi.getId()) == null) {
-            // Verify if the taxi exists. Return 404, if not present.
-            throw new WebApplicationException(Response.Status.NOT_FOUND);
-        }
+        // The version is not part of the JSON: the client sends the ETag it read in If-Match instead.
+        Long version = Revision.expectedVersion(ifMatch, id);
         
         Response.ResponseBuilder builder = null;
         
         try {
             // Apply the changes the Taxi.
-            service.update(taxi);
+            service.update(taxi, version);
 
-            // Create an OK Response and pass the taxi back in case it is needed.
-            builder = Response.ok(taxi);
+            // Create an OK Response and pass the taxi back, with its new ETag when the version is known.
+            builder = version == null ? Response.ok(taxi) : Revision.of(taxi).tag(Response.ok(taxi));
 
-            log.info("updateTaxi completed. Taxi = "+ taxi.getRegistration() + " " + taxi.getSeat() + " " + taxi.getId());
+            log.info("updateTaxi completed", "registration", taxi.getRegistration(), "seat", taxi.getSeat(), "id", taxi.getId());
+        } catch (EntityNotFoundException e) {
+            // Verify if the taxi exists. Return 404, if not present.
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        } catch (OptimisticLockException e) {
+            log.info("updateTaxi failed", "exception", e);
+            // The taxi has been changed since the client read it (If-Match), so it has to be read again.
+            Map<String, String> responseObj = new HashMap<String, String>();
+            responseObj.put("error", "The taxi has been changed by someone else, please reload it and try again");
+            builder = Response.status(Response.Status.PRECONDITION_FAILED).entity(responseObj);
         } catch (ConstraintViolationException ce) {
-            log.info("ConstraintViolationException - " + ce.toString());
+            log.info("updateTaxi failed", "exception", ce);
             // Handle bean validation issues
             builder = createViolationResponse(ce.getConstraintViolations());
         } catch (ValidationException e) {
-            log.info("ValidationException - " + e.toString());
+            log.info("updateTaxi failed", "exception", e);
             // Handle the unique constrain violation
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("registration", "That registration is already used, please use a unique email");
@@ -224,7 +325,7 @@ public class TaxiRESTService {
             responseObj.put("anotherError", "You can find this error message in /src/main/java/org/jboss/quickstarts/wfk/rest/ContactRESTService.java line 242.");
             builder = Response.status(Response.Status.CONFLICT).entity(responseObj);
         } catch (Exception e) {
-            log.info("Exception - " + e.toString());
+            log.info("updateTaxi failed", "exception", e);
             // Handle generic exceptions
             Map<String, String> responseObj = new HashMap<String, String>();
             responseObj.put("error", e.getMessage());
@@ -235,6 +336,71 @@ public class TaxiRESTService {
     }
 
    
+    /**
+     * <p>Deletes a taxi using the ID provided. If the ID is not present then nothing can be deleted.</p>
+     *
+     * <p>The taxi is deleted with a single DELETE statement, without being read first, and its bookings with another.
+     * Will return a JAX-RS response with either 204 No Content, 404 Not Found or a map of errors.</p>
+     * 
+     * @param id The Long parameter value provided as the id of the Taxi to be deleted
+     * @return A Response indicating the outcome of the delete operation
+     */
+    @DELETE
+    @Path("/{id:[0-9][0-9]*}")
+    public Response deleteTaxi(@PathParam("id") Long id) {
+        log.info("deleteTaxi started", "id", id);
+        Response.ResponseBuilder builder = null;
+
+        try {
+            if (service.deleteById(id) > 0) {
+                builder = Response.noContent();
+                log.info("deleteTaxi completed", "id", id);
+            } else {
+                log.info("deleteTaxi found no taxi", "id", id);
+                builder = Response.status(Response.Status.NOT_FOUND);
+            }
+        } catch (Exception e) {
+            log.info("deleteTaxi failed", "exception", e);
+            // Handle generic exceptions
+            Map<String, String> responseObj = new HashMap<String, String>();
+            responseObj.put("error", e.getMessage());
+            builder = Response.status(Response.Status.BAD_REQUEST).entity(responseObj);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * <p>Deletes many taxis with a single DELETE statement, e.g. <code>DELETE /rest/taxis?id=1&amp;id=2</code>. Their
+     * bookings are deleted with them.</p>
+     *
+     * <p>Will return a JAX-RS response with either 200 OK and the number of taxis deleted, e.g.
+     * <code>{"requested": 2, "deleted": 1}</code>, or with a map of errors.</p>
+     *
+     * @param ids The ids of the taxis to delete, at most {@value BulkDelete#MAX_IDS}
+     * @return A Response indicating the outcome of the delete operation
+     */
+    @DELETE
+    public Response deleteTaxis(@QueryParam("id") List<Long> ids) {
+        Set<Long> distinct = BulkDelete.ids(ids);
+        log.info("deleteTaxis started", "ids", distinct.size());
+        Response.ResponseBuilder builder = null;
+
+        try {
+            int deleted = service.deleteByIds(distinct);
+            builder = BulkDelete.ok(distinct, deleted);
+            log.info("deleteTaxis completed", "ids", distinct.size(), "deleted", deleted);
+        } catch (Exception e) {
+            log.info("deleteTaxis failed", "exception", e);
+            // Handle generic exceptions
+            Map<String, String> responseObj = new HashMap<String, String>();
+            responseObj.put("error", e.getMessage());
+            builder = Response.status(Response.Status.BAD_REQUEST).entity(responseObj);
+        }
+
+        return builder.build();
+    }
+
     /**
      * <p>Creates a JAX-RS "Bad Request" response including a map of all violation fields, and their message. This can be used
      * by calling client applications to display violations to users.<p/>
@@ -243,7 +409,7 @@ public class TaxiRESTService {
      * @return A Bad Request (400) Response containing all violation messages
      */
     private Response.ResponseBuilder createViolationResponse(Set<ConstraintViolation<?>> violations) {
-        log.fine("Validation completed. violations found: " + violations.size());
+        log.fine("Validation completed", "violations", violations.size());
 
         Map<String, String> responseObj = new HashMap<String, String>();
 
@@ -18,8 +18,10 @@ package org.jboss.quickstarts.wfk.taxi;
 
 import javax.inject.Inject;
 
-import javax.inject.Named;
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.TemporalType;
+import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
@@ -27,8 +29,16 @@ import javax.persistence.criteria.Root;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.logging.Logger;
+
+import org.jboss.quickstarts.wfk.metrics.RequestTimings;
+import org.jboss.quickstarts.wfk.util.Log;
+import org.jboss.quickstarts.wfk.util.Projection;
+import org.jboss.quickstarts.wfk.util.ReadRouting;
+import org.jboss.quickstarts.wfk.util.Replica;
+import org.jboss.quickstarts.wfk.util.ReplicaRead;
+import org.jboss.quickstarts.wfk.util.Revision;
 
 /**
  * <p>This is a Repository class and connects the Service/Control layer (see {@link TaxiService} with the
@@ -44,29 +54,99 @@ import java.util.logging.Logger;
 public class TaxiRepository {
 
     @Inject
-    private @Named("logger") Logger log;
+    private Log log;
 
     @Inject
     private EntityManager em;
+
+    @Inject
+    @Replica
+    private EntityManager replica;
     
     /**
      * <p>Returns a List of all persisted {@link Taxi} objects, sorted alphabetically by registration name.</p>
      * 
      * @return List of Taxi objects
      */
+    @ReplicaRead
     List<Taxi> findAllOrderedByRegistration() {
-        TypedQuery<Taxi> query = em.createNamedQuery(Taxi.FIND_ALL, Taxi.class); 
+        TypedQuery<Taxi> query = reader().createNamedQuery(Taxi.FIND_ALL, Taxi.class); 
         return query.getResultList();
     }
 
+    /**
+     * <p>Returns one page of persisted {@link Taxi} objects, sorted alphabetically by registration name.</p>
+     *
+     * <p>The registration is unique, so the page simply starts after the last registration of the previous page and
+     * the database can seek to it on the unique index instead of skipping rows with an OFFSET.</p>
+     *
+     * @param registration The registration of the last Taxi on the previous page, or null for the first page
+     * @param maxResults The maximum number of Taxis to return
+     * @return List of Taxi objects
+     */
+    @ReplicaRead
+    List<Taxi> findPageOrderedByRegistration(String registration, int maxResults) {
+        TypedQuery<Taxi> query;
+        if (registration == null) {
+            query = reader().createNamedQuery(Taxi.FIND_ALL, Taxi.class);
+        } else {
+            query = reader().createNamedQuery(Taxi.FIND_PAGE_AFTER, Taxi.class).setParameter("registration", registration);
+        }
+        return query.setMaxResults(maxResults).getResultList();
+    }
+
+    /**
+     * <p>Returns the id, version and last modified time of each Taxi on a page, in the same order and with the same
+     * seek as {@link #findPageOrderedByRegistration(String, int)}, without loading the Taxis.</p>
+     *
+     * @param registration The registration of the last Taxi on the previous page, or null for the first page
+     * @param maxResults The maximum number of Revisions to return
+     * @return List of Revisions
+     */
+    @ReplicaRead
+    List<Revision> findRevisionPageOrderedByRegistration(String registration, int maxResults) {
+        TypedQuery<Revision> query;
+        if (registration == null) {
+            query = reader().createNamedQuery(Taxi.REVISIONS, Revision.class);
+        } else {
+            query = reader().createNamedQuery(Taxi.REVISIONS_AFTER, Revision.class)
+                .setParameter("registration", registration);
+        }
+        return query.setMaxResults(maxResults).getResultList();
+    }
+
+    /**
+     * <p>Returns one page of Taxis like {@link #findPageOrderedByRegistration(String, int)}, but only the requested
+     * fields of each, read with a tuple query.</p>
+     *
+     * @param registration The registration of the last Taxi on the previous page, or null for the first page
+     * @param maxResults The maximum number of Taxis to return
+     * @param projection The fields to read, the registration is always read as well for the next page cursor
+     * @return List of tuples, with each field aliased by its name
+     * @throws IllegalArgumentException If a requested field is not a column of Taxi
+     */
+    @ReplicaRead
+    List<Tuple> findPageOrderedByRegistration(String registration, int maxResults, Projection projection) {
+        CriteriaBuilder cb = reader().getCriteriaBuilder();
+        CriteriaQuery<Tuple> criteria = cb.createTupleQuery();
+        Root<Taxi> taxi = criteria.from(Taxi.class);
+        criteria.multiselect(projection.select(taxi, "registration"));
+        if (registration != null) {
+            criteria.where(cb.greaterThan(taxi.<String>get("registration"), registration));
+        }
+        criteria.orderBy(cb.asc(taxi.get("registration")));
+        return reader().createQuery(criteria).setMaxResults(maxResults).getResultList();
+    }
+
     /**
      * <p>Returns a single Taxi object, specified by a Long id.<p/>
      *
      * @param id The id field of the Taxi to be returned
      * @return The Taxi with the specified id
      */
+    @ReplicaRead
     Taxi findById(Long id) {
-        return em.find(Taxi.class, id);
+        return reader().find(Taxi.class, id);
     }
 
     /**
@@ -77,27 +157,53 @@ public class TaxiRepository {
      * @param registration The registration field of the Taxi to be returned
      * @return The first Taxi with the specified registration
      */
+    @ReplicaRead
     Taxi findByRegistration(String registration) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Taxi> criteria = cb.createQuery(Taxi.class);
-        Root<Taxi> taxi = criteria.from(Taxi.class);
-        // Swap criteria statements if you would like to try out type-safe criteria queries, a new feature in JPA 2.0.
-        // criteria.select(taxi).where(cb.equal(taxi.get(Taxi_.registration), registration));
-        criteria.select(taxi).where(cb.equal(taxi.get("registration"), registration));
-        return em.createQuery(criteria).getSingleResult();
+        // A named query, rather than criteria, so it can be answered from the query cache
+        TypedQuery<Taxi> query = reader().createNamedQuery(Taxi.FIND_BY_REGISTRATION, Taxi.class)
+            .setParameter("registration", registration);
+        return query.getSingleResult();
+    }
+
+    /**
+     * <p>Returns the id, version and last modified time of the Taxi with the given id, without loading it.</p>
+     *
+     * @param id The id of the Taxi
+     * @return The Revision, or null if there is no such Taxi
+     */
+    @ReplicaRead
+    Revision findRevisionById(Long id) {
+        List<Revision> revisions = reader().createNamedQuery(Taxi.REVISION_BY_ID, Revision.class)
+            .setParameter("id", id).getResultList();
+        return revisions.isEmpty() ? null : revisions.get(0);
+    }
+
+    /**
+     * <p>Returns the id, version and last modified time of the Taxi with the given registration, without loading it.</p>
+     *
+     * @param registration The registration of the Taxi
+     * @return The Revision, or null if there is no such Taxi
+     */
+    @ReplicaRead
+    Revision findRevisionByRegistration(String registration) {
+        List<Revision> revisions = reader().createNamedQuery(Taxi.REVISION_BY_REGISTRATION, Revision.class)
+            .setParameter("registration", registration).getResultList();
+        return revisions.isEmpty() ? null : revisions.get(0);
     }
     
     /**
-     * <p>Returns a single Taxi object, specified by a String seat.</p>
+     * <p>Returns the Taxis with a number of seats, ordered by registration.</p>
      *
-     * <p>If there is more than one Taxi with the specified seat number, only the first encountered will be returned.<p/>
+     * <p>Many Taxis have the same number of seats, so at most <code>limit</code> of them are read.<p/>
      *
-     * @param seat The seat field of the Taxi to be returned
-     * @return The first Taxi with the specified seat number
+     * @param seat The seat field of the Taxis to be returned
+     * @param limit The maximum number of Taxis to return
+     * @return The Taxis with the specified seat number, may be empty
      */
-    Taxi findBySeat(String seat) {
-        TypedQuery<Taxi> query = em.createNamedQuery(Taxi.FIND_BY_SEAT, Taxi.class).setParameter("seat", seat); 
-        return query.getSingleResult();
+    @ReplicaRead
+    List<Taxi> findBySeat(String seat, int limit) {
+        return reader().createNamedQuery(Taxi.FIND_BY_SEAT, Taxi.class).setParameter("seat", seat).setMaxResults(limit)
+            .getResultList();
     }
     
    
@@ -118,36 +224,89 @@ public class TaxiRepository {
     
    
     Taxi create(Taxi taxi) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("TaxiRepository.create() - Creating " + taxi.getRegistration());
+        log.info("TaxiRepository.create() - creating", "registration", taxi.getRegistration());
         
         // Write the taxi to the database.
         em.persist(taxi);
+        // Flush now rather than at commit, so the statement is timed as part of the request (see RequestTimings).
+        RequestTimings.flush(em);
         
         return taxi;
     }
 
     /**
-     * <p>Updates an existing Taxi object in the application database with the provided Taxi object.</p>
-     * 
-     * <p>{@link javax.persistence.EntityManager#merge(Object) merge(Object)} creates a new instance of your entity,
-     * copies the state from the supplied entity, and makes the new copy managed. The instance you pass in will not be
-     * managed (any changes you make will not be part of the transaction - unless you call merge again).</p>
-     * 
-     * <p>merge(Object) however must have an object with the @Id already generated.</p>
-     * 
-     * @param taxi The Taxi object to be merged with an existing Taxi
-     * @return The Taxi that has been merged
+     * <p>Updates an existing Taxi in the application database with the provided Taxi object, in one UPDATE statement.</p>
+     *
+     * <p>The stored Taxi is not read first; with a version, only a row that still has it is updated. See
+     * ContactRepository.update() for how the versions and the second-level cache are handled.</p>
+     *
+     * @param taxi The Taxi object, with the @Id of the Taxi to update
+     * @param version The version the stored Taxi must have, or null to update it whatever its version
+     * @return true if the Taxi was updated; false if there is no Taxi with this id, or it has another version
      * @throws ConstraintViolationException, ValidationException, Exception
      */
-    Taxi update(Taxi taxi) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("TaxiRepository.update() - Updating " + taxi.getRegistration());
-        
-        // Either update the taxi or add it if it can't be found.
-        em.merge(taxi);
-        
-        return taxi;
+    boolean update(Taxi taxi, Long version) throws ConstraintViolationException, ValidationException, Exception {
+        log.info("TaxiRepository.update() - updating", "registration", taxi.getRegistration(), "version", version);
+
+        Query query;
+        if (version == null) {
+            query = em.createNamedQuery(Taxi.UPDATE);
+        } else {
+            query = em.createNamedQuery(Taxi.UPDATE_VERSION).setParameter("version", version);
+        }
+        taxi.touch();
+        query.setParameter("id", taxi.getId())
+            .setParameter("registration", taxi.getRegistration())
+            .setParameter("seat", taxi.getSeat())
+            .setParameter("lastModified", taxi.getLastModified(), TemporalType.TIMESTAMP);
+
+        if (RequestTimings.executeUpdate(query) == 0) {
+            return false;
+        }
+        if (version != null) {
+            taxi.setVersion(version + 1);
+        }
+        return true;
     }
-    
-   
 
+    /**
+     * <p>Returns which of the given ids belong to a Taxi, reading only the ids, so a bulk delete can name the Taxis it
+     * removes.</p>
+     *
+     * @param ids The ids to look for, not empty
+     * @return The ids of the Taxis found
+     */
+    List<Long> findIdsByIds(Collection<Long> ids) {
+        return em.createNamedQuery(Taxi.FIND_IDS_BY_IDS, Long.class).setParameter("ids", ids).getResultList();
+    }
+
+    /**
+     * <p>Deletes the Taxi with the given id with a single DELETE statement, without loading it first.</p>
+     *
+     * <p>Like any bulk statement this bypasses the persistence context, and Hibernate evicts the Taxi second-level
+     * cache region.</p>
+     *
+     * @param id The id of the Taxi to delete
+     * @return The number of Taxis deleted, 0 if there is no Taxi with this id
+     */
+    int deleteById(Long id) {
+        log.info("TaxiRepository.deleteById() - deleting", "id", id);
+        return RequestTimings.executeUpdate(em.createNamedQuery(Taxi.DELETE_BY_ID).setParameter("id", id));
+    }
+
+    /**
+     * <p>Deletes the Taxis with the given ids with a single DELETE statement, without loading them first.</p>
+     *
+     * @param ids The ids of the Taxis to delete, not empty
+     * @return The number of Taxis deleted, ids that match no Taxi are not counted
+     */
+    int deleteByIds(Collection<Long> ids) {
+        log.info("TaxiRepository.deleteByIds() - deleting", "ids", ids.size());
+        return RequestTimings.executeUpdate(em.createNamedQuery(Taxi.DELETE_BY_IDS).setParameter("ids", ids));
+    }
+
+    // The EntityManager of a @ReplicaRead, the replica's if the read has been routed to it
+    private EntityManager reader() {
+        return ReadRouting.select(em, replica);
+    }
 }
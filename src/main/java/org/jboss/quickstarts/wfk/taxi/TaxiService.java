@@ -24,19 +24,30 @@ import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
+import org.jboss.quickstarts.wfk.booking.BookingService;
+import org.jboss.quickstarts.wfk.util.EntitiesDeleted;
+import org.jboss.quickstarts.wfk.util.Log;
+import org.jboss.quickstarts.wfk.util.Projection;
+import org.jboss.quickstarts.wfk.util.Revision;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import javax.enterprise.context.Dependent;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
+import javax.persistence.Tuple;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
 import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
-import java.util.logging.Logger;
 
 /**
  * <p>This Service assumes the Control responsibility in the ECB pattern.</p>
@@ -57,7 +68,7 @@ import java.util.logging.Logger;
 public class TaxiService {
 
     @Inject
-    private @Named("logger") Logger log;
+    private Log log;
 
     @Inject
     private TaxiValidator validator;
@@ -65,6 +76,19 @@ public class TaxiService {
     @Inject
     private TaxiRepository crud;
 
+    @Inject
+    private BookingService bookings;
+
+    @Inject
+    private Event<Taxi> taxiChanges;
+
+    // Lets the booking availability index know the taxis changed
+    @Inject
+    private Event<TaxisChanged> taxisChanged;
+
+    @Inject
+    private Event<EntitiesDeleted> deletions;
+
     @Inject
     private @Named("httpClient") CloseableHttpClient httpClient;
     
@@ -77,6 +101,43 @@ public class TaxiService {
         return crud.findAllOrderedByRegistration();
     }
 
+    /**
+     * <p>Returns one page of persisted {@link Taxi} objects, sorted alphabetically by registration name, starting after
+     * the given registration.<p/>
+     *
+     * @param registration The registration of the last Taxi on the previous page, or null for the first page
+     * @param maxResults The maximum number of Taxis to return
+     * @return List of Taxi objects
+     */
+    List<Taxi> findPageOrderedByRegistration(String registration, int maxResults) {
+        return crud.findPageOrderedByRegistration(registration, maxResults);
+    }
+
+    /**
+     * <p>Returns the id, version and last modified time of each Taxi on a page, see
+     * {@link TaxiRepository#findRevisionPageOrderedByRegistration}.<p/>
+     *
+     * @param registration The registration of the last Taxi on the previous page, or null for the first page
+     * @param maxResults The maximum number of Revisions to return
+     * @return List of Revisions
+     */
+    List<Revision> findRevisionPageOrderedByRegistration(String registration, int maxResults) {
+        return crud.findRevisionPageOrderedByRegistration(registration, maxResults);
+    }
+
+    /**
+     * <p>Returns only the requested fields of one page of Taxis, see
+     * {@link TaxiRepository#findPageOrderedByRegistration(String, int, Projection)}.<p/>
+     *
+     * @param registration The registration of the last Taxi on the previous page, or null for the first page
+     * @param maxResults The maximum number of Taxis to return
+     * @param projection The fields to read
+     * @return List of tuples
+     */
+    List<Tuple> findPageOrderedByRegistration(String registration, int maxResults, Projection projection) {
+        return crud.findPageOrderedByRegistration(registration, maxResults, projection);
+    }
+
     /**
      * <p>Returns a single Taxi object, specified by a Long id.<p/>
      * 
@@ -100,15 +161,34 @@ public class TaxiService {
     }
 
     /**
-     * <p>Returns a single Taxi object, specified by a String seat number.<p/>
+     * <p>Returns the id, version and last modified time of the Taxi with the given id, without loading it.<p/>
      *
-     * <p>If there is more then one, only the first will be returned.<p/>
-     * 
-     * @param seat The seat field of the Taxi to be returned
-     * @return The first Taxi with the specified seat
+     * @param id The id of the Taxi
+     * @return The Revision, or null if there is no such Taxi
      */
-    Taxi findBySeat(String seat) {
-        return crud.findBySeat(seat);
+    Revision findRevisionById(Long id) {
+        return crud.findRevisionById(id);
+    }
+
+    /**
+     * <p>Returns the id, version and last modified time of the Taxi with the given registration, without loading it.<p/>
+     *
+     * @param registration The registration of the Taxi
+     * @return The Revision, or null if there is no such Taxi
+     */
+    Revision findRevisionByRegistration(String registration) {
+        return crud.findRevisionByRegistration(registration);
+    }
+
+    /**
+     * <p>Returns the Taxis with a number of seats, ordered by registration.<p/>
+     *
+     * @param seat The seat field of the Taxis to be returned
+     * @param limit The maximum number of Taxis to return
+     * @return The Taxis with the specified seat, may be empty
+     */
+    List<Taxi> findBySeat(String seat, int limit) {
+        return crud.findBySeat(seat, limit);
     }
 
 
@@ -122,7 +202,7 @@ public class TaxiService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Taxi create(Taxi taxi) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("TaxiService.create() - Creating " + taxi.getRegistration());
+        log.info("TaxiService.create() - creating", "registration", taxi.getRegistration());
         
         // Check to make sure the data fits with the parameters in the Taxi model and passes validation.
         validator.validateTaxi(taxi);
@@ -147,20 +227,28 @@ public class TaxiService {
 */
 
         // Write the taxi to the database.
-        return crud.create(taxi);
+        crud.create(taxi);
+        taxiChanges.fire(taxi);
+        taxisChanged.fire(new TaxisChanged());
+        return taxi;
     }
 
     /**
      * <p>Updates an existing Taxi object in the application database with the provided Taxi object.<p/>
      *
      * <p>Validates the data in the provided Taxi object using a TaxiValidator object.<p/>
+     *
+     * <p>The Taxi is updated with a single UPDATE statement, without reading it first. If no row is updated, an
+     * EntityNotFoundException is thrown when there is no Taxi with this id, and an OptimisticLockException when it
+     * has been changed since the client read it.</p>
      * 
      * @param taxi The Taxi object to be passed as an update to the application database
+     * @param version The version the Taxi must still have, or null to update it whatever its version
      * @return The Taxi object that has been successfully updated in the application database
      * @throws ConstraintViolationException, ValidationException, Exception
      */
-    Taxi update(Taxi taxi) throws ConstraintViolationException, ValidationException, Exception {
-        log.info("TaxiService.update() - Updating " + taxi.getRegistration());
+    Taxi update(Taxi taxi, Long version) throws ConstraintViolationException, ValidationException, Exception {
+        log.info("TaxiService.update() - updating", "registration", taxi.getRegistration());
         
         // Check to make sure the data fits with the parameters in the taxi model and passes validation.
         validator.validateTaxi(taxi);
@@ -182,8 +270,66 @@ public class TaxiService {
         taxi.setState(areaCodes.getJSONObject(0).getString("state"));
         HttpClientUtils.closeQuietly(response);
 */
-        // Either update the taxi or add it if it can't be found.
-        return crud.update(taxi);
+        // Update the taxi in one statement, only if it still has the version the client read.
+        if (!crud.update(taxi, version)) {
+            throw notUpdated(taxi);
+        }
+        taxiChanges.fire(taxi);
+        taxisChanged.fire(new TaxisChanged());
+        return taxi;
+    }
+
+    /**
+     * <p>Explains why an update changed no rows: the Taxi was deleted, or has been changed since it was read.</p>
+     */
+    private PersistenceException notUpdated(Taxi taxi) {
+        if (crud.findRevisionById(taxi.getId()) == null) {
+            return new EntityNotFoundException("No taxi with id " + taxi.getId());
+        }
+        return new OptimisticLockException("The taxi has been changed since it was read", null, taxi);
+    }
+
+    /**
+     * <p>Deletes the Taxi with the given id, and its Bookings.<p/>
+     *
+     * <p>Bookings refer to their taxi by id, so they are deleted explicitly, with one statement, before the Taxi is
+     * deleted with another.</p>
+     * 
+     * @param id The id of the Taxi to be removed from the application database
+     * @return The number of Taxis deleted, 0 if there is no Taxi with this id
+     */
+    int deleteById(Long id) {
+        log.info("TaxiService.deleteById() - deleting", "id", id);
+        bookings.deleteByTaxiIds(Collections.singleton(id));
+        int deleted = crud.deleteById(id);
+        fireDeleted(deleted, Collections.singleton(id));
+        return deleted;
+    }
+
+    /**
+     * <p>Deletes the Taxis with the given ids, and their Bookings, see {@link #deleteById(Long)}. The ids that belong to
+     * a Taxi are read first, and only those are deleted and passed on in the {@link EntitiesDeleted} event.<p/>
+     * 
+     * @param ids The ids of the Taxis to be removed from the application database, not empty
+     * @return The number of Taxis deleted
+     */
+    int deleteByIds(Collection<Long> ids) {
+        log.info("TaxiService.deleteByIds() - deleting", "ids", ids.size());
+        List<Long> found = crud.findIdsByIds(ids);
+        if (found.isEmpty()) {
+            return 0;
+        }
+        bookings.deleteByTaxiIds(found);
+        int deleted = crud.deleteByIds(found);
+        fireDeleted(deleted, found);
+        return deleted;
+    }
+
+    private void fireDeleted(int deleted, Collection<Long> ids) {
+        if (deleted > 0) {
+            taxisChanged.fire(new TaxisChanged());
+            deletions.fire(new EntitiesDeleted(Taxi.class, ids));
+        }
     }
 
 }
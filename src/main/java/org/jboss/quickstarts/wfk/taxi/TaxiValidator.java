@@ -26,6 +26,9 @@ import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 import javax.validation.Validator;
 
+import org.jboss.quickstarts.wfk.metrics.Phase;
+import org.jboss.quickstarts.wfk.metrics.RequestTimings;
+
 /**
  * <p>This class provides methods to check Taxi objects against arbitrary requirements.</p>
  * 
@@ -55,16 +58,21 @@ public class TaxiValidator {
      * @throws ValidationException If taxi with the same registration name already exists
      */
     void validateTaxi(Taxi taxi) throws ConstraintViolationException, ValidationException {
-        // Create a bean validator and check for issues.
-        Set<ConstraintViolation<Taxi>> violations = validator.validate(taxi);
+        long started = System.nanoTime();
+        try {
+            // Create a bean validator and check for issues.
+            Set<ConstraintViolation<Taxi>> violations = validator.validate(taxi);
 
-        if (!violations.isEmpty()) {
-            throw new ConstraintViolationException(new HashSet<ConstraintViolation<?>>(violations));
-        }
+            if (!violations.isEmpty()) {
+                throw new ConstraintViolationException(new HashSet<ConstraintViolation<?>>(violations));
+            }
 
-        // Check the uniqueness of the registration name
-        if (registrationAlreadyExists(taxi.getRegistration(), taxi.getId())) {
-            throw new ValidationException("Unique Registration Violation");
+            // Check the uniqueness of the registration name
+            if (registrationAlreadyExists(taxi.getRegistration(), taxi.getId())) {
+                throw new ValidationException("Unique Registration Violation");
+            }
+        } finally {
+            RequestTimings.record(Phase.VALIDATION, started);
         }
     }
 
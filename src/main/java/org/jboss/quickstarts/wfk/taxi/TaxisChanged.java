@@ -0,0 +1,33 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.taxi;
+
+/**
+ * <p>A CDI event fired by {@link TaxiService} when a Taxi is created, updated or deleted, so state derived from the
+ * whole set of taxis can be rebuilt.</p>
+ *
+ * <p>It carries nothing: observers reload the taxis they need. Observe it with
+ * <code>during = TransactionPhase.AFTER_SUCCESS</code>, so a rolled back write is never seen.</p>
+ *
+ * @author Joshua Wilson
+ * @see org.jboss.quickstarts.wfk.booking.TaxiAvailability
+ */
+public class TaxisChanged {
+
+    TaxisChanged() {
+    }
+}
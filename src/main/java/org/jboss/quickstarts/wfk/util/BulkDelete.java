@@ -0,0 +1,76 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * <p>Helpers shared by the bulk delete endpoints, e.g. <code>DELETE /rest/contacts?id=10001&amp;id=10002</code>.</p>
+ *
+ * <p>The ids are deleted with one <code>DELETE ... WHERE id IN (...)</code> statement, so a request may carry at most
+ * {@value #MAX_IDS} of them. The answer reports how many of the requested ids were deleted; the rest did not exist.</p>
+ *
+ * @author Joshua Wilson
+ */
+public final class BulkDelete {
+
+    /** Most ids one request may delete. */
+    public static final int MAX_IDS = 1000;
+
+    private BulkDelete() {
+    }
+
+    /**
+     * <p>Checks the ids sent with a bulk delete and drops the repeated ones.</p>
+     *
+     * @param requested The <code>id</code> query parameters
+     * @return The distinct ids, in the order they were sent
+     * @throws WebApplicationException with 400 (Bad Request) if no id, or more than {@link #MAX_IDS}, were sent
+     */
+    public static Set<Long> ids(List<Long> requested) {
+        if (requested == null || requested.isEmpty()) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        Set<Long> ids = new LinkedHashSet<Long>(requested);
+        ids.remove(null);
+        if (ids.isEmpty() || ids.size() > MAX_IDS) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        return ids;
+    }
+
+    /**
+     * <p>Builds the 200 (OK) answer of a bulk delete, e.g. <code>{"requested": 3, "deleted": 2}</code>.</p>
+     *
+     * @param ids The distinct ids that were requested
+     * @param deleted The number of rows deleted
+     * @return The response builder
+     */
+    public static Response.ResponseBuilder ok(Set<Long> ids, int deleted) {
+        Map<String, Integer> report = new LinkedHashMap<String, Integer>();
+        report.put("requested", ids.size());
+        report.put("deleted", deleted);
+        return Response.ok(report);
+    }
+}
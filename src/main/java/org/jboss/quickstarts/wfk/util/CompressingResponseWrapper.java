@@ -0,0 +1,364 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * <p>Compresses a response as it is written, once it is known to be worth it.</p>
+ *
+ * <p>The first <code>minSize</code> bytes are held back. If the response ends before then, or is not text, JSON or
+ * JavaScript, it is sent as is. Otherwise the <code>Content-Encoding</code> header is set and everything written from
+ * then on streams through a deflater borrowed from the pool, which goes back to the pool in {@link #finish()}.</p>
+ *
+ * <p>The ETag and Content-Length headers set by the wrapped resource are held back with the first bytes, as they depend
+ * on whether the response ends up compressed.</p>
+ *
+ * <p>{@link #reset()} and {@link #resetBuffer()}, used for example to replace a half written response with an error,
+ * also return the deflater and drop the <code>Content-Encoding</code> header, so the new body is decided afresh.</p>
+ *
+ * @author Joshua Wilson
+ * @see Compression
+ */
+public class CompressingResponseWrapper extends HttpServletResponseWrapper {
+
+    private final ContentEncoding encoding;
+
+    private final DeflaterPool pool;
+
+    private final boolean etagSuffixRequested;
+
+    private final byte[] buffer;
+
+    private int buffered;
+
+    private final CompressingOutputStream stream = new CompressingOutputStream();
+
+    private PrintWriter writer;
+
+    private String etag;
+
+    private int contentLength = -1;
+
+    private boolean decided;
+
+    private Deflater deflater;
+
+    private DeflaterOutputStream compressed;
+
+    private boolean finished;
+
+    CompressingResponseWrapper(HttpServletResponse response, ContentEncoding encoding, DeflaterPool pool, int minSize,
+            boolean etagSuffixRequested) {
+        super(response);
+        this.encoding = encoding;
+        this.pool = pool;
+        this.etagSuffixRequested = etagSuffixRequested;
+        this.buffer = new byte[minSize];
+        // Whether or not this response ends up compressed, another request for it might be
+        response.addHeader("Vary", "Accept-Encoding");
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(stream, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        // Before the decision there is nothing to flush: the held back bytes stay held back
+        if (decided) {
+            stream.flush();
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        discard();
+        writer = null;
+        etag = null;
+        contentLength = -1;
+        // reset() clears every header, this one included
+        ((HttpServletResponse) getResponse()).addHeader("Vary", "Accept-Encoding");
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        if (compressed != null) {
+            // The held back ETag and Content-Length are kept, as resetBuffer() keeps the headers
+            resetDropping("Content-Encoding");
+        }
+        discard();
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        contentLength = len;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (!holdBack(name, value)) {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (!holdBack(name, value)) {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if (!holdBack(name, String.valueOf(value))) {
+            super.setIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        if (!holdBack(name, String.valueOf(value))) {
+            super.addIntHeader(name, value);
+        }
+    }
+
+    /**
+     * <p>Sends what is held back and ends the compressed stream, if there is one. Safe to call more than once.</p>
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (writer != null) {
+            writer.flush();
+        }
+        if (!decided) {
+            // Ended below the minimum size
+            decide(false);
+        }
+        if (compressed != null) {
+            try {
+                compressed.finish();
+            } finally {
+                pool.release(deflater);
+                compressed = null;
+                deflater = null;
+            }
+        }
+    }
+
+    /**
+     * <p>Returns the deflater to the pool without writing anything more, for a request that failed.</p>
+     */
+    public void abandon() {
+        finished = true;
+        releaseDeflater();
+    }
+
+    /**
+     * <p>Forgets the held back bytes and the compressed stream, so the next write decides again.</p>
+     */
+    private void discard() {
+        releaseDeflater();
+        decided = false;
+        buffered = 0;
+    }
+
+    private void releaseDeflater() {
+        if (deflater != null) {
+            pool.release(deflater);
+            compressed = null;
+            deflater = null;
+        }
+    }
+
+    /**
+     * <p>Resets the wrapped response and puts back its status, content type and headers, except the dropped one. The
+     * Servlet API has no way to remove a single header.</p>
+     */
+    private void resetDropping(String dropped) {
+        HttpServletResponse response = (HttpServletResponse) getResponse();
+        int status = response.getStatus();
+        String contentType = response.getContentType();
+        Locale locale = response.getLocale();
+        Map<String, Collection<String>> headers = new LinkedHashMap<String, Collection<String>>();
+        for (String name : response.getHeaderNames()) {
+            if (!dropped.equalsIgnoreCase(name)) {
+                headers.put(name, new ArrayList<String>(response.getHeaders(name)));
+            }
+        }
+        response.reset();
+        response.setStatus(status);
+        response.setLocale(locale);
+        if (contentType != null) {
+            response.setContentType(contentType);
+        }
+        for (Map.Entry<String, Collection<String>> header : headers.entrySet()) {
+            for (String value : header.getValue()) {
+                response.addHeader(header.getKey(), value);
+            }
+        }
+    }
+
+    private boolean holdBack(String name, String value) {
+        if (decided) {
+            return false;
+        }
+        if ("ETag".equalsIgnoreCase(name)) {
+            etag = value;
+            return true;
+        }
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            try {
+                contentLength = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                contentLength = -1;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * <p>Decides whether to compress, sends the headers that depend on it and then the held back bytes.</p>
+     */
+    private void decide(boolean compress) throws IOException {
+        decided = true;
+        compress = compress && isCompressible();
+        HttpServletResponse response = (HttpServletResponse) getResponse();
+        if (compress) {
+            response.setHeader("Content-Encoding", encoding.getToken());
+            if (etag != null) {
+                response.setHeader("ETag", suffixed(etag));
+            }
+            deflater = pool.borrow();
+            compressed = encoding.open(response.getOutputStream(), deflater, Compression.BUFFER_SIZE);
+        } else {
+            if (etag != null) {
+                // A 304 answers for the representation the client holds, which may be the compressed one
+                boolean notModified = response.getStatus() == HttpServletResponse.SC_NOT_MODIFIED;
+                response.setHeader("ETag", notModified && etagSuffixRequested ? suffixed(etag) : etag);
+            }
+            if (contentLength >= 0) {
+                response.setContentLength(contentLength);
+            }
+        }
+        if (buffered > 0) {
+            target().write(buffer, 0, buffered);
+            buffered = 0;
+        }
+    }
+
+    private boolean isCompressible() {
+        HttpServletResponse response = (HttpServletResponse) getResponse();
+        int status = response.getStatus();
+        if (status == HttpServletResponse.SC_NO_CONTENT || status == HttpServletResponse.SC_NOT_MODIFIED
+            || status == HttpServletResponse.SC_PARTIAL_CONTENT || response.containsHeader("Content-Encoding")) {
+            return false;
+        }
+        String type = response.getContentType();
+        if (type == null) {
+            return false;
+        }
+        type = type.toLowerCase(Locale.ENGLISH);
+        return type.startsWith("application/json") || type.startsWith("application/javascript")
+            || type.startsWith("text/");
+    }
+
+    private String suffixed(String tag) {
+        // "14-3" becomes "14-3--gzip", a weak W/"14-3" becomes W/"14-3--gzip"
+        return tag.endsWith("\"") ? tag.substring(0, tag.length() - 1) + encoding.getETagSuffix() + "\"" : tag;
+    }
+
+    private OutputStream target() throws IOException {
+        return compressed != null ? compressed : getResponse().getOutputStream();
+    }
+
+    /**
+     * <p>Holds back the first bytes, then passes writes on to the deflater or the real response.</p>
+     */
+    private class CompressingOutputStream extends ServletOutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                throw new IOException("The response has been finished");
+            }
+            if (!decided) {
+                if (buffered + len <= buffer.length && (contentLength < 0 || contentLength >= buffer.length)) {
+                    System.arraycopy(b, off, buffer, buffered, len);
+                    buffered += len;
+                    return;
+                }
+                // The response is known to be big enough, unless the resource said how long it is
+                decide(contentLength < 0 || contentLength >= buffer.length);
+            }
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (decided) {
+                target().flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+    }
+}
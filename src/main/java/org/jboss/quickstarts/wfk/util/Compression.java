@@ -0,0 +1,180 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * <p>Compresses REST responses in the coding the client prefers (see {@link ContentEncoding#negotiate(String)}).</p>
+ *
+ * <p>It is used by the {@link CompressionFilter} for plain responses and by the {@link JSONPRequestFilter} for JSONP
+ * responses, which compresses outside its padding so the padding is compressed with the JSON. Doing both from the
+ * filters themselves keeps the result right whatever order the container runs the filters in.</p>
+ *
+ * <p>Responses are only compressed once they reach a minimum size (smaller ones gain little and cost a deflater), and
+ * only for text, JSON and JavaScript content. The compressed bytes are streamed to the client as they are produced, with
+ * deflaters taken from a {@link DeflaterPool}.</p>
+ *
+ * <p>A compressed response is a different representation, so its ETag gets a suffix (e.g. <code>"14-3--gzip"</code>).
+ * The suffix is removed from the <code>If-None-Match</code> and <code>If-Match</code> headers before the REST services
+ * see them, so they compare against their own ETags, and put back on a 304 (Not Modified) answer.</p>
+ *
+ * <p>The following system properties configure compression:</p>
+ * <ul>
+ *   <li><code>compression.enabled</code> - true (default) or false</li>
+ *   <li><code>compression.min.size</code> - the smallest response, in bytes, that is compressed, default 1024</li>
+ *   <li><code>compression.level</code> - the deflate level from 1 (fastest) to 9 (smallest), default 6</li>
+ *   <li><code>compression.pool.size</code> - the most idle deflaters kept per coding, default 32</li>
+ * </ul>
+ *
+ * @author Joshua Wilson
+ * @see CompressingResponseWrapper
+ */
+@ApplicationScoped
+public class Compression {
+
+    // The size of the buffer between a deflater and the response
+    static final int BUFFER_SIZE = 8192;
+
+    private static final String[] CONDITIONAL_HEADERS = {"If-None-Match", "If-Match"};
+
+    @Inject
+    private Log log;
+
+    private final Map<ContentEncoding, DeflaterPool> pools = new EnumMap<ContentEncoding, DeflaterPool>(ContentEncoding.class);
+
+    private boolean enabled;
+
+    private int minSize;
+
+    @PostConstruct
+    void init() {
+        enabled = Boolean.parseBoolean(System.getProperty("compression.enabled", "true"));
+        minSize = Integer.getInteger("compression.min.size", 1024);
+        int level = Integer.getInteger("compression.level", 6);
+        int poolSize = Integer.getInteger("compression.pool.size", 32);
+        for (ContentEncoding encoding : ContentEncoding.values()) {
+            pools.put(encoding, new DeflaterPool(level, encoding.isNowrap(), poolSize));
+        }
+        log.info("Compression - started", "enabled", enabled, "minSize", minSize, "level", level, "poolSize", poolSize);
+    }
+
+    @PreDestroy
+    void close() {
+        for (DeflaterPool pool : pools.values()) {
+            pool.close();
+        }
+    }
+
+    /**
+     * <p>Wraps a response so it is compressed in the coding the request accepts.</p>
+     *
+     * @param request The request, whose <code>Accept-Encoding</code> header is negotiated
+     * @param response The response to compress
+     * @return The wrapper, which must be {@link CompressingResponseWrapper#finish() finished} once the response is
+     * written, or null if the response is to be sent as is
+     */
+    public CompressingResponseWrapper wrap(HttpServletRequest request, HttpServletResponse response) {
+        if (!enabled) {
+            return null;
+        }
+        ContentEncoding encoding = ContentEncoding.negotiate(request.getHeader("Accept-Encoding"));
+        if (encoding == null) {
+            return null;
+        }
+        return new CompressingResponseWrapper(response, encoding, pools.get(encoding), minSize,
+            hasETagSuffix(request, encoding));
+    }
+
+    /**
+     * <p>Removes the suffixes this class adds to ETags from the request's <code>If-None-Match</code> and
+     * <code>If-Match</code> headers.</p>
+     *
+     * @param request The request
+     * @return The request, wrapped if it had a suffixed ETag
+     */
+    public HttpServletRequest unwrapETags(HttpServletRequest request) {
+        if (!enabled) {
+            return request;
+        }
+        Map<String, String> plain = null;
+        for (String header : CONDITIONAL_HEADERS) {
+            String value = request.getHeader(header);
+            if (value != null && value.indexOf("--") >= 0) {
+                for (ContentEncoding encoding : ContentEncoding.values()) {
+                    value = value.replace(encoding.getETagSuffix() + "\"", "\"");
+                }
+                if (plain == null) {
+                    plain = new HashMap<String, String>(4);
+                }
+                plain.put(header.toLowerCase(Locale.ENGLISH), value);
+            }
+        }
+        return plain == null ? request : new ETagRequest(request, plain);
+    }
+
+    private static boolean hasETagSuffix(HttpServletRequest request, ContentEncoding encoding) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        return ifNoneMatch != null && ifNoneMatch.indexOf(encoding.getETagSuffix() + "\"") >= 0;
+    }
+
+    /**
+     * <p>A request with replaced <code>If-None-Match</code> or <code>If-Match</code> headers.</p>
+     */
+    private static class ETagRequest extends HttpServletRequestWrapper {
+
+        // The replaced headers, by lower case name
+        private final Map<String, String> headers;
+
+        ETagRequest(HttpServletRequest request, Map<String, String> headers) {
+            super(request);
+            this.headers = headers;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            String value = headers.get(name.toLowerCase(Locale.ENGLISH));
+            return value != null ? value : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            String value = headers.get(name.toLowerCase(Locale.ENGLISH));
+            if (value != null) {
+                List<String> values = new ArrayList<String>(1);
+                values.add(value);
+                return Collections.enumeration(values);
+            }
+            return super.getHeaders(name);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jboss.quickstarts.wfk.stream.ChangeStreamServlet;
+
+/**
+ * <p>Compresses the responses of the REST services, see {@link Compression}.</p>
+ *
+ * <p>JSONP requests are left to the {@link JSONPRequestFilter}, which compresses them around their padding. The servlet
+ * container does not promise which of the two filters runs first, so neither relies on it.</p>
+ *
+ * <p>Event streams are not compressed: the compressed response is finished when the chain returns, which for a stream is
+ * as soon as it has been opened.</p>
+ *
+ * @author Joshua Wilson
+ * @see javax.servlet.Filter
+ */
+@WebFilter(urlPatterns = "/rest/*", asyncSupported = true)
+public class CompressionFilter implements Filter {
+
+    @Inject
+    private Compression compression;
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        // Nothing needed
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException,
+        ServletException {
+
+        if (!(request instanceof HttpServletRequest) || JSONPRequestFilter.isJSONPRequest((HttpServletRequest) request)
+            || ChangeStreamServlet.isStreamRequest((HttpServletRequest) request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        CompressingResponseWrapper compressed = compression.wrap(httpRequest, (HttpServletResponse) response);
+        if (compressed == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        boolean completed = false;
+        try {
+            chain.doFilter(compression.unwrapETags(httpRequest), compressed);
+            completed = true;
+        } finally {
+            if (completed) {
+                compressed.finish();
+            } else {
+                // Leave the response to the container's error handling
+                compressed.abandon();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // Nothing to do
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * <p>The content codings {@link Compression} can apply to a response, and the <code>Accept-Encoding</code> negotiation
+ * that chooses between them.</p>
+ *
+ * <p>Brotli (<code>br</code>) is understood in <code>Accept-Encoding</code> but never chosen, as the JDK has no
+ * encoder for it; a client that accepts it and gzip gets gzip.</p>
+ *
+ * @author Joshua Wilson
+ * @see Compression
+ */
+public enum ContentEncoding {
+
+    GZIP("gzip", true) {
+        @Override
+        DeflaterOutputStream open(OutputStream out, Deflater deflater, int bufferSize) throws IOException {
+            return new PooledGzipOutputStream(out, deflater, bufferSize);
+        }
+    },
+
+    DEFLATE("deflate", false) {
+        @Override
+        DeflaterOutputStream open(OutputStream out, Deflater deflater, int bufferSize) throws IOException {
+            return new DeflaterOutputStream(out, deflater, bufferSize);
+        }
+    };
+
+    private final String token;
+
+    private final boolean nowrap;
+
+    private ContentEncoding(String token, boolean nowrap) {
+        this.token = token;
+        this.nowrap = nowrap;
+    }
+
+    /**
+     * @return The name of the coding in the <code>Content-Encoding</code> header
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return What is appended to the ETag of a response in this coding, so it differs from the ETag of the
+     * uncompressed response as a strong ETag must
+     */
+    public String getETagSuffix() {
+        return "--" + token;
+    }
+
+    /**
+     * @return Whether the {@link Deflater} must write raw deflate data (gzip writes its own header and trailer)
+     */
+    boolean isNowrap() {
+        return nowrap;
+    }
+
+    /**
+     * <p>Starts a compressed stream in this coding. Closing or finishing the stream does not end the deflater, so it
+     * can be reset and used again.</p>
+     */
+    abstract DeflaterOutputStream open(OutputStream out, Deflater deflater, int bufferSize) throws IOException;
+
+    /**
+     * <p>Chooses the coding to send from an <code>Accept-Encoding</code> header: the supported coding with the
+     * highest quality value, gzip winning ties. <code>*</code> stands for any coding not listed by name.</p>
+     *
+     * @param acceptEncoding The header, may be null
+     * @return The coding, or null if the client accepts none of them and the response must be sent as is
+     */
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        float[] quality = new float[values().length];
+        boolean[] listed = new boolean[values().length];
+        float any = 0;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ENGLISH);
+            float q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=") || param.startsWith("Q=")) {
+                    try {
+                        q = Float.parseFloat(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if ("*".equals(name)) {
+                any = q;
+            } else {
+                ContentEncoding encoding = forToken(name);
+                if (encoding != null) {
+                    quality[encoding.ordinal()] = q;
+                    listed[encoding.ordinal()] = true;
+                }
+            }
+        }
+
+        ContentEncoding best = null;
+        float bestQuality = 0;
+        for (ContentEncoding encoding : values()) {
+            float q = listed[encoding.ordinal()] ? quality[encoding.ordinal()] : any;
+            if (q > bestQuality) {
+                best = encoding;
+                bestQuality = q;
+            }
+        }
+        return best;
+    }
+
+    private static ContentEncoding forToken(String name) {
+        if ("gzip".equals(name) || "x-gzip".equals(name)) {
+            return GZIP;
+        }
+        if ("deflate".equals(name)) {
+            return DEFLATE;
+        }
+        return null;
+    }
+}
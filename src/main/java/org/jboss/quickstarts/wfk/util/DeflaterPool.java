@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * <p>A bounded pool of {@link Deflater}s with the same settings.</p>
+ *
+ * <p>Each deflater holds a native zlib stream of a few hundred kilobytes, which is only freed by {@link Deflater#end()}
+ * or, much later, by the finalizer. Taking one from the pool and resetting it after use avoids allocating that memory on
+ * every compressed response. When the pool is empty a new deflater is made; when it is full a returned one is
+ * ended.</p>
+ *
+ * @author Joshua Wilson
+ * @see Compression
+ */
+class DeflaterPool {
+
+    private final int level;
+
+    private final boolean nowrap;
+
+    private final BlockingQueue<Deflater> idle;
+
+    /**
+     * @param level The compression level, 1 to 9 or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param nowrap Whether the deflaters write raw deflate data, see {@link Deflater#Deflater(int, boolean)}
+     * @param maxIdle The most deflaters kept for reuse
+     */
+    DeflaterPool(int level, boolean nowrap, int maxIdle) {
+        this.level = level;
+        this.nowrap = nowrap;
+        this.idle = new ArrayBlockingQueue<Deflater>(maxIdle);
+    }
+
+    /**
+     * @return An idle deflater, or a new one if there is none
+     */
+    Deflater borrow() {
+        Deflater deflater = idle.poll();
+        return deflater != null ? deflater : new Deflater(level, nowrap);
+    }
+
+    /**
+     * <p>Resets a deflater and keeps it for the next response, or ends it if the pool is full.</p>
+     */
+    void release(Deflater deflater) {
+        deflater.reset();
+        if (!idle.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    int idleCount() {
+        return idle.size();
+    }
+
+    /**
+     * <p>Ends the idle deflaters.</p>
+     */
+    void close() {
+        Deflater deflater;
+        while ((deflater = idle.poll()) != null) {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.Collection;
+
+/**
+ * <p>A CDI event fired by the services when entities are deleted with a bulk DELETE statement, which only knows their
+ * ids. The services read the ids before the statement, so the event names only the entities that were deleted.</p>
+ *
+ * <p>Observers of in-memory state derived from the entities should check the type and observe it with
+ * <code>during = TransactionPhase.AFTER_SUCCESS</code>, so a rolled back delete is never seen.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class EntitiesDeleted {
+
+    private final Class<?> type;
+
+    private final Collection<Long> ids;
+
+    public EntitiesDeleted(Class<?> type, Collection<Long> ids) {
+        this.type = type;
+        this.ids = ids;
+    }
+
+    /**
+     * @return The entity class, e.g. Contact.class
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return The ids that were deleted
+     */
+    public Collection<Long> getIds() {
+        return ids;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * <p>Owns the pooled {@link CloseableHttpClient} shared by the application (see {@link Resources#produceHttpClient}).</p>
+ *
+ * <p>Connections are kept in a {@link PoolingHttpClientConnectionManager} and reused across requests. A background
+ * thread closes expired and idle connections, so a connection the server has already dropped is not handed out.</p>
+ *
+ * <p>The following system properties configure the pool:</p>
+ * <ul>
+ *   <li><code>httpclient.max.total</code> - the maximum number of connections, default 50</li>
+ *   <li><code>httpclient.max.per.route</code> - the maximum number of connections to one host, default 20</li>
+ *   <li><code>httpclient.connect.timeout.ms</code> - how long to wait to connect, default 2000</li>
+ *   <li><code>httpclient.socket.timeout.ms</code> - how long to wait for data, default 5000</li>
+ *   <li><code>httpclient.lease.timeout.ms</code> - how long to wait for a free pooled connection, default 1000</li>
+ *   <li><code>httpclient.keepalive.seconds</code> - how long to keep a connection when the server does not say,
+ *       default 30</li>
+ *   <li><code>httpclient.idle.timeout.seconds</code> - how long a connection may sit idle in the pool, default 30</li>
+ * </ul>
+ *
+ * @author Joshua Wilson
+ */
+@ApplicationScoped
+public class HttpClientPool {
+
+    @Inject
+    private Log log;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    private CloseableHttpClient client;
+
+    private ScheduledExecutorService evictor;
+
+    private int maxTotal;
+
+    private int maxPerRoute;
+
+    @PostConstruct
+    void init() {
+        maxTotal = Integer.getInteger("httpclient.max.total", 50);
+        maxPerRoute = Integer.getInteger("httpclient.max.per.route", 20);
+        final long keepAliveMillis = TimeUnit.SECONDS.toMillis(Long.getLong("httpclient.keepalive.seconds", 30));
+        final long idleSeconds = Long.getLong("httpclient.idle.timeout.seconds", 30);
+
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(Integer.getInteger("httpclient.connect.timeout.ms", 2000))
+            .setSocketTimeout(Integer.getInteger("httpclient.socket.timeout.ms", 5000))
+            .setConnectionRequestTimeout(Integer.getInteger("httpclient.lease.timeout.ms", 1000))
+            .build();
+
+        client = HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .setKeepAliveStrategy(new ConnectionKeepAliveStrategy() {
+                // Honour the server's Keep-Alive timeout if it sends one, otherwise keep the connection for the default.
+                @Override
+                public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                    HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+                    while (it.hasNext()) {
+                        HeaderElement element = it.nextElement();
+                        if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                            try {
+                                return Long.parseLong(element.getValue()) * 1000;
+                            } catch (NumberFormatException ignore) {
+                                // Fall back to the default
+                            }
+                        }
+                    }
+                    return keepAliveMillis;
+                }
+            })
+            .build();
+
+        evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "http-client-idle-evictor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                connectionManager.closeExpiredConnections();
+                connectionManager.closeIdleConnections(idleSeconds, TimeUnit.SECONDS);
+            }
+        }, idleSeconds, idleSeconds, TimeUnit.SECONDS);
+
+        log.info("HttpClientPool - started", "maxTotal", maxTotal, "maxPerRoute", maxPerRoute);
+    }
+
+    @PreDestroy
+    void close() {
+        evictor.shutdownNow();
+        try {
+            client.close();
+        } catch (IOException e) {
+            log.warning("HttpClientPool - error closing the HTTP client", "exception", e);
+        }
+    }
+
+    public CloseableHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * @return The leased, pending and available connection counts of the whole pool
+     */
+    public PoolStats getTotalStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * <p>Formats and parses dates as ISO-8601 calendar dates (<code>yyyy-MM-dd</code>) in the default time zone, giving the
+ * same results as <code>new SimpleDateFormat("yyyy-MM-dd")</code>.</p>
+ *
+ * <p>Unlike a <code>SimpleDateFormat</code> the codec holds no state, so a single instance can be shared by every
+ * request thread without locking or cloning, and it works on <code>char</code> ranges so the JSON layer can call it
+ * without creating intermediate Strings. The day arithmetic is the proleptic Gregorian "days from civil" algorithm;
+ * dates before 1582 therefore differ from the Julian calendar <code>SimpleDateFormat</code> switches to, which does not
+ * matter for birth and travel dates.</p>
+ *
+ * @author Joshua Wilson
+ * @see JacksonConfig
+ */
+public final class IsoDateCodec {
+
+    /** The number of characters in a formatted date. */
+    public static final int LENGTH = 10;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private IsoDateCodec() {
+    }
+
+    /**
+     * <p>Writes a date into a buffer.</p>
+     *
+     * @param date The date to format
+     * @param buffer Receives the {@link #LENGTH} characters of the date
+     * @param offset Where in the buffer to start writing
+     * @throws IllegalArgumentException If the year does not have four digits
+     */
+    public static void format(Date date, char[] buffer, int offset) {
+        long millis = date.getTime();
+        long localDays = floorDiv(millis + TimeZone.getDefault().getOffset(millis), MILLIS_PER_DAY);
+
+        // civil_from_days, with days counted from 0000-03-01 so the leap day is the last day of the year
+        long z = localDays + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        if (year < 0 || year > 9999) {
+            throw new IllegalArgumentException("Year " + year + " cannot be written as yyyy-MM-dd");
+        }
+        writeDigits(buffer, offset, (int) year, 4);
+        buffer[offset + 4] = '-';
+        writeDigits(buffer, offset + 5, month, 2);
+        buffer[offset + 7] = '-';
+        writeDigits(buffer, offset + 8, day, 2);
+    }
+
+    /**
+     * <p>Formats a date.</p>
+     *
+     * @param date The date to format
+     * @return The date as <code>yyyy-MM-dd</code>
+     */
+    public static String format(Date date) {
+        char[] buffer = new char[LENGTH];
+        format(date, buffer, 0);
+        return new String(buffer);
+    }
+
+    /**
+     * <p>Parses a date from a range of characters.</p>
+     *
+     * @param text The characters to read
+     * @param offset The first character of the date
+     * @param length The number of characters, must be {@link #LENGTH}
+     * @return The start of that day in the default time zone
+     * @throws IllegalArgumentException If the characters are not a valid <code>yyyy-MM-dd</code> date
+     */
+    public static Date parse(char[] text, int offset, int length) {
+        if (length != LENGTH || text[offset + 4] != '-' || text[offset + 7] != '-') {
+            throw invalid(text, offset, length);
+        }
+        int year = readDigits(text, offset, 4);
+        int month = readDigits(text, offset + 5, 2);
+        int day = readDigits(text, offset + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            throw invalid(text, offset, length);
+        }
+
+        // days_from_civil
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long localMillis = (era * 146097 + dayOfEra - 719468) * MILLIS_PER_DAY;
+
+        // Find the instant whose offset maps it back to local midnight, starting from a guess with today's raw offset.
+        // When a daylight saving (or historical) change skips midnight there is none; like a lenient Calendar, we then
+        // apply the offset from before the change, which lands just after it.
+        TimeZone zone = TimeZone.getDefault();
+        int guessOffset = zone.getOffset(localMillis - zone.getRawOffset());
+        int zoneOffset = zone.getOffset(localMillis - guessOffset);
+        if (zoneOffset != guessOffset) {
+            int nextOffset = zone.getOffset(localMillis - zoneOffset);
+            if (nextOffset != zoneOffset) {
+                zoneOffset = Math.min(zoneOffset, nextOffset);
+            }
+        }
+        return new Date(localMillis - zoneOffset);
+    }
+
+    /**
+     * <p>Parses a date.</p>
+     *
+     * @param text The date as <code>yyyy-MM-dd</code>
+     * @return The start of that day in the default time zone
+     * @throws IllegalArgumentException If the text is not a valid date
+     */
+    public static Date parse(String text) {
+        return parse(text.toCharArray(), 0, text.length());
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        }
+        return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+    }
+
+    private static void writeDigits(char[] buffer, int offset, int value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int readDigits(char[] text, int offset, int digits) {
+        int value = 0;
+        for (int i = offset; i < offset + digits; i++) {
+            char c = text[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && ((x ^ y) < 0)) ? q - 1 : q;
+    }
+
+    private static IllegalArgumentException invalid(char[] text, int offset, int length) {
+        return new IllegalArgumentException("Not a yyyy-MM-dd date: " + new String(text, offset, length));
+    }
+}
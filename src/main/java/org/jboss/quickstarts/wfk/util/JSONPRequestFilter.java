@@ -16,22 +16,21 @@
  */
 package org.jboss.quickstarts.wfk.util;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.regex.Pattern;
 
+import javax.inject.Inject;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.annotation.WebFilter;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.jboss.quickstarts.wfk.stream.ChangeStreamServlet;
 
 /**
  * <p>This filter wraps qualified requests for JSON content with that standard JSONP padding. This makes these calls
@@ -39,11 +38,17 @@ import javax.servlet.http.HttpServletResponseWrapper;
  *
  * <p>To qualify for wrapping the request must be made to the <i>/rest/*</i> path, and contain a query parameter call
  * <i>jsoncallback<i/> that defines the JSONP callback method to use with the response.</p>
+ *
+ * <p>The response is streamed: the padding is written around the JSON as it passes through (see
+ * {@link JSONPResponseWrapper}), so a large response is never held in memory.</p>
+ *
+ * <p>JSONP responses are compressed here, around the padding, rather than by the {@link CompressionFilter}: the
+ * container may run that filter inside this one, where it would compress the JSON before the padding is added.</p>
  * 
  * @author balunasj
  * @see javax.servlet.Filter
  */
-@WebFilter("/rest/*")
+@WebFilter(urlPatterns = "/rest/*", asyncSupported = true)
 public class JSONPRequestFilter implements Filter {
     // The callback method to use
     private static final String CALLBACK_METHOD = "jsonpcallback";
@@ -53,6 +58,9 @@ public class JSONPRequestFilter implements Filter {
 
     public static final String CONTENT_TYPE = "application/javascript";
 
+    @Inject
+    private Compression compression;
+
     @Override
     public void init(FilterConfig config) throws ServletException {
         // Nothing needed
@@ -72,8 +80,8 @@ public class JSONPRequestFilter implements Filter {
         // extract the callback method from the request query parameters
         String callback = getCallbackMethod(httpRequest);
 
-        if (!isJSONPRequest(callback)) {
-            // Request is not a JSONP request move on
+        if (!isJSONPRequest(callback) || ChangeStreamServlet.isStreamRequest(httpRequest)) {
+            // Request is not a JSONP request, or is an event stream that cannot be padded, move on
             chain.doFilter(request, response);
         } else {
             // Need to check if the callback method is safe
@@ -81,47 +89,49 @@ public class JSONPRequestFilter implements Filter {
                 throw new ServletException("JSONP Callback method '" + CALLBACK_METHOD + "' parameter not valid function");
             }
 
-            // Will stream updated response
-            final ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-
-            // Create a custom response wrapper to adding in the padding
-            HttpServletResponseWrapper responseWrapper = new HttpServletResponseWrapper(httpResponse) {
-
-                @Override
-                public ServletOutputStream getOutputStream() throws IOException {
-                    return new ServletOutputStream() {
-                        @Override
-                        public void write(int b) throws IOException {
-                            byteStream.write(b);
-                        }
-                    };
-                }
-
-                @Override
-                public PrintWriter getWriter() throws IOException {
-                    return new PrintWriter(byteStream);
+            // Compress the padded response if the client accepts it
+            CompressingResponseWrapper compressed = compression.wrap(httpRequest, httpResponse);
+            HttpServletResponse target = compressed == null ? httpResponse : compressed;
+
+            // Override response content and encoding. The wrapper keeps the resource from changing them back.
+            target.setContentType(CONTENT_TYPE);
+            target.setCharacterEncoding("UTF-8");
+
+            // Stream the response through a wrapper that adds the padding around it, without buffering it
+            JSONPResponseWrapper responseWrapper = new JSONPResponseWrapper(target, callback);
+
+            boolean completed = false;
+            try {
+                // Process the rest of the filter chain, including the JAX-RS request
+                chain.doFilter(compression.unwrapETags(httpRequest), responseWrapper);
+
+                // Close the padding, even if nothing was written.
+                responseWrapper.finish();
+                completed = true;
+            } finally {
+                if (compressed != null && completed) {
+                    compressed.finish();
+                } else if (compressed != null) {
+                    // Leave the response to the container's error handling
+                    compressed.abandon();
                 }
-            };
-
-            // Process the rest of the filter chain, including the JAX-RS request
-            chain.doFilter(request, responseWrapper);
-
-            // Override response content and encoding
-            response.setContentType(CONTENT_TYPE);
-            response.setCharacterEncoding("UTF-8");
-
-            // Write the padded updates to the output stream.
-            response.getOutputStream().write((callback + "(").getBytes());
-            response.getOutputStream().write(byteStream.toByteArray());
-            response.getOutputStream().write(");".getBytes());
+            }
         }
     }
 
-    private String getCallbackMethod(HttpServletRequest httpRequest) {
+    /**
+     * @param httpRequest A request to the <i>/rest/*</i> path
+     * @return Whether the response to the request will be wrapped in JSONP padding
+     */
+    public static boolean isJSONPRequest(HttpServletRequest httpRequest) {
+        return isJSONPRequest(getCallbackMethod(httpRequest));
+    }
+
+    private static String getCallbackMethod(HttpServletRequest httpRequest) {
         return httpRequest.getParameter(CALLBACK_METHOD);
     }
 
-    private boolean isJSONPRequest(String callbackMethod) {
+    private static boolean isJSONPRequest(String callbackMethod) {
         // A simple check to see if the query parameter has been set.
         return (callbackMethod != null && callbackMethod.length() > 0);
     }
@@ -0,0 +1,193 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * <p>Adds JSONP padding, <code>callback(...);</code>, around a response as it is written.</p>
+ *
+ * <p>The <code>callback(</code> prefix goes to the real response the first time the body is written to, bulk writes are
+ * passed straight through, and the <code>);</code> suffix is added by {@link #finish()}. Nothing is buffered beyond what
+ * the container buffers anyway.</p>
+ *
+ * <p>The content type, character encoding (UTF-8) and length are decided by the {@link JSONPRequestFilter}; attempts
+ * by the wrapped resource to set them are ignored.</p>
+ *
+ * @author balunasj
+ * @see JSONPRequestFilter
+ */
+public class JSONPResponseWrapper extends HttpServletResponseWrapper {
+
+    private static final byte[] SUFFIX = {')', ';'};
+
+    private final byte[] prefix;
+
+    private final PaddingOutputStream stream = new PaddingOutputStream();
+
+    private PrintWriter writer;
+
+    private boolean prefixWritten;
+
+    private boolean finished;
+
+    /**
+     * @param response The real response, its content type and encoding already set
+     * @param callback The (validated) JSONP callback method
+     */
+    public JSONPResponseWrapper(HttpServletResponse response, String callback) {
+        super(response);
+        this.prefix = asciiBytes(callback + "(");
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(stream, "UTF-8"));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void setContentType(String type) {
+        // The JSONP content type is set by the filter
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        // Always UTF-8
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        // The padding changes the length, leave it to the container (chunked)
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (!isPaddingHeader(name)) {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (!isPaddingHeader(name)) {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if (!isPaddingHeader(name)) {
+            super.setIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        if (!isPaddingHeader(name)) {
+            super.addIntHeader(name, value);
+        }
+    }
+
+    /**
+     * <p>Writes the closing <code>);</code>, and the opening if nothing was written. Safe to call more than once.</p>
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        // Set first, closing the writer closes the stream which calls back in here
+        finished = true;
+        if (writer != null) {
+            writer.flush();
+        }
+        writePrefix();
+        getResponse().getOutputStream().write(SUFFIX);
+    }
+
+    private void writePrefix() throws IOException {
+        if (!prefixWritten) {
+            prefixWritten = true;
+            getResponse().getOutputStream().write(prefix);
+        }
+    }
+
+    private static boolean isPaddingHeader(String name) {
+        return "Content-Type".equalsIgnoreCase(name) || "Content-Length".equalsIgnoreCase(name);
+    }
+
+    private static byte[] asciiBytes(String value) {
+        // The callback is checked against JSONPRequestFilter.SAFE_PRN, so it is plain ASCII
+        byte[] bytes = new byte[value.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) value.charAt(i);
+        }
+        return bytes;
+    }
+
+    /**
+     * <p>Passes writes through to the real response, after the prefix. Closing it finishes the padding.</p>
+     */
+    private class PaddingOutputStream extends ServletOutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            writePrefix();
+            getResponse().getOutputStream().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            writePrefix();
+            getResponse().getOutputStream().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            getResponse().getOutputStream().flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+    }
+}
@@ -16,7 +16,8 @@
  */
 package org.jboss.quickstarts.wfk.util;
 
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.util.Date;
 
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
@@ -24,10 +25,24 @@ import javax.ws.rs.ext.ContextResolver;
 import javax.ws.rs.ext.Provider;
 
 
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.Version;
+import org.codehaus.jackson.map.DeserializationContext;
+import org.codehaus.jackson.map.JsonDeserializer;
+import org.codehaus.jackson.map.JsonMappingException;
+import org.codehaus.jackson.map.JsonSerializer;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializerProvider;
+import org.codehaus.jackson.map.module.SimpleModule;
 
 /**
  * <p>This Config class provides custom configuration settings to the Jackson library used to parse and produce JSON</p>
+ *
+ * <p>Dates (the <code>birthDate</code> and <code>travelDate</code> fields) are read and written as <code>yyyy-MM-dd</code>
+ * by an {@link IsoDateCodec}. A shared <code>SimpleDateFormat</code> is not thread safe, so Jackson would clone it for
+ * every date it handles; the codec is stateless and works directly on the parser's and generator's character buffers.</p>
  * 
  * @author Joshua Wilson, Vineet Reynolds
  * @see org.codehaus.jackson
@@ -39,12 +54,62 @@ public class JacksonConfig implements ContextResolver<ObjectMapper> {
 
     // Configure the Date coming from the client to be in ISO-8601 instead of milliseconds from the epoch. 
     public JacksonConfig() throws Exception {
+        SimpleModule dates = new SimpleModule("IsoDateModule", new Version(1, 0, 0, null));
+        dates.addSerializer(Date.class, new IsoDateSerializer());
+        dates.addDeserializer(Date.class, new IsoDateDeserializer());
+
         this.objectMapper = new ObjectMapper();
-        this.objectMapper.setDateFormat(new SimpleDateFormat("yyyy-MM-dd"));
+        this.objectMapper.registerModule(dates);
     }
 
     @Override
     public ObjectMapper getContext(Class<?> objectType) {
         return objectMapper;
     }
-}
\ No newline at end of file
+
+    /**
+     * <p>Writes a Date (or a java.sql.Date loaded by JPA) as a <code>yyyy-MM-dd</code> string.</p>
+     */
+    static class IsoDateSerializer extends JsonSerializer<Date> {
+
+        // One small buffer per thread; it holds only a char[] so it does not pin the deployment's class loader.
+        private final ThreadLocal<char[]> buffers = new ThreadLocal<char[]>();
+
+        @Override
+        public void serialize(Date value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            char[] buffer = buffers.get();
+            if (buffer == null) {
+                buffer = new char[IsoDateCodec.LENGTH];
+                buffers.set(buffer);
+            }
+            IsoDateCodec.format(value, buffer, 0);
+            jgen.writeString(buffer, 0, IsoDateCodec.LENGTH);
+        }
+    }
+
+    /**
+     * <p>Reads a <code>yyyy-MM-dd</code> string into a Date. Milliseconds from the epoch are still accepted, as before.</p>
+     */
+    static class IsoDateDeserializer extends JsonDeserializer<Date> {
+
+        @Override
+        public Date deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
+            JsonToken token = jp.getCurrentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                return new Date(jp.getLongValue());
+            }
+            if (token != JsonToken.VALUE_STRING) {
+                throw ctxt.mappingException(Date.class);
+            }
+            int length = jp.getTextLength();
+            if (length == 0) {
+                return null;
+            }
+            try {
+                return IsoDateCodec.parse(jp.getTextCharacters(), jp.getTextOffset(), length);
+            } catch (IllegalArgumentException e) {
+                throw new JsonMappingException(e.getMessage(), jp.getCurrentLocation(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * <p>Helpers shared by the list endpoints for cursor (keyset) pagination.</p>
+ *
+ * <p>A page is requested with a <code>limit</code> and an optional <code>after</code> cursor. The cursor is an opaque,
+ * URL safe encoding of the ordering columns of the last row of the previous page, so the next page can be read with a
+ * <code>WHERE (keys) &gt; (cursor)</code> predicate and a LIMIT instead of an OFFSET that makes the database walk over
+ * every skipped row.</p>
+ *
+ * <p>The repositories are asked for <code>limit + 1</code> rows; if the extra row comes back there is a next page and
+ * its cursor is returned in the {@value #NEXT_CURSOR_HEADER} header and as a <code>Link: &lt;...&gt;; rel="next"</code>
+ * header. The body stays a plain JSON array so existing clients keep working.</p>
+ *
+ * @author Joshua Wilson
+ */
+public final class KeysetPage {
+
+    /** Page size used when the client does not send a limit. */
+    public static final int DEFAULT_LIMIT = 100;
+
+    /** Largest page a client may ask for. */
+    public static final int MAX_LIMIT = 1000;
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // Separates the key columns inside a cursor. The ordering columns never contain it (see the entity @Pattern's).
+    private static final char SEPARATOR = '\u0000';
+
+    private static final String UTF_8 = "UTF-8";
+
+    private KeysetPage() {
+    }
+
+    /**
+     * <p>Resolves the page size from the optional <code>limit</code> query parameter.</p>
+     *
+     * @param requested The limit sent by the client, may be null
+     * @return The page size to use, capped at {@link #MAX_LIMIT}
+     * @throws WebApplicationException with 400 (Bad Request) if the limit is not positive
+     */
+    public static int limit(Integer requested) {
+        if (requested == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (requested < 1) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        return Math.min(requested, MAX_LIMIT);
+    }
+
+    /**
+     * <p>Encodes the ordering key of the last row of a page into an opaque cursor.</p>
+     *
+     * @param keys The values of the ordering columns, in ORDER BY order
+     * @return The URL safe cursor
+     */
+    public static String encodeCursor(String... keys) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                joined.append(SEPARATOR);
+            }
+            joined.append(keys[i]);
+        }
+        try {
+            return Base64.encodeBase64URLSafeString(joined.toString().getBytes(UTF_8));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * <p>Decodes a cursor produced by {@link #encodeCursor(String...)}.</p>
+     *
+     * @param cursor The <code>after</code> query parameter, may be null
+     * @param keyCount The number of ordering columns the cursor must contain
+     * @return The ordering key, or null if no cursor was sent (i.e. the first page is wanted)
+     * @throws WebApplicationException with 400 (Bad Request) if the cursor is malformed
+     */
+    public static String[] decodeCursor(String cursor, int keyCount) {
+        if (cursor == null || cursor.length() == 0) {
+            return null;
+        }
+        String[] keys;
+        try {
+            keys = new String(Base64.decodeBase64(cursor), UTF_8).split(String.valueOf(SEPARATOR), -1);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        if (keys.length != keyCount) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        return keys;
+    }
+
+    /**
+     * <p>Parses a numeric id taken from a decoded cursor.</p>
+     *
+     * @param key The key to parse
+     * @return The id
+     * @throws WebApplicationException with 400 (Bad Request) if the key is not a number
+     */
+    public static Long parseId(String key) {
+        try {
+            return Long.valueOf(key);
+        } catch (NumberFormatException e) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * <p>Checks whether a repository read of <code>limit + 1</code> rows found more rows than fit in the page.</p>
+     *
+     * @param rows The rows read from the repository
+     * @param limit The page size
+     * @return true if there is a next page
+     */
+    public static boolean hasMore(List<?> rows, int limit) {
+        return rows.size() > limit;
+    }
+
+    /**
+     * <p>Builds a 200 (OK) response for one page, adding the next page cursor headers when there is one.</p>
+     *
+     * @param rows The rows of this page (without the look-ahead row)
+     * @param nextCursor The cursor of the next page, or null on the last page
+     * @param uriInfo The request URI, used to build the <code>Link</code> header
+     * @return The response builder
+     */
+    public static Response.ResponseBuilder ok(List<?> rows, String nextCursor, UriInfo uriInfo) {
+        Response.ResponseBuilder builder = Response.ok(rows);
+        if (nextCursor != null) {
+            builder.header(NEXT_CURSOR_HEADER, nextCursor);
+            builder.header("Link", "<" + uriInfo.getRequestUriBuilder().replaceQueryParam("after", nextCursor).build()
+                + ">; rel=\"next\"");
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>A thin facade over a {@link java.util.logging.Logger} for the request paths of the services and repositories.</p>
+ *
+ * <p>A message is an event name and up to six key/value pairs, rather than a string built by the caller:</p>
+ *
+ * <code>
+ * log.info("createContact started", "email", contact.getEmail(), "id", contact.getId());
+ * </code>
+ *
+ * <p>The level is checked before anything else is done, and there is one method per number of pairs instead of a
+ * varargs method, so a call at a disabled level does not allocate: no string is concatenated, no array is built and
+ * the values' <code>toString()</code> is never called. A single number can be logged as a <code>long</code> without boxing, but
+ * primitives passed with other pairs are boxed by the caller, so guard such a call with {@link #isInfoEnabled()} or
+ * {@link #isFineEnabled()} if it is on a hot path.</p>
+ *
+ * <p>The message is rendered in one of two ways, chosen with the <code>log.structured</code> system property:</p>
+ * <ul>
+ *   <li>plain (the default): <code>createContact started [email=jane@company.com, id=14]</code></li>
+ *   <li>structured (<code>-Dlog.structured=true</code>): <code>msg="createContact started" email=jane@company.com id=14</code>,
+ *   one key=value field per pair, which log shippers can parse without a pattern. Values are quoted when they contain
+ *   a space, a quote or an equals sign.</li>
+ * </ul>
+ *
+ * <p>When the value of the last pair is a {@link Throwable}, e.g. <code>log.warning("drain failed", "exception", e)</code>,
+ * it is also passed to the logger as the record's thrown exception, so its stack trace is written.</p>
+ *
+ * <p>Inject it like the logger, it is produced by {@link Resources} for the class it is injected into:</p>
+ *
+ * <code>
+ * &#064;Inject
+ * private Log log;
+ * </code>
+ *
+ * @author Joshua Wilson
+ */
+public final class Log {
+
+    /** The system property that switches on the structured (key=value) format. */
+    public static final String STRUCTURED_PROPERTY = "log.structured";
+
+    private final Logger logger;
+
+    private final boolean structured;
+
+    /**
+     * @param logger The logger to write to
+     */
+    public Log(Logger logger) {
+        this(logger, Boolean.getBoolean(STRUCTURED_PROPERTY));
+    }
+
+    /**
+     * @param logger The logger to write to
+     * @param structured true to write key=value fields, false for the plain format
+     */
+    public Log(Logger logger, boolean structured) {
+        this.logger = logger;
+        this.structured = structured;
+    }
+
+    /**
+     * <p>Returns a Log writing to the logger named after a class.</p>
+     */
+    public static Log getLog(Class<?> type) {
+        return new Log(Logger.getLogger(type.getName()));
+    }
+
+    public boolean isInfoEnabled() {
+        return logger.isLoggable(Level.INFO);
+    }
+
+    public boolean isFineEnabled() {
+        return logger.isLoggable(Level.FINE);
+    }
+
+    public boolean isStructured() {
+        return structured;
+    }
+
+    public void warning(String event) {
+        if (logger.isLoggable(Level.WARNING)) {
+            write(Level.WARNING, event, null, null, null, null, null, null, null, null, null, null, null, null);
+        }
+    }
+
+    public void warning(String event, String k1, Object v1) {
+        if (logger.isLoggable(Level.WARNING)) {
+            write(Level.WARNING, event, k1, v1, null, null, null, null, null, null, null, null, null, null);
+        }
+    }
+
+    public void warning(String event, String k1, Object v1, String k2, Object v2) {
+        if (logger.isLoggable(Level.WARNING)) {
+            write(Level.WARNING, event, k1, v1, k2, v2, null, null, null, null, null, null, null, null);
+        }
+    }
+
+    public void info(String event) {
+        if (logger.isLoggable(Level.INFO)) {
+            write(Level.INFO, event, null, null, null, null, null, null, null, null, null, null, null, null);
+        }
+    }
+
+    public void info(String event, String k1, Object v1) {
+        if (logger.isLoggable(Level.INFO)) {
+            write(Level.INFO, event, k1, v1, null, null, null, null, null, null, null, null, null, null);
+        }
+    }
+
+    /**
+     * <p>Logs one number, without boxing it when INFO is disabled.</p>
+     */
+    public void info(String event, String k1, long v1) {
+        if (logger.isLoggable(Level.INFO)) {
+            write(Level.INFO, event, k1, Long.valueOf(v1), null, null, null, null, null, null, null, null, null, null);
+        }
+    }
+
+    public void info(String event, String k1, Object v1, String k2, Object v2) {
+        if (logger.isLoggable(Level.INFO)) {
+            write(Level.INFO, event, k1, v1, k2, v2, null, null, null, null, null, null, null, null);
+        }
+    }
+
+    public void info(String event, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        if (logger.isLoggable(Level.INFO)) {
+            write(Level.INFO, event, k1, v1, k2, v2, k3, v3, null, null, null, null, null, null);
+        }
+    }
+
+    public void info(String event, String k1, Object v1, String k2, Object v2, String k3, Object v3,
+                     String k4, Object v4) {
+        if (logger.isLoggable(Level.INFO)) {
+            write(Level.INFO, event, k1, v1, k2, v2, k3, v3, k4, v4, null, null, null, null);
+        }
+    }
+
+    public void info(String event, String k1, Object v1, String k2, Object v2, String k3, Object v3,
+                     String k4, Object v4, String k5, Object v5) {
+        if (logger.isLoggable(Level.INFO)) {
+            write(Level.INFO, event, k1, v1, k2, v2, k3, v3, k4, v4, k5, v5, null, null);
+        }
+    }
+
+    public void info(String event, String k1, Object v1, String k2, Object v2, String k3, Object v3,
+                     String k4, Object v4, String k5, Object v5, String k6, Object v6) {
+        if (logger.isLoggable(Level.INFO)) {
+            write(Level.INFO, event, k1, v1, k2, v2, k3, v3, k4, v4, k5, v5, k6, v6);
+        }
+    }
+
+    public void fine(String event) {
+        if (logger.isLoggable(Level.FINE)) {
+            write(Level.FINE, event, null, null, null, null, null, null, null, null, null, null, null, null);
+        }
+    }
+
+    public void fine(String event, String k1, Object v1) {
+        if (logger.isLoggable(Level.FINE)) {
+            write(Level.FINE, event, k1, v1, null, null, null, null, null, null, null, null, null, null);
+        }
+    }
+
+    /**
+     * <p>Logs one number, without boxing it when FINE is disabled.</p>
+     */
+    public void fine(String event, String k1, long v1) {
+        if (logger.isLoggable(Level.FINE)) {
+            write(Level.FINE, event, k1, Long.valueOf(v1), null, null, null, null, null, null, null, null, null, null);
+        }
+    }
+
+    public void fine(String event, String k1, Object v1, String k2, Object v2) {
+        if (logger.isLoggable(Level.FINE)) {
+            write(Level.FINE, event, k1, v1, k2, v2, null, null, null, null, null, null, null, null);
+        }
+    }
+
+    public void fine(String event, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        if (logger.isLoggable(Level.FINE)) {
+            write(Level.FINE, event, k1, v1, k2, v2, k3, v3, null, null, null, null, null, null);
+        }
+    }
+
+    /**
+     * <p>Renders a message in the configured format. Pairs with a null key are left out.</p>
+     */
+    String format(String event, String k1, Object v1, String k2, Object v2, String k3, Object v3,
+                  String k4, Object v4, String k5, Object v5, String k6, Object v6) {
+        StringBuilder message = new StringBuilder(128);
+        if (structured) {
+            message.append("msg=");
+            appendValue(message, event);
+        } else {
+            message.append(event);
+        }
+        int fields = 0;
+        fields += append(message, fields, k1, v1);
+        fields += append(message, fields, k2, v2);
+        fields += append(message, fields, k3, v3);
+        fields += append(message, fields, k4, v4);
+        fields += append(message, fields, k5, v5);
+        fields += append(message, fields, k6, v6);
+        if (fields > 0 && !structured) {
+            message.append(']');
+        }
+        return message.toString();
+    }
+
+    private void write(Level level, String event, String k1, Object v1, String k2, Object v2, String k3, Object v3,
+                       String k4, Object v4, String k5, Object v5, String k6, Object v6) {
+        // logp() so the record names the logger's class rather than this facade as its source.
+        String message = format(event, k1, v1, k2, v2, k3, v3, k4, v4, k5, v5, k6, v6);
+        Object last = k6 != null ? v6 : k5 != null ? v5 : k4 != null ? v4 : k3 != null ? v3 : k2 != null ? v2 : v1;
+        if (last instanceof Throwable) {
+            logger.logp(level, logger.getName(), null, message, (Throwable) last);
+        } else {
+            logger.logp(level, logger.getName(), null, message);
+        }
+    }
+
+    private int append(StringBuilder message, int fields, String key, Object value) {
+        if (key == null) {
+            return 0;
+        }
+        if (structured) {
+            message.append(' ').append(key).append('=');
+            appendValue(message, value);
+        } else {
+            message.append(fields == 0 ? " [" : ", ").append(key).append('=').append(value);
+        }
+        return 1;
+    }
+
+    private static void appendValue(StringBuilder message, Object value) {
+        String text = String.valueOf(value);
+        boolean quote = text.length() == 0;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c <= ' ' || c == '"' || c == '=';
+        }
+        if (!quote) {
+            message.append(text);
+            return;
+        }
+        message.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                message.append('\\').append(c);
+            } else if (c == '\n') {
+                message.append("\\n");
+            } else {
+                message.append(c);
+            }
+        }
+        message.append('"');
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * <p>Writes the gzip format (RFC 1952) with a {@link Deflater} it is given, unlike
+ * {@link java.util.zip.GZIPOutputStream} which always allocates, and ends, a deflater of its own.</p>
+ *
+ * @author Joshua Wilson
+ * @see DeflaterPool
+ */
+class PooledGzipOutputStream extends DeflaterOutputStream {
+
+    // Magic number, CM = deflate, no flags, no modification time, no extra flags, OS = FAT (as GZIPOutputStream)
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * @param out The stream to write the compressed data to
+     * @param deflater A deflater created with <code>nowrap</code> set, and reset
+     * @param bufferSize The size of the output buffer
+     */
+    PooledGzipOutputStream(OutputStream out, Deflater deflater, int bufferSize) throws IOException {
+        super(out, deflater, bufferSize);
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        super.write(b, off, len);
+        crc.update(b, off, len);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (!def.finished()) {
+            super.finish();
+            writeInt((int) crc.getValue());
+            writeInt((int) def.getBytesRead());
+        }
+    }
+
+    private void writeInt(int value) throws IOException {
+        // Little endian, as gzip wants
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+}
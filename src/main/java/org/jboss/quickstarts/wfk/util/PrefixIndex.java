@@ -0,0 +1,184 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * <p>An in-memory index from words, such as names and emails, to the ids of the entities they belong to, answering
+ * "which entities have a word starting with ..." without going to the database.</p>
+ *
+ * <p>The words are normalised (see {@link #normalise(String)}) and kept in sorted order, each one followed by the id of
+ * its entity, so all the words with a given prefix are one contiguous range of the order. A search is a seek to the
+ * start of the range and a walk over it until enough ids are found, whatever the size of the index.</p>
+ *
+ * <p>Searches never block. Changes are synchronized, and the new words of an entity are added before its old ones are
+ * removed, so a search running during a change finds the entity by its old or its new words, never by neither.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class PrefixIndex {
+
+    /** Number of matches returned when the client does not send a limit. */
+    public static final int DEFAULT_LIMIT = 10;
+
+    /** Largest number of matches a client may ask for. */
+    public static final int MAX_LIMIT = 100;
+
+    // Follows the word in a key. It sorts before any other character, so "ann" comes before "anna" as it should.
+    private static final char SEPARATOR = '\u0000';
+
+    // Sorts after any character of a normalised word, so prefix + END is the end of the range of the prefix
+    private static final char END = '\uffff';
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private final ConcurrentSkipListMap<String, Long> entries = new ConcurrentSkipListMap<String, Long>();
+
+    // The keys of each entity, to remove them when it changes. Guarded by this.
+    private final Map<Long, List<String>> keysById = new HashMap<Long, List<String>>();
+
+    /**
+     * <p>Resolves the number of matches to return from the optional <code>limit</code> query parameter.</p>
+     *
+     * @param requested The limit sent by the client, may be null
+     * @return The number of matches to return, capped at {@link #MAX_LIMIT}
+     * @throws WebApplicationException with 400 (Bad Request) if the limit is not positive
+     */
+    public static int limit(Integer requested) {
+        if (requested == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (requested < 1) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        return Math.min(requested, MAX_LIMIT);
+    }
+
+    /**
+     * <p>Normalises a word for indexing and searching: accents are removed, the case is folded and runs of white space
+     * are made single spaces, so "Jos&eacute; &Aacute;vila" is found with "jose a".</p>
+     *
+     * @param word The word, may be null
+     * @return The normalised word, empty if there is nothing left
+     */
+    public static String normalise(String word) {
+        if (word == null) {
+            return "";
+        }
+        String plain = MARKS.matcher(Normalizer.normalize(word, Normalizer.Form.NFD)).replaceAll("");
+        return SPACES.matcher(plain.trim()).replaceAll(" ").toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * <p>Indexes an entity under the given words, replacing the words it had. The new words are added first, then those
+     * it no longer has are removed.</p>
+     *
+     * @param id The id of the entity
+     * @param words The words to find it by; null and empty ones are skipped
+     */
+    public synchronized void put(Long id, String... words) {
+        List<String> keys = new ArrayList<String>(words.length);
+        for (String word : words) {
+            String normalised = normalise(word);
+            if (normalised.length() > 0) {
+                String key = normalised + SEPARATOR + id;
+                entries.put(key, id);
+                keys.add(key);
+            }
+        }
+        List<String> stale = keysById.put(id, keys);
+        if (stale != null) {
+            stale.removeAll(keys);
+            for (String key : stale) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    /**
+     * <p>Removes an entity from the index.</p>
+     *
+     * @param id The id of the entity, ignored if it is not indexed
+     */
+    public synchronized void remove(Long id) {
+        removeKeys(id);
+    }
+
+    /**
+     * <p>Removes every entity from the index.</p>
+     */
+    public synchronized void clear() {
+        entries.clear();
+        keysById.clear();
+    }
+
+    /**
+     * <p>Finds the entities with a word that starts with the query.</p>
+     *
+     * @param query The start of a word, normalised like the words
+     * @param limit The maximum number of ids to return
+     * @return The ids, at most limit of them, in the order of their first matching word
+     */
+    public List<Long> search(String query, int limit) {
+        String prefix = normalise(query);
+        if (prefix.length() == 0 || limit < 1) {
+            return Collections.emptyList();
+        }
+        ConcurrentNavigableMap<String, Long> range = entries.subMap(prefix, true, prefix + END, false);
+        Set<Long> ids = new LinkedHashSet<Long>();
+        for (Long id : range.values()) {
+            ids.add(id);
+            if (ids.size() == limit) {
+                break;
+            }
+        }
+        return new ArrayList<Long>(ids);
+    }
+
+    /**
+     * @return The number of entities indexed
+     */
+    public synchronized int size() {
+        return keysById.size();
+    }
+
+    private void removeKeys(Long id) {
+        List<String> keys = keysById.remove(id);
+        if (keys != null) {
+            for (String key : keys) {
+                entries.remove(key);
+            }
+        }
+    }
+}
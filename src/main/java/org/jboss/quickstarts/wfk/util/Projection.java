@@ -0,0 +1,130 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.persistence.Tuple;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.Attribute;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+/**
+ * <p>A sparse fieldset, as requested with the <code>fields</code> query parameter of the list endpoints, e.g.
+ * <code>/rest/taxis?fields=id,registration,seat</code>.</p>
+ *
+ * <p>The repositories use it to select only those columns, in a JPA tuple query, instead of loading whole entities. The
+ * rows are then returned as maps holding just the requested fields, in the order they were asked for, so Jackson never
+ * sees the entity and every other property is neither read from the database nor written to the response.</p>
+ *
+ * <p>Only the basic (column) attributes of an entity can be requested; an unknown field or an association is rejected
+ * with 400 (Bad Request).</p>
+ *
+ * @author Joshua Wilson
+ */
+public final class Projection {
+
+    // Attribute names are plain Java identifiers, anything else cannot be a field.
+    private static final Pattern FIELD = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final List<String> fields;
+
+    private Projection(List<String> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * <p>Parses the <code>fields</code> query parameter, a comma separated list of field names.</p>
+     *
+     * @param fields The parameter sent by the client, may be null
+     * @return The projection, or null if no fields were sent (i.e. whole entities are wanted)
+     * @throws WebApplicationException with 400 (Bad Request) if a field name is malformed
+     */
+    public static Projection parse(String fields) {
+        if (fields == null || fields.trim().length() == 0) {
+            return null;
+        }
+        Set<String> names = new LinkedHashSet<String>();
+        for (String name : fields.split(",")) {
+            name = name.trim();
+            if (!FIELD.matcher(name).matches()) {
+                throw new WebApplicationException(Response.Status.BAD_REQUEST);
+            }
+            names.add(name);
+        }
+        return new Projection(Collections.unmodifiableList(new ArrayList<String>(names)));
+    }
+
+    /**
+     * @return The requested fields, without duplicates, in the order they were requested
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * <p>Builds the select list of a tuple query: the requested fields plus the given keys, each aliased with its own
+     * name so it can be read back with {@link Tuple#get(String)}.</p>
+     *
+     * @param root The entity being queried
+     * @param keys Fields the caller needs even if they were not requested, such as the ordering columns of a page
+     * @return The selections to pass to <code>CriteriaQuery.multiselect(List)</code>
+     * @throws IllegalArgumentException If a field is not a basic attribute of the entity
+     */
+    public List<Selection<?>> select(Root<?> root, String... keys) {
+        Set<String> names = new LinkedHashSet<String>(fields);
+        Collections.addAll(names, keys);
+
+        List<Selection<?>> selections = new ArrayList<Selection<?>>(names.size());
+        for (String name : names) {
+            // getAttribute() throws IllegalArgumentException for an unknown name
+            Attribute<?, ?> attribute = root.getModel().getAttribute(name);
+            if (attribute.getPersistentAttributeType() != Attribute.PersistentAttributeType.BASIC) {
+                throw new IllegalArgumentException(name + " is not a basic attribute of " + root.getModel().getJavaType());
+            }
+            selections.add(root.get(name).alias(name));
+        }
+        return selections;
+    }
+
+    /**
+     * <p>Converts the rows of a tuple query into maps holding only the requested fields.</p>
+     *
+     * @param rows The rows read with the selections of {@link #select(Root, String...)}
+     * @return One map per row, keyed by field name in the requested order
+     */
+    public List<Map<String, Object>> toMaps(List<Tuple> rows) {
+        List<Map<String, Object>> maps = new ArrayList<Map<String, Object>>(rows.size());
+        for (Tuple row : rows) {
+            Map<String, Object> map = new LinkedHashMap<String, Object>(fields.size() * 2);
+            for (String field : fields) {
+                map.put(field, row.get(field));
+            }
+            maps.add(map);
+        }
+        return maps;
+    }
+}
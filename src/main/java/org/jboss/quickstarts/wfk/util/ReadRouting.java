@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import javax.persistence.EntityManager;
+
+/**
+ * <p>Tells the repositories, on the current thread, whether a read goes to the replica database or to the primary.</p>
+ *
+ * <p>The {@link ReplicaRoutingFilter} marks the GET requests that may read from the replica; within them, the
+ * {@link ReplicaReadInterceptor} puts the reads marked {@link ReplicaRead} on the replica while they run. Everything
+ * else, including reads made while writing and work done outside of a REST request, stays on the primary.</p>
+ *
+ * @author Joshua Wilson
+ * @see ReplicaRouter
+ */
+public final class ReadRouting {
+
+    private static final ThreadLocal<Boolean> ALLOWED = new ThreadLocal<Boolean>();
+
+    private static final ThreadLocal<Boolean> ON_REPLICA = new ThreadLocal<Boolean>();
+
+    private ReadRouting() {
+    }
+
+    static void allow() {
+        ALLOWED.set(Boolean.TRUE);
+    }
+
+    static void end() {
+        ALLOWED.remove();
+        ON_REPLICA.remove();
+    }
+
+    static boolean isAllowed() {
+        return ALLOWED.get() != null;
+    }
+
+    static boolean isOnReplica() {
+        return ON_REPLICA.get() != null;
+    }
+
+    static void setOnReplica(boolean onReplica) {
+        if (onReplica) {
+            ON_REPLICA.set(Boolean.TRUE);
+        } else {
+            ON_REPLICA.remove();
+        }
+    }
+
+    /**
+     * <p>Picks the EntityManager of the current read.</p>
+     *
+     * @param primary The EntityManager of the primary database
+     * @param replica The EntityManager of the replica database, only touched if it is picked
+     * @return The replica while a {@link ReplicaRead} runs on it, the primary otherwise
+     */
+    public static EntityManager select(EntityManager primary, EntityManager replica) {
+        return isOnReplica() ? replica : primary;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.Serializable;
+
+import javax.inject.Inject;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InvocationContext;
+import javax.persistence.NoResultException;
+import javax.persistence.NonUniqueResultException;
+import javax.persistence.PersistenceException;
+
+/**
+ * <p>Runs the reads marked {@link ReplicaRead} on the replica database, when the request allows it, and falls back to
+ * the primary if the replica fails.</p>
+ *
+ * <p>A read that fails on the replica, because it cannot be reached or is missing part of the schema, is logged and run
+ * again on the primary, and the replica is left alone for a while (see {@link ReplicaRouter}). A read that finds no
+ * result, or more than one, is not a failure of the replica. The interceptor is enabled in beans.xml.</p>
+ *
+ * @author Joshua Wilson
+ * @see ReadRouting
+ */
+@ReplicaRead
+@Interceptor
+public class ReplicaReadInterceptor implements Serializable {
+    /** Default value included to remove warning. Remove or modify at will. **/
+    private static final long serialVersionUID = 1L;
+
+    @Inject
+    private Log log;
+
+    @Inject
+    private ReplicaRouter router;
+
+    @AroundInvoke
+    public Object route(InvocationContext context) throws Exception {
+        // Reads called from a read already on the replica stay there
+        if (!ReadRouting.isAllowed() || ReadRouting.isOnReplica() || !router.isUp(System.currentTimeMillis())) {
+            return context.proceed();
+        }
+
+        ReadRouting.setOnReplica(true);
+        try {
+            return context.proceed();
+        } catch (NoResultException e) {
+            throw e;
+        } catch (NonUniqueResultException e) {
+            throw e;
+        } catch (PersistenceException e) {
+            router.failed(System.currentTimeMillis());
+            log.warning("ReplicaReadInterceptor - replica read failed, reading from the primary",
+                "method", context.getMethod().getDeclaringClass().getSimpleName() + "." + context.getMethod().getName(),
+                "exception", e);
+        } finally {
+            ReadRouting.setOnReplica(false);
+        }
+        return context.proceed();
+    }
+}
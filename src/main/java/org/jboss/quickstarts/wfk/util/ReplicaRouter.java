@@ -0,0 +1,123 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * <p>Decides which reads may go to the replica database, the read-only copy of the primary that the list and lookup
+ * requests are sent to so they do not compete with the writes.</p>
+ *
+ * <p>A GET request reads from the replica unless:</p>
+ * <ul>
+ *   <li>the replica is turned off</li>
+ *   <li>the client has written in the last few seconds: the replica may not have its write yet, so the client reads its
+ *       own writes from the primary until the replica has had time to catch up</li>
+ *   <li>a read from the replica has just failed: reads stay on the primary for a while before the replica is tried
+ *       again</li>
+ * </ul>
+ *
+ * <p>The following system properties configure the routing:</p>
+ * <ul>
+ *   <li><code>replica.enabled</code> - true (default) or false</li>
+ *   <li><code>replica.staleness.seconds</code> - how long a client reads from the primary after a write, i.e. how far
+ *       the replica may lag behind, default 5</li>
+ *   <li><code>replica.retry.seconds</code> - how long reads stay on the primary after the replica failed, default 30</li>
+ * </ul>
+ *
+ * @author Joshua Wilson
+ * @see ReplicaRoutingFilter
+ * @see ReplicaReadInterceptor
+ */
+@ApplicationScoped
+public class ReplicaRouter {
+
+    private boolean enabled;
+
+    private long stalenessMillis;
+
+    private long retryMillis;
+
+    // Until when the replica is not used, after a failure
+    private volatile long downUntil;
+
+    public ReplicaRouter() {
+    }
+
+    ReplicaRouter(boolean enabled, long stalenessMillis, long retryMillis) {
+        this.enabled = enabled;
+        this.stalenessMillis = stalenessMillis;
+        this.retryMillis = retryMillis;
+    }
+
+    @PostConstruct
+    void init() {
+        enabled = Boolean.parseBoolean(System.getProperty("replica.enabled", "true"));
+        stalenessMillis = TimeUnit.SECONDS.toMillis(Long.getLong("replica.staleness.seconds", 5));
+        retryMillis = TimeUnit.SECONDS.toMillis(Long.getLong("replica.retry.seconds", 30));
+    }
+
+    /**
+     * <p>Checks whether a GET request may read from the replica.</p>
+     *
+     * @param lastWrite When the client last wrote, in milliseconds since the epoch as sent back by the client, or null
+     * @param now The current time, in milliseconds since the epoch
+     * @return true unless the replica is turned off, or the client wrote within the staleness bound
+     */
+    public boolean mayRead(String lastWrite, long now) {
+        if (!enabled) {
+            return false;
+        }
+        if (lastWrite == null) {
+            return true;
+        }
+        try {
+            return now - Long.parseLong(lastWrite) >= stalenessMillis;
+        } catch (NumberFormatException e) {
+            // Not ours, so it says nothing about the client's writes
+            return true;
+        }
+    }
+
+    /**
+     * @param now The current time, in milliseconds since the epoch
+     * @return Whether the replica should be tried, i.e. it has not failed recently
+     */
+    public boolean isUp(long now) {
+        return now >= downUntil;
+    }
+
+    /**
+     * <p>Takes the replica out of use for the retry period, after a read from it failed.</p>
+     *
+     * @param now The current time, in milliseconds since the epoch
+     */
+    public void failed(long now) {
+        downUntil = now + retryMillis;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getStalenessMillis() {
+        return stalenessMillis;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * <p>Lets the GET requests to the REST services read from the replica database, and keeps a client that has just
+ * written on the primary, so it reads its own writes.</p>
+ *
+ * <p>Every other request is taken to be a write. Its response sets the {@value #LAST_WRITE_COOKIE} cookie to the time
+ * of the write; while a GET request comes with a cookie younger than the staleness bound of the {@link ReplicaRouter}
+ * it reads from the primary. The cookie expires by itself once the bound has passed.</p>
+ *
+ * <p>Like the {@link org.jboss.quickstarts.wfk.metrics.MetricsFilter} this is a servlet filter on the <i>/rest/*</i>
+ * path, and relies on the EJB container running the REST services on the request thread.</p>
+ *
+ * @author Joshua Wilson
+ * @see ReadRouting
+ */
+@WebFilter(urlPatterns = "/rest/*", asyncSupported = true)
+public class ReplicaRoutingFilter implements Filter {
+
+    public static final String LAST_WRITE_COOKIE = "lastWrite";
+
+    @Inject
+    private ReplicaRouter router;
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        // Nothing needed
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException,
+        ServletException {
+
+        if (!(request instanceof HttpServletRequest) || !router.isEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        String method = httpRequest.getMethod();
+        long now = System.currentTimeMillis();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            // Set before the write runs, the response may be committed by the time it returns
+            Cookie lastWrite = new Cookie(LAST_WRITE_COOKIE, String.valueOf(now));
+            lastWrite.setPath(httpRequest.getContextPath().length() == 0 ? "/" : httpRequest.getContextPath());
+            lastWrite.setMaxAge((int) Math.max(1, (router.getStalenessMillis() + 999) / 1000));
+            lastWrite.setHttpOnly(true);
+            ((HttpServletResponse) response).addCookie(lastWrite);
+            chain.doFilter(request, response);
+            return;
+        }
+
+        if (!router.mayRead(lastWriteOf(httpRequest), now)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ReadRouting.allow();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadRouting.end();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // Nothing to do
+    }
+
+    private static String lastWriteOf(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (LAST_WRITE_COOKIE.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -17,13 +17,19 @@
 package org.jboss.quickstarts.wfk.util;
 
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+
 import java.util.logging.Logger;
+import javax.enterprise.context.RequestScoped;
+import javax.enterprise.inject.Disposes;
 import javax.enterprise.inject.Produces;
 import javax.enterprise.inject.spi.InjectionPoint;
 import javax.inject.Named;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnit;
 
 /**
  * <p>This class uses CDI to alias Java EE resources, such as the persistence context, to CDI beans.</p>
@@ -44,7 +50,32 @@ public class Resources {
     @PersistenceContext(unitName = "contacts_pu")
     private EntityManager em;
 
-    private static final CloseableHttpClient HTTP_CLIENT = HttpClients.createDefault();
+    @PersistenceUnit(unitName = "contacts_replica_pu")
+    private EntityManagerFactory replicaFactory;
+
+    /**
+     * <p>Produces the EntityManager of the replica database, one per request, for the reads routed to it (see
+     * {@link ReadRouting}).</p>
+     *
+     * <p>The replica is never written to, so the session is read-only: the entities it loads are not snapshotted for
+     * dirty checking and it is never flushed.</p>
+     */
+    @Produces
+    @Replica
+    @RequestScoped
+    public EntityManager produceReplicaEntityManager() {
+        EntityManager replica = replicaFactory.createEntityManager();
+        Session session = replica.unwrap(Session.class);
+        session.setDefaultReadOnly(true);
+        session.setFlushMode(FlushMode.MANUAL);
+        return replica;
+    }
+
+    public void closeReplicaEntityManager(@Disposes @Replica EntityManager replica) {
+        if (replica.isOpen()) {
+            replica.close();
+        }
+    }
 
     @Produces
     @Named("logger")
@@ -52,10 +83,21 @@ public class Resources {
         return Logger.getLogger(injectionPoint.getMember().getDeclaringClass().getName());
     }
 
+    /**
+     * <p>Produces the {@link Log} facade over the same logger, for the services and repositories.</p>
+     */
+    @Produces
+    public Log produceLogFacade(InjectionPoint injectionPoint) {
+        return new Log(produceLog(injectionPoint));
+    }
+
+    /**
+     * <p>Produces the shared, pooled HTTP client. Do not close it, the {@link HttpClientPool} does that on shutdown.</p>
+     */
     @Produces
     @Named("httpClient")
-    public CloseableHttpClient produceHttpClient() {
-        return HTTP_CLIENT;
+    public CloseableHttpClient produceHttpClient(HttpClientPool pool) {
+        return pool.getClient();
     }
 
 }
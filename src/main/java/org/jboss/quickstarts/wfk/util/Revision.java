@@ -0,0 +1,216 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+/**
+ * <p>The version of a resource, used to answer conditional GET requests.</p>
+ *
+ * <p>The ETag of a single entity is its id and {@link Versioned#getVersion() version}. The ETag of a page of entities is
+ * a hash of the ids and versions of its rows (including the look-ahead row that decides whether there is a next page),
+ * so it changes whenever a row of the page is added, removed or updated. Both are strong ETags. A page has no
+ * Last-Modified time, as removing one of its rows would not make it any later.</p>
+ *
+ * <p>The repositories read revisions with narrow queries on the id, version and last_modified columns, so a client
+ * that already holds the current representation is answered 304 (Not Modified) without the entities being loaded or
+ * serialized:</p>
+ *
+ * <code>
+ * Revision revision = service.findRevisionById(id);
+ * Response.ResponseBuilder notModified = revision.evaluatePreconditions(request, headers);
+ * if (notModified != null) {
+ *     return notModified.build();
+ * }
+ * </code>
+ *
+ * <p>Responses are sent with <code>Cache-Control: no-cache</code>: clients may keep them, but must revalidate them with
+ * <code>If-None-Match</code> or <code>If-Modified-Since</code> before use. The ETag of an entity can also be sent in the
+ * <code>If-Match</code> header of an update, see {@link #expectedVersion(String, Long)}.</p>
+ *
+ * @author Joshua Wilson
+ */
+public final class Revision implements Versioned {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final CacheControl REVALIDATE = new CacheControl();
+
+    static {
+        REVALIDATE.setNoCache(true);
+        REVALIDATE.setNoTransform(false);
+    }
+
+    private final Long id;
+
+    private final long version;
+
+    private final Date lastModified;
+
+    private final EntityTag entityTag;
+
+    /**
+     * <p>The revision of one entity. Used by the repositories' <code>SELECT NEW</code> queries.</p>
+     */
+    public Revision(Long id, Long version, Date lastModified) {
+        this.id = id;
+        this.version = version == null ? 0 : version;
+        this.lastModified = truncateToSeconds(lastModified);
+        this.entityTag = new EntityTag(id + "-" + this.version);
+    }
+
+    private Revision(long hash, Date lastModified) {
+        this.id = null;
+        this.version = hash;
+        this.lastModified = lastModified;
+        this.entityTag = new EntityTag(Long.toHexString(hash));
+    }
+
+    /**
+     * <p>Returns the revision of a loaded entity.</p>
+     */
+    public static Revision of(Versioned entity) {
+        return new Revision(entity.getId(), entity.getVersion(), entity.getLastModified());
+    }
+
+    /**
+     * <p>Returns the revision of a page of entities, or of their revisions: its ETag is a hash of their ids and versions
+     * in order.</p>
+     *
+     * @param rows The entities, or revisions, of the page in page order
+     * @return The revision of the page
+     */
+    public static Revision ofPage(List<? extends Versioned> rows) {
+        long hash = FNV_OFFSET;
+        for (Versioned row : rows) {
+            hash = mix(mix(hash, row.getId() == null ? 0 : row.getId()), row.getVersion());
+        }
+        // An empty page still gets a tag, so an empty list can be revalidated too.
+        return new Revision(mix(hash, rows.size()), null);
+    }
+
+    /**
+     * <p>Reads the version a client expects an entity to have from the <code>If-Match</code> header of an update.</p>
+     *
+     * <p>The update is then made with <code>WHERE id = :id AND version = :version</code>, so it only succeeds if the
+     * entity has not changed since the client read it. Without an <code>If-Match</code> header, or with
+     * <code>If-Match: *</code>, the update is made whatever the current version is.</p>
+     *
+     * @param ifMatch The If-Match header of the request, may be null
+     * @param id The id of the entity being updated
+     * @return The expected version, or null if the update is unconditional
+     * @throws WebApplicationException with 412 (Precondition Failed) if none of the ETags is a strong ETag of this entity
+     */
+    public static Long expectedVersion(String ifMatch, Long id) {
+        if (ifMatch == null || ifMatch.trim().length() == 0 || "*".equals(ifMatch.trim())) {
+            return null;
+        }
+        String prefix = "\"" + id + "-";
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            // If-Match uses the strong comparison, so a weak ETag (W/"...") never matches.
+            if (tag.startsWith(prefix) && tag.endsWith("\"") && tag.length() > prefix.length() + 1) {
+                try {
+                    return Long.valueOf(tag.substring(prefix.length(), tag.length() - 1));
+                } catch (NumberFormatException e) {
+                    // Not one of our ETags, try the next one.
+                }
+            }
+        }
+        throw new WebApplicationException(Response.Status.PRECONDITION_FAILED);
+    }
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The last modified time, truncated to whole seconds as HTTP dates are, or null if it is not known
+     */
+    @Override
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    public EntityTag getEntityTag() {
+        return entityTag;
+    }
+
+    /**
+     * <p>Checks the <code>If-None-Match</code> and <code>If-Modified-Since</code> headers of a GET request against this
+     * revision.</p>
+     *
+     * <p>As RFC 7232 asks, <code>If-Modified-Since</code> is ignored when <code>If-None-Match</code> is sent: a change
+     * made within the same second as the client's copy moves the ETag but not the (whole second) date.</p>
+     *
+     * @param request The request being answered
+     * @param headers The headers of the request
+     * @return A 304 (Not Modified) response builder if the client's copy is current, otherwise null
+     */
+    public Response.ResponseBuilder evaluatePreconditions(Request request, HttpHeaders headers) {
+        Response.ResponseBuilder notModified;
+        if (lastModified == null || headers.getRequestHeaders().containsKey(HttpHeaders.IF_NONE_MATCH)) {
+            notModified = request.evaluatePreconditions(entityTag);
+        } else {
+            notModified = request.evaluatePreconditions(lastModified);
+        }
+        return notModified == null ? null : notModified.tag(entityTag).cacheControl(REVALIDATE);
+    }
+
+    /**
+     * <p>Adds the ETag, Last-Modified and Cache-Control headers of this revision to a response.</p>
+     *
+     * @param builder The 200 (OK) response being built
+     * @return The builder
+     */
+    public Response.ResponseBuilder tag(Response.ResponseBuilder builder) {
+        builder.tag(entityTag).cacheControl(REVALIDATE);
+        if (lastModified != null) {
+            builder.lastModified(lastModified);
+        }
+        return builder;
+    }
+
+    private static long mix(long hash, long value) {
+        // FNV-1a over the eight bytes of the value
+        for (int shift = 0; shift < 64; shift += 8) {
+            hash ^= (value >>> shift) & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static Date truncateToSeconds(Date date) {
+        return date == null ? null : new Date(date.getTime() / 1000 * 1000);
+    }
+}
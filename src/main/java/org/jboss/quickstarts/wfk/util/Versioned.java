@@ -0,0 +1,40 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import java.util.Date;
+
+/**
+ * <p>An entity with an optimistic lock <code>@Version</code> and a last modified time, from which {@link Revision}
+ * builds the ETag and Last-Modified headers of its resource.</p>
+ *
+ * @author Joshua Wilson
+ */
+public interface Versioned {
+
+    Long getId();
+
+    /**
+     * @return The version, incremented by JPA on every update
+     */
+    long getVersion();
+
+    /**
+     * @return When the entity was last written, or null if it was loaded into the database by other means
+     */
+    Date getLastModified();
+}
@@ -18,10 +18,12 @@
 -- You can use this file to load seed data into the database using SQL statements
 -- Since the database doesn't know to increase the Sequence to match what is manually loaded here it starts at 1 and tries
 --  to enter a record with the same PK and create an error.  If we use a high we don't interfere with the sequencing (at least until later).
+-- The id sequences start at 10100 (Contact), 20100 (Customer), 30100 (Taxi) and 40100 (Booking), see the @GenericGenerator
+--  on each entity. Keep the ids used here below those.
 -- NOTE: this file should be removed for production systems. 
-insert into Contact (id, first_name, last_name, email, phone_number, birth_date, state) values (10001, 'John', 'Smith', 'john.smith@mailinator.com', '(212) 555-1212', '1963-06-03', 'NY')
-insert into Contact (id, first_name, last_name, email, phone_number, birth_date, state) values (10002, 'Davey', 'Jones', 'davey.jones@locker.com', '(212) 555-3333', '1996-08-07', 'NY')
-insert into Customer (id, first_name, last_name, email, phone_number) values (20001, 'ABC', 'GT', 'THh@mailinator.com', '(044)4555-1212')
-insert into Customer (id, first_name, last_name, email, phone_number) values (20002, 'DEH', 'UJ', 'YJJ@locker.com', '(044)4555-3333')
-insert into Taxi (id, registration, seat) values (30001, 'ABC1234', '5' )
-insert into Taxi (id, registration, seat) values (30002, 'DEH5678', '7')
+insert into Contact (id, version, first_name, last_name, email, phone_number, birth_date, state) values (10001, 0, 'John', 'Smith', 'john.smith@mailinator.com', '(212) 555-1212', '1963-06-03', 'NY')
+insert into Contact (id, version, first_name, last_name, email, phone_number, birth_date, state) values (10002, 0, 'Davey', 'Jones', 'davey.jones@locker.com', '(212) 555-3333', '1996-08-07', 'NY')
+insert into Customer (id, version, first_name, last_name, email, phone_number) values (20001, 0, 'ABC', 'GT', 'THh@mailinator.com', '(044)4555-1212')
+insert into Customer (id, version, first_name, last_name, email, phone_number) values (20002, 0, 'DEH', 'UJ', 'YJJ@locker.com', '(044)4555-3333')
+insert into Taxi (id, version, registration, seat) values (30001, 0, 'ABC1234', '5' )
+insert into Taxi (id, version, registration, seat) values (30002, 0, 'DEH5678', '7')
@@ -0,0 +1,40 @@
+--
+-- JBoss, Home of Professional Open Source
+-- Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+-- contributors by the @authors tag. See the copyright.txt in the
+-- distribution for a full listing of individual contributors.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+-- http://www.apache.org/licenses/LICENSE-2.0
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+-- Turns the customer_ID and taxi_ID columns of Booking, which held the ids as text, into BIGINT foreign keys to Customer
+-- and Taxi, and adds the indexes the "bookings of a customer" and "bookings of a taxi between two dates" lookups use. It
+-- is not needed with the default create-drop schema. Run it once, with the application undeployed, against the
+-- database of the contacts-angularjs datasource (H2).
+--
+-- A booking of a customer or a taxi that no longer exists cannot be kept, so those are deleted first. This lists them,
+-- so they can be looked at before:
+--
+--   SELECT * FROM Booking WHERE CAST(customer_ID AS BIGINT) NOT IN (SELECT id FROM Customer)
+--       OR CAST(taxi_ID AS BIGINT) NOT IN (SELECT id FROM Taxi);
+
+DELETE FROM Booking WHERE CAST(customer_ID AS BIGINT) NOT IN (SELECT id FROM Customer);
+DELETE FROM Booking WHERE CAST(taxi_ID AS BIGINT) NOT IN (SELECT id FROM Taxi);
+
+ALTER TABLE Booking ALTER COLUMN customer_ID BIGINT NOT NULL;
+ALTER TABLE Booking ALTER COLUMN taxi_ID BIGINT NOT NULL;
+
+-- The indexes are created before the foreign keys, which then use them rather than creating their own.
+CREATE INDEX booking_customer_idx ON Booking (customer_ID);
+CREATE INDEX booking_taxi_date_idx ON Booking (taxi_ID, travel_date);
+
+ALTER TABLE Booking ADD CONSTRAINT booking_customer_fk FOREIGN KEY (customer_ID) REFERENCES Customer (id);
+ALTER TABLE Booking ADD CONSTRAINT booking_taxi_fk FOREIGN KEY (taxi_ID) REFERENCES Taxi (id);
@@ -0,0 +1,26 @@
+--
+-- JBoss, Home of Professional Open Source
+-- Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+-- contributors by the @authors tag. See the copyright.txt in the
+-- distribution for a full listing of individual contributors.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+-- http://www.apache.org/licenses/LICENSE-2.0
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+-- Adds the unique (travel_date, taxi_ID) constraint of Booking to an existing database, so a taxi can only be booked
+-- once per day. It is not needed with the default create-drop schema. Run it once, with the application undeployed.
+--
+-- The constraint cannot be added while a taxi has two bookings on the same day. This lists them, so they can be resolved
+-- first:
+--
+--   SELECT travel_date, taxi_ID, COUNT(*) FROM Booking GROUP BY travel_date, taxi_ID HAVING COUNT(*) > 1;
+
+ALTER TABLE Booking ADD CONSTRAINT booking_travel_date_taxi_uk UNIQUE (travel_date, taxi_ID);
@@ -0,0 +1,32 @@
+--
+-- JBoss, Home of Professional Open Source
+-- Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+-- contributors by the @authors tag. See the copyright.txt in the
+-- distribution for a full listing of individual contributors.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+-- http://www.apache.org/licenses/LICENSE-2.0
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+-- Adds the version and last_modified columns used for the ETag and Last-Modified headers, and for optimistic locking.
+-- It is not needed with the default create-drop schema, which creates the columns itself. Run it once, with the
+-- application undeployed, against the database of the contacts-angularjs datasource (H2).
+--
+-- Existing rows start at version 0 with no last modified time, so until they are next written they are revalidated by
+-- ETag only.
+
+ALTER TABLE Contact ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE Contact ADD COLUMN IF NOT EXISTS last_modified TIMESTAMP;
+ALTER TABLE Customer ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE Customer ADD COLUMN IF NOT EXISTS last_modified TIMESTAMP;
+ALTER TABLE Taxi ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE Taxi ADD COLUMN IF NOT EXISTS last_modified TIMESTAMP;
+ALTER TABLE Booking ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE Booking ADD COLUMN IF NOT EXISTS last_modified TIMESTAMP;
@@ -0,0 +1,33 @@
+--
+-- JBoss, Home of Professional Open Source
+-- Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+-- contributors by the @authors tag. See the copyright.txt in the
+-- distribution for a full listing of individual contributors.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+-- http://www.apache.org/licenses/LICENSE-2.0
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+-- Adds the outbox table, where the changes to the bookings, customers and taxis wait to be relayed to the outbox log.
+-- It is not needed with the default create-drop schema, which creates the table itself. Run it once, with the
+-- application undeployed, against the database of the contacts-angularjs datasource (H2).
+--
+-- The rows are deleted as they are relayed, so the table stays small and is only ever read in primary key order.
+
+CREATE SEQUENCE IF NOT EXISTS outbox_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS Outbox (
+    id BIGINT NOT NULL PRIMARY KEY,
+    entity_type VARCHAR(20) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    operation VARCHAR(10) NOT NULL,
+    data CLOB NOT NULL,
+    created BIGINT NOT NULL
+);
@@ -0,0 +1,37 @@
+--
+-- JBoss, Home of Professional Open Source
+-- Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+-- contributors by the @authors tag. See the copyright.txt in the
+-- distribution for a full listing of individual contributors.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+-- http://www.apache.org/licenses/LICENSE-2.0
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+-- Moves an existing database from the GenerationType.TABLE ids (one hibernate_sequences table shared by all entities) to
+-- the per entity pooled-lo sequences. It is not needed with the default create-drop schema, which creates the sequences
+-- itself. Run it once, with the application undeployed, against the database of the contacts-angularjs datasource (H2).
+--
+-- Each sequence is restarted just above the highest id in use, so the new ids never collide with existing rows. The
+-- sequences step by 50: Hibernate takes a value from the sequence and hands out it and the 49 ids after it in memory.
+-- Inserts therefore no longer take turns on the shared hibernate_sequences row, and a bulk insert only goes to the
+-- sequence once every 50 rows. The start values are above the ids used by import.sql.
+
+CREATE SEQUENCE IF NOT EXISTS contact_seq START WITH 10100 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS customer_seq START WITH 20100 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS taxi_seq START WITH 30100 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS booking_seq START WITH 40100 INCREMENT BY 50;
+
+ALTER SEQUENCE contact_seq RESTART WITH (SELECT GREATEST(COALESCE(MAX(id), 0) + 1, 10100) FROM Contact);
+ALTER SEQUENCE customer_seq RESTART WITH (SELECT GREATEST(COALESCE(MAX(id), 0) + 1, 20100) FROM Customer);
+ALTER SEQUENCE taxi_seq RESTART WITH (SELECT GREATEST(COALESCE(MAX(id), 0) + 1, 30100) FROM Taxi);
+ALTER SEQUENCE booking_seq RESTART WITH (SELECT GREATEST(COALESCE(MAX(id), 0) + 1, 40100) FROM Booking);
+
+DROP TABLE IF EXISTS hibernate_sequences;
@@ -0,0 +1,32 @@
+--
+-- JBoss, Home of Professional Open Source
+-- Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+-- contributors by the @authors tag. See the copyright.txt in the
+-- distribution for a full listing of individual contributors.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+-- http://www.apache.org/licenses/LICENSE-2.0
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+-- Adds the indexes behind the name ordered lists, the first and last name lookups, the seat lookup and the area code
+-- enrichment. It is not needed with the default create-drop schema. Run it once against the database of the
+-- contacts-angularjs datasource (H2); it can be run with the application deployed.
+--
+-- The name indexes end with the id, the last ORDER BY column of the lists, so H2 reads the rows in order and does not
+-- sort them. NamedQueryIndexTest checks, with EXPLAIN, that every named query is answered from an index.
+
+CREATE INDEX IF NOT EXISTS contact_name_idx ON Contact (last_name, first_name, id);
+CREATE INDEX IF NOT EXISTS contact_first_name_idx ON Contact (first_name, last_name, id);
+CREATE INDEX IF NOT EXISTS contact_state_idx ON Contact (state);
+
+CREATE INDEX IF NOT EXISTS customer_name_idx ON Customer (last_name, first_name, id);
+CREATE INDEX IF NOT EXISTS customer_first_name_idx ON Customer (first_name, last_name, id);
+
+CREATE INDEX IF NOT EXISTS taxi_seat_idx ON Taxi (seat, registration);
@@ -24,8 +24,9 @@
     config.$inject = ['$httpProvider', '$routeProvider'];
 
     function config($httpProvider, $routeProvider) {
-        //Use a HTTP interceptor to add a nonce to every GET request to prevent MSIE from caching responses.
-        $httpProvider.interceptors.push('ajaxNonceInterceptor');
+        //Use a HTTP interceptor to revalidate every GET request with the ETag of the response we already hold, so a stale
+        // copy is never shown (MSIE would otherwise reuse cached responses) but an unchanged one is not sent again.
+        $httpProvider.interceptors.push('conditionalGetInterceptor');
 
         //Note that this app is a single page app, composed of multiple 'views'
         //Each 'view' is some combination of a template and a controller
@@ -20,9 +20,9 @@
         .module('app')
         .controller('allcustomerController', allcustomerController);
 
-    allcustomerController.$inject = ['$scope', '$filter', 'Customer', 'messageBag'];
+    allcustomerController.$inject = ['$scope', '$filter', 'Customer', 'messageBag', 'queryAll'];
 
-    function  allcustomerController($scope, $filter, Customer, messageBag) {
+    function  allcustomerController($scope, $filter, Customer, messageBag, queryAll) {
         //Assign Contact service to $scope variable
         $scope.customers = Customer;
         //Assign Messages service to $scope variable
@@ -44,8 +44,8 @@
             return headings;
         };
 
-        //Upon initial loading of the controller, populate a list of Contacts and their letter headings
-        $scope.customers.data = $scope.customers.query(
+        //Upon initial loading of the controller, populate a list of Contacts (every page) and their letter headings
+        $scope.customers.data = queryAll($scope.customers,
             //Successful query
             function(data) {
                 $scope.customers.data = data;
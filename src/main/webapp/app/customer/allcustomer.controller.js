@@ -20,9 +20,9 @@
         .module('app')
         .controller('allcustomerController', allcustomerController);
 
-    allcustomerController.$inject = ['$scope', '$filter', 'Customer', 'messageBag'];
+    allcustomerController.$inject = ['$scope', '$filter', '$timeout', 'Customer', 'messageBag', 'queryAll'];
 
-    function  allcustomerController($scope, $filter, Customer, messageBag) {
+    function  allcustomerController($scope, $filter, $timeout, Customer, messageBag, queryAll) {
         //Assign Contact service to $scope variable
         $scope.customers = Customer;
         //Assign Messages service to $scope variable
@@ -44,8 +44,8 @@
             return headings;
         };
 
-        //Upon initial loading of the controller, populate a list of Contacts and their letter headings
-        $scope.customers.data = $scope.customers.query(
+        //Upon initial loading of the controller, populate a list of Contacts (every page) and their letter headings
+        $scope.customers.data = queryAll($scope.customers,
             //Successful query
             function(data) {
                 $scope.customers.data = data;
@@ -69,9 +69,43 @@
         //Default search string
         $scope.search = "";
 
-        //Continuously filter the content of the contacts list according to the contents of $scope.search
+        //Maximum number of matches asked of the server search
+        var searchLimit = 100;
+
+        //Milliseconds of no typing before the server is asked
+        var searchDelay = 300;
+
+        //The server search waiting for the typing to stop
+        var pendingSearch;
+
+        //Continuously filter the content of the customers list according to the contents of $scope.search. The loaded
+        //customers are filtered straight away, on any field. Once the typing stops, the server's name and email prefix
+        //search is asked too, and the matches it finds that are not loaded yet are added to the list. An answer that
+        //arrives after the search string has changed again is ignored.
         $scope.$watch('search', function(newValue, oldValue) {
-            $scope.customersList = getHeadings($filter('filter')($scope.customers.data, $scope.search));
+            var matches = $filter('filter')($scope.customers.data, newValue);
+            $scope.customersList = getHeadings(matches);
+            $timeout.cancel(pendingSearch);
+            if (!newValue) {
+                return;
+            }
+            pendingSearch = $timeout(function() {
+                $scope.customers.search({q: newValue, limit: searchLimit}, function(data) {
+                    if (newValue !== $scope.search) {
+                        return;
+                    }
+                    var shown = {};
+                    for (var i = 0; i < matches.length; i++) {
+                        shown[matches[i].id] = true;
+                    }
+                    var added = data.filter(function(match) {
+                        return !shown[match.id];
+                    });
+                    if (added.length) {
+                        $scope.customersList = getHeadings(matches.concat(added));
+                    }
+                });
+            }, searchDelay);
         });
     }
 })();
\ No newline at end of file
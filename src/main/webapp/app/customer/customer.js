@@ -29,7 +29,9 @@
             'rest/customers/:customerId',
             {customerId: '@id'},
             {
-                'update': {method: 'PUT'}
+                'update': {method: 'PUT'},
+                //Prefix search on the names and email, answered from an index on the server
+                'search': {method: 'GET', url: 'rest/customers/search', isArray: true}
             }
         );
         //Declare public class variable to act as a pseudo-cache TODO: use proper $cacheFactor cache in Contact
@@ -20,9 +20,9 @@
         .module('app')
         .controller('alltaxiController', alltaxiController);
 
-    alltaxiController.$inject = ['$scope', '$filter', 'Taxi', 'messageBag'];
+    alltaxiController.$inject = ['$scope', '$filter', 'Taxi', 'messageBag', 'changeFeed'];
 
-    function alltaxiController($scope, $filter, Taxi, messageBag) {
+    function alltaxiController($scope, $filter, Taxi, messageBag, changeFeed) {
         //Assign Taxi service to $scope variable
         $scope.taxis = Taxi;
         //Assign Messages service to $scope variable
@@ -44,16 +44,12 @@
             return headings;
         };
 
-        //Upon initial loading of the controller, populate a list of Taxis and their letter headings
-        $scope.taxis.data = $scope.taxis.query(
+        //Upon initial loading of the controller, populate a list of Taxis and their letter headings, then keep it up
+        // to date with the changes streamed from the server instead of reading it again
+        var feed = changeFeed.follow('taxis', Taxi,
             //Successful query
             function(data) {
-                $scope.taxis.data = data;
-                $scope.taxisList = getHeadings($scope.taxis.data);
-                //Keep the taxis list headings in sync with the underlying taxis
-                $scope.$watchCollection('taxis.data', function(newTaxis, oldTaxis) {
-                    $scope.taxisList = getHeadings(newTaxis);
-                });
+                $scope.taxisList = getHeadings($filter('filter')(data, $scope.search));
             },
             //Error
             function(result) {
@@ -62,6 +58,12 @@
                 }
             }
         );
+        $scope.$on('$destroy', feed.close);
+
+        //Keep the taxis list headings in sync with the underlying taxis, as changes arrive
+        $scope.$watchCollection('taxis.data', function(newTaxis, oldTaxis) {
+            $scope.taxisList = getHeadings($filter('filter')(newTaxis, $scope.search));
+        });
 
         //Boolean flag representing whether the details of the taxis are expanded inline
         $scope.details = false;
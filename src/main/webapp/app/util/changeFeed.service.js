@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+(function() {
+    'use strict';
+    angular
+        .module('app.util')
+        //Defines the changeFeed factory, which keeps a list of resources in step with its rest/stream/* event stream
+        .factory('changeFeed', changeFeed);
+
+    changeFeed.$inject = ['$rootScope', '$window', 'queryAll'];
+
+    function changeFeed($rootScope, $window, queryAll) {
+        // The stream is opened before the list is read, so no change made in between is missed. The changes that arrive
+        // while the list is being read are held back and applied to it once it is there. After that, 'put' and 'delete'
+        // events are applied to Resource.data in place, and a 'reset' event (sent when the server can no longer replay
+        // what was missed) reads the whole list again. A dropped stream is reconnected by the browser, which resumes it
+        // from the last event it received.
+        function follow(name, Resource, loaded, failed) {
+            var source = null;
+            var held = null;
+
+            function load() {
+                held = [];
+                queryAll(Resource,
+                    function(data) {
+                        Resource.data = data;
+                        var changes = held;
+                        held = null;
+                        angular.forEach(changes, function(change) {
+                            apply(change.type, change.value);
+                        });
+                        (loaded || angular.noop)(Resource.data);
+                    },
+                    function(result) {
+                        held = null;
+                        (failed || angular.noop)(result);
+                    }
+                );
+            }
+
+            function apply(type, value) {
+                var data = Resource.data;
+                for (var i = 0; i < data.length; i++) {
+                    if (data[i].id === value.id) {
+                        if (type == 'put') {
+                            data[i] = new Resource(value);
+                        } else {
+                            data.splice(i, 1);
+                        }
+                        return;
+                    }
+                }
+                if (type == 'put') {
+                    data.push(new Resource(value));
+                }
+            }
+
+            function receive(type) {
+                return function(event) {
+                    var value = angular.fromJson(event.data);
+                    $rootScope.$apply(function() {
+                        if (held) {
+                            held.push({type: type, value: value});
+                        } else {
+                            apply(type, value);
+                        }
+                    });
+                };
+            }
+
+            if (!$window.EventSource) {
+                // No Server-Sent Events in this browser (MSIE), the list is only read once
+                load();
+                return {close: angular.noop};
+            }
+
+            var opened = false;
+            function start() {
+                if (!opened) {
+                    opened = true;
+                    $rootScope.$apply(load);
+                }
+            }
+
+            source = new $window.EventSource('rest/stream/' + name);
+            source.addEventListener('put', receive('put'));
+            source.addEventListener('delete', receive('delete'));
+            source.addEventListener('reset', function() {
+                $rootScope.$apply(load);
+            });
+            source.addEventListener('open', start);
+            // If the stream cannot be opened at all the list is still read, it just does not follow the changes
+            source.addEventListener('error', start);
+
+            return {
+                close: function() {
+                    source.close();
+                }
+            };
+        }
+
+        return {
+            follow: follow
+        };
+    }
+})();
@@ -0,0 +1,82 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+(function() {
+    'use strict';
+    angular
+        .module('app.util')
+        //Defines the conditionalGetInterceptor factory, gets invoked for each request
+        .factory('conditionalGetInterceptor', conditionalGetInterceptor);
+
+    conditionalGetInterceptor.$inject = ['$q'];
+
+    //conditionalGetInterceptor factory function, gets called around each http request
+    function conditionalGetInterceptor($q) {
+        // Instead of defeating the browser cache, every GET is sent with the ETag of the copy we already hold, and a
+        // 304 (Not Modified) answer is turned back into a success carrying that copy. A PUT to the same url is sent
+        // with that ETag in If-Match, so it fails with 412 (Precondition Failed) rather than overwrite a newer change.
+        var maxEntries = 100;
+        var entries = {};
+        var keys = [];
+
+        function keyOf(config) {
+            return config.url + '?' + angular.toJson(config.params || {});
+        }
+
+        function remember(key, etag, data) {
+            if (!entries.hasOwnProperty(key)) {
+                keys.push(key);
+                if (keys.length > maxEntries) {
+                    delete entries[keys.shift()];
+                }
+            }
+            entries[key] = {etag: etag, data: angular.copy(data)};
+        }
+
+        return {
+            request: function (config) {
+                var entry = entries[keyOf(config)];
+                if (entry && (config.method == 'GET' || config.method == 'PUT')) {
+                    config.headers = config.headers || {};
+                    config.headers[config.method == 'GET' ? 'If-None-Match' : 'If-Match'] = entry.etag;
+                }
+                return config;
+            },
+            response: function (response) {
+                var etag = response.headers('ETag');
+                var method = response.config.method;
+                if ((method == 'GET' || method == 'PUT') && response.status == 200 && etag) {
+                    // The answer to a PUT is the updated entity, with its new ETag.
+                    remember(keyOf(response.config), etag, response.data);
+                }
+                return response;
+            },
+            responseError: function (rejection) {
+                var entry = rejection.config && entries[keyOf(rejection.config)];
+                if (rejection.status == 304 && entry) {
+                    return {
+                        data: angular.copy(entry.data),
+                        status: 200,
+                        statusText: 'OK',
+                        headers: rejection.headers,
+                        config: rejection.config
+                    };
+                }
+                return $q.reject(rejection);
+            }
+        };
+    }
+})();
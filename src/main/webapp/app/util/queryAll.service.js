@@ -0,0 +1,53 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+(function() {
+    'use strict';
+    angular
+        .module('app.util')
+        //Defines the queryAll factory, which reads a whole list from a paged rest endpoint
+        .factory('queryAll', queryAll);
+
+    function queryAll() {
+        // The list endpoints answer one page at a time and name the next one in the X-Next-Cursor header. The pages
+        // are read one after the other, each with the cursor of the one before, and added to the same array, which is
+        // returned straight away like the one of Resource.query(). The success callback is given the array once the
+        // last page is in; a failed page stops the read and is passed to the error callback.
+        return function(Resource, success, error) {
+            var all = [];
+
+            function read(after) {
+                var received = function(data, headers) {
+                    Array.prototype.push.apply(all, data);
+                    var next = headers && headers('X-Next-Cursor');
+                    if (next) {
+                        read(next);
+                    } else {
+                        (success || angular.noop)(all);
+                    }
+                };
+                if (after) {
+                    Resource.query({after: after}, received, error);
+                } else {
+                    Resource.query(received, error);
+                }
+            }
+
+            read(null);
+            return all;
+        };
+    }
+})();
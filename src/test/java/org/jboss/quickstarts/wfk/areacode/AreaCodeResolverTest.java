@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.areacode;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <p>Runs the {@link AreaCodeResolver} against a local stub of the allareacodes.com API, so no network is needed.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class AreaCodeResolverTest {
+
+    private static final Logger log = Logger.getLogger(AreaCodeResolverTest.class.getName());
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private HttpServer stub;
+
+    private CloseableHttpClient httpClient;
+
+    private String apiUrl;
+
+    @Before
+    public void startStub() throws IOException {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/api.json", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                try {
+                    // Slow enough for concurrent lookups to overlap
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = "{\"area_codes\":[{\"npa\":\"999\",\"state\":\"ZZ\"}]}".getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        stub.setExecutor(Executors.newCachedThreadPool());
+        stub.start();
+        apiUrl = "http://127.0.0.1:" + stub.getAddress().getPort() + "/api.json";
+        httpClient = HttpClients.createDefault();
+    }
+
+    @After
+    public void stopStub() throws IOException {
+        httpClient.close();
+        stub.stop(0);
+    }
+
+    @Test
+    public void preloadedAreaCodeDoesNotCallTheApi() throws Exception {
+        AreaCodeCache cache = new AreaCodeCache(10, 60000);
+        cache.preload(new ByteArrayInputStream("# npa,state\n212,NY\n".getBytes("UTF-8")));
+        AreaCodeResolver resolver = new AreaCodeResolver(log, httpClient, apiUrl, cache, false);
+
+        assertEquals("NY", resolver.stateFor("(212) 555-1212"));
+        assertEquals(0, requests.get());
+    }
+
+    @Test
+    public void asyncModeLeavesUncachedAreaCodePending() throws Exception {
+        AreaCodeResolver resolver = new AreaCodeResolver(log, httpClient, apiUrl, new AreaCodeCache(10, 60000), true);
+
+        assertEquals(AreaCodeResolver.PENDING, resolver.stateFor("(999) 555-1212"));
+        assertEquals(0, requests.get());
+
+        assertEquals("ZZ", resolver.resolve("999"));
+        assertEquals("ZZ", resolver.stateFor("(999) 555-1212"));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void concurrentLookupsAreCoalesced() throws Exception {
+        final AreaCodeResolver resolver = new AreaCodeResolver(log, httpClient, apiUrl, new AreaCodeCache(10, 60000), false);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < 8; i++) {
+            results.add(pool.submit(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    return resolver.stateFor("(999) 555-1212");
+                }
+            }));
+        }
+        for (Future<String> result : results) {
+            assertEquals("ZZ", result.get());
+        }
+        pool.shutdown();
+
+        assertEquals(1, requests.get());
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.booking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.UserTransaction;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.metrics.EndpointMetrics;
+import org.jboss.quickstarts.wfk.metrics.LatencyHistogram;
+import org.jboss.quickstarts.wfk.metrics.Phase;
+import org.jboss.quickstarts.wfk.metrics.RequestTimings;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.jboss.quickstarts.wfk.taxi.TaxisChanged;
+import org.jboss.quickstarts.wfk.util.EntitiesDeleted;
+import org.jboss.quickstarts.wfk.util.HttpClientPool;
+import org.jboss.quickstarts.wfk.util.Log;
+import org.jboss.quickstarts.wfk.util.ReadRouting;
+import org.jboss.quickstarts.wfk.util.Replica;
+import org.jboss.quickstarts.wfk.util.ReplicaRead;
+import org.jboss.quickstarts.wfk.util.Resources;
+import org.jboss.quickstarts.wfk.util.Revision;
+import org.jboss.quickstarts.wfk.util.Versioned;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * <p>Tests the bulk deletes of {@link BookingService}, run with Arquillian: each deletes only the Bookings that exist,
+ * and names only those in the {@link EntitiesDeleted} event it fires.</p>
+ *
+ * @see BookingService#deleteByIds(java.util.Collection)
+ * @see BookingService#deleteByCustomerIds(java.util.Collection)
+ */
+@RunWith(Arquillian.class)
+public class BookingDeleteTest {
+
+    @Deployment
+    public static Archive<?> createTestArchive() {
+        //HttpComponents is required by the HTTP client producer of Resources
+        File[] libs = Maven.resolver().loadPomFromFile("pom.xml").resolve(
+                "org.apache.httpcomponents:httpclient:4.3.2"
+        ).withTransitivity().asFile();
+
+        return ShrinkWrap
+            .create(WebArchive.class, "test.war")
+            .addClasses(Booking.class,
+                        BookingBatchReport.class,
+                        BookingChange.class,
+                        BookingChunkWriter.class,
+                        BookingRepository.class,
+                        BookingService.class,
+                        BookingValidator.class,
+                        TaxiAvailability.class,
+                        UnknownReferenceException.class,
+                        Customer.class,
+                        Taxi.class,
+                        TaxisChanged.class,
+                        EntitiesDeleted.class,
+                        DeletionRecorder.class,
+                        HttpClientPool.class,
+                        Log.class,
+                        ReadRouting.class,
+                        Replica.class,
+                        ReplicaRead.class,
+                        Revision.class,
+                        Versioned.class,
+                        RequestTimings.class,
+                        Phase.class,
+                        EndpointMetrics.class,
+                        LatencyHistogram.class,
+                        Resources.class)
+            .addAsLibraries(libs)
+            .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
+            .addAsWebInfResource("arquillian-ds.xml")
+            .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    /**
+     * <p>Keeps the ids of every {@link EntitiesDeleted} event, as it is fired.</p>
+     */
+    @ApplicationScoped
+    public static class DeletionRecorder {
+
+        private final List<Long> ids = Collections.synchronizedList(new ArrayList<Long>());
+
+        void onDeleted(@Observes EntitiesDeleted deleted) {
+            ids.addAll(deleted.getIds());
+        }
+
+        List<Long> take() {
+            List<Long> taken = new ArrayList<Long>(ids);
+            ids.clear();
+            return taken;
+        }
+    }
+
+    @Inject
+    BookingService bookingService;
+
+    @Inject
+    DeletionRecorder deletions;
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    UserTransaction utx;
+
+    // Registrations and emails are unique, so each test gets its own customer and taxi
+    private static int created;
+
+    private Customer customer;
+
+    private Taxi taxi;
+
+    @Before
+    public void createCustomerAndTaxi() throws Exception {
+        created++;
+        utx.begin();
+        customer = new Customer();
+        customer.setFirstName("Jane");
+        customer.setLastName("Doe");
+        customer.setEmail("jane.doe." + created + "@mailinator.com");
+        customer.setPhoneNumber("(044)4555-1212");
+        em.persist(customer);
+
+        taxi = new Taxi();
+        taxi.setRegistration(String.format("TX%05d", created));
+        taxi.setSeat("4");
+        taxi.setLastName("Smith");
+        taxi.setEmail("taxi." + created + "@mailinator.com");
+        taxi.setPhoneNumber("(212)555-1234");
+        taxi.setBirthDate(new Date(498484800000L));
+        em.persist(taxi);
+        utx.commit();
+        deletions.take();
+    }
+
+    @Test
+    public void testDeleteByIdsNamesOnlyDeletedBookings() throws Exception {
+        Booking first = persistBooking(1);
+        Booking second = persistBooking(2);
+        Long missing = Long.valueOf(999999);
+
+        utx.begin();
+        int deleted = bookingService.deleteByIds(Arrays.asList(first.getId(), missing));
+        utx.commit();
+
+        assertEquals(1, deleted);
+        assertEquals(Collections.singletonList(first.getId()), deletions.take());
+        assertNull(em.find(Booking.class, first.getId()));
+        assertEquals(second.getId(), em.find(Booking.class, second.getId()).getId());
+    }
+
+    @Test
+    public void testDeleteByIdsOfMissingBookings() throws Exception {
+        utx.begin();
+        int deleted = bookingService.deleteByIds(Arrays.asList(Long.valueOf(999998), Long.valueOf(999999)));
+        utx.commit();
+
+        assertEquals(0, deleted);
+        assertEquals(Collections.<Long>emptyList(), deletions.take());
+    }
+
+    @Test
+    public void testDeleteByCustomerIdsNamesTheirBookings() throws Exception {
+        Booking first = persistBooking(1);
+        Booking second = persistBooking(2);
+
+        utx.begin();
+        int deleted = bookingService.deleteByCustomerIds(Arrays.asList(customer.getId(), Long.valueOf(999999)));
+        utx.commit();
+
+        assertEquals(2, deleted);
+        List<Long> ids = deletions.take();
+        Collections.sort(ids);
+        assertEquals(Arrays.asList(first.getId(), second.getId()), ids);
+        assertNull(em.find(Booking.class, first.getId()));
+        assertNull(em.find(Booking.class, second.getId()));
+    }
+
+    private Booking persistBooking(int daysAhead) throws Exception {
+        Calendar travelDate = Calendar.getInstance();
+        travelDate.add(Calendar.DATE, daysAhead);
+
+        utx.begin();
+        Booking booking = new Booking();
+        booking.setCustomerID(customer.getId().toString());
+        booking.setTaxiID(taxi.getId().toString());
+        booking.setCustomer(em.getReference(Customer.class, customer.getId()));
+        booking.setTaxi(em.getReference(Taxi.class, taxi.getId()));
+        booking.setTravelDate(travelDate.getTime());
+        em.persist(booking);
+        utx.commit();
+        return booking;
+    }
+
+}
@@ -18,23 +18,49 @@ package org.jboss.quickstarts.wfk.contact;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import org.jboss.arquillian.container.test.api.Deployment;
 import org.jboss.arquillian.junit.Arquillian;
 import org.jboss.arquillian.junit.InSequence;
+import org.jboss.quickstarts.wfk.areacode.AreaCodeCache;
+import org.jboss.quickstarts.wfk.areacode.AreaCodeResolver;
 import org.jboss.quickstarts.wfk.contact.Contact;
 import org.jboss.quickstarts.wfk.contact.ContactRepository;
 import org.jboss.quickstarts.wfk.contact.ContactRESTService;
 import org.jboss.quickstarts.wfk.contact.ContactService;
 import org.jboss.quickstarts.wfk.contact.ContactValidator;
+import org.jboss.quickstarts.wfk.metrics.EndpointMetrics;
+import org.jboss.quickstarts.wfk.metrics.LatencyHistogram;
+import org.jboss.quickstarts.wfk.metrics.Phase;
+import org.jboss.quickstarts.wfk.metrics.RequestTimings;
+import org.jboss.quickstarts.wfk.util.HttpClientPool;
+import org.jboss.quickstarts.wfk.util.BulkDelete;
+import org.jboss.quickstarts.wfk.util.EntitiesDeleted;
+import org.jboss.quickstarts.wfk.util.KeysetPage;
+import org.jboss.quickstarts.wfk.util.Log;
+import org.jboss.quickstarts.wfk.util.PrefixIndex;
+import org.jboss.quickstarts.wfk.util.Projection;
+import org.jboss.quickstarts.wfk.util.ReadRouting;
+import org.jboss.quickstarts.wfk.util.Replica;
+import org.jboss.quickstarts.wfk.util.ReplicaRead;
 import org.jboss.quickstarts.wfk.util.Resources;
+import org.jboss.quickstarts.wfk.util.Revision;
+import org.jboss.quickstarts.wfk.util.Versioned;
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
 import org.jboss.shrinkwrap.api.asset.EmptyAsset;
@@ -79,8 +105,30 @@ public class ContactRegistrationTest {
                         ContactRepository.class, 
                         ContactValidator.class, 
                         ContactService.class, 
+                        ContactStateEnricher.class,
+                        ContactSearchIndex.class,
+                        AreaCodeResolver.class,
+                        AreaCodeCache.class,
+                        HttpClientPool.class,
+                        KeysetPage.class,
+                        BulkDelete.class,
+                        EntitiesDeleted.class,
+                        DeletionRecorder.class,
+                        PrefixIndex.class,
+                        Log.class,
+                        Projection.class,
+                        ReadRouting.class,
+                        Replica.class,
+                        ReplicaRead.class,
+                        Revision.class,
+                        Versioned.class,
+                        RequestTimings.class,
+                        Phase.class,
+                        EndpointMetrics.class,
+                        LatencyHistogram.class,
                         Resources.class)
             .addAsLibraries(libs)
+            .addAsResource("areacodes.csv")
             .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
             .addAsWebInfResource("arquillian-ds.xml")
             .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
@@ -88,8 +136,30 @@ public class ContactRegistrationTest {
         return archive;
     }
 
+    /**
+     * <p>Keeps the ids of every {@link EntitiesDeleted} event, as it is fired.</p>
+     */
+    @ApplicationScoped
+    public static class DeletionRecorder {
+
+        private final List<Long> ids = Collections.synchronizedList(new ArrayList<Long>());
+
+        void onDeleted(@Observes EntitiesDeleted deleted) {
+            ids.addAll(deleted.getIds());
+        }
+
+        List<Long> take() {
+            List<Long> taken = new ArrayList<Long>(ids);
+            ids.clear();
+            return taken;
+        }
+    }
+
     @Inject
     ContactRESTService contactRESTService;
+
+    @Inject
+    DeletionRecorder deletions;
     
     @Inject
     @Named("logger") Logger log;
@@ -140,6 +210,64 @@ public class ContactRegistrationTest {
         log.info("Duplicate contact register attempt failed with return code " + response.getStatus());
     }
 
+    @Test
+    @InSequence(4)
+    public void testStaleIfMatchUpdate() throws Exception {
+        Contact contact = createContactInstance("Jim", "Doe", "jim@mailinator.com", "(212) 555-1234", date);
+        contactRESTService.createContact(contact);
+        String etag = "\"" + contact.getId() + "-" + contact.getVersion() + "\"";
+
+        contact.setFirstName("James");
+        Response response = contactRESTService.updateContact(contact.getId(), etag, contact);
+        assertEquals("Unexpected response status", 200, response.getStatus());
+
+        // The ETag read before the first update no longer matches
+        contact.setFirstName("Jimmy");
+        response = contactRESTService.updateContact(contact.getId(), etag, contact);
+        assertEquals("Unexpected response status", 412, response.getStatus());
+        log.info("Stale contact update attempt failed with return code " + response.getStatus());
+    }
+
+    @Test
+    @InSequence(5)
+    public void testUpdateMissingContact() throws Exception {
+        Contact contact = createContactInstance("Joe", "Doe", "joe@mailinator.com", "(212) 555-1234", date);
+        contact.setId(999999L);
+        try {
+            contactRESTService.updateContact(999999L, null, contact);
+            fail("Expected a 404 for a contact that does not exist");
+        } catch (RuntimeException e) {
+            assertEquals("Unexpected response status", 404, statusOf(e));
+        }
+        log.info("Update of a missing contact failed with return code 404");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    @InSequence(6)
+    public void testBulkDeleteNamesOnlyDeletedContacts() throws Exception {
+        Contact contact = createContactInstance("Jill", "Doe", "jill@mailinator.com", "(212) 555-1234", date);
+        contactRESTService.createContact(contact);
+        deletions.take();
+
+        Response response = contactRESTService.deleteContacts(Arrays.asList(contact.getId(), 999999L));
+
+        assertEquals("Unexpected response status", 200, response.getStatus());
+        assertEquals(Integer.valueOf(1), ((Map<String, Integer>) response.getEntity()).get("deleted"));
+        assertEquals(Collections.singletonList(contact.getId()), deletions.take());
+        log.info("Bulk delete removed contact " + contact.getId() + " and skipped the missing id");
+    }
+
+    // The REST service is an EJB, so the WebApplicationException it throws may come wrapped in an EJBException
+    private static int statusOf(RuntimeException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof WebApplicationException) {
+                return ((WebApplicationException) cause).getResponse().getStatus();
+            }
+        }
+        throw e;
+    }
+
     /**
      * <p>A utility method to construct a {@link org.jboss.quickstarts.wfk.contact.Contact Contact} object for use in
      * testing. This object is not persisted.</p>
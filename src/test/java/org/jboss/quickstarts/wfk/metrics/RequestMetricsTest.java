@@ -0,0 +1,82 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * <p>Checks how {@link RequestMetrics} groups requests into end points and the Prometheus text it writes.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class RequestMetricsTest {
+
+    @Test
+    public void testTemplates() {
+        assertEquals("/contacts", RequestMetrics.templateOf("/contacts"));
+        assertEquals("/contacts/{id}", RequestMetrics.templateOf("/contacts/10001"));
+        assertEquals("/contacts/{email}", RequestMetrics.templateOf("/contacts/john.smith@mailinator.com"));
+        assertEquals("/taxis/{registration}", RequestMetrics.templateOf("/taxis/ABC1234"));
+        assertEquals("/bookings/availability", RequestMetrics.templateOf("/bookings/availability"));
+        assertEquals("/bookings/batch", RequestMetrics.templateOf("/bookings/batch"));
+        assertEquals("/", RequestMetrics.templateOf(""));
+    }
+
+    @Test
+    public void testRequestsToOneTemplateShareTheirMetrics() {
+        RequestMetrics metrics = new RequestMetrics();
+        assertSame(metrics.endpoint("GET", "/contacts/1"), metrics.endpoint("GET", "/contacts/2"));
+    }
+
+    @Test
+    public void testEndpointsAreCapped() {
+        RequestMetrics metrics = new RequestMetrics();
+        for (int i = 0; i < RequestMetrics.MAX_ENDPOINTS; i++) {
+            metrics.endpoint("GET", "/made-up-" + i);
+        }
+        assertEquals("other", metrics.endpoint("GET", "/one-too-many").getPath());
+        assertEquals("/made-up-0", metrics.endpoint("GET", "/made-up-0").getPath());
+    }
+
+    @Test
+    public void testPrometheusText() {
+        RequestMetrics metrics = new RequestMetrics();
+        EndpointMetrics endpoint = metrics.endpoint("POST", "/contacts");
+        endpoint.recordRequest(201, TimeUnit.MILLISECONDS.toNanos(3));
+        endpoint.recordRequest(409, TimeUnit.MILLISECONDS.toNanos(30));
+        endpoint.recordPhase(Phase.VALIDATION, TimeUnit.MICROSECONDS.toNanos(500));
+
+        String text = metrics.toPrometheus();
+        String labels = "method=\"POST\",path=\"/contacts\"";
+        assertTrue(text, text.contains("rest_requests_total{" + labels + "} 2\n"));
+        assertTrue(text, text.contains("rest_request_errors_total{" + labels + ",status=\"409\"} 1\n"));
+        assertTrue(text, text.contains("rest_request_duration_seconds_bucket{" + labels + ",le=\"0.0025\"} 0\n"));
+        assertTrue(text, text.contains("rest_request_duration_seconds_bucket{" + labels + ",le=\"0.005\"} 1\n"));
+        assertTrue(text, text.contains("rest_request_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} 2\n"));
+        assertTrue(text, text.contains("rest_request_duration_seconds_count{" + labels + "} 2\n"));
+        assertTrue(text, text.contains("rest_request_duration_seconds_sum{" + labels + "} 0.033\n"));
+        assertTrue(text, text.contains(
+            "rest_request_phase_duration_seconds_bucket{" + labels + ",phase=\"validation\",le=\"0.001\"} 1\n"));
+        assertTrue(text, !text.contains("phase=\"jpa_flush\""));
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.outbox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>Checks how {@link SegmentedLog} appends, reads back by offset, rolls and deletes segments, and recovers when it is
+ * opened again.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class SegmentedLogTest {
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = File.createTempFile("segmented-log", "");
+        assertTrue(directory.delete() && directory.mkdir());
+    }
+
+    @After
+    public void deleteDirectory() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testReadsRecordsBackFromTheirOffsets() throws IOException {
+        SegmentedLog log = new SegmentedLog(directory, 1024, 4);
+        long first = log.append(bytes("one"));
+        long second = log.append(bytes("two"));
+        assertEquals(0L, first);
+        assertEquals(SegmentedLog.HEADER_SIZE + 3L, second);
+
+        List<SegmentedLog.Record> records = log.read(first, 10);
+        assertEquals(Arrays.asList("one", "two"), dataOf(records));
+        assertEquals(second, records.get(0).getNextOffset());
+        assertEquals(log.getEndOffset(), records.get(1).getNextOffset());
+        assertEquals(Arrays.asList("two"), dataOf(log.read(second, 10)));
+        assertEquals(Arrays.asList("one"), dataOf(log.read(first, 1)));
+        assertTrue("Nothing after the end yet", log.read(log.getEndOffset(), 10).isEmpty());
+    }
+
+    @Test
+    public void testRejectsAnOffsetThatIsNotARecord() throws IOException {
+        SegmentedLog log = new SegmentedLog(directory, 1024, 4);
+        log.append(bytes("one"));
+        assertRejected(log, 1);
+        assertRejected(log, log.getEndOffset() + 1);
+    }
+
+    @Test
+    public void testRollsSegmentsAndDeletesTheOldest() throws IOException {
+        // Two 8 + 24 byte records fit in a segment
+        SegmentedLog log = new SegmentedLog(directory, 70, 2);
+        List<Long> offsets = new ArrayList<Long>();
+        for (int i = 0; i < 6; i++) {
+            offsets.add(log.append(bytes("record-" + i + "-0123456789abcde")));
+        }
+        assertEquals(2, log.getSegmentCount());
+        assertEquals(2, directory.listFiles().length);
+        assertEquals("Offsets carry on across segments", Long.valueOf(64L), offsets.get(2));
+        assertEquals(offsets.get(2), Long.valueOf(log.getStartOffset()));
+
+        List<SegmentedLog.Record> records = log.read(log.getStartOffset(), 10);
+        assertEquals(4, records.size());
+        assertEquals(offsets.get(4), Long.valueOf(records.get(2).getOffset()));
+        assertRejected(log, offsets.get(0));
+    }
+
+    @Test
+    public void testCarriesOnWhereItLeftOffWhenOpenedAgain() throws IOException {
+        SegmentedLog log = new SegmentedLog(directory, 70, 4);
+        for (int i = 0; i < 3; i++) {
+            log.append(bytes("record-" + i + "-0123456789abcde"));
+        }
+        long end = log.getEndOffset();
+        log.close();
+
+        SegmentedLog reopened = new SegmentedLog(directory, 70, 4);
+        assertEquals(end, reopened.getEndOffset());
+        assertEquals(3, reopened.read(0, 10).size());
+        long next = reopened.append(bytes("after"));
+        assertEquals(end, next);
+        assertEquals(Arrays.asList("after"), dataOf(reopened.read(next, 10)));
+    }
+
+    @Test
+    public void testDropsATornRecordWhenOpenedAgain() throws IOException {
+        SegmentedLog log = new SegmentedLog(directory, 1024, 4);
+        log.append(bytes("kept"));
+        long end = log.getEndOffset();
+        log.close();
+
+        // A record whose data never made it to disk: its length is there, its checksum does not match
+        RandomAccessFile segment = new RandomAccessFile(directory.listFiles()[0], "rw");
+        try {
+            segment.seek(end);
+            segment.writeInt(5);
+            segment.writeInt(12345);
+            segment.write(bytes("torn!"));
+        } finally {
+            segment.close();
+        }
+
+        SegmentedLog reopened = new SegmentedLog(directory, 1024, 4);
+        assertEquals(end, reopened.getEndOffset());
+        reopened.append(bytes("new"));
+        assertEquals(Arrays.asList("kept", "new"), dataOf(reopened.read(0, 10)));
+    }
+
+    private static void assertRejected(SegmentedLog log, long offset) {
+        try {
+            log.read(offset, 10);
+            fail("Read from offset " + offset);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static byte[] bytes(String data) {
+        try {
+            return data.getBytes("UTF-8");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<String> dataOf(List<SegmentedLog.Record> records) throws IOException {
+        List<String> data = new ArrayList<String>();
+        for (SegmentedLog.Record record : records) {
+            data.add(new String(record.getData(), "UTF-8"));
+        }
+        return data;
+    }
+}
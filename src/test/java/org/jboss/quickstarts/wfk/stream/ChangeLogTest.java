@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * <p>Checks how {@link ChangeLog} replays, coalesces and forgets changes, and reads back its event ids.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class ChangeLogTest {
+
+    @Test
+    public void testReplaysTheChangesAfterASequenceNumber() {
+        ChangeLog log = new ChangeLog(10, "g");
+        log.append(ChangeLog.PUT, 1L, "{\"id\":1}");
+        long second = log.append(ChangeLog.PUT, 2L, "{\"id\":2}");
+        log.append(ChangeLog.DELETE, 3L, "{\"id\":3}");
+
+        List<ChangeLog.Entry> entries = log.since(second);
+        assertEquals(1, entries.size());
+        assertEquals(ChangeLog.DELETE, entries.get(0).getType());
+        assertEquals(Long.valueOf(3L), entries.get(0).getId());
+        assertTrue(log.since(log.head()).isEmpty());
+    }
+
+    @Test
+    public void testCoalescesChangesToTheSameEntity() {
+        ChangeLog log = new ChangeLog(10, "g");
+        log.append(ChangeLog.PUT, 1L, "first");
+        log.append(ChangeLog.PUT, 2L, "other");
+        log.append(ChangeLog.PUT, 1L, "second");
+        log.append(ChangeLog.DELETE, 1L, "deleted");
+
+        List<ChangeLog.Entry> entries = log.since(0);
+        assertEquals(Arrays.asList(2L, 1L), idsOf(entries));
+        assertEquals("deleted", entries.get(1).getData());
+        assertEquals(4L, entries.get(1).getSeq());
+    }
+
+    @Test
+    public void testForgetsChangesOlderThanItsCapacity() {
+        ChangeLog log = new ChangeLog(3, "g");
+        for (long id = 1; id <= 5; id++) {
+            log.append(ChangeLog.PUT, id, "{}");
+        }
+        assertNull("Changes 2 and up are not all kept", log.since(1));
+        assertEquals(Arrays.asList(3L, 4L, 5L), idsOf(log.since(2)));
+        assertNull("A sequence number from the future", log.since(6));
+        assertNull(log.since(-1));
+    }
+
+    @Test
+    public void testReadsBackItsOwnEventIdsOnly() {
+        ChangeLog log = new ChangeLog(10, "g1");
+        assertEquals(7L, log.parseEventId(log.eventId(7)));
+        assertEquals(-1L, log.parseEventId("g2-7"));
+        assertEquals(-1L, log.parseEventId("g1-x"));
+        assertEquals(-1L, log.parseEventId(null));
+    }
+
+    private static List<Long> idsOf(List<ChangeLog.Entry> entries) {
+        List<Long> ids = new ArrayList<Long>();
+        for (ChangeLog.Entry entry : entries) {
+            ids.add(entry.getId());
+        }
+        return ids;
+    }
+}
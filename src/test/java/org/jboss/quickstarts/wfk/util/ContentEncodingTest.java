@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+/**
+ * <p>Checks the <code>Accept-Encoding</code> negotiation of {@link ContentEncoding}, and that gzip written with pooled
+ * deflaters reads back.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class ContentEncodingTest {
+
+    @Test
+    public void testNegotiatesPreferredSupportedEncoding() {
+        assertNull(ContentEncoding.negotiate(null));
+        assertNull(ContentEncoding.negotiate("identity"));
+        assertNull(ContentEncoding.negotiate("br"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("gzip"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("deflate, gzip"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("br, gzip, deflate"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, *"));
+    }
+
+    @Test
+    public void testPooledGzipReadsBack() throws IOException {
+        byte[] json = new byte[20000];
+        for (int i = 0; i < json.length; i++) {
+            json[i] = (byte) "[{\"id\":10001},".charAt(i % 14);
+        }
+        DeflaterPool pool = new DeflaterPool(6, ContentEncoding.GZIP.isNowrap(), 1);
+        Deflater first = null;
+        for (int round = 0; round < 2; round++) {
+            Deflater deflater = pool.borrow();
+            if (round == 0) {
+                first = deflater;
+            } else {
+                assertSame("The deflater is reused", first, deflater);
+            }
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            DeflaterOutputStream out = ContentEncoding.GZIP.open(compressed, deflater, 512);
+            out.write(json, 0, 100);
+            out.write(json[100]);
+            out.write(json, 101, json.length - 101);
+            out.finish();
+            pool.release(deflater);
+
+            byte[] read = new byte[json.length];
+            DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+            in.readFully(read);
+            assertEquals(-1, in.read());
+            assertArrayEquals(json, read);
+        }
+        pool.close();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * <p>Checks that {@link IsoDateCodec} reads and writes the same dates as the <code>SimpleDateFormat</code> it replaced,
+ * including in time zones where daylight saving time starts at midnight.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class IsoDateCodecTest {
+
+    private final TimeZone defaultZone = TimeZone.getDefault();
+
+    @After
+    public void restoreDefaultZone() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void testMatchesSimpleDateFormatEveryDay() throws Exception {
+        for (String zone : new String[] {"UTC", "Europe/London", "America/New_York", "America/Sao_Paulo", "Asia/Kolkata"}) {
+            TimeZone.setDefault(TimeZone.getTimeZone(zone));
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+
+            Calendar day = Calendar.getInstance();
+            day.clear();
+            day.set(1901, Calendar.JANUARY, 1);
+            while (day.get(Calendar.YEAR) < 2100) {
+                String text = format.format(day.getTime());
+                Date midday = new Date(day.getTimeInMillis() + 12 * 60 * 60 * 1000L);
+
+                assertEquals(zone + " " + text, format.parse(text), IsoDateCodec.parse(text));
+                assertEquals(zone + " " + text, text, IsoDateCodec.format(day.getTime()));
+                assertEquals(zone + " " + text, format.format(midday), IsoDateCodec.format(midday));
+                day.add(Calendar.DATE, 1);
+            }
+        }
+    }
+
+    @Test
+    public void testFormatsIntoBuffer() {
+        char[] buffer = "[..........]".toCharArray();
+        IsoDateCodec.format(IsoDateCodec.parse("1966-01-03"), buffer, 1);
+        assertEquals("[1966-01-03]", new String(buffer));
+    }
+
+    @Test
+    public void testRejectsInvalidDates() {
+        for (String text : new String[] {"2001-02-29", "2000-13-01", "2000-00-10", "2000-01-32", "20x0-01-01",
+            "2000-1-01", "2000/01/01", "2000-01-01T00:00"}) {
+            try {
+                IsoDateCodec.parse(text);
+                fail("Accepted " + text);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>Checks the plain and structured formats of {@link Log}, that an exception logged last keeps its stack trace, and
+ * that nothing is rendered at a disabled level.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class LogTest {
+
+    private final List<LogRecord> records = new ArrayList<LogRecord>();
+
+    private Logger logger;
+
+    @Before
+    public void captureRecords() {
+        logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.INFO);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    @Test
+    public void testPlainFormat() {
+        new Log(logger, false).info("createContact started", "email", "jane@company.com", "id", 14L);
+        new Log(logger, false).info("createContact completed");
+
+        assertEquals("createContact started [email=jane@company.com, id=14]", records.get(0).getMessage());
+        assertEquals("createContact completed", records.get(1).getMessage());
+        assertEquals(Level.INFO, records.get(0).getLevel());
+    }
+
+    @Test
+    public void testStructuredFormat() {
+        new Log(logger, true).info("createContact started", "firstName", "Jane", "lastName", "Mc \"Doe\"",
+            "state", "", "birthDate", null);
+
+        assertEquals("msg=\"createContact started\" firstName=Jane lastName=\"Mc \\\"Doe\\\"\" state=\"\" birthDate=null",
+            records.get(0).getMessage());
+    }
+
+    @Test
+    public void testExceptionLoggedLastIsThrown() {
+        Exception e = new IllegalStateException("drain failed");
+        new Log(logger, false).warning("OutboxRelay.drain() failed", "exception", e);
+        new Log(logger, false).info("updateContact failed", "exception", e, "id", 14L);
+
+        assertEquals("OutboxRelay.drain() failed [exception=" + e + "]", records.get(0).getMessage());
+        assertSame(e, records.get(0).getThrown());
+        assertNull(records.get(1).getThrown());
+    }
+
+    @Test
+    public void testDisabledLevelDoesNotRenderValues() {
+        Object value = new Object() {
+            @Override
+            public String toString() {
+                throw new AssertionError("Rendered a value at a disabled level");
+            }
+        };
+        Log log = new Log(logger, true);
+
+        log.fine("Validation completed", "violations", value);
+        log.fine("Validation completed", "violations", 3);
+
+        assertTrue(records.isEmpty());
+    }
+}
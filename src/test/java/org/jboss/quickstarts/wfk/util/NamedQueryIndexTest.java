@@ -0,0 +1,198 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.persistence.EntityManager;
+
+import org.hibernate.Filter;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.NamedQueryDefinition;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.jdbc.Work;
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.junit.Arquillian;
+import org.jboss.quickstarts.wfk.booking.Booking;
+import org.jboss.quickstarts.wfk.contact.Contact;
+import org.jboss.quickstarts.wfk.customer.Customer;
+import org.jboss.quickstarts.wfk.outbox.OutboxEntry;
+import org.jboss.quickstarts.wfk.taxi.Taxi;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.resolver.api.maven.Maven;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * <p>Checks, with the database's own <code>EXPLAIN</code>, that every named query of the entities is answered from an
+ * index.</p>
+ *
+ * <p>Each named query is translated to SQL by Hibernate and explained by H2 against the schema created from the entity
+ * mappings. A plan that reads a table with a <code>tableScan</code> fails the test, unless the whole table is wanted in
+ * index order (<code>/* index sorted &#42;/</code>), as FIND_ALL is, so no sort is needed.</p>
+ *
+ * @author Joshua Wilson
+ */
+@RunWith(Arquillian.class)
+public class NamedQueryIndexTest {
+
+    // Queries that read every row on purpose, which no index can help.
+    private static final List<String> FULL_READS = Arrays.asList(Contact.FIND_SEARCH_WORDS, Customer.FIND_SEARCH_WORDS);
+
+    @Deployment
+    public static Archive<?> createTestArchive() {
+        //HttpComponents is required by the HTTP client producer of Resources
+        File[] libs = Maven.resolver().loadPomFromFile("pom.xml").resolve(
+                "org.apache.httpcomponents:httpclient:4.3.2"
+        ).withTransitivity().asFile();
+
+        return ShrinkWrap
+            .create(WebArchive.class, "test.war")
+            .addClasses(Contact.class,
+                        Customer.class,
+                        Taxi.class,
+                        Booking.class,
+                        OutboxEntry.class,
+                        HttpClientPool.class,
+                        Log.class,
+                        Replica.class,
+                        Revision.class,
+                        Versioned.class,
+                        Resources.class)
+            .addAsLibraries(libs)
+            .addAsResource("META-INF/test-persistence.xml", "META-INF/persistence.xml")
+            .addAsWebInfResource("arquillian-ds.xml")
+            .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    @Named("logger") Logger log;
+
+    @Test
+    public void testContactQueriesUseIndexes() throws Exception {
+        assertIndexed(Contact.class);
+    }
+
+    @Test
+    public void testCustomerQueriesUseIndexes() throws Exception {
+        assertIndexed(Customer.class);
+    }
+
+    @Test
+    public void testTaxiQueriesUseIndexes() throws Exception {
+        assertIndexed(Taxi.class);
+    }
+
+    @Test
+    public void testBookingQueriesUseIndexes() throws Exception {
+        assertIndexed(Booking.class);
+    }
+
+    @Test
+    public void testOutboxQueriesUseIndexes() throws Exception {
+        assertIndexed(OutboxEntry.class);
+    }
+
+    /**
+     * <p>Explains every named query declared by an entity, found from its public <code>Entity.name</code> constants,
+     * and fails on the first one that scans a table.</p>
+     */
+    private void assertIndexed(Class<?> entity) throws Exception {
+        Session session = em.unwrap(Session.class);
+        SessionFactoryImplementor factory = (SessionFactoryImplementor) session.getSessionFactory();
+
+        for (final String name : namedQueries(entity)) {
+            if (FULL_READS.contains(name)) {
+                continue;
+            }
+            NamedQueryDefinition definition = factory.getNamedQuery(name);
+            assertNotNull("No named query " + name, definition);
+
+            // A collection parameter is expanded to one placeholder per element when the query runs, one will do here.
+            String hql = definition.getQueryString().replaceAll("(?i)\\bIN :(\\w+)", "IN (:$1)");
+            String[] sqls = factory.getQueryPlanCache()
+                .getHQLQueryPlan(hql, false, Collections.<String, Filter>emptyMap()).getSqlStrings();
+
+            for (final String sql : sqls) {
+                session.doWork(new Work() {
+                    @Override
+                    public void execute(Connection connection) throws SQLException {
+                        String plan = explain(connection, sql);
+                        log.info(name + ": " + plan);
+                        assertFalse(name + " scans a table: " + plan,
+                            plan.contains(".tableScan") && !plan.contains("index sorted"));
+                    }
+                });
+            }
+        }
+    }
+
+    private static List<String> namedQueries(Class<?> entity) throws IllegalAccessException {
+        List<String> names = new ArrayList<String>();
+        for (Field field : entity.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                String value = (String) field.get(null);
+                if (value.startsWith(entity.getSimpleName() + ".")) {
+                    names.add(value);
+                }
+            }
+        }
+        return names;
+    }
+
+    private static String explain(Connection connection, String sql) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql);
+        try {
+            // The plan is made when the statement is prepared, the parameter values do not change it.
+            int parameters = statement.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= parameters; i++) {
+                statement.setNull(i, Types.NULL);
+            }
+            ResultSet result = statement.executeQuery();
+            StringBuilder plan = new StringBuilder();
+            while (result.next()) {
+                plan.append(result.getString(1));
+            }
+            return plan.toString();
+        } finally {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * <p>Checks the prefix searches of {@link PrefixIndex} and how it keeps up with changes.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class PrefixIndexTest {
+
+    @Test
+    public void testFindsAnyWordByPrefixIgnoringCaseAndAccents() {
+        PrefixIndex index = new PrefixIndex();
+        index.put(1L, "John", "Smith", "john.smith@mailinator.com");
+        index.put(2L, "Jos\u00e9", "\u00c1vila", "jose@example.com");
+        index.put(3L, "Davey", "Jones", "davey.jones@locker.com");
+
+        assertEquals(Arrays.asList(1L, 3L, 2L), index.search("j", 10));
+        assertEquals(Arrays.asList(2L), index.search("JOSE", 10));
+        assertEquals(Arrays.asList(2L), index.search(" avi", 10));
+        assertEquals(Arrays.asList(3L), index.search("davey.j", 10));
+        assertTrue(index.search("x", 10).isEmpty());
+        assertTrue(index.search("  ", 10).isEmpty());
+    }
+
+    @Test
+    public void testReturnsEachIdOnceUpToTheLimit() {
+        PrefixIndex index = new PrefixIndex();
+        index.put(1L, "Ann", "Anderson", "ann@example.com");
+        index.put(2L, "Anna", "Andrews", "anna@example.com");
+
+        assertEquals(Arrays.asList(1L, 2L), index.search("an", 10));
+        assertEquals(Arrays.asList(1L), index.search("an", 1));
+    }
+
+    @Test
+    public void testReplacesAndRemovesWords() {
+        PrefixIndex index = new PrefixIndex();
+        index.put(1L, "John", "Smith");
+        index.put(1L, "Jack", "Smith");
+
+        assertTrue(index.search("john", 10).isEmpty());
+        assertEquals(Arrays.asList(1L), index.search("jack", 10));
+        assertEquals(Arrays.asList(1L), index.search("smith", 10));
+        assertEquals(1, index.size());
+
+        index.remove(1L);
+        assertTrue(index.search("smith", 10).isEmpty());
+        assertEquals(0, index.size());
+    }
+}
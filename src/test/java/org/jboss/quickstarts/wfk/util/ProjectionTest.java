@@ -0,0 +1,59 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import javax.ws.rs.WebApplicationException;
+
+import org.junit.Test;
+
+/**
+ * <p>Checks how {@link Projection} reads the <code>fields</code> query parameter.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class ProjectionTest {
+
+    @Test
+    public void testNoFieldsMeansWholeEntities() {
+        assertNull(Projection.parse(null));
+        assertNull(Projection.parse(" "));
+    }
+
+    @Test
+    public void testKeepsRequestedOrderWithoutDuplicates() {
+        assertEquals(Arrays.asList("id", "registration", "seat"),
+            Projection.parse("id, registration,seat,id").getFields());
+    }
+
+    @Test
+    public void testRejectsMalformedFields() {
+        for (String fields : new String[] {"id,,seat", "id,seat)", "c.id", "id;drop"}) {
+            try {
+                Projection.parse(fields);
+                fail("Accepted " + fields);
+            } catch (WebApplicationException e) {
+                assertEquals(400, e.getResponse().getStatus());
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * <p>Checks when {@link ReplicaRouter} lets a read go to the replica: not while the client's own write may be missing
+ * from it, and not for a while after it has failed.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class ReplicaRouterTest {
+
+    private static final long NOW = 1000000L;
+
+    @Test
+    public void testReadsFromTheReplicaWithoutARecentWrite() {
+        ReplicaRouter router = new ReplicaRouter(true, 5000, 30000);
+        assertTrue(router.mayRead(null, NOW));
+        assertTrue(router.mayRead(String.valueOf(NOW - 5000), NOW));
+        assertTrue("A cookie that is not a time", router.mayRead("soon", NOW));
+    }
+
+    @Test
+    public void testReadsOwnWritesFromThePrimary() {
+        ReplicaRouter router = new ReplicaRouter(true, 5000, 30000);
+        assertFalse(router.mayRead(String.valueOf(NOW - 4999), NOW));
+        assertFalse(router.mayRead(String.valueOf(NOW), NOW));
+    }
+
+    @Test
+    public void testNeverReadsFromATurnedOffReplica() {
+        ReplicaRouter router = new ReplicaRouter(false, 5000, 30000);
+        assertFalse(router.mayRead(null, NOW));
+    }
+
+    @Test
+    public void testLeavesAFailedReplicaAloneForTheRetryPeriod() {
+        ReplicaRouter router = new ReplicaRouter(true, 5000, 30000);
+        assertTrue(router.isUp(NOW));
+        router.failed(NOW);
+        assertFalse(router.isUp(NOW + 29999));
+        assertTrue(router.isUp(NOW + 30000));
+    }
+}
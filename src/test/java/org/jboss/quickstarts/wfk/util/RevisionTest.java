@@ -0,0 +1,85 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.quickstarts.wfk.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import javax.ws.rs.WebApplicationException;
+
+import org.junit.Test;
+
+/**
+ * <p>Checks the ETags and Last-Modified times {@link Revision} builds for conditional GET requests, and how it reads
+ * the <code>If-Match</code> header of updates.</p>
+ *
+ * @author Joshua Wilson
+ */
+public class RevisionTest {
+
+    @Test
+    public void testEntityTagIsIdAndVersion() {
+        Revision revision = new Revision(10001L, 3L, new Date(1500L));
+        assertEquals("10001-3", revision.getEntityTag().getValue());
+        assertFalse(revision.getEntityTag().isWeak());
+        // HTTP dates have no milliseconds
+        assertEquals(new Date(1000L), revision.getLastModified());
+    }
+
+    @Test
+    public void testPageTagChangesWithAnyRow() {
+        Revision first = new Revision(1L, 0L, null);
+        Revision second = new Revision(2L, 0L, null);
+        String tag = Revision.ofPage(Arrays.asList(first, second)).getEntityTag().getValue();
+
+        assertEquals(tag, Revision.ofPage(Arrays.asList(new Revision(1L, 0L, null), second)).getEntityTag().getValue());
+        assertFalse(tag.equals(Revision.ofPage(Arrays.asList(first, new Revision(2L, 1L, null))).getEntityTag().getValue()));
+        assertFalse(tag.equals(Revision.ofPage(Arrays.asList(first)).getEntityTag().getValue()));
+        assertFalse(tag.equals(Revision.ofPage(Arrays.asList(second, first)).getEntityTag().getValue()));
+    }
+
+    @Test
+    public void testPageHasNoLastModified() {
+        Revision page = Revision.ofPage(Arrays.asList(new Revision(1L, 0L, new Date())));
+        assertNull(page.getLastModified());
+        assertFalse(Revision.ofPage(Collections.<Revision>emptyList()).getEntityTag().getValue().isEmpty());
+    }
+
+    @Test
+    public void testExpectedVersionFromIfMatch() {
+        assertEquals(Long.valueOf(3), Revision.expectedVersion("\"10001-3\"", 10001L));
+        assertEquals(Long.valueOf(4), Revision.expectedVersion("\"10002-7\", \"10001-4\"", 10001L));
+        // No If-Match, or If-Match: *, updates whatever the version is.
+        assertNull(Revision.expectedVersion(null, 10001L));
+        assertNull(Revision.expectedVersion(" * ", 10001L));
+    }
+
+    @Test(expected = WebApplicationException.class)
+    public void testWeakIfMatchIsRejected() {
+        Revision.expectedVersion("W/\"10001-3\"", 10001L);
+    }
+
+    @Test(expected = WebApplicationException.class)
+    public void testIfMatchOfAnotherEntityIsRejected() {
+        Revision.expectedVersion("\"10002-3\"", 10001L);
+    }
+}
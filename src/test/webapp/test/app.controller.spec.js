@@ -23,6 +23,7 @@
     var Contact = injector.get('Contact');
     var $controller = injector.get('$controller');
     var $filter = injector.get('$filter');
+    var $timeout = injector.get('$timeout');
     var testData = [
         {"id":10002,"firstName":"Davey","lastName":"Jones","email":"davey.jones@locker.com",
             "phoneNumber":"(212)555-3333","birthDate":"1996-08-07"},
@@ -65,12 +66,51 @@
     });
 
     QUnit.test('"AppController" search filter works correctly', function(assert) {
+        this.$httpBackend.expectGET(/rest\/contacts\/search\?limit=100&q=Dd$/).respond(200, []);
         this.$scope.search = "D";
         this.$scope.$digest();
         assert.ok(!this.$scope.contactsList.hasOwnProperty('J'));
         this.$scope.search = "Dd";
         this.$scope.$digest();
         assert.ok(!this.$scope.contactsList.hasOwnProperty('D'));
+        $timeout.flush();
+        this.$httpBackend.flush();
+        assert.ok(!this.$scope.contactsList.hasOwnProperty('D'));
+    });
+
+    QUnit.test('"AppController" search uses the server matches', function(assert) {
+        var match = {"id":10003,"firstName":"Jane","lastName":"Doe","email":"jane.doe@company.com",
+            "phoneNumber":"(212) 555-1213","birthDate":"1966-01-03"};
+        this.$httpBackend.expectGET(/rest\/contacts\/search\?limit=100&q=Ja$/).respond(200, [match]);
+        this.$scope.search = "Ja";
+        this.$scope.$digest();
+        $timeout.flush();
+        this.$httpBackend.flush();
+        assert.deepEqual(Object.keys(this.$scope.contactsList), ['J']);
+        assert.equal(this.$scope.contactsList['J'][0].lastName, "Doe");
+    });
+
+    QUnit.test('"AppController" search keeps the local matches the server does not find', function(assert) {
+        this.$httpBackend.expectGET(/rest\/contacts\/search\?limit=100&q=555$/).respond(200, []);
+        this.$scope.search = "555";
+        this.$scope.$digest();
+        $timeout.flush();
+        this.$httpBackend.flush();
+        assert.deepEqual(this.$scope.contactsList, {'D':[this.testContacts[0]], 'J':[this.testContacts[1]]});
+    });
+
+    QUnit.test('"AppController" search asks the server once the typing stops', function(assert) {
+        this.$httpBackend.expectGET(/rest\/contacts\/search\?limit=100&q=Dav$/).respond(200, [this.testData[0]]);
+        this.$scope.search = "D";
+        this.$scope.$digest();
+        this.$scope.search = "Da";
+        this.$scope.$digest();
+        this.$scope.search = "Dav";
+        this.$scope.$digest();
+        $timeout.flush();
+        this.$httpBackend.flush();
+        this.$httpBackend.verifyNoOutstandingExpectation();
+        assert.deepEqual(this.$scope.contactsList, {'D':[this.testContacts[0]]});
     });
 
 })();
@@ -0,0 +1,112 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+(function() {
+    'use strict';
+    //Unit tests that cover the basic functionality of changeFeed.service.js
+    //A stand-in for the browser's EventSource, which lets the tests send the events
+    function FakeEventSource(url) {
+        this.url = url;
+        this.listeners = {};
+        FakeEventSource.last = this;
+    }
+    FakeEventSource.prototype.addEventListener = function(type, listener) {
+        this.listeners[type] = listener;
+    };
+    FakeEventSource.prototype.send = function(type, value) {
+        this.listeners[type]({data: angular.toJson(value || {})});
+    };
+    FakeEventSource.prototype.close = function() {
+        this.closed = true;
+    };
+
+    //Initialise Angular.js dependency injection, with the fake EventSource in place of the browser's
+    var injector = angular.injector(['ng', 'app.util', 'app.specs', ['$provide', function($provide) {
+        $provide.value('$window', {EventSource: FakeEventSource});
+    }]]);
+    var changeFeed = injector.get('changeFeed');
+
+    //A stand-in for an ngResource class, whose query() is answered by the test
+    function Taxi(value) {
+        angular.extend(this, value);
+    }
+    Taxi.query = function(success) {
+        Taxi.answer = success;
+    };
+
+    var testData = [
+        {"id":30001,"registration":"AB12CDE","seat":"4"},
+        {"id":30002,"registration":"FG34HIJ","seat":"6"}
+    ];
+
+    //Perform per-test setup
+    var init = {
+        setup: function() {
+            Taxi.data = [];
+            Taxi.answer = null;
+            this.loaded = 0;
+            var self = this;
+            this.feed = changeFeed.follow('taxis', Taxi, function() {
+                self.loaded++;
+            });
+            this.source = FakeEventSource.last;
+        }
+    };
+
+    //changeFeed.service.js tests module
+    QUnit.module('changeFeed Service spec', init);
+
+    QUnit.test('Opens the stream, then reads the list', function(assert) {
+        assert.equal(this.source.url, 'rest/stream/taxis');
+        assert.equal(Taxi.answer, null, "The list is not read before the stream is open.");
+        this.source.send('open');
+        Taxi.answer(angular.copy(testData));
+        assert.equal(this.loaded, 1);
+        assert.equal(Taxi.data.length, 2);
+    });
+
+    QUnit.test('Applies put and delete events to the list', function(assert) {
+        this.source.send('open');
+        Taxi.answer(angular.copy(testData));
+        this.source.send('put', {"id":30001,"registration":"AB12CDE","seat":"8"});
+        this.source.send('put', {"id":30003,"registration":"KL56MNO","seat":"4"});
+        this.source.send('delete', {"id":30002});
+        assert.deepEqual(_.pluck(Taxi.data, 'id'), [30001, 30003]);
+        assert.equal(Taxi.data[0].seat, "8");
+        assert.ok(Taxi.data[1] instanceof Taxi, "New entries are resources.");
+    });
+
+    QUnit.test('Holds the changes received while the list is read', function(assert) {
+        this.source.send('open');
+        this.source.send('delete', {"id":30001});
+        assert.equal(Taxi.data.length, 0);
+        Taxi.answer(angular.copy(testData));
+        assert.deepEqual(_.pluck(Taxi.data, 'id'), [30002]);
+    });
+
+    QUnit.test('Reads the list again on reset, and closes the stream', function(assert) {
+        this.source.send('open');
+        Taxi.answer(angular.copy(testData));
+        Taxi.answer = null;
+        this.source.send('reset');
+        assert.ok(angular.isFunction(Taxi.answer), "The list is read again.");
+        Taxi.answer([testData[1]]);
+        assert.equal(this.loaded, 2);
+        assert.equal(Taxi.data.length, 1);
+        this.feed.close();
+        assert.ok(this.source.closed);
+    });
+})();
@@ -0,0 +1,85 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors by the @authors tag. See the copyright.txt in the
+ * distribution for a full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+(function() {
+    'use strict';
+    //Unit tests that cover the basic functionality of queryAll.service.js
+    //Initialise Angular.js dependency injection and perform other setup
+    var injector = angular.injector(['ng', 'app.util', 'app.specs']);
+    var queryAll = injector.get('queryAll');
+
+    //A stand-in for an ngResource class, whose query() is answered by the test with a page and its next cursor
+    function Contact(value) {
+        angular.extend(this, value);
+    }
+    Contact.query = function(params, success, error) {
+        if (angular.isFunction(params)) {
+            error = success;
+            success = params;
+            params = {};
+        }
+        Contact.requests.push(params);
+        Contact.answer = function(data, next) {
+            success(data, function(name) {
+                return name == 'X-Next-Cursor' ? next : null;
+            });
+        };
+        Contact.fail = error;
+    };
+
+    //Perform per-test setup
+    var init = {
+        setup: function() {
+            Contact.requests = [];
+            this.result = null;
+            this.failure = null;
+            var self = this;
+            this.all = queryAll(Contact, function(data) {
+                self.result = data;
+            }, function(result) {
+                self.failure = result;
+            });
+        }
+    };
+
+    //queryAll.service.js tests module
+    QUnit.module('queryAll Service spec', init);
+
+    QUnit.test('Reads a single page', function(assert) {
+        Contact.answer([{"id":10001}, {"id":10002}], null);
+        assert.deepEqual(Contact.requests, [{}]);
+        assert.equal(this.result, this.all, "The returned array is filled in.");
+        assert.deepEqual(_.pluck(this.all, 'id'), [10001, 10002]);
+    });
+
+    QUnit.test('Follows the next cursor until the last page', function(assert) {
+        Contact.answer([{"id":10001}], 'c1');
+        assert.equal(this.result, null, "Not done before the last page.");
+        assert.deepEqual(_.pluck(this.all, 'id'), [10001], "Pages are added as they arrive.");
+        Contact.answer([{"id":10002}], 'c2');
+        Contact.answer([{"id":10003}], null);
+        assert.deepEqual(Contact.requests, [{}, {after: 'c1'}, {after: 'c2'}]);
+        assert.deepEqual(_.pluck(this.result, 'id'), [10001, 10002, 10003]);
+    });
+
+    QUnit.test('Stops at a failed page', function(assert) {
+        Contact.answer([{"id":10001}], 'c1');
+        Contact.fail({status: 500});
+        assert.equal(this.result, null);
+        assert.equal(this.failure.status, 500);
+        assert.equal(Contact.requests.length, 2);
+    });
+})();